@@ -0,0 +1,72 @@
+package omegadrive.cpu.m68k;
+
+import omegadrive.bus.model.GenesisBusProvider;
+import omegadrive.memory.IMemoryProvider;
+import omegadrive.memory.MemoryProvider;
+import omegadrive.util.SystemTestUtil;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * MC68000Benchmark
+ * <p>
+ * Runs a synthetic rom: a tight loop of alu ops, shifts, ram writes and branches.
+ * <p>
+ * Federico Berti
+ * <p>
+ * Copyright 2021
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MC68000Benchmark {
+
+    static final int PROGRAM_START = 0x200;
+
+    static final int[] PROGRAM = {
+            0x41F9, 0x00FF, 0x0000, //0x200 lea $FF0000,a0
+            0x7000,                 //0x206 moveq #0,d0
+            0x323C, 0x03FF,         //0x208 move.w #$3FF,d1
+            0xD081,                 //0x20C add.l d1,d0
+            0x20C0,                 //0x20E move.l d0,(a0)+
+            0xE388,                 //0x210 lsl.l #1,d0
+            0x51C9, 0xFFF8,         //0x212 dbra d1,$20C
+            0x60E8,                 //0x216 bra.s $200
+    };
+
+    private M68kProvider cpu;
+
+    @Setup
+    public void setup() {
+        cpu = createCpu();
+    }
+
+    //a new system running the synthetic rom
+    public static M68kProvider createCpu() {
+        int[] rom = new int[0x400];
+        //SSP = $FFFE00, PC = PROGRAM_START
+        rom[1] = 0xFF;
+        rom[2] = 0xFE;
+        rom[6] = PROGRAM_START >> 8;
+        for (int i = 0; i < PROGRAM.length; i++) {
+            rom[PROGRAM_START + (i << 1)] = PROGRAM[i] >> 8;
+            rom[PROGRAM_START + (i << 1) + 1] = PROGRAM[i] & 0xFF;
+        }
+        IMemoryProvider memoryProvider = MemoryProvider.createGenesisInstance();
+        memoryProvider.setRomData(rom);
+        GenesisBusProvider bus = SystemTestUtil.setupNewMdSystem(memoryProvider);
+        bus.init();
+        M68kProvider cpu = bus.getBusDeviceIfAny(M68kProvider.class).get();
+        cpu.reset();
+        return cpu;
+    }
+
+    @Benchmark
+    public int runInstruction() {
+        return cpu.runInstruction();
+    }
+}
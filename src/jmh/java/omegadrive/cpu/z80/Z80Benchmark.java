@@ -0,0 +1,64 @@
+package omegadrive.cpu.z80;
+
+import omegadrive.SystemLoader;
+import omegadrive.bus.z80.SmsBus;
+import omegadrive.memory.IMemoryProvider;
+import omegadrive.memory.MemoryProvider;
+import omegadrive.system.Z80BaseSystem;
+import omegadrive.ui.DisplayWindow;
+import omegadrive.util.RegionDetector;
+import omegadrive.vdp.SmsVdp;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Z80Benchmark
+ * <p>
+ * Runs a synthetic rom on a Sms bus: read-modify-write over ram, djnz and jp.
+ * <p>
+ * Federico Berti
+ * <p>
+ * Copyright 2021
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class Z80Benchmark {
+
+    static final int[] PROGRAM = {
+            0x21, 0x00, 0xC0, //0x00 ld hl,$C000
+            0x06, 0x00,       //0x03 ld b,0
+            0x7E,             //0x05 ld a,(hl)
+            0x80,             //0x06 add a,b
+            0x77,             //0x07 ld (hl),a
+            0x23,             //0x08 inc hl
+            0x10, 0xFA,       //0x09 djnz $05
+            0xC3, 0x00, 0x00  //0x0B jp $0000
+    };
+
+    private Z80Provider z80;
+
+    @Setup
+    public void setup() {
+        int[] rom = new int[0x4000];
+        System.arraycopy(PROGRAM, 0, rom, 0, PROGRAM.length);
+        SmsBus bus = new SmsBus();
+        IMemoryProvider memory = MemoryProvider.createSmsInstance();
+        memory.setRomData(rom);
+        z80 = Z80CoreWrapper.createInstance(bus);
+        bus.attachDevice(Z80BaseSystem.createNewInstance(SystemLoader.SystemType.SMS, DisplayWindow.HEADLESS_INSTANCE)).
+                attachDevice(memory).attachDevice(z80).
+                attachDevice(new SmsVdp(SystemLoader.SystemType.SMS, RegionDetector.Region.USA));
+        bus.init();
+        z80.reset();
+    }
+
+    @Benchmark
+    public int executeInstruction() {
+        return z80.executeInstruction();
+    }
+}
@@ -0,0 +1,79 @@
+package omegadrive.memory;
+
+import omegadrive.util.Size;
+import omegadrive.util.Util;
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * RomReadBenchmark
+ * <p>
+ * Random word/long reads over a 4MB rom, stored as int[] (one byte per int), byte[] and a big endian ByteBuffer,
+ * the latter is the Genesis bus path, see {@link ByteMemoryProvider}; the heap used by the rom is printed at setup,
+ * 16MB vs 4MB.
+ * <p>
+ * Federico Berti
+ * <p>
+ * Copyright 2021
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RomReadBenchmark {
+
+    static final int ROM_SIZE = 0x40_0000;
+    static final int NUM_READS = 0x1_0000;
+
+    @Param({"WORD", "LONG"})
+    public Size size;
+
+    private int[] intRom;
+    private byte[] byteRom;
+    private ByteBuffer bufferRom;
+    private int[] addresses;
+
+    @Setup
+    public void setup() {
+        Random r = new Random(0);
+        byteRom = new byte[ROM_SIZE];
+        r.nextBytes(byteRom);
+        bufferRom = ByteBuffer.wrap(byteRom);
+        intRom = Util.toUnsignedIntArray(byteRom);
+        //68k word aligned
+        addresses = r.ints(NUM_READS, 0, ROM_SIZE - 4).map(a -> a & ~1).toArray();
+        System.out.println("\nRom heap, int[]: " + ((intRom.length * Integer.BYTES) >> 10) + "Kb, byte[]: " + (byteRom.length >> 10) + "Kb");
+    }
+
+    @Benchmark
+    public long readInt() {
+        long res = 0;
+        for (int a : addresses) {
+            res += Util.readData(intRom, size, a);
+        }
+        return res;
+    }
+
+    @Benchmark
+    public long readByte() {
+        long res = 0;
+        for (int a : addresses) {
+            res += Util.readData(byteRom, size, a);
+        }
+        return res;
+    }
+
+    @Benchmark
+    public long readBuffer() {
+        long res = 0;
+        for (int a : addresses) {
+            res += Util.readData(bufferRom, size, a);
+        }
+        return res;
+    }
+}
@@ -0,0 +1,47 @@
+package omegadrive.sound.fm.ym2413;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Emu2413Benchmark
+ * <p>
+ * One sample per OPLL_calc, six melodic channels keyed on.
+ * <p>
+ * Federico Berti
+ * <p>
+ * Copyright 2021
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class Emu2413Benchmark {
+
+    private OPLL opll;
+
+    @Setup
+    public void setup() {
+        Emu2413.OPLL_init();
+        opll = Emu2413.OPLL_new();
+        Emu2413.OPLL_reset(opll);
+        for (int ch = 0; ch < 6; ch++) {
+            writeReg(0x30 + ch, (ch + 1) << 4); //instrument, volume 0
+            writeReg(0x10 + ch, 0xAC + (ch << 2)); //fnum low
+            writeReg(0x20 + ch, 0x18); //key on, block 4
+        }
+    }
+
+    private void writeReg(int reg, int data) {
+        Emu2413.OPLL_writeIO(opll, 0, reg);
+        Emu2413.OPLL_writeIO(opll, 1, data);
+    }
+
+    @Benchmark
+    public int calc() {
+        return Emu2413.OPLL_calc(opll);
+    }
+}
@@ -0,0 +1,88 @@
+package omegadrive.sound.fm.ym2612;
+
+import omegadrive.sound.SoundProvider;
+import omegadrive.sound.fm.MdFmProvider;
+import omegadrive.sound.fm.ym2612.nukeykt.Ym2612Nuke;
+import omegadrive.sound.javasound.AbstractSoundManager;
+import omegadrive.util.RegionDetector;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+import static omegadrive.sound.fm.MdFmProvider.FM_ADDRESS_PORT0;
+import static omegadrive.sound.fm.MdFmProvider.FM_DATA_PORT0;
+
+/**
+ * Ym2612CoreBenchmark
+ * <p>
+ * One NTSC frame of chip ticks, all six channels keyed on, Nuked core vs sample level core.
+ * <p>
+ * Federico Berti
+ * <p>
+ * Copyright 2021
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class Ym2612CoreBenchmark {
+
+    static final double MICROS_PER_TICK = 1_000_000.0 / (53_693_175 / 42.0);
+    static final int TICKS_PER_FRAME = 21_307;
+
+    @Param({"nuke", "fast"})
+    public String core;
+
+    private MdFmProvider fm;
+    private final int[] buf = new int[4096];
+
+    @Setup
+    public void setup() {
+        double clock = SoundProvider.getFmSoundClock(RegionDetector.Region.USA);
+        fm = "fast".equals(core) ? new Ym2612Fast(AbstractSoundManager.audioFormat, clock) :
+                new Ym2612Nuke(AbstractSoundManager.audioFormat, clock);
+        fm.setMicrosPerTick(MICROS_PER_TICK);
+        fm.reset();
+        for (int port = 0; port < 2; port++) {
+            for (int ch = 0; ch < 3; ch++) {
+                for (int op = 0; op < 0x10; op += 4) {
+                    writeReg(port, 0x30 + op + ch, 0x01 + op); //DT/MUL
+                    writeReg(port, 0x40 + op + ch, 0x10); //TL
+                    writeReg(port, 0x50 + op + ch, 0x1F); //AR
+                    writeReg(port, 0x60 + op + ch, 0x05); //D1R
+                    writeReg(port, 0x70 + op + ch, 0x02); //D2R
+                    writeReg(port, 0x80 + op + ch, 0x2F); //SL/RR
+                }
+                writeReg(port, 0xB0 + ch, 0x30 + ch); //FB/ALG
+                writeReg(port, 0xB4 + ch, 0xC0); //L+R
+                writeReg(port, 0xA4 + ch, 0x22 + (ch << 3)); //block/fnum
+                writeReg(port, 0xA0 + ch, 0x69);
+            }
+        }
+        for (int ch : new int[]{0, 1, 2, 4, 5, 6}) {
+            writeReg(0, 0x28, 0xF0 | ch); //key on
+        }
+    }
+
+    private void writeReg(int port, int reg, int data) {
+        fm.write(FM_ADDRESS_PORT0 + (port << 1), reg);
+        tick(32);
+        fm.write(FM_DATA_PORT0 + (port << 1), data);
+        tick(32);
+    }
+
+    private void tick(int n) {
+        for (int i = 0; i < n; i++) {
+            fm.tick();
+        }
+    }
+
+    @Benchmark
+    public int frame() {
+        tick(TICKS_PER_FRAME);
+        fm.onNewFrame();
+        return fm.update(buf, 0, buf.length >> 1);
+    }
+}
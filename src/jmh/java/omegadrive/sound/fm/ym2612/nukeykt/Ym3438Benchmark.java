@@ -0,0 +1,87 @@
+package omegadrive.sound.fm.ym2612.nukeykt;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Ym3438Benchmark
+ * <p>
+ * One sample = 24 chip clocks, all six channels keyed on: per cycle OPN2_Clock vs OPN2_ClockN.
+ * <p>
+ * Federico Berti
+ * <p>
+ * Copyright 2021
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class Ym3438Benchmark {
+
+    static final int CLOCKS_PER_SAMPLE = 24;
+
+    private Ym3438 ym3438;
+    private IYm3438.IYm3438_Type chip;
+    private final int[][] accm = new int[CLOCKS_PER_SAMPLE][2];
+    private final int[] outLR = new int[2];
+
+    @Setup
+    public void setup() {
+        ym3438 = new Ym3438();
+        ym3438.OPN2_SetChipType(IYm3438.ym3438_mode_readmode);
+        chip = new IYm3438.IYm3438_Type();
+        ym3438.OPN2_Reset(chip);
+        for (int port = 0; port < 2; port++) {
+            for (int ch = 0; ch < 3; ch++) {
+                for (int op = 0; op < 0x10; op += 4) {
+                    writeReg(port, 0x30 + op + ch, 0x01 + op); //DT/MUL
+                    writeReg(port, 0x40 + op + ch, 0x10); //TL
+                    writeReg(port, 0x50 + op + ch, 0x1F); //AR
+                    writeReg(port, 0x60 + op + ch, 0x05); //D1R
+                    writeReg(port, 0x70 + op + ch, 0x02); //D2R
+                    writeReg(port, 0x80 + op + ch, 0x2F); //SL/RR
+                }
+                writeReg(port, 0xB0 + ch, 0x30 + ch); //FB/ALG
+                writeReg(port, 0xB4 + ch, 0xC0); //L+R
+                writeReg(port, 0xA4 + ch, 0x22 + (ch << 3)); //block/fnum
+                writeReg(port, 0xA0 + ch, 0x69);
+            }
+        }
+        for (int ch : new int[]{0, 1, 2, 4, 5, 6}) {
+            writeReg(0, 0x28, 0xF0 | ch); //key on
+        }
+    }
+
+    private void writeReg(int port, int reg, int data) {
+        ym3438.OPN2_Write(chip, port << 1, reg);
+        clockSample();
+        ym3438.OPN2_Write(chip, (port << 1) + 1, data);
+        clockSample();
+    }
+
+    private void clockSample() {
+        for (int i = 0; i < CLOCKS_PER_SAMPLE; i++) {
+            ym3438.OPN2_Clock(chip, accm[i]);
+        }
+    }
+
+    @Benchmark
+    public int sample() {
+        clockSample();
+        int l = 0, r = 0;
+        for (int j = 0; j < CLOCKS_PER_SAMPLE; j++) {
+            l += accm[j][0];
+            r += accm[j][1];
+        }
+        return l + r;
+    }
+
+    @Benchmark
+    public int sampleClockN() {
+        ym3438.OPN2_ClockN(chip, CLOCKS_PER_SAMPLE, outLR);
+        return outLR[0] + outLR[1];
+    }
+}
@@ -0,0 +1,51 @@
+package omegadrive.sound.psg.white;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * SN76489Benchmark
+ * <p>
+ * Generates one frame of samples (44.1khz, 60fps), three tones and white noise.
+ * <p>
+ * Federico Berti
+ * <p>
+ * Copyright 2021
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SN76489Benchmark {
+
+    static final int CLOCK_HZ = 3579545;
+    static final int SAMPLE_RATE_HZ = 44100;
+    static final int SAMPLES_PER_FRAME = SAMPLE_RATE_HZ / 60;
+
+    private SN76489 psg;
+    private final byte[] buffer = new byte[SAMPLES_PER_FRAME];
+
+    @Setup
+    public void setup() {
+        psg = new SN76489();
+        psg.init(CLOCK_HZ, SAMPLE_RATE_HZ);
+        int[] writes = {
+                0x8E, 0x0F, 0x90, //tone0, vol0
+                0xAB, 0x1A, 0xB2, //tone1, vol1
+                0xC5, 0x08, 0xD4, //tone2, vol2
+                0xE4, 0xF6        //white noise, vol3
+        };
+        for (int w : writes) {
+            psg.write(w);
+        }
+    }
+
+    @Benchmark
+    public byte[] update() {
+        psg.update(buffer, 0, SAMPLES_PER_FRAME);
+        return buffer;
+    }
+}
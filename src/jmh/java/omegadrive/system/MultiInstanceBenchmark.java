@@ -0,0 +1,76 @@
+package omegadrive.system;
+
+import omegadrive.cpu.m68k.M68kProvider;
+import omegadrive.cpu.m68k.MC68000Benchmark;
+import omegadrive.util.PriorityThreadFactory;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * MultiInstanceBenchmark
+ * <p>
+ * Independent systems running the synthetic rom in parallel, one thread each:
+ * the per-op time should stay flat as the instances grow, up to the number of cores.
+ * <p>
+ * Federico Berti
+ * <p>
+ * Copyright 2021
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MultiInstanceBenchmark {
+
+    static final int INSTRUCTIONS_PER_OP = 100_000;
+
+    @Param({"1", "2", "4", "8"})
+    public int instances;
+
+    private M68kProvider[] cpus;
+    private ExecutorService executorService;
+
+    @Setup
+    public void setup() {
+        cpus = new M68kProvider[instances];
+        for (int i = 0; i < instances; i++) {
+            cpus[i] = MC68000Benchmark.createCpu();
+        }
+        executorService = Executors.newFixedThreadPool(instances,
+                new PriorityThreadFactory(MultiInstanceBenchmark.class.getSimpleName()));
+    }
+
+    @TearDown
+    public void tearDown() {
+        executorService.shutdownNow();
+    }
+
+    @Benchmark
+    public long runAll() throws Exception {
+        List<Future<Long>> futures = new ArrayList<>(instances);
+        for (M68kProvider cpu : cpus) {
+            futures.add(executorService.submit(() -> run(cpu)));
+        }
+        long cycles = 0;
+        for (Future<Long> f : futures) {
+            cycles += f.get();
+        }
+        return cycles;
+    }
+
+    private static long run(M68kProvider cpu) {
+        long cycles = 0;
+        for (int i = 0; i < INSTRUCTIONS_PER_OP; i++) {
+            cycles += cpu.runInstruction();
+        }
+        return cycles;
+    }
+}
@@ -0,0 +1,64 @@
+package omegadrive.ui;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.awt.*;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * RenderingStrategyBenchmark
+ * <p>
+ * Scales a H40 frame to the output size, up to 1080p and 4K windows:
+ * the fixed point reference vs {@link NearestScaler} with 1 or more threads.
+ * <p>
+ * Federico Berti
+ * <p>
+ * Copyright 2021
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RenderingStrategyBenchmark {
+
+    //integer and non-integer scaling, 1080p and 4K
+    @Param({"640x448", "1024x768", "1280x896", "1440x1080", "2880x2016", "2880x2160"})
+    public String outputSize;
+
+    @Param({"1", "4"})
+    public int threads;
+
+    private final Dimension src = new Dimension(320, 224);
+    private Dimension dest;
+    private int[] srcPixels, outputPixels;
+    private NearestScaler scaler;
+
+    @Setup
+    public void setup() {
+        String[] tk = outputSize.split("x");
+        dest = new Dimension(Integer.parseInt(tk[0]), Integer.parseInt(tk[1]));
+        srcPixels = new Random(0).ints(src.width * src.height).toArray();
+        outputPixels = new int[dest.width * dest.height];
+        scaler = new NearestScaler(threads);
+    }
+
+    @TearDown
+    public void tearDown() {
+        scaler.close();
+    }
+
+    @Benchmark
+    public int[] renderFixedPoint() {
+        RenderingStrategy.renderNearestFixedPoint(srcPixels, outputPixels, src, dest);
+        return outputPixels;
+    }
+
+    @Benchmark
+    public int[] renderScaler() {
+        scaler.render(srcPixels, outputPixels, src, dest);
+        return outputPixels;
+    }
+}
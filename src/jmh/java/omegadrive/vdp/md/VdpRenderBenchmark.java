@@ -0,0 +1,59 @@
+package omegadrive.vdp.md;
+
+import omegadrive.bus.model.GenesisBusProvider;
+import omegadrive.input.GamepadTest;
+import omegadrive.save.MdSavestateTest;
+import omegadrive.vdp.MdVdpTestUtil;
+import omegadrive.vdp.model.BaseVdpProvider;
+import omegadrive.vdp.model.GenesisVdpProvider;
+import omegadrive.vdp.model.VdpMemoryInterface;
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.file.Paths;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * VdpRenderBenchmark
+ * <p>
+ * Renders all the active lines of a frame, the vdp state comes from a GSH savestate.
+ * <p>
+ * Federico Berti
+ * <p>
+ * Copyright 2021
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class VdpRenderBenchmark {
+
+    //planes + sprites, window plane, shadow/highlight
+    @Param({"contra_01.gsh", "dan_window01.gsh", "s3d_logo_sh.gsh"})
+    public String saveFile;
+
+    private VdpRenderHandlerImpl renderHandler;
+    private int activeLines;
+
+    @Setup
+    public void setup() {
+        GenesisBusProvider bus = MdSavestateTest.loadSaveState(
+                Paths.get(MdSavestateTest.saveStateFolder.toString(), saveFile));
+        bus.attachDevice(GamepadTest.createTestJoypadProvider());
+        bus.init();
+        GenesisVdpProvider vdp = bus.getVdp();
+        MdVdpTestUtil.runToStartFrame(vdp);
+        renderHandler = new VdpRenderHandlerImpl(vdp, (VdpMemoryInterface) vdp.getVdpMemory());
+        renderHandler.onVdpEvent(BaseVdpProvider.VdpEvent.VIDEO_MODE, vdp.getVideoMode());
+        activeLines = vdp.getVideoMode().getDimension().height;
+    }
+
+    @Benchmark
+    public int[] renderFrame() {
+        for (int line = 0; line < activeLines; line++) {
+            renderHandler.renderLine(line);
+        }
+        return renderHandler.getScreenDataLinear();
+    }
+}
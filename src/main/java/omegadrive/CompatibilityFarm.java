@@ -0,0 +1,197 @@
+package omegadrive;
+
+import omegadrive.SystemLoader.SystemType;
+import omegadrive.system.SystemProvider;
+import omegadrive.util.FileLoader;
+import omegadrive.util.VideoMode;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitOption;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+/**
+ * CompatibilityFarm
+ * <p>
+ * Boots all the roms in a folder, several at the same time, at full speed and with no UI;
+ * writes a results table, one row per rom, ie:
+ * <p>
+ * java -cp ... omegadrive.CompatibilityFarm romFolder [numThreads] [numFrames] [results.csv]
+ * <p>
+ * A rom boots when it shows a non-blank frame; the frame hashes at fixed frame numbers can be
+ * compared between runs, the power-on memory contents use a fixed seed.
+ * Roms matching a line in the blacklist (-Dhelios.compat.blacklist) are skipped.
+ * <p>
+ * Federico Berti
+ * <p>
+ * Copyright 2021
+ */
+public class CompatibilityFarm {
+
+    private static final Logger LOG = LogManager.getLogger(CompatibilityFarm.class.getSimpleName());
+
+    static final String USAGE = "Usage: CompatibilityFarm <romFolder> [numThreads] [numFrames] [results.csv]";
+    static final String BLACKLIST = System.getProperty("helios.compat.blacklist",
+            "src/test/resources/blacklist.txt");
+    static final int DEFAULT_FRAMES = 1200;
+    static final int[] HASH_FRAMES = {60, 300, 600, 1200};
+    //slower than this is considered stuck
+    static final int MIN_FPS = 20;
+
+    enum Status {OK, NO_BOOT, FAIL}
+
+    static class Result {
+        Path rom;
+        String system = SystemType.NONE.name();
+        Status status = Status.FAIL;
+        int bootFrame = -1, nonBlankFrames;
+        boolean audible;
+        double fps;
+        Map<Integer, Integer> hashes = new HashMap<>();
+
+        String toRow(int[] hashFrames) {
+            return rom.getFileName() + ";" + system + ";" + status + ";" + bootFrame + ";" + nonBlankFrames + ";" +
+                    audible + ";" + fps + ";" + Arrays.stream(hashFrames).
+                    mapToObj(f -> hashes.containsKey(f) ? Integer.toHexString(hashes.get(f)) : "").
+                    collect(Collectors.joining(";"));
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 1) {
+            System.err.println(USAGE);
+            System.exit(1);
+        }
+        //before any memory gets created
+        System.setProperty("helios.random.seed", "0");
+        Path folder = Paths.get(args[0]);
+        int numThreads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+        int numFrames = args.length > 2 ? Integer.parseInt(args[2]) : DEFAULT_FRAMES;
+        Path resultFile = Paths.get(args.length > 3 ? args[3] : "compat_" + System.currentTimeMillis() + ".csv");
+
+        SystemLoader.loadProperties();
+        System.setProperty("helios.fullSpeed", "true");
+        System.setProperty("helios.headless", "true");
+        SystemLoader.headless = true;
+        //no sram files left behind
+        Path sramFolder = Files.createTempDirectory("helios_sram");
+        for (SystemType t : SystemType.values()) {
+            System.setProperty(t.getShortName().toLowerCase() + ".sram.folder", sramFolder.toString());
+        }
+
+        List<Path> roms = listRoms(folder);
+        LOG.info("Roms: {}, threads: {}, frames: {}", roms.size(), numThreads, numFrames);
+        long start = System.currentTimeMillis();
+        List<Result> results = runAll(roms, numFrames, numThreads);
+
+        int[] hashFrames = Arrays.stream(HASH_FRAMES).filter(f -> f <= numFrames).toArray();
+        List<String> lines = new ArrayList<>();
+        lines.add("rom;system;result;bootFrame;nonBlankFrames;sound;fps;" + Arrays.stream(hashFrames).
+                mapToObj(f -> "hash" + f).collect(Collectors.joining(";")));
+        results.forEach(r -> lines.add(r.toRow(hashFrames)));
+        Files.write(resultFile, lines, StandardCharsets.UTF_8);
+
+        Map<Status, Long> summary = results.stream().collect(Collectors.groupingBy(r -> r.status,
+                () -> new EnumMap<>(Status.class), Collectors.counting()));
+        LOG.info("Done in {}s, {}", (System.currentTimeMillis() - start) / 1000, summary);
+        LOG.info("Results written to: {}", resultFile.toAbsolutePath());
+        System.exit(0);
+    }
+
+    static List<Path> listRoms(Path folder) throws Exception {
+        List<String> blackList = FileLoader.readFileContent(Paths.get(BLACKLIST));
+        LOG.info("Blacklist entries: {}", blackList.size());
+        List<Path> roms = Files.walk(folder, FileVisitOption.FOLLOW_LINKS).
+                filter(p -> Arrays.stream(SystemLoader.binaryTypes).anyMatch(p.toString()::endsWith)).
+                sorted().collect(Collectors.toList());
+        return roms.stream().filter(p -> {
+            String name = p.getFileName().toString();
+            boolean skip = blackList.stream().anyMatch(name::startsWith) || name.contains("[b");
+            if (skip) {
+                LOG.info("Skipping: {}", name);
+            }
+            return !skip;
+        }).collect(Collectors.toList());
+    }
+
+    static List<Result> runAll(List<Path> roms, int numFrames, int numThreads) throws Exception {
+        ExecutorService executorService = Executors.newFixedThreadPool(numThreads);
+        AtomicInteger count = new AtomicInteger();
+        List<Future<Result>> futures = roms.stream().map(rom -> executorService.submit(() -> {
+            Result r = bootRom(rom, numFrames);
+            LOG.info("{}/{}: {}", count.incrementAndGet(), roms.size(), r.toRow(HASH_FRAMES));
+            return r;
+        })).collect(Collectors.toList());
+        List<Result> results = new ArrayList<>();
+        try {
+            for (Future<Result> f : futures) {
+                results.add(f.get());
+            }
+        } finally {
+            executorService.shutdownNow();
+        }
+        return results;
+    }
+
+    static Result bootRom(Path rom, int numFrames) {
+        Result res = new Result();
+        res.rom = rom;
+        HeadlessRunner runner = new HeadlessRunner(rom, numFrames, Collections.emptyList()).
+                setTimeoutMs(1000L * numFrames / MIN_FPS).
+                setFrameListener((frame, data, videoMode) -> onFrame(res, frame, data, videoMode));
+        try {
+            Optional<Map<String, Object>> report = runner.run(false);
+            res.audible = runner.isAudible();
+            Optional.ofNullable(runner.getSystemProvider()).map(SystemProvider::getSystemType).
+                    ifPresent(t -> res.system = t.name());
+            if (report.isPresent()) {
+                res.fps = (Double) report.get().get("fps");
+                res.status = res.nonBlankFrames > 0 ? Status.OK : Status.NO_BOOT;
+            }
+        } catch (Exception | Error e) {
+            LOG.error("{} failed", rom.getFileName(), e);
+        }
+        return res;
+    }
+
+    //emulation thread
+    private static void onFrame(Result res, int frame, int[] data, VideoMode videoMode) {
+        int len = Math.min(data.length, videoMode.getDimension().width * videoMode.getDimension().height);
+        if (!isBlank(data, len)) {
+            res.nonBlankFrames++;
+            if (res.bootFrame < 0) {
+                res.bootFrame = frame;
+            }
+        }
+        if (Arrays.binarySearch(HASH_FRAMES, frame) >= 0) {
+            res.hashes.put(frame, hash(data, len));
+        }
+    }
+
+    //every visible pixel has the same colour
+    static boolean isBlank(int[] data, int len) {
+        for (int i = 1; i < len; i++) {
+            if (data[i] != data[0]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    static int hash(int[] data, int len) {
+        int h = 1;
+        for (int i = 0; i < len; i++) {
+            h = 31 * h + data[i];
+        }
+        return h;
+    }
+}
@@ -0,0 +1,401 @@
+package omegadrive;
+
+import omegadrive.input.InputProvider.PlayerNumber;
+import omegadrive.input.KeyboardInput;
+import omegadrive.joypad.JoypadProvider;
+import omegadrive.joypad.JoypadProvider.JoypadAction;
+import omegadrive.joypad.JoypadProvider.JoypadButton;
+import omegadrive.system.BaseSystem;
+import omegadrive.system.SystemProvider;
+import omegadrive.system.perf.DeviceCycleStats;
+import omegadrive.ui.DisplayWindow;
+import omegadrive.util.VideoMode;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.awt.event.KeyListener;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static omegadrive.system.SystemProvider.SystemEvent.*;
+
+/**
+ * HeadlessRunner
+ * <p>
+ * Runs a rom for a number of frames at full speed with no UI and reports the performance
+ * as JSON (default) or CSV, ie:
+ * <p>
+ * java -cp ... omegadrive.HeadlessRunner rom.md 3600 [inputScript|-] [report.json|report.csv]
+ * <p>
+ * Input script, one event per line: frame player button action, ie.
+ * 120 P1 START PRESSED
+ * 125 P1 START RELEASED
+ * <p>
+ * The CSV report appends one row per run, the header is written when the file is created; the columns are the same
+ * for every system (a device the system lacks is left empty), a file with a different header is renamed first.
+ * -Dhelios.runner.device.stats=false uses the regular systems, ie. no per-device cycle counting.
+ * <p>
+ * Federico Berti
+ * <p>
+ * Copyright 2021
+ */
+public class HeadlessRunner {
+
+    private static final Logger LOG = LogManager.getLogger(HeadlessRunner.class.getSimpleName());
+
+    static final String USAGE = "Usage: HeadlessRunner <romFile> <numFrames> [inputScript|-] [report.json|report.csv]";
+    static final String NO_FILE = "-";
+    static final double MB = 1024 * 1024;
+    //cyclesPerFrame columns, see DeviceCycleStats
+    static final List<String> DEVICES = Collections.unmodifiableList(Arrays.asList("68k", "z80", "fm", "vdp"));
+
+    private final Path romFile;
+    private final int numFrames;
+    private final List<ScriptEvent> script;
+    private final CountDownLatch done = new CountDownLatch(1);
+    private FrameListener frameListener = FrameListener.NO_OP;
+    private long timeoutMs = Long.MAX_VALUE;
+    private SystemProvider systemProvider;
+    private JoypadProvider joypad;
+    private int frameCounter, scriptIndex;
+    private Snapshot start, end;
+
+    public HeadlessRunner(Path romFile, int numFrames, List<ScriptEvent> script) {
+        this.romFile = romFile;
+        this.numFrames = numFrames;
+        this.script = script;
+    }
+
+    /**
+     * Called by the emulation thread for every frame, the data is only valid during the call.
+     */
+    public interface FrameListener {
+        FrameListener NO_OP = (frame, data, videoMode) -> {
+        };
+
+        void onFrame(int frame, int[] data, VideoMode videoMode);
+    }
+
+    public HeadlessRunner setFrameListener(FrameListener frameListener) {
+        this.frameListener = frameListener;
+        return this;
+    }
+
+    //wall clock, the run fails when the frames are not done in time
+    public HeadlessRunner setTimeoutMs(long timeoutMs) {
+        this.timeoutMs = timeoutMs;
+        return this;
+    }
+
+    public SystemProvider getSystemProvider() {
+        return systemProvider;
+    }
+
+    public boolean isAudible() {
+        return systemProvider instanceof BaseSystem && ((BaseSystem<?>) systemProvider).getSound().isAudible();
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 2) {
+            System.err.println(USAGE);
+            System.exit(1);
+        }
+        SystemLoader.loadProperties();
+        System.setProperty("helios.fullSpeed", "true");
+        System.setProperty("helios.headless", "true");
+        SystemLoader.headless = true;
+        boolean deviceStats = Boolean.parseBoolean(System.getProperty("helios.runner.device.stats", "true"));
+
+        Path romFile = Paths.get(args[0]);
+        int numFrames = Integer.parseInt(args[1]);
+        List<ScriptEvent> script = args.length > 2 && !NO_FILE.equals(args[2]) ?
+                parseInputScript(Files.readAllLines(Paths.get(args[2]))) : Collections.emptyList();
+        Optional<Path> reportFile = args.length > 3 ? Optional.of(Paths.get(args[3])) : Optional.empty();
+
+        HeadlessRunner runner = new HeadlessRunner(romFile, numFrames, script);
+        Optional<Map<String, Object>> report = runner.run(deviceStats);
+        if (!report.isPresent()) {
+            System.exit(1);
+        }
+        if (reportFile.isPresent()) {
+            writeReport(reportFile.get(), report.get());
+            LOG.info("Report written to: {}", reportFile.get().toAbsolutePath());
+        } else {
+            System.out.println(toJson(report.get()));
+        }
+        System.exit(0);
+    }
+
+    public Optional<Map<String, Object>> run(boolean deviceStats) throws InterruptedException {
+        systemProvider = SystemLoader.createSystemProvider(romFile, new RunnerWindow(), deviceStats);
+        if (systemProvider == null) {
+            return Optional.empty();
+        }
+        LOG.info("Running {} for {} frames", romFile.getFileName(), numFrames);
+        long startMs = System.currentTimeMillis();
+        systemProvider.handleSystemEvent(NEW_ROM, romFile);
+        while (!done.await(1, TimeUnit.SECONDS)) {
+            if (!systemProvider.isRomRunning()) {
+                LOG.error("Rom stopped after {} frames, expected {}", frameCounter, numFrames);
+                return Optional.empty();
+            }
+            if (System.currentTimeMillis() - startMs > timeoutMs) {
+                LOG.error("Timeout after {} frames, expected {}", frameCounter, numFrames);
+                systemProvider.handleSystemEvent(CLOSE_ROM, null);
+                return Optional.empty();
+            }
+        }
+        systemProvider.handleSystemEvent(CLOSE_ROM, null);
+        return Optional.of(createReport());
+    }
+
+    //emulation thread
+    private void onNewFrame(int[] data, VideoMode videoMode) {
+        frameCounter++;
+        frameListener.onFrame(frameCounter, data, videoMode);
+        if (frameCounter == 1) {
+            //the audio line is not needed
+            systemProvider.handleSystemEvent(TOGGLE_MUTE, null);
+            start = Snapshot.take(systemProvider);
+        }
+        for (; scriptIndex < script.size() && script.get(scriptIndex).frame <= frameCounter; scriptIndex++) {
+            ScriptEvent e = script.get(scriptIndex);
+            if (joypad != null) {
+                joypad.setButtonAction(e.player, e.button, e.action);
+            }
+        }
+        if (frameCounter == numFrames + 1) {
+            end = Snapshot.take(systemProvider);
+            done.countDown();
+        }
+    }
+
+    private Map<String, Object> createReport() {
+        Map<String, Object> r = new LinkedHashMap<>();
+        double elapsedSec = (end.nanoTime - start.nanoTime) / 1e9;
+        r.put("timestamp", Instant.now().toString());
+        r.put("system", systemProvider.getSystemType().name());
+        r.put("rom", romFile.getFileName().toString());
+        r.put("frames", numFrames);
+        r.put("elapsedMs", Math.round(elapsedSec * 1000));
+        r.put("fps", round(numFrames / elapsedSec));
+        long frames = end.frames - start.frames;
+        //null: the system has no such device or no cycle counters
+        for (String device : DEVICES) {
+            Long endCycles = end.deviceCycles.get(device);
+            Object v = null;
+            if (endCycles != null) {
+                long cycles = endCycles - start.deviceCycles.getOrDefault(device, 0L);
+                v = frames > 0 ? round((double) cycles / frames) : 0;
+            }
+            r.put("cyclesPerFrame." + device, v);
+        }
+        r.put("gcCount", end.gcCount - start.gcCount);
+        r.put("gcTimeMs", end.gcTimeMs - start.gcTimeMs);
+        long allocated = end.allocatedBytes - start.allocatedBytes;
+        r.put("allocatedBytes", allocated);
+        r.put("allocRateMBs", round(allocated / MB / elapsedSec));
+        return r;
+    }
+
+    static List<ScriptEvent> parseInputScript(List<String> lines) {
+        List<ScriptEvent> l = new ArrayList<>();
+        for (String line : lines) {
+            String s = line.trim();
+            if (s.isEmpty() || s.startsWith("#")) {
+                continue;
+            }
+            String[] tk = s.split("\\s+");
+            if (tk.length != 4) {
+                throw new IllegalArgumentException("Invalid input script line: " + line);
+            }
+            ScriptEvent e = new ScriptEvent();
+            e.frame = Integer.parseInt(tk[0]);
+            e.player = PlayerNumber.valueOf(tk[1].toUpperCase());
+            e.button = toButton(tk[2].toUpperCase());
+            e.action = JoypadAction.valueOf(tk[3].toUpperCase());
+            l.add(e);
+        }
+        l.sort(Comparator.comparingInt(e -> e.frame));
+        return l;
+    }
+
+    private static JoypadButton toButton(String s) {
+        return Arrays.stream(JoypadButton.values()).
+                filter(b -> b.name().equals(s) || b.getMnemonic().equals(s)).findFirst().
+                orElseThrow(() -> new IllegalArgumentException("Unknown button: " + s));
+    }
+
+    static void writeReport(Path file, Map<String, Object> report) throws IOException {
+        if (file.toString().toLowerCase().endsWith(".csv")) {
+            String header = toCsvRow(report.keySet());
+            boolean newFile = !Files.exists(file) || Files.size(file) == 0;
+            if (!newFile && !header.equals(readFirstLine(file))) {
+                String name = file.getFileName().toString();
+                Path old = file.resolveSibling(name.substring(0, name.length() - 4) + "_" +
+                        System.currentTimeMillis() + ".csv");
+                Files.move(file, old);
+                LOG.warn("Report columns have changed, previous report moved to: {}", old);
+                newFile = true;
+            }
+            String row = toCsvRow(report.values()) + "\n";
+            if (newFile) {
+                row = header + "\n" + row;
+            }
+            Files.write(file, row.getBytes(StandardCharsets.UTF_8), StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        } else {
+            Files.write(file, toJson(report).getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    private static String readFirstLine(Path file) throws IOException {
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            return reader.readLine();
+        }
+    }
+
+    //null: empty field
+    static String toCsvRow(Collection<?> values) {
+        return values.stream().map(v -> v == null ? "" : toCsvField(v.toString())).collect(Collectors.joining(","));
+    }
+
+    //RFC 4180, ie. rom names like "Sonic (USA, Europe).zip"
+    static String toCsvField(String s) {
+        if (s.indexOf(',') < 0 && s.indexOf('"') < 0 && s.indexOf('\n') < 0 && s.indexOf('\r') < 0) {
+            return s;
+        }
+        return "\"" + s.replace("\"", "\"\"") + "\"";
+    }
+
+    static String toJson(Map<String, Object> report) {
+        return report.entrySet().stream().
+                map(e -> "  " + toJsonString(e.getKey()) + ": " + (e.getValue() instanceof String ?
+                        toJsonString((String) e.getValue()) : e.getValue())).
+                collect(Collectors.joining(",\n", "{\n", "\n}"));
+    }
+
+    static String toJsonString(String s) {
+        StringBuilder sb = new StringBuilder(s.length() + 2).append('"');
+        for (char c : s.toCharArray()) {
+            switch (c) {
+                case '"':
+                    sb.append("\\\"");
+                    break;
+                case '\\':
+                    sb.append("\\\\");
+                    break;
+                case '\n':
+                    sb.append("\\n");
+                    break;
+                case '\r':
+                    sb.append("\\r");
+                    break;
+                case '\t':
+                    sb.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        sb.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        sb.append(c);
+                    }
+            }
+        }
+        return sb.append('"').toString();
+    }
+
+    private static double round(double v) {
+        return Math.round(v * 100) / 100d;
+    }
+
+    static class ScriptEvent {
+        int frame;
+        PlayerNumber player;
+        JoypadButton button;
+        JoypadAction action;
+    }
+
+    static class Snapshot {
+        long nanoTime, gcCount, gcTimeMs, allocatedBytes, frames;
+        Map<String, Long> deviceCycles = Collections.emptyMap();
+
+        //called by the emulation thread, the allocation rate only covers that thread
+        static Snapshot take(SystemProvider systemProvider) {
+            Snapshot s = new Snapshot();
+            s.nanoTime = System.nanoTime();
+            for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+                s.gcCount += Math.max(0, gc.getCollectionCount());
+                s.gcTimeMs += Math.max(0, gc.getCollectionTime());
+            }
+            ThreadMXBean tb = ManagementFactory.getThreadMXBean();
+            if (tb instanceof com.sun.management.ThreadMXBean) {
+                s.allocatedBytes = ((com.sun.management.ThreadMXBean) tb).
+                        getThreadAllocatedBytes(Thread.currentThread().getId());
+            }
+            if (systemProvider instanceof DeviceCycleStats) {
+                DeviceCycleStats dcs = (DeviceCycleStats) systemProvider;
+                s.deviceCycles = dcs.getDeviceCycles();
+                s.frames = dcs.getFrameCount();
+            }
+            return s;
+        }
+    }
+
+    class RunnerWindow implements DisplayWindow {
+
+        @Override
+        public void addKeyListener(KeyListener keyAdapter) {
+            if (keyAdapter instanceof KeyboardInput) {
+                joypad = ((KeyboardInput) keyAdapter).getJoypadProvider();
+            }
+        }
+
+        @Override
+        public void renderScreenLinear(int[] data, Optional<String> label, VideoMode videoMode) {
+            onNewFrame(data, videoMode);
+        }
+
+        @Override
+        public void setTitle(String rom) {
+
+        }
+
+        @Override
+        public void init() {
+
+        }
+
+        @Override
+        public void resetScreen() {
+
+        }
+
+        @Override
+        public void setFullScreen(boolean value) {
+
+        }
+
+        @Override
+        public String getRegionOverride() {
+            return null;
+        }
+
+        @Override
+        public void reloadSystem(SystemProvider systemProvider) {
+
+        }
+    }
+}
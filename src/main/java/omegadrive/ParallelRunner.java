@@ -0,0 +1,121 @@
+package omegadrive;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+
+/**
+ * ParallelRunner
+ * <p>
+ * Runs several independent instances of the same rom at full speed, see {@link HeadlessRunner},
+ * and reports the aggregate throughput, ie:
+ * <p>
+ * java -cp ... omegadrive.ParallelRunner rom.md 3600 8 4 [report.json|report.csv]
+ * <p>
+ * Each instance has its own emulation thread, numThreads limits how many instances run at the same time.
+ * <p>
+ * Federico Berti
+ * <p>
+ * Copyright 2021
+ */
+public class ParallelRunner {
+
+    private static final Logger LOG = LogManager.getLogger(ParallelRunner.class.getSimpleName());
+
+    static final String USAGE = "Usage: ParallelRunner <romFile> <numFrames> <numInstances> [numThreads] [report.json|report.csv]";
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 3) {
+            System.err.println(USAGE);
+            System.exit(1);
+        }
+        SystemLoader.loadProperties();
+        System.setProperty("helios.fullSpeed", "true");
+        System.setProperty("helios.headless", "true");
+        SystemLoader.headless = true;
+        boolean deviceStats = Boolean.parseBoolean(System.getProperty("helios.runner.device.stats", "false"));
+
+        Path romFile = Paths.get(args[0]);
+        int numFrames = Integer.parseInt(args[1]);
+        int numInstances = Integer.parseInt(args[2]);
+        int numThreads = args.length > 3 ? Integer.parseInt(args[3]) : Runtime.getRuntime().availableProcessors();
+        Optional<Path> reportFile = args.length > 4 ? Optional.of(Paths.get(args[4])) : Optional.empty();
+
+        Optional<Map<String, Object>> report = run(romFile, numFrames, numInstances, numThreads, deviceStats);
+        if (!report.isPresent()) {
+            System.exit(1);
+        }
+        if (reportFile.isPresent()) {
+            HeadlessRunner.writeReport(reportFile.get(), report.get());
+            LOG.info("Report written to: {}", reportFile.get().toAbsolutePath());
+        } else {
+            System.out.println(HeadlessRunner.toJson(report.get()));
+        }
+        System.exit(0);
+    }
+
+    public static Optional<Map<String, Object>> run(Path romFile, int numFrames, int numInstances,
+                                                    int numThreads, boolean deviceStats) throws Exception {
+        LOG.info("Running {} instances of {} for {} frames, {} threads", numInstances, romFile.getFileName(),
+                numFrames, numThreads);
+        ExecutorService executorService = Executors.newFixedThreadPool(numThreads);
+        List<Future<Optional<Map<String, Object>>>> futures = new ArrayList<>();
+        long start = System.nanoTime();
+        for (int i = 0; i < numInstances; i++) {
+            futures.add(executorService.submit(() ->
+                    new HeadlessRunner(romFile, numFrames, Collections.emptyList()).run(deviceStats)));
+        }
+        List<Map<String, Object>> reports = new ArrayList<>();
+        try {
+            for (Future<Optional<Map<String, Object>>> f : futures) {
+                Optional<Map<String, Object>> r = f.get();
+                if (!r.isPresent()) {
+                    return Optional.empty();
+                }
+                reports.add(r.get());
+            }
+        } finally {
+            executorService.shutdownNow();
+        }
+        double elapsedSec = (System.nanoTime() - start) / 1e9;
+        return Optional.of(createReport(romFile, numFrames, numThreads, elapsedSec, reports));
+    }
+
+    private static Map<String, Object> createReport(Path romFile, int numFrames, int numThreads,
+                                                    double elapsedSec, List<Map<String, Object>> reports) {
+        DoubleSummaryStatistics fps = reports.stream().
+                mapToDouble(r -> ((Number) r.get("fps")).doubleValue()).summaryStatistics();
+        Map<String, Object> r = new LinkedHashMap<>();
+        r.put("timestamp", Instant.now().toString());
+        r.put("system", reports.get(0).get("system"));
+        r.put("rom", romFile.getFileName().toString());
+        r.put("frames", numFrames);
+        r.put("instances", reports.size());
+        r.put("threads", numThreads);
+        r.put("cpus", Runtime.getRuntime().availableProcessors());
+        r.put("elapsedMs", Math.round(elapsedSec * 1000));
+        //all the frames, all the instances, wall clock
+        r.put("totalFps", round(reports.size() * numFrames / elapsedSec));
+        r.put("minFps", round(fps.getMin()));
+        r.put("avgFps", round(fps.getAverage()));
+        r.put("maxFps", round(fps.getMax()));
+        //gc counters are process wide
+        r.put("gcCount", reports.stream().mapToLong(m -> (Long) m.get("gcCount")).max().orElse(0));
+        //csv friendly
+        r.put("instanceFps", reports.stream().map(m -> m.get("fps").toString()).
+                collect(Collectors.joining(" ")));
+        return r;
+    }
+
+    private static double round(double v) {
+        return Math.round(v * 100) / 100d;
+    }
+}
@@ -19,9 +19,12 @@
 
 package omegadrive;
 
+import omegadrive.cart.loader.RomDbIndex;
 import omegadrive.input.KeyboardInputHelper;
 import omegadrive.joypad.GenesisJoypad;
 import omegadrive.joypad.JoypadProvider.JoypadType;
+import omegadrive.sound.fm.ym2413.Emu2413;
+import omegadrive.sound.fm.ym2612.nukeykt.Ym3438;
 import omegadrive.system.Genesis;
 import omegadrive.system.Sms;
 import omegadrive.system.SystemProvider;
@@ -31,9 +34,12 @@ import omegadrive.system.nes.Nes;
 import omegadrive.ui.DisplayWindow;
 import omegadrive.ui.PrefStore;
 import omegadrive.ui.SwingWindow;
+import omegadrive.util.PriorityThreadFactory;
 import omegadrive.util.RegionDetector;
+import omegadrive.util.StartupProfile;
 import omegadrive.util.Util;
 import omegadrive.util.ZipUtil;
+import omegadrive.vdp.md.VdpColorMapper;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import ru.krlvm.swingdpi.SwingDPI;
@@ -46,12 +52,13 @@ import java.nio.file.Paths;
 import java.util.Arrays;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.stream.Stream;
 import java.util.zip.ZipEntry;
 
 import static omegadrive.input.InputProvider.PlayerNumber;
-import static omegadrive.input.InputProvider.bootstrap;
+import static omegadrive.input.InputProvider.disableJul;
 import static omegadrive.system.SystemProvider.SystemEvent.NEW_ROM;
 
 public class SystemLoader {
@@ -121,6 +128,7 @@ public class SystemLoader {
     }
 
     public static void main(String[] args) {
+        StartupProfile.start();
         init();
         if (args.length > 0) {
             //linux pulseaudio can crash if we start too quickly
@@ -147,17 +155,37 @@ public class SystemLoader {
     }
 
      private static void init() {
-         loadProperties();
-         bootstrap();
+         StartupProfile.time("properties", SystemLoader::loadProperties);
+         disableJul();
          boolean isHeadless = isHeadless();
          LOG.info("Headless mode: {}", isHeadless);
          SystemLoader.setHeadless(isHeadless);
-         KeyboardInputHelper.init();
-         initLookAndFeel();
-         INSTANCE.createFrame(isHeadless);
+         preloadAsync();
+         //no components exist yet, the look and feel is set while the key mappings load
+         CompletableFuture<Void> lookAndFeel = isHeadless ? CompletableFuture.completedFuture(null) :
+                 CompletableFuture.runAsync(() -> StartupProfile.time("lookAndFeel", SystemLoader::initLookAndFeel));
+         StartupProfile.time("keyboard", KeyboardInputHelper::init);
+         lookAndFeel.join();
+         StartupProfile.time("frame", () -> INSTANCE.createFrame(isHeadless));
          init.set(true);
      }
 
+    //tables and rom dbs a rom load needs, built in the background while the UI is created
+    private static void preloadAsync() {
+        Thread t = new PriorityThreadFactory(Thread.MIN_PRIORITY, "preload").newThread(() -> {
+            if (RomDbIndex.ENABLED) {
+                RomDbIndex.getInstance();
+            }
+            StartupProfile.time("vdpColors", VdpColorMapper::getInstance);
+            StartupProfile.time("fmTables", () -> {
+                Util.initClass(Ym3438.class);
+                Emu2413.OPLL_init();
+            });
+        });
+        t.setDaemon(true);
+        t.start();
+    }
+
     private static void initLookAndFeel() {
         try {
             String lf = UIManager.getSystemLookAndFeelClassName();
@@ -280,42 +308,70 @@ public class SystemLoader {
     }
 
     public SystemProvider createSystemProvider(Path file, boolean debugPerf) {
+        return createSystemProvider(file, emuFrame, debugPerf);
+    }
+
+    //no shared state, several systems can be created and run concurrently
+    public static SystemProvider createSystemProvider(Path file, DisplayWindow emuFrame, boolean debugPerf) {
         String lowerCaseName = handleCompressedFiles(file, file.toString().toLowerCase());
         if (lowerCaseName == null) {
             LOG.error("Unable to load file: " + file != null ? file.toAbsolutePath() : "null");
             return null;
         }
-        boolean isGen = Arrays.stream(mdBinaryTypes).anyMatch(lowerCaseName::endsWith);
-        boolean isSg = Arrays.stream(sgBinaryTypes).anyMatch(lowerCaseName::endsWith);
-        boolean isCv = Arrays.stream(cvBinaryTypes).anyMatch(lowerCaseName::endsWith);
-        boolean isMsx = Arrays.stream(msxBinaryTypes).anyMatch(lowerCaseName::endsWith);
-        boolean isSms = Arrays.stream(smsBinaryTypes).anyMatch(lowerCaseName::endsWith);
-        boolean isGg = Arrays.stream(ggBinaryTypes).anyMatch(lowerCaseName::endsWith);
-        boolean isNes = Arrays.stream(nesBinaryTypes).anyMatch(lowerCaseName::endsWith);
-        boolean isGb = Arrays.stream(gbBinaryTypes).anyMatch(lowerCaseName::endsWith);
-        if (isGen) {
-            systemProvider = Genesis.createNewInstance(emuFrame, debugPerf);
-        } else if (isSg) {
-            systemProvider = Z80BaseSystem.createNewInstance(SystemType.SG_1000, emuFrame);
-        } else if (isCv) {
-            systemProvider = Z80BaseSystem.createNewInstance(SystemType.COLECO, emuFrame);
-        } else if (isMsx) {
-            systemProvider = Z80BaseSystem.createNewInstance(SystemType.MSX, emuFrame);
-        } else if (isSms) {
-            systemProvider = Sms.createNewInstance(SystemType.SMS, emuFrame, debugPerf);
-        } else if (isGg) {
-            systemProvider = Sms.createNewInstance(SystemType.GG, emuFrame, debugPerf);
-        } else if (isNes) {
-            systemProvider = Nes.createNewInstance(SystemType.NES, emuFrame);
-        } else if (isGb) {
-            systemProvider = Gb.createNewInstance(SystemType.GB, emuFrame);
+        long start = System.nanoTime();
+        SystemProvider systemProvider = null;
+        SystemType type = getSystemType(lowerCaseName);
+        switch (type) {
+            case GENESIS:
+                systemProvider = Genesis.createNewInstance(emuFrame, debugPerf);
+                break;
+            case SG_1000:
+            case COLECO:
+            case MSX:
+                systemProvider = Z80BaseSystem.createNewInstance(type, emuFrame);
+                break;
+            case SMS:
+            case GG:
+                systemProvider = Sms.createNewInstance(type, emuFrame, debugPerf);
+                break;
+            case NES:
+                systemProvider = Nes.createNewInstance(SystemType.NES, emuFrame);
+                break;
+            case GB:
+                systemProvider = Gb.createNewInstance(SystemType.GB, emuFrame);
+                break;
+            default:
+                break;
         }
         if (systemProvider == null) {
             LOG.error("Unable to find a system to load: {}", file.toAbsolutePath());
         }
+        StartupProfile.add("systemCreate", start);
         return systemProvider;
     }
 
+    //the file name of the rom, ie. the zip entry name for a zip file
+    public static SystemType getSystemType(String lowerCaseName) {
+        if (Arrays.stream(mdBinaryTypes).anyMatch(lowerCaseName::endsWith)) {
+            return SystemType.GENESIS;
+        } else if (Arrays.stream(sgBinaryTypes).anyMatch(lowerCaseName::endsWith)) {
+            return SystemType.SG_1000;
+        } else if (Arrays.stream(cvBinaryTypes).anyMatch(lowerCaseName::endsWith)) {
+            return SystemType.COLECO;
+        } else if (Arrays.stream(msxBinaryTypes).anyMatch(lowerCaseName::endsWith)) {
+            return SystemType.MSX;
+        } else if (Arrays.stream(smsBinaryTypes).anyMatch(lowerCaseName::endsWith)) {
+            return SystemType.SMS;
+        } else if (Arrays.stream(ggBinaryTypes).anyMatch(lowerCaseName::endsWith)) {
+            return SystemType.GG;
+        } else if (Arrays.stream(nesBinaryTypes).anyMatch(lowerCaseName::endsWith)) {
+            return SystemType.NES;
+        } else if (Arrays.stream(gbBinaryTypes).anyMatch(lowerCaseName::endsWith)) {
+            return SystemType.GB;
+        }
+        return SystemType.NONE;
+    }
+
     public SystemProvider getSystemProvider() {
         return systemProvider;
     }
@@ -22,6 +22,7 @@ package omegadrive.bus.md;
 import omegadrive.Device;
 import omegadrive.cpu.m68k.M68kProvider;
 import omegadrive.cpu.z80.Z80Provider;
+import omegadrive.savestate.ObjectStateCodec;
 import omegadrive.vdp.model.BaseVdpProvider;
 import omegadrive.vdp.model.GenesisVdpProvider;
 import omegadrive.vdp.model.GenesisVdpProvider.VdpBusyState;
@@ -29,6 +30,8 @@ import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.apache.logging.log4j.message.ParameterizedMessage;
 
+import java.nio.ByteBuffer;
+
 public class BusArbiter implements Device, BaseVdpProvider.VdpEventListener {
 
     /**
@@ -46,6 +49,7 @@ public class BusArbiter implements Device, BaseVdpProvider.VdpEventListener {
 
     public static boolean verbose = false;
     public static final BusArbiter NO_OP = createNoOp();
+    private static final ObjectStateCodec stateCodec = ObjectStateCodec.of(BusArbiter.class);
 
     private VdpBusyState vdpBusyState = VdpBusyState.NOT_BUSY;
     private IntState int68k = IntState.ACKED;
@@ -58,6 +62,8 @@ public class BusArbiter implements Device, BaseVdpProvider.VdpEventListener {
     protected Z80Provider z80;
 
     private Runnable runLater68k;
+    //the bus always hands over the same runnable
+    private Runnable lastRunLater68k;
 
     public static BusArbiter createInstance(GenesisVdpProvider vdp, M68kProvider m68k, Z80Provider z80) {
         BusArbiter b = new BusArbiter();
@@ -197,10 +203,24 @@ public class BusArbiter implements Device, BaseVdpProvider.VdpEventListener {
 
     public void runLater68k(Runnable r) {
         runLater68k = r;
+        lastRunLater68k = r;
         state68k = CpuState.HALTED;
         logInfo("68k State {} , vdp {}", state68k, vdpBusyState);
     }
 
+    //in-memory snapshots only
+    @Override
+    public void saveContext(ByteBuffer buffer) {
+        stateCodec.save(buffer, this);
+        buffer.put((byte) (runLater68k != null ? 1 : 0));
+    }
+
+    @Override
+    public void loadContext(ByteBuffer buffer) {
+        stateCodec.load(buffer, this);
+        runLater68k = buffer.get() > 0 ? lastRunLater68k : null;
+    }
+
     enum IntState {NONE, PENDING, ASSERTED, ACKED}
 
     public void ackInterrupts68k() {
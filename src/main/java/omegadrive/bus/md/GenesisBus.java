@@ -26,6 +26,7 @@ import omegadrive.bus.model.SvpBus;
 import omegadrive.cart.MdCartInfoProvider;
 import omegadrive.cart.loader.MdLoader;
 import omegadrive.cart.loader.MdRomDbModel;
+import omegadrive.cart.mapper.BackupMemoryMapper;
 import omegadrive.cart.mapper.RomMapper;
 import omegadrive.cart.mapper.md.ExSsfMapper;
 import omegadrive.cart.mapper.md.MdBackupMemoryMapper;
@@ -46,8 +47,12 @@ import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.apache.logging.log4j.message.ParameterizedMessage;
 
+import java.nio.ByteBuffer;
 import java.util.Objects;
 
+import static omegadrive.cart.MdCartInfoProvider.DEFAULT_SRAM_END_ADDRESS;
+import static omegadrive.cart.MdCartInfoProvider.DEFAULT_SRAM_START_ADDRESS;
+
 public class GenesisBus extends DeviceAwareBus<GenesisVdpProvider, GenesisJoypad> implements GenesisBusProvider, RomMapper {
 
 
@@ -74,7 +79,23 @@ public class GenesisBus extends DeviceAwareBus<GenesisVdpProvider, GenesisJoypad
         }
     };
 
-    private static long ROM_END_ADDRESS;
+    private long romEndAddress;
+
+    //24 bit address space split in 64Kb pages
+    static final int PAGE_SHIFT = 16;
+    static final int PAGE_SIZE = 1 << PAGE_SHIFT;
+    static final int PAGE_MASK = PAGE_SIZE - 1;
+    static final int NUM_PAGES = (ADDRESS_UPPER_LIMIT + 1) >> PAGE_SHIFT;
+
+    /**
+     * ROM and RAM pages point directly at the backing array, index = pageBase | (address & PAGE_MASK).
+     * A null page is resolved by the current mapper, ie. the slow path.
+     * When the rom is stored one byte per byte the ROM pages are in romPages instead.
+     */
+    private final int[][] readPages = new int[NUM_PAGES][];
+    private final ByteBuffer[] romPages = new ByteBuffer[NUM_PAGES];
+    private final int[][] writePages = new int[NUM_PAGES][];
+    private final int[] pageBase = new int[NUM_PAGES];
 
     enum BusState {READY, NOT_READY}
 
@@ -90,7 +111,7 @@ public class GenesisBus extends DeviceAwareBus<GenesisVdpProvider, GenesisJoypad
     }
 
     void initializeRomData() {
-        ROM_END_ADDRESS = Math.min(cartridgeInfoProvider.getRomSize(), Z80_ADDRESS_SPACE_START);
+        romEndAddress = Math.min(cartridgeInfoProvider.getRomSize(), Z80_ADDRESS_SPACE_START);
         entry = MdLoader.getEntry(cartridgeInfoProvider.getSerial());
         if (cartridgeInfoProvider.isSramEnabled() || entry.hasEeprom()) {
             checkBackupMemoryMapper(SramMode.READ_WRITE);
@@ -100,8 +121,8 @@ public class GenesisBus extends DeviceAwareBus<GenesisVdpProvider, GenesisJoypad
         }
         msuMdHandler = MsuMdHandlerImpl.createInstance(systemProvider.getRomPath());
         //some homebrews use a flat ROM mapper, in theory up to Z80_ADDRESS_SPACE_START
-        if (!cartridgeInfoProvider.isSsfMapper() && ROM_END_ADDRESS > DEFAULT_ROM_END_ADDRESS) {
-            LOG.warn("Assuming flat ROM mapper up to address: {}", ROM_END_ADDRESS);
+        if (!cartridgeInfoProvider.isSsfMapper() && romEndAddress > DEFAULT_ROM_END_ADDRESS) {
+            LOG.warn("Assuming flat ROM mapper up to address: {}", romEndAddress);
         }
         if (cartridgeInfoProvider.isSvp()) {
             checkSvpMapper();
@@ -145,12 +166,12 @@ public class GenesisBus extends DeviceAwareBus<GenesisVdpProvider, GenesisJoypad
     @Override
     public long read(long address, Size size) {
         if (verbose) {
-            long res = mapper.readData(address, size);
+            long res = readPaged(address, size);
             logInfo("Read address: {}, size: {}, result: {}",
                     Long.toHexString(address), size, Long.toHexString(res));
             return res;
         }
-        return mapper.readData(address, size);
+        return readPaged(address, size);
     }
 
     @Override
@@ -159,10 +180,98 @@ public class GenesisBus extends DeviceAwareBus<GenesisVdpProvider, GenesisJoypad
             logInfo("Write address: {}, data: {}, size: {}", Long.toHexString(address),
                     Long.toHexString(data), size);
         }
-        mapper.writeData(address, data, size);
+        writePaged(address, data, size);
+    }
+
+    private long readPaged(long addressL, Size size) {
+        int address = (int) (addressL & 0xFF_FFFF);
+        int page = address >> PAGE_SHIFT;
+        int[] data = readPages[page];
+        if (data != null) {
+            return Util.readData(data, size, pageBase[page] | (address & PAGE_MASK));
+        }
+        ByteBuffer romData = romPages[page];
+        if (romData != null) {
+            return Util.readData(romData, size, pageBase[page] | (address & PAGE_MASK));
+        }
+        return mapper.readData(addressL, size);
+    }
+
+    private void writePaged(long addressL, long data, Size size) {
+        int address = (int) (addressL & 0xFF_FFFF);
+        int[] dest = writePages[address >> PAGE_SHIFT];
+        if (dest != null) {
+            Util.writeData(dest, size, address & PAGE_MASK, data & size.getMask());
+            return;
+        }
+        mapper.writeData(addressL, data, size);
+    }
+
+    private void buildPageTable() {
+        buildPages(0, NUM_PAGES - 1);
+        for (int i = ADDRESS_RAM_MAP_START >> PAGE_SHIFT; i < NUM_PAGES; i++) {
+            writePages[i] = ram; //RAM (64K mirrored)
+        }
+        invalidateMapperPages(mapper);
+    }
+
+    //pages fully backed by ROM or RAM, anything else goes through the mapper
+    private void buildPages(int startPage, int endPage) {
+        long romEnd = rom == null && romBytes == null ? 0 : Math.min(romEndAddress, memoryProvider.getRomSize());
+        for (int i = startPage; i <= endPage; i++) {
+            long pageStart = (long) i << PAGE_SHIFT;
+            readPages[i] = null;
+            romPages[i] = null;
+            if (pageStart + PAGE_SIZE <= romEnd) {
+                readPages[i] = rom;
+                romPages[i] = romBytes;
+                pageBase[i] = (int) pageStart;
+            } else if (pageStart >= ADDRESS_RAM_MAP_START) {
+                readPages[i] = ram;
+                pageBase[i] = 0;
+            }
+        }
+    }
+
+    private void invalidatePages(long startAddress, long endAddress) {
+        for (int i = (int) (startAddress >> PAGE_SHIFT); i <= (int) (endAddress >> PAGE_SHIFT); i++) {
+            readPages[i] = null;
+            romPages[i] = null;
+        }
+    }
+
+    //only the pages handled by the mapper are invalidated, RAM is never remapped
+    private void invalidateMapperPages(RomMapper m) {
+        if (m == exSsfMapper) {
+            invalidatePages(Ssf2Mapper.BANKABLE_START_ADDRESS, DEFAULT_ROM_END_ADDRESS);
+        } else if (m == backupMemMapper) {
+            invalidatePages(DEFAULT_SRAM_START_ADDRESS, DEFAULT_SRAM_END_ADDRESS);
+        } else if (m == svpMapper) {
+            invalidatePages(SvpBus.SVP_MAP_DRAM_START_ADDR_BYTE, DEFAULT_ROM_END_ADDRESS);
+        }
+    }
+
+    private void rebuildMapperPages(RomMapper m) {
+        if (m == exSsfMapper) {
+            buildPages(Ssf2Mapper.BANKABLE_START_ADDRESS >> PAGE_SHIFT, (int) (DEFAULT_ROM_END_ADDRESS >> PAGE_SHIFT));
+        } else if (m == backupMemMapper) {
+            buildPages((int) (DEFAULT_SRAM_START_ADDRESS >> PAGE_SHIFT), (int) (DEFAULT_SRAM_END_ADDRESS >> PAGE_SHIFT));
+        } else if (m == svpMapper) {
+            buildPages(SvpBus.SVP_MAP_DRAM_START_ADDR_BYTE >> PAGE_SHIFT, (int) (DEFAULT_ROM_END_ADDRESS >> PAGE_SHIFT));
+        }
+    }
+
+    private void setMapper(RomMapper newMapper) {
+        if (mapper == newMapper) {
+            return;
+        }
+        rebuildMapperPages(mapper);
+        mapper = newMapper;
+        invalidateMapperPages(mapper);
     }
 
     private int[] ram, rom;
+    private ByteBuffer romBytes;
 
     @Override
     public void init() {
@@ -175,14 +284,17 @@ public class GenesisBus extends DeviceAwareBus<GenesisVdpProvider, GenesisJoypad
         detectState();
         LOG.info("Bus state: {}", busState);
         ram = memoryProvider.getRamData();
-        rom = memoryProvider.getRomData();
+        //one of the two is null
+        romBytes = memoryProvider.getRomBuffer();
+        rom = romBytes == null ? memoryProvider.getRomData() : null;
+        buildPageTable();
     }
 
     @Override
     public long readData(long addressL, Size size) {
         int address = (int) (addressL & 0xFF_FFFF);
-        if (address < ROM_END_ADDRESS) {  //ROM
-            return Util.readData(rom, size, address);
+        if (address < romEndAddress) {  //ROM
+            return readRom(address, size);
         } else if (address >= ADDRESS_RAM_MAP_START && address <= ADDRESS_UPPER_LIMIT) {  //RAM (64K mirrored)
             return Util.readData(ram, size, address & M68K_RAM_MASK);
         } else if (address > DEFAULT_ROM_END_ADDRESS && address < Z80_ADDRESS_SPACE_START) {  //Reserved
@@ -219,7 +331,7 @@ public class GenesisBus extends DeviceAwareBus<GenesisVdpProvider, GenesisJoypad
             internalRegWrite(address, size, data);
         } else if (address >= VDP_ADDRESS_SPACE_START && address < VDP_ADDRESS_SPACE_END) {  //VDP
             vdpWrite(address, size, data);
-        } else if (address < ROM_END_ADDRESS) {
+        } else if (address < romEndAddress) {
             cartWrite(address, data, size);
         } else if (cartridgeInfoProvider.isSramUsedWithBrokenHeader(address)) { // Buck Rogers
             checkBackupMemoryMapper(SramMode.READ_WRITE);
@@ -258,10 +370,14 @@ public class GenesisBus extends DeviceAwareBus<GenesisVdpProvider, GenesisJoypad
             return size.getMax();
         } else {
             //reads rom at 0x40_0000 MegaCD mirror
-            return Util.readData(rom, size, (int) (address & DEFAULT_ROM_END_ADDRESS));
+            return readRom((int) (address & DEFAULT_ROM_END_ADDRESS), size);
         }
     }
 
+    private long readRom(int address, Size size) {
+        return rom != null ? Util.readData(rom, size, address) : Util.readData(romBytes, size, address);
+    }
+
     private void logVdpCounter(int v, int h) {
         if (verbose) {
             LOG.info("Read HV counter, hce={}, vce={}", Long.toHexString(h), Long.toHexString(v));
@@ -789,13 +905,13 @@ public class GenesisBus extends DeviceAwareBus<GenesisVdpProvider, GenesisJoypad
         if (exSsfMapper == RomMapper.NO_OP_MAPPER) {
             this.exSsfMapper = ExSsfMapper.createInstance(this, memoryProvider);
         }
-        mapper = exSsfMapper;
+        setMapper(exSsfMapper);
     }
 
     private void checkSvpMapper() {
         if (svpMapper == SvpBus.NO_OP) {
             this.svpMapper = SvpMapper.createInstance(this, memoryProvider);
-            mapper = svpMapper;
+            setMapper(svpMapper);
             LOG.info("Enabling mapper: {}", mapper.getClass().getSimpleName());
         }
     }
@@ -810,7 +926,7 @@ public class GenesisBus extends DeviceAwareBus<GenesisVdpProvider, GenesisJoypad
             this.backupMemMapper = MdBackupMemoryMapper.createInstance(this, cartridgeInfoProvider, sramMode, entry);
         }
         backupMemMapper.setSramMode(sramMode);
-        this.mapper = backupMemMapper;
+        setMapper(backupMemMapper);
     }
 
     @Override
@@ -818,6 +934,11 @@ public class GenesisBus extends DeviceAwareBus<GenesisVdpProvider, GenesisJoypad
         return svpMapper != SvpBus.NO_OP;
     }
 
+    @Override
+    public SvpBus getSvpMapper() {
+        return svpMapper;
+    }
+
     @Override
     public FmProvider getFm() {
         return soundProvider.getFm();
@@ -873,6 +994,14 @@ public class GenesisBus extends DeviceAwareBus<GenesisVdpProvider, GenesisJoypad
         busArbiter.handleInterruptZ80();
     }
 
+    @Override
+    public ByteBuffer getSram() {
+        if (backupMemMapper instanceof BackupMemoryMapper) {
+            return ((BackupMemoryMapper) backupMemMapper).getSram();
+        }
+        return ByteBuffer.allocate(0);
+    }
+
     @Override
     public int[] getMapperData() {
         if (exSsfMapper instanceof Ssf2Mapper) {
@@ -894,6 +1023,43 @@ public class GenesisBus extends DeviceAwareBus<GenesisVdpProvider, GenesisJoypad
         }
     }
 
+    //bus arbiter, z80 control lines and mapper banks, in-memory snapshots only
+    @Override
+    public void saveContext(ByteBuffer buffer) {
+        buffer.put((byte) busState.ordinal());
+        buffer.put((byte) (z80BusRequested ? 1 : 0));
+        buffer.put((byte) (z80ResetState ? 1 : 0));
+        int[] mapperData = getMapperData();
+        buffer.putInt(mapperData.length);
+        for (int i = 0; i < mapperData.length; i++) {
+            buffer.putInt(mapperData[i]);
+        }
+        buffer.putInt(vdpRunnable.vdpAddress);
+        buffer.putLong(vdpRunnable.vpdData);
+        buffer.putInt(vdpRunnable.vdpSize == null ? -1 : vdpRunnable.vdpSize.ordinal());
+        busArbiter.saveContext(buffer);
+    }
+
+    @Override
+    public void loadContext(ByteBuffer buffer) {
+        busState = BusState.values()[buffer.get()];
+        z80BusRequested = buffer.get() > 0;
+        z80ResetState = buffer.get() > 0;
+        int len = buffer.getInt();
+        if (len > 0) {
+            int[] mapperData = new int[len];
+            for (int i = 0; i < len; i++) {
+                mapperData[i] = buffer.getInt();
+            }
+            setMapperData(mapperData);
+        }
+        vdpRunnable.vdpAddress = buffer.getInt();
+        vdpRunnable.vpdData = buffer.getLong();
+        int size = buffer.getInt();
+        vdpRunnable.vdpSize = size < 0 ? null : Size.values()[size];
+        busArbiter.loadContext(buffer);
+    }
+
     @Override
     public void closeRom() {
         if (mapper != this) {
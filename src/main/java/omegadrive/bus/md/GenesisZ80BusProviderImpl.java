@@ -30,6 +30,8 @@ import omegadrive.util.Size;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+import java.nio.ByteBuffer;
+
 public class GenesisZ80BusProviderImpl extends DeviceAwareBus implements GenesisZ80BusProvider {
     private static final Logger LOG = LogManager.getLogger(GenesisZ80BusProviderImpl.class.getSimpleName());
 
@@ -168,4 +170,21 @@ public class GenesisZ80BusProviderImpl extends DeviceAwareBus implements Genesis
     public int getRomBank68kSerial() {
         return romBank68kSerial;
     }
+
+    //in-memory snapshots only
+    @Override
+    public void saveContext(ByteBuffer buffer) {
+        buffer.putInt(romBank68kSerial);
+        for (int i = 0; i < ram.length; i++) {
+            buffer.putInt(ram[i]);
+        }
+    }
+
+    @Override
+    public void loadContext(ByteBuffer buffer) {
+        romBank68kSerial = buffer.getInt();
+        for (int i = 0; i < ram.length; i++) {
+            ram[i] = buffer.getInt();
+        }
+    }
 }
@@ -40,10 +40,7 @@ public class SvpMapper implements RomMapper, SvpBus {
     private static final boolean verbose = false;
     private static final boolean VR_TEST_MODE = false;
 
-    //TODO fix
-    public static Ssp16 ssp16 = NO_SVP;
-    private static SvpMapper instance = null;
-
+    protected final Ssp16 ssp16;
     protected Svp_t svpCtx;
     protected Ssp1601_t sspCtx;
 
@@ -51,10 +48,9 @@ public class SvpMapper implements RomMapper, SvpBus {
 
     protected SvpMapper(RomMapper baseMapper, Ssp16 ssp16p) {
         this.baseMapper = baseMapper;
-        ssp16 = ssp16p;
+        this.ssp16 = ssp16p;
         this.svpCtx = ssp16p.getSvpContext();
         this.sspCtx = this.svpCtx.ssp1601;
-        instance = this;
     }
 
     public static SvpMapper createInstance(RomMapper baseMapper, Ssp16 ssp16) {
@@ -226,12 +222,18 @@ public class SvpMapper implements RomMapper, SvpBus {
         baseMapper.writeData(addressL, data, size);
     }
 
-    public static void setSvpContext(Svp_t svpCtx) {
+    @Override
+    public Ssp16 getSsp16() {
+        return ssp16;
+    }
+
+    @Override
+    public void setSvpContext(Svp_t svpCtx) {
         if (svpCtx == null) {
             return;
         }
-        instance.svpCtx = svpCtx;
-        instance.sspCtx = svpCtx.ssp1601;
+        this.svpCtx = svpCtx;
+        this.sspCtx = svpCtx.ssp1601;
         ssp16.loadSvpContext(svpCtx);
     }
 }
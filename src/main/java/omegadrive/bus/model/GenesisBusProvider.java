@@ -28,6 +28,8 @@ import omegadrive.vdp.model.GenesisVdpProvider;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+import java.nio.ByteBuffer;
+
 import static omegadrive.memory.MemoryProvider.M68K_RAM_SIZE;
 
 public interface GenesisBusProvider extends BaseBusProvider {
@@ -123,6 +125,11 @@ public interface GenesisBusProvider extends BaseBusProvider {
         //DO NOTHING
     }
 
+    //backup memory contents, live; empty when the cart has none
+    default ByteBuffer getSram() {
+        return ByteBuffer.allocate(0);
+    }
+
     //Z80 for genesis doesnt do IO
     @Override
     default int readIoPort(int port) {
@@ -140,4 +147,8 @@ public interface GenesisBusProvider extends BaseBusProvider {
     default boolean isSvp() {
         return false;
     }
+
+    default SvpBus getSvpMapper() {
+        return SvpBus.NO_OP;
+    }
 }
@@ -1,6 +1,8 @@
 package omegadrive.bus.model;
 
 import omegadrive.cart.mapper.RomMapper;
+import omegadrive.cpu.ssp16.Ssp16;
+import omegadrive.cpu.ssp16.Ssp16Types;
 import omegadrive.util.Size;
 
 /**
@@ -63,4 +65,12 @@ public interface SvpBus extends RomMapper {
     default void m68kSvpRegWrite(int address, long data, Size size) {
         m68kSvpWriteData(address, data, size);
     }
+
+    default Ssp16 getSsp16() {
+        return Ssp16.NO_SVP;
+    }
+
+    default void setSvpContext(Ssp16Types.Svp_t svpCtx) {
+        //DO NOTHING
+    }
 }
@@ -46,8 +46,6 @@ public class SmsBus extends DeviceAwareBus<SmsVdp, TwoButtonsJoypad> implements
 
     private static final boolean verbose = false;
 
-    public static boolean HW_ENABLE_FM = false;
-
     private static final int ROM_START = 0;
     private static final int ROM_END = 0xBFFF;
     public static final int RAM_START = 0xC000;
@@ -73,6 +71,7 @@ public class SmsBus extends DeviceAwareBus<SmsVdp, TwoButtonsJoypad> implements
     protected int countryValue = DOMESTIC;
 
     private boolean isGG = false;
+    private boolean hwEnableFm = false;
 
     /** Horizontal Counter Latch */
     protected int hCounter;
@@ -164,8 +163,8 @@ public class SmsBus extends DeviceAwareBus<SmsVdp, TwoButtonsJoypad> implements
             case 0xC1:
                 //FM chip detection, defaults to false
                 //Port $F2 : Bit 0 can be read and written to detect if YM2413 is available.
-                boolean isAudioControl = HW_ENABLE_FM && !ioEnable && port == 0xF2;
-                boolean isFmWrite = HW_ENABLE_FM && (port == 0xF0 || port == 0xF1);
+                boolean isAudioControl = hwEnableFm && !ioEnable && port == 0xF2;
+                boolean isFmWrite = hwEnableFm && (port == 0xF0 || port == 0xF1);
                 if (isAudioControl) {
                     handleAudioControl(value);
                 } else if (isFmWrite) {
@@ -220,7 +219,7 @@ public class SmsBus extends DeviceAwareBus<SmsVdp, TwoButtonsJoypad> implements
                 } else if (port == 0xF2) {
                     //FM chip detection, defaults to false
                     //Port $F2 : Bit 0 can be read and written to detect if YM2413 is available.
-                    return HW_ENABLE_FM ? audioControl & 3 : 0xFF;
+                    return hwEnableFm ? audioControl & 3 : 0xFF;
                 }
                 break;
             // 0xC1 / 0xDD - I/O Port B and Misc
@@ -375,6 +374,10 @@ public class SmsBus extends DeviceAwareBus<SmsVdp, TwoButtonsJoypad> implements
         isNmiSet = set;
     }
 
+    public void setHwEnableFm(boolean hwEnableFm) {
+        this.hwEnableFm = hwEnableFm;
+    }
+
     public int getMapperControl() {
         return smsMapper.getMapperControl();
     }
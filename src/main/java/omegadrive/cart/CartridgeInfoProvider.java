@@ -19,6 +19,7 @@
 
 package omegadrive.cart;
 
+import omegadrive.cart.loader.RomLibraryIndex;
 import omegadrive.memory.IMemoryProvider;
 import omegadrive.util.Util;
 import org.apache.logging.log4j.LogManager;
@@ -40,11 +41,13 @@ public class CartridgeInfoProvider {
     private String crc32;
 
     protected String romName;
+    protected Path romPath;
 
     public static CartridgeInfoProvider createInstance(IMemoryProvider memoryProvider, Path rom) {
         CartridgeInfoProvider provider = new CartridgeInfoProvider();
         provider.memoryProvider = memoryProvider;
         provider.romName = Optional.ofNullable(rom).map(p -> p.getFileName().toString()).orElse("norom.bin");
+        provider.romPath = rom;
         provider.init();
         return provider;
     }
@@ -76,8 +79,17 @@ public class CartridgeInfoProvider {
     private void initChecksum() {
         this.checksum = memoryProvider.readRomByte(getChecksumStartAddress());
         this.computedChecksum = Util.computeChecksum(memoryProvider);
-        this.sha1 = Util.computeSha1Sum(memoryProvider);
-        this.crc32 = Util.computeCrc32(memoryProvider);
+        //a rom that has not changed since it was indexed is not hashed again
+        Optional<RomLibraryIndex.Entry> indexed = Optional.ofNullable(romPath).
+                flatMap(RomLibraryIndex.getShared()::getValidEntry);
+        if (indexed.isPresent()) {
+            this.sha1 = indexed.get().sha1;
+            this.crc32 = indexed.get().crc32;
+            LOG.info("Rom hashes from the rom index: {}", romName);
+        } else {
+            this.sha1 = Util.computeSha1Sum(memoryProvider);
+            this.crc32 = Util.computeCrc32(memoryProvider);
+        }
 
         //defaults to false
         if (AUTOFIX_CHECKSUM && checksum != computedChecksum) {
@@ -27,7 +27,6 @@ import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 import java.nio.file.Path;
-import java.util.Arrays;
 import java.util.Optional;
 
 public class MdCartInfoProvider extends CartridgeInfoProvider {
@@ -112,6 +111,7 @@ public class MdCartInfoProvider extends CartridgeInfoProvider {
         MdCartInfoProvider provider = new MdCartInfoProvider();
         provider.memoryProvider = memoryProvider;
         provider.romName = Optional.ofNullable(rom).map(p -> p.getFileName().toString()).orElse("norom.bin");
+        provider.romPath = rom;
         provider.init();
         return provider;
     }
@@ -130,7 +130,7 @@ public class MdCartInfoProvider extends CartridgeInfoProvider {
 
     private void initMemoryLayout(IMemoryProvider memoryProvider) {
         detectHeaderMetadata();
-        romSize = memoryProvider.getRomData().length;
+        romSize = memoryProvider.getRomSize();
         detectSram();
     }
 
@@ -147,10 +147,10 @@ public class MdCartInfoProvider extends CartridgeInfoProvider {
             boolean isSramType = (byte2 & 0x20) == 0x20; //sram vs EEPROM
             if (isBackup) { //&& isSramType) {
                 sramEnabled = true;
-                sramStart = Util.readData(memoryProvider.getRomData(), Size.WORD, SRAM_START_ADDRESS) << 16;
-                sramStart |= Util.readData(memoryProvider.getRomData(), Size.WORD, SRAM_START_ADDRESS + 2);
-                sramEnd = Util.readData(memoryProvider.getRomData(), Size.WORD, SRAM_END_ADDRESS) << 16;
-                sramEnd |= Util.readData(memoryProvider.getRomData(), Size.WORD, SRAM_END_ADDRESS + 2);
+                sramStart = memoryProvider.readRomData(SRAM_START_ADDRESS, Size.WORD) << 16;
+                sramStart |= memoryProvider.readRomData(SRAM_START_ADDRESS + 2, Size.WORD);
+                sramEnd = memoryProvider.readRomData(SRAM_END_ADDRESS, Size.WORD) << 16;
+                sramEnd |= memoryProvider.readRomData(SRAM_END_ADDRESS + 2, Size.WORD);
                 if (sramEnd - sramStart < 0) {
                     LOG.error("Unexpected SRAM setup: {}", toString());
                     sramStart = DEFAULT_SRAM_START_ADDRESS;
@@ -163,20 +163,27 @@ public class MdCartInfoProvider extends CartridgeInfoProvider {
     }
 
     private void detectHeaderMetadata() {
-        int[] rom = memoryProvider.getRomData();
-        if (rom.length < SERIAL_NUMBER_END) {
+        int size = memoryProvider.getRomSize();
+        if (size < SERIAL_NUMBER_END) {
             return;
         }
 
-        systemType = new String(rom, ROM_HEADER_START, 16).trim();
+        systemType = readRomString(ROM_HEADER_START, 16).trim();
         forceMapper = MdMapperType.getMdMapperType(systemType);
-        int[] serialArray = Arrays.copyOfRange(memoryProvider.getRomData(), SERIAL_NUMBER_START, SERIAL_NUMBER_END);
-        this.serial = Util.toStringValue(serialArray);
-        if (rom.length > SVP_SV_TOKEN_ADDRESS + 1) {
-            isSvp = SVP_SV_TOKEN.equals(new String(rom, SVP_SV_TOKEN_ADDRESS, 2).trim());
+        this.serial = readRomString(SERIAL_NUMBER_START, SERIAL_NUMBER_END - SERIAL_NUMBER_START);
+        if (size > SVP_SV_TOKEN_ADDRESS + 1) {
+            isSvp = SVP_SV_TOKEN.equals(readRomString(SVP_SV_TOKEN_ADDRESS, 2).trim());
         }
     }
 
+    private String readRomString(int start, int len) {
+        StringBuilder sb = new StringBuilder(len);
+        for (int i = start; i < start + len; i++) {
+            sb.append((char) memoryProvider.readRomByte(i));
+        }
+        return sb.toString();
+    }
+
     public boolean isSsfMapper() {
         return forceMapper != null;
     }
@@ -35,10 +35,9 @@ public class MdLoader {
     public static final MdRomDbModel.Entry NO_ENTRY = new MdRomDbModel.Entry();
     private static final Logger LOG = LogManager.getLogger(MdLoader.class.getSimpleName());
     static String fileName = MapperSelector.ROM_DB_BASE_FOLDER + "rom.db";
-    private static Set<MdRomDbModel.Entry> entrySet = new HashSet<>();
     private static Map<String, MdRomDbModel.Entry> map = new HashMap<>();
 
-    private static Map<String, MdRomDbModel.Entry> getMap() {
+    private static synchronized Map<String, MdRomDbModel.Entry> getMap() {
         if (map.isEmpty()) {
             init();
         }
@@ -47,28 +46,35 @@ public class MdLoader {
 
     public static MdRomDbModel.Entry getEntry(String serial) {
         final String sn = serial.substring(3, serial.length() - 3).trim();
+        if (RomDbIndex.ENABLED) {
+            return RomDbIndex.getInstance().getMdEntry(sn).orElse(NO_ENTRY);
+        }
         return getMap().getOrDefault(sn, NO_ENTRY);
     }
 
     public static void main(String[] args) {
-        init();
-        entrySet.stream().forEach(System.out::println);
+        loadData().values().forEach(System.out::println);
     }
 
     private static void init() {
-        List<String> lines = FileLoader.readFileContent(fileName);
-        processData(lines);
-        map.clear();
-        entrySet.forEach(e -> map.put(e.getId(), e));
+        map = loadData();
+    }
+
+    static Map<String, MdRomDbModel.Entry> loadData() {
+        Set<MdRomDbModel.Entry> entrySet = new HashSet<>();
+        processData(FileLoader.readFileContent(fileName), entrySet);
+        Map<String, MdRomDbModel.Entry> m = new HashMap<>();
+        entrySet.forEach(e -> m.put(e.getId(), e));
+        return m;
     }
 
-    private static void processData(List<String> lines) {
+    private static void processData(List<String> lines, Set<MdRomDbModel.Entry> entrySet) {
         for (int i = 0; i < lines.size(); i++) {
             String s = lines.get(i);
             boolean start = s.length() > 0 && Character.isLetterOrDigit(s.charAt(0));
             if (start) {
                 try {
-                    i = processEntry(lines, i);
+                    i = processEntry(lines, i, entrySet);
                 } catch (Exception e) {
                     LOG.error("Unable to process entry {}, at line: {}", s, i, e);
                 }
@@ -76,7 +82,7 @@ public class MdLoader {
         }
     }
 
-    private static int processEntry(List<String> lines, int start) {
+    private static int processEntry(List<String> lines, int start, Set<MdRomDbModel.Entry> entrySet) {
         String id = lines.get(start).replace(MdRomDbModel.START_OBJ_TOKEN, "").trim();
         MdRomDbModel.Entry e = new MdRomDbModel.Entry();
         e.data.put("id", id);
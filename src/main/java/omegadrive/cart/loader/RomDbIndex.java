@@ -0,0 +1,366 @@
+package omegadrive.cart.loader;
+
+import com.google.common.primitives.UnsignedBytes;
+import omegadrive.SystemLoader.SystemType;
+import omegadrive.cart.mapper.MapperSelector;
+import omegadrive.util.FileLoader;
+import omegadrive.util.StartupProfile;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.function.Function;
+
+/**
+ * RomDbIndex
+ * <p>
+ * The rom dbs (rom.db, meka.nam, msx_sw_db.xml) compiled to a binary index, keyed by serial (MD),
+ * crc32 (SMS, GG) and sha1 (MSX). The index is built on first use, memory mapped and binary searched,
+ * an entry is only decoded on a hit. It is rebuilt when the size or the modification time of a rom db changes.
+ * <p>
+ * Layout: header, sources (size, mtime), sections (name, count, keyLen, tableOffset, payloadOffset);
+ * a section table is sorted by key, each record is the key zero padded to keyLen and the payload offset.
+ * <p>
+ * Usage: RomDbIndex [indexFile]
+ * <p>
+ * Federico Berti
+ * <p>
+ * Copyright 2021
+ */
+public class RomDbIndex {
+
+    private static final Logger LOG = LogManager.getLogger(RomDbIndex.class.getSimpleName());
+
+    public static final boolean ENABLED = Boolean.parseBoolean(System.getProperty("helios.romdb.index", "true"));
+
+    static final int MAGIC = 0x48524442; //HRDB
+    static final int VERSION = 1;
+    static final String MD = "MD";
+
+    private static final int TYPE_STRING = 0;
+    private static final int TYPE_MAP = 1;
+
+    private static final Comparator<byte[]> KEY_COMPARATOR = UnsignedBytes.lexicographicalComparator();
+
+    private static RomDbIndex instance;
+
+    static class Section {
+        String name;
+        int count, keyLen, tableOffset, payloadOffset;
+    }
+
+    private final ByteBuffer buffer;
+    private final Map<String, Section> sections = new HashMap<>();
+
+    private RomDbIndex(ByteBuffer buffer) {
+        this.buffer = buffer;
+        int pos = 8;
+        int sources = buffer.getInt(pos);
+        pos += 4 + sources * 16;
+        int num = buffer.getInt(pos);
+        pos += 4;
+        for (int i = 0; i < num; i++) {
+            Section s = new Section();
+            s.name = readString(buffer, pos);
+            pos += 2 + (buffer.getShort(pos) & 0xFFFF);
+            s.count = buffer.getInt(pos);
+            s.keyLen = buffer.getInt(pos + 4);
+            s.tableOffset = buffer.getInt(pos + 8);
+            s.payloadOffset = buffer.getInt(pos + 12);
+            pos += 16;
+            sections.put(s.name, s);
+        }
+    }
+
+    public static synchronized RomDbIndex getInstance() {
+        if (instance == null) {
+            instance = StartupProfile.time("romDb",
+                    () -> open(Paths.get(FileLoader.romCacheFolder, "romdb_v" + VERSION + ".idx"), getSources()));
+        }
+        return instance;
+    }
+
+    static Path[] getSources() {
+        return new Path[]{Paths.get(MdLoader.fileName), Paths.get(SmsLoader.fileName), Paths.get(MsxXmlLoader.fileName)};
+    }
+
+    static RomDbIndex open(Path indexFile, Path... sources) {
+        long start = System.nanoTime();
+        long[] stamp = getStamp(sources);
+        try {
+            if (Files.isReadable(indexFile)) {
+                ByteBuffer b = FileLoader.mapFile(indexFile);
+                if (isValid(b, stamp)) {
+                    RomDbIndex index = new RomDbIndex(b);
+                    LOG.info("Rom db index mapped: {}, {} ms", indexFile,
+                            String.format("%.2f", (System.nanoTime() - start) / 1e6));
+                    return index;
+                }
+                LOG.info("Rom db index out of date: {}", indexFile);
+            }
+        } catch (Exception e) {
+            LOG.warn("Unable to map the rom db index: {}, {}", indexFile, e.toString());
+        }
+        byte[] data = compile(stamp);
+        ByteBuffer b = ByteBuffer.wrap(data);
+        try {
+            Path folder = indexFile.toAbsolutePath().getParent();
+            Files.createDirectories(folder);
+            Path tmp = Files.createTempFile(folder, "romdb", ".tmp");
+            Files.write(tmp, data);
+            Files.move(tmp, indexFile, StandardCopyOption.REPLACE_EXISTING);
+            b = FileLoader.mapFile(indexFile);
+        } catch (Exception e) {
+            LOG.warn("Unable to write the rom db index: {}, {}", indexFile, e.toString());
+        }
+        LOG.info("Rom db index built: {}, size: {}, {} ms", indexFile, data.length,
+                String.format("%.2f", (System.nanoTime() - start) / 1e6));
+        return new RomDbIndex(b);
+    }
+
+    public Optional<MapperSelector.Entry> getMapperEntry(SystemType type, String key) {
+        return find(type.name(), key).map(pos -> {
+            MapperSelector.Entry e = new MapperSelector.Entry();
+            e.title = readString(buffer, pos);
+            e.mapperName = readString(buffer, pos + 2 + (buffer.getShort(pos) & 0xFFFF));
+            if (type == SystemType.MSX) {
+                e.sha1 = key;
+            } else {
+                e.crc32 = key;
+            }
+            return e;
+        });
+    }
+
+    public Optional<MdRomDbModel.Entry> getMdEntry(String id) {
+        return find(MD, id).map(pos -> {
+            MdRomDbModel.Entry e = new MdRomDbModel.Entry();
+            readMap(buffer, pos, e.data);
+            return e;
+        });
+    }
+
+    public int size(String section) {
+        Section s = sections.get(section);
+        return s == null ? 0 : s.count;
+    }
+
+    //returns the payload position
+    private Optional<Integer> find(String section, String key) {
+        Section s = sections.get(section);
+        if (s == null || key == null) {
+            return Optional.empty();
+        }
+        byte[] k = key.getBytes(StandardCharsets.UTF_8);
+        if (k.length > s.keyLen) {
+            return Optional.empty();
+        }
+        int recordLen = s.keyLen + 4;
+        int low = 0, high = s.count - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int pos = s.tableOffset + mid * recordLen;
+            int cmp = compareKey(pos, s.keyLen, k);
+            if (cmp < 0) {
+                low = mid + 1;
+            } else if (cmp > 0) {
+                high = mid - 1;
+            } else {
+                return Optional.of(s.payloadOffset + buffer.getInt(pos + s.keyLen));
+            }
+        }
+        return Optional.empty();
+    }
+
+    //compares the stored key with the zero padded key
+    private int compareKey(int pos, int keyLen, byte[] key) {
+        for (int i = 0; i < keyLen; i++) {
+            int a = buffer.get(pos + i) & 0xFF;
+            int b = i < key.length ? key[i] & 0xFF : 0;
+            if (a != b) {
+                return a - b;
+            }
+        }
+        return 0;
+    }
+
+    private static boolean isValid(ByteBuffer b, long[] stamp) {
+        if (b.capacity() < 12 || b.getInt(0) != MAGIC || b.getInt(4) != VERSION ||
+                b.getInt(8) * 2 != stamp.length) {
+            return false;
+        }
+        for (int i = 0; i < stamp.length; i++) {
+            if (b.getLong(12 + i * 8) != stamp[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    //size and mtime of each source, -1 when missing
+    private static long[] getStamp(Path... sources) {
+        long[] stamp = new long[sources.length * 2];
+        for (int i = 0; i < sources.length; i++) {
+            try {
+                stamp[2 * i] = Files.size(sources[i]);
+                stamp[2 * i + 1] = Files.getLastModifiedTime(sources[i]).toMillis();
+            } catch (IOException e) {
+                stamp[2 * i] = stamp[2 * i + 1] = -1;
+            }
+        }
+        return stamp;
+    }
+
+    static byte[] compile(long[] stamp) {
+        Map<String, byte[]> sections = new LinkedHashMap<>();
+        sections.put(MD, compileSection(MdLoader.loadData(), e -> encodeMap(e.getData())));
+        for (SystemType type : new SystemType[]{SystemType.SMS, SystemType.GG}) {
+            sections.put(type.name(), compileSection(SmsLoader.loadData(type), RomDbIndex::encodeMapperEntry));
+        }
+        sections.put(SystemType.MSX.name(), compileSection(MsxXmlLoader.loadData(), RomDbIndex::encodeMapperEntry));
+        try {
+            ByteArrayOutputStream header = new ByteArrayOutputStream();
+            DataOutputStream dos = new DataOutputStream(header);
+            dos.writeInt(MAGIC);
+            dos.writeInt(VERSION);
+            dos.writeInt(stamp.length / 2);
+            for (long l : stamp) {
+                dos.writeLong(l);
+            }
+            dos.writeInt(sections.size());
+            int headerLen = header.size() + sections.keySet().stream().mapToInt(n -> 2 + n.length() + 16).sum();
+            ByteArrayOutputStream body = new ByteArrayOutputStream();
+            for (Map.Entry<String, byte[]> e : sections.entrySet()) {
+                ByteBuffer s = ByteBuffer.wrap(e.getValue());
+                int count = s.getInt(0), keyLen = s.getInt(4);
+                int tableLen = count * (keyLen + 4);
+                writeString(dos, e.getKey());
+                dos.writeInt(count);
+                dos.writeInt(keyLen);
+                dos.writeInt(headerLen + body.size() + 8);
+                dos.writeInt(headerLen + body.size() + 8 + tableLen);
+                body.write(e.getValue());
+            }
+            body.writeTo(header);
+            return header.toByteArray();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    //count, keyLen, table, payloads
+    private static <T> byte[] compileSection(Map<String, T> map, Function<T, byte[]> encoder) {
+        SortedMap<byte[], T> sorted = new TreeMap<>(KEY_COMPARATOR);
+        map.forEach((k, v) -> {
+            if (k != null) {
+                sorted.put(k.getBytes(StandardCharsets.UTF_8), v);
+            }
+        });
+        int keyLen = sorted.keySet().stream().mapToInt(k -> k.length).max().orElse(0);
+        ByteBuffer table = ByteBuffer.allocate(8 + sorted.size() * (keyLen + 4));
+        table.putInt(sorted.size()).putInt(keyLen);
+        ByteArrayOutputStream payloads = new ByteArrayOutputStream();
+        for (Map.Entry<byte[], T> e : sorted.entrySet()) {
+            table.put(Arrays.copyOf(e.getKey(), keyLen));
+            table.putInt(payloads.size());
+            byte[] p = encoder.apply(e.getValue());
+            payloads.write(p, 0, p.length);
+        }
+        byte[] out = Arrays.copyOf(table.array(), table.capacity() + payloads.size());
+        byte[] p = payloads.toByteArray();
+        System.arraycopy(p, 0, out, table.capacity(), p.length);
+        return out;
+    }
+
+    private static byte[] encodeMapperEntry(MapperSelector.Entry e) {
+        try {
+            ByteArrayOutputStream bos = new ByteArrayOutputStream();
+            DataOutputStream dos = new DataOutputStream(bos);
+            writeString(dos, e.title);
+            writeString(dos, e.mapperName);
+            return bos.toByteArray();
+        } catch (IOException ex) {
+            throw new RuntimeException(ex);
+        }
+    }
+
+    private static byte[] encodeMap(Map<String, Object> map) {
+        try {
+            ByteArrayOutputStream bos = new ByteArrayOutputStream();
+            writeMap(new DataOutputStream(bos), map);
+            return bos.toByteArray();
+        } catch (IOException ex) {
+            throw new RuntimeException(ex);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void writeMap(DataOutputStream dos, Map<String, Object> map) throws IOException {
+        dos.writeShort(map.size());
+        for (Map.Entry<String, Object> e : map.entrySet()) {
+            writeString(dos, e.getKey());
+            if (e.getValue() instanceof Map) {
+                dos.writeByte(TYPE_MAP);
+                writeMap(dos, (Map<String, Object>) e.getValue());
+            } else {
+                dos.writeByte(TYPE_STRING);
+                writeString(dos, String.valueOf(e.getValue()));
+            }
+        }
+    }
+
+    //returns the position after the map
+    private static int readMap(ByteBuffer b, int pos, Map<String, Object> map) {
+        int len = b.getShort(pos) & 0xFFFF;
+        pos += 2;
+        for (int i = 0; i < len; i++) {
+            String key = readString(b, pos);
+            pos += 2 + (b.getShort(pos) & 0xFFFF);
+            int type = b.get(pos++);
+            if (type == TYPE_MAP) {
+                Map<String, Object> child = new HashMap<>();
+                pos = readMap(b, pos, child);
+                map.put(key, child);
+            } else {
+                map.put(key, readString(b, pos));
+                pos += 2 + (b.getShort(pos) & 0xFFFF);
+            }
+        }
+        return pos;
+    }
+
+    private static void writeString(DataOutputStream dos, String s) throws IOException {
+        byte[] b = (s == null ? "" : s).getBytes(StandardCharsets.UTF_8);
+        dos.writeShort(b.length);
+        dos.write(b);
+    }
+
+    private static String readString(ByteBuffer b, int pos) {
+        byte[] s = new byte[b.getShort(pos) & 0xFFFF];
+        for (int i = 0; i < s.length; i++) {
+            s[i] = b.get(pos + 2 + i);
+        }
+        return new String(s, StandardCharsets.UTF_8);
+    }
+
+    public static void main(String[] args) {
+        Path file = args.length > 0 ? Paths.get(args[0]) : Paths.get(FileLoader.romCacheFolder, "romdb_v" + VERSION + ".idx");
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            LOG.warn("Unable to delete: {}, {}", file, e.toString());
+        }
+        RomDbIndex index = open(file, getSources());
+        LOG.info("Rom db index: {}, MD: {}, SMS: {}, GG: {}, MSX: {}", file.toAbsolutePath(), index.size(MD),
+                index.size(SystemType.SMS.name()), index.size(SystemType.GG.name()), index.size(SystemType.MSX.name()));
+    }
+}
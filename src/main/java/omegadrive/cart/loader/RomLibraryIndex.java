@@ -0,0 +1,340 @@
+package omegadrive.cart.loader;
+
+import com.google.common.io.ByteStreams;
+import omegadrive.SystemLoader;
+import omegadrive.SystemLoader.SystemType;
+import omegadrive.cart.CartridgeInfoProvider;
+import omegadrive.cart.MdCartInfoProvider;
+import omegadrive.cart.mapper.MapperSelector;
+import omegadrive.memory.ByteMemoryProvider;
+import omegadrive.memory.IMemoryProvider;
+import omegadrive.util.FileLoader;
+import omegadrive.util.RegionDetector;
+import omegadrive.util.ZipUtil;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * RomLibraryIndex
+ * <p>
+ * Index of a rom folder: hashes, header fields and rom db matches of every rom, persisted to a csv file.
+ * A rom is only read again when its size or modification time changes; the roms are indexed
+ * in parallel on a fork-join pool, hashes are computed in bulk over the rom buffer.
+ * The index is built and updated by the command line below; on rom load the hashes of a rom that has not changed
+ * since it was indexed are taken from the index, see {@link #getShared()} and {@link CartridgeInfoProvider}.
+ * <p>
+ * Usage: RomLibraryIndex romFolder [threads]
+ * <p>
+ * Federico Berti
+ * <p>
+ * Copyright 2021
+ */
+public class RomLibraryIndex {
+
+    private static final Logger LOG = LogManager.getLogger(RomLibraryIndex.class.getSimpleName());
+
+    public static final String INDEX_FILE = System.getProperty("helios.rom.index.file",
+            System.getProperty("user.home") + File.separatorChar + ".helios" + File.separatorChar + "rom_index.csv");
+
+    static final String SEP = ";";
+    //the path is free text and goes last, it may contain the separator
+    static final String HEADER = "size;mtime;system;crc32;sha1;serial;region;sram;title;mapper;path";
+    static final int NUM_FIELDS = HEADER.split(SEP).length;
+
+    public static class Entry {
+        public String path, system, crc32, sha1, serial = "", region = "", title = "", mapper = "";
+        public long size, mtime;
+        public boolean sram;
+
+        String toRow() {
+            return String.join(SEP, Long.toString(size), Long.toString(mtime), system, crc32, sha1,
+                    clean(serial), clean(region), Boolean.toString(sram), clean(title), clean(mapper), path);
+        }
+
+        static Entry fromRow(String row) {
+            String[] t = row.split(SEP, NUM_FIELDS);
+            if (t.length != NUM_FIELDS) {
+                throw new IllegalArgumentException("Invalid row: " + row);
+            }
+            Entry e = new Entry();
+            e.size = Long.parseLong(t[0]);
+            e.mtime = Long.parseLong(t[1]);
+            e.system = t[2];
+            e.crc32 = t[3];
+            e.sha1 = t[4];
+            e.serial = t[5];
+            e.region = t[6];
+            e.sram = Boolean.parseBoolean(t[7]);
+            e.title = t[8];
+            e.mapper = t[9];
+            e.path = t[10];
+            return e;
+        }
+
+        @Override
+        public String toString() {
+            return toRow();
+        }
+    }
+
+    private static volatile RomLibraryIndex shared;
+
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+    /**
+     * The index at helios.rom.index.file, loaded on first use; empty when there is no index file.
+     */
+    public static RomLibraryIndex getShared() {
+        RomLibraryIndex index = shared;
+        if (index == null) {
+            synchronized (RomLibraryIndex.class) {
+                if (shared == null) {
+                    shared = load(Paths.get(INDEX_FILE));
+                }
+                index = shared;
+            }
+        }
+        return index;
+    }
+
+    static void setShared(RomLibraryIndex index) {
+        shared = index;
+    }
+
+    public static RomLibraryIndex load(Path indexFile) {
+        RomLibraryIndex index = new RomLibraryIndex();
+        if (Files.isReadable(indexFile)) {
+            try {
+                List<String> lines = Files.readAllLines(indexFile, StandardCharsets.UTF_8);
+                if (!lines.isEmpty() && HEADER.equals(lines.get(0))) {
+                    //a bad row only causes that rom to be indexed again
+                    lines.stream().skip(1).forEach(row -> {
+                        try {
+                            Entry e = Entry.fromRow(row);
+                            index.entries.put(e.path, e);
+                        } catch (Exception e) {
+                            LOG.warn("Skipping rom index row: {}, {}", row, e.toString());
+                        }
+                    });
+                } else {
+                    LOG.warn("Rom index format has changed, rebuilding: {}", indexFile);
+                }
+            } catch (Exception e) {
+                LOG.error("Unable to read the rom index: {}, {}", indexFile, e.toString());
+                index.entries.clear();
+            }
+        }
+        LOG.info("Rom index: {}, entries: {}", indexFile, index.entries.size());
+        return index;
+    }
+
+    public void store(Path indexFile) throws IOException {
+        List<String> lines = new ArrayList<>(entries.size() + 1);
+        lines.add(HEADER);
+        entries.values().stream().sorted(Comparator.comparing(e -> e.path)).map(Entry::toRow).forEach(lines::add);
+        Path folder = indexFile.toAbsolutePath().getParent();
+        Files.createDirectories(folder);
+        Path tmp = Files.createTempFile(folder, "rom_index", ".tmp");
+        Files.write(tmp, lines, StandardCharsets.UTF_8);
+        Files.move(tmp, indexFile, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    public Optional<Entry> getEntry(Path rom) {
+        return Optional.ofNullable(entries.get(rom.toAbsolutePath().normalize().toString()));
+    }
+
+    /**
+     * The entry for the rom, only when the file size and modification time still match the indexed ones.
+     */
+    public Optional<Entry> getValidEntry(Path rom) {
+        Optional<Entry> entry = getEntry(rom);
+        if (!entry.isPresent()) {
+            return entry;
+        }
+        try {
+            BasicFileAttributes attrs = Files.readAttributes(rom, BasicFileAttributes.class);
+            return entry.filter(e -> e.size == attrs.size() && e.mtime == attrs.lastModifiedTime().toMillis());
+        } catch (IOException e) {
+            return Optional.empty();
+        }
+    }
+
+    public Collection<Entry> getEntries() {
+        return Collections.unmodifiableCollection(entries.values());
+    }
+
+    /**
+     * Indexes the new and modified roms in the folder, drops the roms that are gone.
+     *
+     * @return the number of roms that have been read
+     */
+    public int update(Path folder, int threads) throws IOException {
+        long start = System.currentTimeMillis();
+        //same keys as getEntry
+        folder = folder.toAbsolutePath().normalize();
+        Map<Path, BasicFileAttributes> files = new HashMap<>();
+        Files.walkFileTree(folder, EnumSet.of(FileVisitOption.FOLLOW_LINKS), Integer.MAX_VALUE,
+                new SimpleFileVisitor<Path>() {
+                    @Override
+                    public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                        String name = file.getFileName().toString().toLowerCase();
+                        //a line break would split the row
+                        if (attrs.isRegularFile() && Arrays.stream(SystemLoader.binaryTypes).anyMatch(name::endsWith) &&
+                                name.indexOf('\n') < 0 && name.indexOf('\r') < 0) {
+                            files.put(file.toAbsolutePath(), attrs);
+                        }
+                        return FileVisitResult.CONTINUE;
+                    }
+
+                    @Override
+                    public FileVisitResult visitFileFailed(Path file, IOException exc) {
+                        LOG.warn("Skipping: {}, {}", file, exc.toString());
+                        return FileVisitResult.CONTINUE;
+                    }
+                });
+        String prefix = folder.toAbsolutePath().toString() + File.separator;
+        Set<String> current = files.keySet().stream().map(Path::toString).collect(Collectors.toSet());
+        entries.keySet().removeIf(p -> p.startsWith(prefix) && !current.contains(p));
+
+        List<Path> toIndex = files.entrySet().stream().filter(e -> {
+            Entry prev = entries.get(e.getKey().toString());
+            return prev == null || prev.size != e.getValue().size() ||
+                    prev.mtime != e.getValue().lastModifiedTime().toMillis();
+        }).map(Map.Entry::getKey).collect(Collectors.toList());
+
+        AtomicInteger errors = new AtomicInteger();
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            pool.submit(() -> toIndex.parallelStream().forEach(p -> {
+                BasicFileAttributes attrs = files.get(p);
+                try {
+                    indexFile(p, attrs.size(), attrs.lastModifiedTime().toMillis()).
+                            ifPresent(e -> entries.put(e.path, e));
+                } catch (Exception | Error ex) {
+                    errors.incrementAndGet();
+                    LOG.warn("Unable to index: {}, {}", p, ex.toString());
+                }
+            })).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            LOG.error("Rom indexing failed", e.getCause());
+        } finally {
+            pool.shutdown();
+        }
+        LOG.info("Indexed: {}, roms: {}, read: {}, errors: {}, threads: {}, {} ms", folder, files.size(),
+                toIndex.size(), errors.get(), threads, System.currentTimeMillis() - start);
+        return toIndex.size();
+    }
+
+    static Optional<Entry> indexFile(Path file, long size, long mtime) throws IOException {
+        String name = file.getFileName().toString().toLowerCase();
+        ByteBuffer data;
+        if (ZipUtil.isZipFile.test(name)) {
+            try (ZipFile zipFile = new ZipFile(file.toFile())) {
+                Optional<? extends ZipEntry> entry = ZipUtil.findSupportedEntry(zipFile);
+                if (!entry.isPresent()) {
+                    return Optional.empty();
+                }
+                name = entry.get().getName().toLowerCase();
+                try (InputStream is = zipFile.getInputStream(entry.get())) {
+                    data = ByteBuffer.wrap(ByteStreams.toByteArray(is));
+                }
+            }
+        } else if (ZipUtil.isGZipFile.test(name)) {
+            name = ZipUtil.getGZipFileName(file).toLowerCase();
+            try (InputStream is = new GZIPInputStream(Files.newInputStream(file))) {
+                data = ByteBuffer.wrap(ByteStreams.toByteArray(is));
+            }
+        } else {
+            data = FileLoader.mapFile(file);
+        }
+        SystemType type = SystemLoader.getSystemType(name);
+        if (type == SystemType.NONE || data.capacity() == 0) {
+            return Optional.empty();
+        }
+        if (SystemLoader.smdFileAsInterleaved && name.contains(SystemLoader.SMD_INTERLEAVED_EXT)) {
+            byte[] b = new byte[data.capacity()];
+            data.duplicate().get(b);
+            data = ByteBuffer.wrap(FileLoader.unscrambleSmd(b));
+        }
+        IMemoryProvider memory = ByteMemoryProvider.createInstance(0);
+        memory.setRomData(data);
+
+        Entry e = new Entry();
+        e.path = file.toAbsolutePath().toString();
+        e.size = size;
+        e.mtime = mtime;
+        e.system = type.name();
+        if (type == SystemType.GENESIS) {
+            MdCartInfoProvider cart = MdCartInfoProvider.createInstance(memory, file);
+            e.crc32 = cart.getCrc32();
+            e.sha1 = cart.getSha1();
+            e.serial = cart.getSerial().trim();
+            e.sram = cart.isSramEnabled();
+            e.region = readRomString(data, RegionDetector.FIRST_REGION_ADDRESS, 3).trim();
+            MdRomDbModel.Entry dbEntry = MdLoader.getEntry(cart.getSerial());
+            e.title = dbEntry.getName();
+            e.mapper = cart.isSvp() ? "SVP" : cart.isSsfMapper() ? cart.getCartridgeMapper().name() :
+                    dbEntry.hasEeprom() ? dbEntry.getEeprom().getType() : "";
+        } else {
+            CartridgeInfoProvider cart = CartridgeInfoProvider.createInstance(memory, file);
+            e.crc32 = cart.getCrc32();
+            e.sha1 = cart.getSha1();
+            //same keys as the buses, see SmsBus, MsxBus
+            String key = type == SystemType.MSX ? e.sha1 : e.crc32;
+            MapperSelector.Entry dbEntry = type == SystemType.MSX || type == SystemType.SMS || type == SystemType.GG ?
+                    MapperSelector.getMapperData(type, key) : MapperSelector.MISSING_DATA;
+            if (dbEntry != MapperSelector.MISSING_DATA) {
+                e.title = dbEntry.title;
+                e.mapper = dbEntry.mapperName;
+            }
+        }
+        return Optional.of(e);
+    }
+
+    private static String readRomString(ByteBuffer data, int start, int len) {
+        StringBuilder sb = new StringBuilder(len);
+        for (int i = start; i < Math.min(start + len, data.capacity()); i++) {
+            sb.append((char) (data.get(i) & 0xFF));
+        }
+        return sb.toString();
+    }
+
+    //the separator and line breaks are not allowed in a field
+    private static String clean(String s) {
+        return s == null ? "" : s.replaceAll("[;\\r\\n]", " ").trim();
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 1) {
+            System.err.println("Usage: RomLibraryIndex romFolder [threads]");
+            System.exit(1);
+        }
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+        Path indexFile = Paths.get(INDEX_FILE);
+        RomLibraryIndex index = load(indexFile);
+        //the roms being indexed are not looked up in a second copy of the index
+        setShared(index);
+        index.update(Paths.get(args[0]), threads);
+        index.store(indexFile);
+        LOG.info("Rom index written to: {}, entries: {}", indexFile.toAbsolutePath(), index.entries.size());
+    }
+}
@@ -20,33 +20,59 @@
 package omegadrive.cart.mapper;
 
 import omegadrive.SystemLoader;
-import omegadrive.util.FileLoader;
-import omegadrive.util.Util;
+import omegadrive.util.PriorityThreadFactory;
+import omegadrive.util.Size;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.util.Arrays;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 
+/**
+ * The backup memory is a mapping of the backup file, writes go straight to the file pages and a background
+ * thread flushes them to disk every helios.sram.flush.ms, and when the rom is closed.
+ * The emulation thread never does any file I/O.
+ */
 public abstract class BackupMemoryMapper {
 
     private final static Logger LOG = LogManager.getLogger(BackupMemoryMapper.class.getSimpleName());
 
+    public static final int FLUSH_INTERVAL_MS =
+            Math.max(10, Integer.parseInt(System.getProperty("helios.sram.flush.ms", "1000")));
+
+    private static final ScheduledExecutorService flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new PriorityThreadFactory(Thread.MIN_PRIORITY, "sramFlush").newThread(r);
+        t.setDaemon(true);
+        return t;
+    });
+
     protected String defaultSramFolder;
 
     protected String sramFolder;
     protected String sramFolderProp;
 
     protected Path backupFile;
-    protected int[] sram = new int[0];
+    protected ByteBuffer sram = ByteBuffer.allocate(0);
     protected String fileType;
     protected String romName;
 
     protected int sramSize;
 
+    private FileChannel channel;
+    private ScheduledFuture<?> flushTask;
+    private volatile boolean dirty;
+
     protected BackupMemoryMapper(SystemLoader.SystemType systemType, String fileType, String romName, int sramSize) {
         sramFolderProp = systemType.getShortName().toLowerCase() + ".sram.folder";
         defaultSramFolder = getDefaultBackupFileFolder(systemType);
@@ -64,46 +90,116 @@ public abstract class BackupMemoryMapper {
 
     protected void initBackupFileIfNecessary() {
         if (backupFile == null) {
+            backupFile = Paths.get(sramFolder, romName + "." + fileType);
             try {
-                backupFile = Paths.get(sramFolder,
-                        romName + "." + fileType);
-                long size = 0;
-                if (Files.isReadable(backupFile)) {
-                    size = Files.size(backupFile);
-                    if (size > 0) {
-                        sram = Util.toUnsignedIntArray(FileLoader.readBinaryFile(backupFile));
-                    } else {
-                        LOG.error("Backup file with size 0, attempting to recreate it");
-                        size = createBackupFile();
-                    }
-                } else {
-                    size = createBackupFile();
-                }
-                LOG.info("Using sram file: {} size: {} bytes", backupFile, size);
+                mapBackupFile();
+                flushTask = flusher.scheduleWithFixedDelay(this::flush, FLUSH_INTERVAL_MS, FLUSH_INTERVAL_MS,
+                        TimeUnit.MILLISECONDS);
+                LOG.info("Using sram file: {} size: {} bytes", backupFile, sram.capacity());
             } catch (Exception e) {
-                LOG.error("Unable to create file for: {}", romName);
+                LOG.error("Unable to map the sram file for: {}, {}", romName, e.getMessage());
+                closeChannel();
+                sram = ByteBuffer.allocate(sramSize);
+                fill(sram, 0);
             }
         }
     }
 
-    private int createBackupFile() {
-        LOG.info("Creating backup memory file: {}", backupFile);
-        sram = new int[sramSize];
-        //see GenTechBulletins, StarTrek echoes fails when reading sram with all 0s
-        Arrays.fill(sram, 0xFF);
-        FileLoader.writeFileSafe(backupFile, Util.unsignedToByteArray(sram));
-        return sram.length;
+    private void mapBackupFile() throws IOException {
+        Files.createDirectories(backupFile.toAbsolutePath().getParent());
+        channel = FileChannel.open(backupFile, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        int size = (int) channel.size();
+        if (size == 0) {
+            LOG.info("Creating backup memory file: {}", backupFile);
+        }
+        //the file grows to the mapping size
+        sram = channel.map(FileChannel.MapMode.READ_WRITE, 0, Math.max(size, sramSize));
+        if (size < sram.capacity()) {
+            fill(sram, size);
+            dirty = true;
+        }
+    }
+
+    //see GenTechBulletins, StarTrek echoes fails when reading sram with all 0s
+    private static void fill(ByteBuffer b, int from) {
+        for (int i = from; i < b.capacity(); i++) {
+            b.put(i, (byte) 0xFF);
+        }
+    }
+
+    public final int readSramByte(int address) {
+        return sram.get(address) & 0xFF;
+    }
+
+    public final void writeSramByte(int address, int data) {
+        sram.put(address, (byte) data);
+        dirty = true;
+    }
+
+    //a long is sign extended, see Util.readData
+    protected final long readSram(int address, Size size) {
+        if (size == Size.BYTE) {
+            return sram.get(address) & 0xFF;
+        } else if (size == Size.WORD) {
+            return sram.getShort(address) & 0xFFFF;
+        }
+        return sram.getInt(address);
+    }
+
+    protected final void writeSram(int address, Size size, long data) {
+        if (size == Size.BYTE) {
+            sram.put(address, (byte) data);
+        } else if (size == Size.WORD) {
+            sram.putShort(address, (short) data);
+        } else {
+            sram.putInt(address, (int) data);
+        }
+        dirty = true;
     }
 
-    protected void writeFile() {
+    /**
+     * The buffer is live, savestates write to it.
+     */
+    public ByteBuffer getSram() {
         initBackupFileIfNecessary();
-        if (sram.length == 0) {
-            LOG.error("Unexpected sram length: {}", sram.length);
-            return;
+        dirty = true;
+        ByteBuffer b = sram.duplicate();
+        b.clear();
+        return b;
+    }
+
+    private synchronized void flush() {
+        if (dirty && channel != null) {
+            dirty = false;
+            ((MappedByteBuffer) sram).force();
         }
-        if (Files.isWritable(backupFile)) {
-            LOG.info("Writing to sram file: {}, len: {}", this.backupFile, sram.length);
-            FileLoader.writeFileSafe(backupFile, Util.unsignedToByteArray(sram));
+    }
+
+    /**
+     * Flushes the pending writes and releases the file, the mapping stays valid.
+     */
+    protected synchronized void closeBackupFile() {
+        if (flushTask != null) {
+            flushTask.cancel(false);
+            flushTask = null;
+        }
+        if (channel != null) {
+            LOG.info("Flushing sram file: {}, len: {}", backupFile, sram.capacity());
+            dirty = true;
+            flush();
+            closeChannel();
+        }
+    }
+
+    private void closeChannel() {
+        try {
+            if (channel != null) {
+                channel.close();
+            }
+        } catch (IOException e) {
+            LOG.error("Unable to close the sram file: {}, {}", backupFile, e.getMessage());
         }
+        channel = null;
     }
 }
@@ -22,6 +22,7 @@ package omegadrive.cart.mapper;
 import com.google.common.base.Strings;
 import omegadrive.SystemLoader;
 import omegadrive.cart.loader.MsxXmlLoader;
+import omegadrive.cart.loader.RomDbIndex;
 import omegadrive.cart.loader.SmsLoader;
 
 import java.util.Collections;
@@ -34,7 +35,11 @@ public class MapperSelector {
 
     public static final String ROM_DB_BASE_FOLDER = "res/romdb/";
 
-    public static Entry getMapperData(SystemLoader.SystemType type, String code) {
+    //the rom library indexer calls this concurrently
+    public static synchronized Entry getMapperData(SystemLoader.SystemType type, String code) {
+        if (RomDbIndex.ENABLED) {
+            return RomDbIndex.getInstance().getMapperEntry(type, code).orElse(MISSING_DATA);
+        }
         if(!cache.containsKey(type)){
             switch (type){
                 case MSX:
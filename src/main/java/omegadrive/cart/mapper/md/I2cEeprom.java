@@ -1,6 +1,7 @@
 package omegadrive.cart.mapper.md;
 
 import omegadrive.cart.loader.MdRomDbModel;
+import omegadrive.cart.mapper.BackupMemoryMapper;
 import omegadrive.util.LogHelper;
 import org.apache.logging.log4j.Level;
 import org.apache.logging.log4j.LogManager;
@@ -37,17 +38,18 @@ public class I2cEeprom {
     private int cycles, rw;
     private int buffer;
     private int address = 0;
-    private int[] sram = new int[0];
+    //the backup file mapping
+    private BackupMemoryMapper storage;
     private int sizeMask = 0;
     private EepromState state = EepromState.STANDBY;
 
-    public static I2cEeprom createInstance(MdRomDbModel.Entry entry) {
+    public static I2cEeprom createInstance(MdRomDbModel.Entry entry, BackupMemoryMapper storage) {
         I2cEeprom e = NO_OP;
         if (entry.hasEeprom()) {
             e = new I2cEeprom();
             MdRomDbModel.EEPROM eeprom = entry.getEeprom();
-            e.sram = new int[eeprom.getSize()];
-            e.sizeMask = e.sram.length - 1;
+            e.storage = storage;
+            e.sizeMask = eeprom.getSize() - 1;
             LOG.info("Init {}", eeprom);
         }
         return e;
@@ -93,7 +95,7 @@ public class I2cEeprom {
             if (cycles < 9) {
                 /* return memory array (max 64kB) DATA bits */
                 int index = address & 0xffff;
-                int res = ((sram[index] >> (8 - cycles)) & 1);
+                int res = ((storage.readSramByte(index & sizeMask) >> (8 - cycles)) & 1);
                 LogHelper.printLevel(LOG, Level.INFO, "{}, read {}, on cycle {}", state, res, cycles, verbose);
                 return res;
             }
@@ -123,6 +125,11 @@ public class I2cEeprom {
                 LogHelper.printLevel(LOG, Level.INFO, "{}, buffer {}", state, buffer, verbose);
             } else {
                 LogHelper.printLevel(LOG, Level.INFO, "{}, val {}", state, buffer, verbose);
+                /* write back to memory array */
+                storage.writeSramByte(address & sizeMask, buffer);
+                buffer = 0;
+                /* increment Word Address (roll up at maximum array size) */
+                address = (address + 1) & sizeMask;
             }
         }
     }
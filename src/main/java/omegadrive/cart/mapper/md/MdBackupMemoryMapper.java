@@ -25,7 +25,6 @@ import omegadrive.cart.loader.MdRomDbModel;
 import omegadrive.cart.mapper.BackupMemoryMapper;
 import omegadrive.cart.mapper.RomMapper;
 import omegadrive.util.Size;
-import omegadrive.util.Util;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
@@ -58,9 +57,9 @@ public class MdBackupMemoryMapper extends BackupMemoryMapper implements RomMappe
         mapper.baseMapper = baseMapper;
         mapper.sramMode = SramMode.READ_WRITE;
         mapper.eeprom = entry.getEeprom();
-        mapper.i2c = I2cEeprom.createInstance(entry);
         LOG.info("BackupMemoryMapper created, using folder: {}", mapper.sramFolder);
         mapper.initBackupFileIfNecessary();
+        mapper.i2c = I2cEeprom.createInstance(entry, mapper);
         return mapper;
     }
 
@@ -98,8 +97,7 @@ public class MdBackupMemoryMapper extends BackupMemoryMapper implements RomMappe
         boolean sramRead = sramMode != SramMode.DISABLE;
         sramRead &= address >= DEFAULT_SRAM_START_ADDRESS && address <= DEFAULT_SRAM_END_ADDRESS;
         if (sramRead) {
-            initBackupFileIfNecessary();
-            long res = Util.readData(sram, size, (int) (address & 0xFFFF));
+            long res = readSram((int) (address & 0xFFFF), size);
             logInfo("SRAM read at: {} {}, result: {} ", address & 0xFFFF, size, res);
             return res;
         }
@@ -113,10 +111,9 @@ public class MdBackupMemoryMapper extends BackupMemoryMapper implements RomMappe
         if (!sramWrite) {
             baseMapper.writeData(address, data, size);
         } else if (sramWrite) {
-            initBackupFileIfNecessary();
             address = (address & 0xFFFF);
             logInfo("SRAM write at: {} {}, data: {} ", address, size, data);
-            Util.writeData(sram, size, (int) address, data);
+            writeSram((int) address, size, data);
         }
     }
 
@@ -125,7 +122,6 @@ public class MdBackupMemoryMapper extends BackupMemoryMapper implements RomMappe
         boolean eepromRead = sramMode != SramMode.DISABLE;
         eepromRead &= address >= DEFAULT_SRAM_START_ADDRESS && address <= DEFAULT_SRAM_END_ADDRESS;
         if (eepromRead) {
-            initBackupFileIfNecessary();
             long res = i2c.eeprom_i2c_out();
             logInfo("EEPROM read at: {} {}, result: {} ", address, size, res);
             return res;
@@ -138,7 +134,6 @@ public class MdBackupMemoryMapper extends BackupMemoryMapper implements RomMappe
         boolean eepromWrite = sramMode == SramMode.READ_WRITE;
         eepromWrite &= address >= DEFAULT_SRAM_START_ADDRESS && address <= DEFAULT_SRAM_END_ADDRESS;
         if (eepromWrite) {
-            initBackupFileIfNecessary();
             i2c.eeprom_i2c_in((int) (data & 0xFF));
             logInfo("EEPROM write at: {} {}, data: {} ", address, size, data);
         } else {
@@ -148,6 +143,6 @@ public class MdBackupMemoryMapper extends BackupMemoryMapper implements RomMappe
 
     @Override
     public void closeRom() {
-        writeFile();
+        closeBackupFile();
     }
 }
\ No newline at end of file
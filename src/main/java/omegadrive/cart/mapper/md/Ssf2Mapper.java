@@ -24,7 +24,6 @@ import omegadrive.cart.mapper.RomMapper;
 import omegadrive.memory.IMemoryProvider;
 import omegadrive.util.LogHelper;
 import omegadrive.util.Size;
-import omegadrive.util.Util;
 import org.apache.logging.log4j.Level;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -77,7 +76,7 @@ public abstract class Ssf2Mapper implements RomMapper {
             address = (banks[address >> BANK_SHIFT] << BANK_SHIFT) | (address & 0x7_FFFF);
             LogHelper.printLevel(LOG, Level.INFO, "Bank read: {} -> {}",
                     addressL, address, verbose);
-            return Util.readData(memory.getRomData(), size, address);
+            return memory.readRomData(address, size);
         }
         return baseMapper.readData(addressL, size);
     }
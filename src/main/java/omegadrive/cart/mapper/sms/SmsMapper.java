@@ -185,7 +185,7 @@ public class SmsMapper {
             int address = (int) (addressL & 0xFFFF);
             int page = address >> 14;
             if (sramSlot2Enable && page == 2) {
-                return sram[address & 0x3FFF];
+                return readSramByte(address & 0x3FFF);
             }
             return readDataMapper(addressL, size);
         }
@@ -194,7 +194,7 @@ public class SmsMapper {
             int address = (int) (addressL & 0xFFFF);
             int page = address >> 14;
             if (sramSlot2Enable && page == 2) {
-                sram[address & 0x3FFF] = (int) (dataL & 0xFF);
+                writeSramByte(address & 0x3FFF, (int) (dataL & 0xFF));
                 return true;
             }
             return false;
@@ -247,7 +247,7 @@ public class SmsMapper {
 
         @Override
         public void closeRom() {
-            writeFile();
+            closeBackupFile();
         }
     }
 
@@ -23,10 +23,13 @@ import m68k.cpu.MC68000;
 import m68k.cpu.instructions.TAS;
 import m68k.memory.AddressSpace;
 import omegadrive.bus.model.GenesisBusProvider;
+import omegadrive.savestate.ObjectStateCodec;
 import org.apache.logging.log4j.Level;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+import java.nio.ByteBuffer;
+
 /**
  *
  * NOTES: f-line emulator. Tecmo Cup
@@ -38,6 +41,7 @@ import org.apache.logging.log4j.Logger;
 public class MC68000Wrapper implements M68kProvider {
 
     private final static Logger LOG = LogManager.getLogger(MC68000Wrapper.class.getSimpleName());
+    private final static ObjectStateCodec wrapperCodec = ObjectStateCodec.of(MC68000Wrapper.class);
 
     protected MC68000 m68k;
     protected AddressSpace addressSpace;
@@ -45,9 +49,11 @@ public class MC68000Wrapper implements M68kProvider {
     private boolean stop;
     protected int currentPC;
     protected int instCycles = 0;
+    private final ObjectStateCodec cpuCodec;
 
     public MC68000Wrapper(GenesisBusProvider busProvider) {
         this.m68k = createCpu();
+        this.cpuCodec = ObjectStateCodec.of(m68k.getClass());
         this.busProvider = busProvider;
         this.addressSpace = createAddressSpace();
         m68k.setAddressSpace(addressSpace);
@@ -131,6 +137,19 @@ public class MC68000Wrapper implements M68kProvider {
         return MC68000Helper.dumpOp(m68k, currentPC);
     }
 
+    //registers, SR and both stack pointers, in-memory snapshots only
+    @Override
+    public void saveContext(ByteBuffer buffer) {
+        wrapperCodec.save(buffer, this);
+        cpuCodec.save(buffer, m68k);
+    }
+
+    @Override
+    public void loadContext(ByteBuffer buffer) {
+        wrapperCodec.load(buffer, this);
+        cpuCodec.load(buffer, m68k);
+    }
+
     public MC68000 getM68k() {
         return m68k;
     }
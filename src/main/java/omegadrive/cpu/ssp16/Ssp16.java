@@ -2,6 +2,8 @@ package omegadrive.cpu.ssp16;
 
 import omegadrive.cpu.ssp16.Ssp16Types.Ssp1601_t;
 import omegadrive.memory.IMemoryProvider;
+import omegadrive.memory.IMemoryRom;
+import omegadrive.util.Size;
 
 import static omegadrive.cpu.ssp16.Ssp16Types.Cart;
 import static omegadrive.cpu.ssp16.Ssp16Types.Svp_t;
@@ -80,17 +82,16 @@ public interface Ssp16 {
         Cart svpCart = new Cart();
         Ssp1601_t sspCtx = new Ssp1601_t();
         Svp_t svpCtx = new Svp_t(sspCtx);
-        loadCart(svpCart, memoryProvider.getRomData());
+        loadCart(svpCart, memoryProvider);
         Ssp16Impl ssp16 = Ssp16Impl.createInstance(svpCtx, svpCart);
         ssp16.ssp1601_reset(sspCtx);
         return ssp16;
     }
 
-    static void loadCart(Cart cart, int[] romBytes) {
-        cart.rom = new int[romBytes.length >> 1]; //words
-        int k = 0;
-        for (int i = 0; i < romBytes.length; i += 2) {
-            cart.rom[k++] = ((romBytes[i] << 8) | romBytes[i + 1]) & MASK_16BIT;
+    static void loadCart(Cart cart, IMemoryRom rom) {
+        cart.rom = new int[rom.getRomSize() >> 1]; //words
+        for (int k = 0; k < cart.rom.length; k++) {
+            cart.rom[k] = (int) rom.readRomData(k << 1, Size.WORD) & MASK_16BIT;
         }
     }
 
@@ -74,6 +74,8 @@ public interface InputProvider {
         InputProvider ip = InputProvider.NO_OP;
         if (JINPUT_ENABLE) {
             try {
+                //only needed by jinput, before its natives load
+                bootstrap();
                 ip = JinputGamepadInputProvider.getInstance(joypadProvider);
             } catch (Exception | Error e) {
                 LOG.warn("Unable to load jinput: {}: {}", e.getClass().getName(), e.getMessage());
@@ -88,7 +90,10 @@ public interface InputProvider {
 //        System.out.println(lib);
         System.setProperty("net.java.games.input.librarypath", lib);
         LOG.info("Loading system library from: {}", lib);
-        //disable java.util.logging
+    }
+
+    //disable java.util.logging, jinput and other libraries log there
+    static void disableJul() {
         java.util.logging.LogManager.getLogManager().reset();
         LOG.info("Disabling java.util.logging");
     }
@@ -28,6 +28,8 @@ import omegadrive.input.InputProvider.PlayerNumber;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+import java.nio.ByteBuffer;
+
 import static omegadrive.input.InputProvider.PlayerNumber.P1;
 import static omegadrive.input.InputProvider.PlayerNumber.P2;
 import static omegadrive.joypad.JoypadProvider.JoypadAction.RELEASED;
@@ -216,4 +218,23 @@ public class GenesisJoypad extends BasePadAdapter {
         readStep2 = p2Type == JoypadType.BUTTON_6 && high2 ? 1 : 0;
 //        LOG.info("new frame");
     }
+
+    //control registers and 6 button protocol, not the buttons state. In-memory snapshots only
+    @Override
+    public void saveContext(ByteBuffer buffer) {
+        buffer.putLong(control1).putLong(control2).putLong(control3);
+        buffer.putInt(readStep1).putInt(readStep2);
+        buffer.put((byte) (high1 ? 1 : 0)).put((byte) (high2 ? 1 : 0));
+    }
+
+    @Override
+    public void loadContext(ByteBuffer buffer) {
+        control1 = buffer.getLong();
+        control2 = buffer.getLong();
+        control3 = buffer.getLong();
+        readStep1 = buffer.getInt();
+        readStep2 = buffer.getInt();
+        high1 = buffer.get() > 0;
+        high2 = buffer.get() > 0;
+    }
 }
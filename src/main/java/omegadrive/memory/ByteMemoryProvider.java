@@ -0,0 +1,142 @@
+package omegadrive.memory;
+
+import omegadrive.util.Size;
+import omegadrive.util.Util;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.nio.ByteBuffer;
+
+/**
+ * ByteMemoryProvider
+ * <p>
+ * ROM stored one byte per byte, a 4MB rom takes 4MB of heap instead of 16MB;
+ * word and long reads come from the backing buffer, see {@link Util#readData(ByteBuffer, Size, int)}.
+ * The buffer can be a (copy on write) mapping of the rom file, the rom is then never copied to the heap.
+ * Used for the Genesis cartridge rom, every Genesis rom reader goes through {@link IMemoryRom} or the buffer.
+ * Only the rom is byte backed: RAM is small and shared with the bus page table, it stays one byte per int,
+ * as do the VDP memories, the backup SRAM and the Z80 systems memory.
+ * <p>
+ * There is no int[] view of the rom, {@link #getRomData()} is not supported.
+ * <p>
+ * Federico Berti
+ * <p>
+ * Copyright 2021
+ */
+public class ByteMemoryProvider implements IMemoryProvider {
+
+    private final static Logger LOG = LogManager.getLogger(ByteMemoryProvider.class.getSimpleName());
+
+    private ByteBuffer rom = ByteBuffer.allocate(1);
+    private int[] ram;
+
+    private long romMask;
+    private int romSize;
+    private int ramSize;
+
+    private ByteMemoryProvider() {
+    }
+
+    public static IMemoryProvider createInstance(int ramSize) {
+        ByteMemoryProvider memory = new ByteMemoryProvider();
+        memory.setRomData(new byte[1]);
+        memory.ram = Util.initMemoryRandomBytes(new int[ramSize]);
+        memory.ramSize = ramSize;
+        return memory;
+    }
+
+    @Override
+    public int readRomByte(int address) {
+        if (address > romSize - 1) {
+            address &= romMask;
+            address = address > romSize - 1 ? address - (romSize) : address;
+        }
+        return rom.get(address) & 0xFF;
+    }
+
+    @Override
+    public long readRomData(int address, Size size) {
+        return Util.readData(rom, size, address);
+    }
+
+    @Override
+    public ByteBuffer getRomBuffer() {
+        return rom;
+    }
+
+    @Override
+    public int getRomSize() {
+        return romSize;
+    }
+
+    @Override
+    public int readRamByte(int address) {
+        if (address < ramSize) {
+            return ram[address];
+        }
+        LOG.error("Invalid RAM read, address : {}", Integer.toHexString(address));
+        return 0;
+    }
+
+    @Override
+    public void writeRamByte(int address, int data) {
+        if (address < ramSize) {
+            ram[address] = data;
+        } else {
+            LOG.error("Invalid RAM write, address : {}, data: {}", Integer.toHexString(address), data);
+        }
+    }
+
+    @Override
+    public void setRomData(int[] data) {
+        setRomData(Util.unsignedToByteArray(data));
+    }
+
+    @Override
+    public void setRomData(byte[] data) {
+        setRomData(ByteBuffer.wrap(data));
+    }
+
+    @Override
+    public void setRomData(ByteBuffer data) {
+        this.rom = data;
+        this.romSize = data.capacity();
+        this.romMask = (long) Math.pow(2, Util.log2(romSize) + 1) - 1;
+    }
+
+    @Override
+    public void setChecksumRomValue(long value) {
+        //a mapped rom is read-only
+        if (rom.isReadOnly()) {
+            ByteBuffer copy = ByteBuffer.allocate(romSize);
+            copy.put(rom.duplicate()).clear();
+            rom = copy;
+        }
+        this.rom.put(MemoryProvider.CHECKSUM_START_ADDRESS, (byte) ((value >> 8) & 0xFF));
+        this.rom.put(MemoryProvider.CHECKSUM_START_ADDRESS + 1, (byte) (value & 0xFF));
+    }
+
+    @Override
+    public int[] getRomData() {
+        throw new UnsupportedOperationException("Byte backed rom, use getRomBuffer or readRomData");
+    }
+
+    @Override
+    public int[] getRamData() {
+        return ram;
+    }
+
+    @Override
+    public void saveContext(ByteBuffer buffer) {
+        for (int i = 0; i < ram.length; i++) {
+            buffer.put((byte) ram[i]);
+        }
+    }
+
+    @Override
+    public void loadContext(ByteBuffer buffer) {
+        for (int i = 0; i < ram.length; i++) {
+            ram[i] = buffer.get() & 0xFF;
+        }
+    }
+}
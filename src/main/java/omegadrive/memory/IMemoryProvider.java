@@ -19,9 +19,26 @@
 
 package omegadrive.memory;
 
+import omegadrive.util.Util;
+
+import java.nio.ByteBuffer;
+
 public interface IMemoryProvider extends IMemoryRam, IMemoryRom {
 
     void setChecksumRomValue(long value);
 
     void setRomData(int[] data);
+
+    default void setRomData(byte[] data) {
+        setRomData(Util.toUnsignedIntArray(data));
+    }
+
+    //the buffer may be a file mapping, the rom is copied unless the provider can keep the buffer
+    default void setRomData(ByteBuffer data) {
+        int[] rom = new int[data.capacity()];
+        for (int i = 0; i < rom.length; i++) {
+            rom[i] = data.get(i) & 0xFF;
+        }
+        setRomData(rom);
+    }
 }
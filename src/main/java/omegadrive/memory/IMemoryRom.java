@@ -19,12 +19,27 @@
 
 package omegadrive.memory;
 
+import omegadrive.util.Size;
+import omegadrive.util.Util;
+
+import java.nio.ByteBuffer;
+
 public interface IMemoryRom {
 
     int readRomByte(int address);
 
     int[] getRomData();
 
+    //big endian, no mirroring
+    default long readRomData(int address, Size size) {
+        return Util.readData(getRomData(), size, address);
+    }
+
+    //null unless the rom is stored one byte per byte, see ByteMemoryProvider
+    default ByteBuffer getRomBuffer() {
+        return null;
+    }
+
     default int getRomSize() {
         return getRomData().length;
     }
@@ -24,7 +24,6 @@ import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 import java.nio.ByteBuffer;
-import java.util.stream.IntStream;
 
 public class MemoryProvider implements IMemoryProvider {
 
@@ -49,8 +48,9 @@ public class MemoryProvider implements IMemoryProvider {
     }
 
 
+    //rom stored one byte per byte, see ByteMemoryProvider
     public static IMemoryProvider createGenesisInstance() {
-        return createInstance(new int[1], M68K_RAM_SIZE);
+        return ByteMemoryProvider.createInstance(M68K_RAM_SIZE);
     }
 
     public static IMemoryProvider createSg1000Instance() {
@@ -110,8 +110,8 @@ public class MemoryProvider implements IMemoryProvider {
 
     @Override
     public void setChecksumRomValue(long value) {
-        this.rom[CHECKSUM_START_ADDRESS] = (byte) ((value >> 8) & 0xFF);
-        this.rom[CHECKSUM_START_ADDRESS + 1] = (byte) (value & 0xFF);
+        this.rom[CHECKSUM_START_ADDRESS] = (int) ((value >> 8) & 0xFF);
+        this.rom[CHECKSUM_START_ADDRESS + 1] = (int) (value & 0xFF);
     }
 
 
@@ -127,11 +127,15 @@ public class MemoryProvider implements IMemoryProvider {
 
     @Override
     public void saveContext(ByteBuffer buffer) {
-        IntStream.range(0, ram.length).forEach(i -> buffer.put((byte) (ram[i] & 0xFF)));
+        for (int i = 0; i < ram.length; i++) {
+            buffer.put((byte) ram[i]);
+        }
     }
 
     @Override
     public void loadContext(ByteBuffer buffer) {
-        IntStream.range(0, ram.length).forEach(i -> ram[i] = buffer.get() & 0xFF);
+        for (int i = 0; i < ram.length; i++) {
+            ram[i] = buffer.get() & 0xFF;
+        }
     }
 }
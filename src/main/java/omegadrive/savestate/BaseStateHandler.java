@@ -67,7 +67,7 @@ public interface BaseStateHandler {
         BaseStateHandler h = BaseStateHandler.EMPTY_STATE;
         switch (systemType) {
             case GENESIS:
-                h = GshStateHandler.createInstance(fileName, type, devices);
+                h = MdChunkedStateHandler.createInstance(fileName, type, devices);
                 break;
             case SMS:
             case GG:
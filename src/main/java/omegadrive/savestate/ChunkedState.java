@@ -0,0 +1,215 @@
+package omegadrive.savestate;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.function.Consumer;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * ChunkedState
+ * <p>
+ * Savestate container: a table of contents followed by the chunks, each chunk is the primitive-encoded
+ * state of a device, optionally deflated.
+ * <p>
+ * "HSS" + format version (1 byte), chunk count (int), then for each chunk:
+ * id (4cc), version (short), flags (short), offset (int), stored length (int), length (int).
+ * <p>
+ * The chunks are written to and read from a single buffer that is reused, a chunk id that is not known
+ * is ignored on load.
+ * <p>
+ * Federico Berti
+ * <p>
+ * Copyright 2021
+ */
+public class ChunkedState {
+
+    private static final Logger LOG = LogManager.getLogger(ChunkedState.class.getSimpleName());
+
+    public static final String MAGIC_WORD = "HSS";
+    public static final int FORMAT_VERSION = 1;
+    public static final int FLAG_DEFLATE = 1;
+
+    static final int HEADER_SIZE = 8, ENTRY_SIZE = 20, MAX_CHUNKS = 32;
+    private static final int DEFAULT_SIZE = 0x80000;
+
+    private final int[] ids = new int[MAX_CHUNKS], versions = new int[MAX_CHUNKS],
+            offsets = new int[MAX_CHUNKS], lengths = new int[MAX_CHUNKS];
+    private int count;
+    private ByteBuffer buffer = ByteBuffer.allocate(DEFAULT_SIZE);
+    private final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+    private final Inflater inflater = new Inflater();
+    private byte[] work = new byte[0];
+
+    public static int id(String fourCC) {
+        byte[] b = fourCC.getBytes(StandardCharsets.US_ASCII);
+        return (b[0] & 0xFF) << 24 | (b[1] & 0xFF) << 16 | (b[2] & 0xFF) << 8 | (b[3] & 0xFF);
+    }
+
+    public static String idToString(int id) {
+        return new String(new byte[]{(byte) (id >> 24), (byte) (id >> 16), (byte) (id >> 8), (byte) id},
+                StandardCharsets.US_ASCII);
+    }
+
+    public static boolean isChunked(ByteBuffer data) {
+        return data.capacity() >= HEADER_SIZE && data.get(0) == 'H' && data.get(1) == 'S' && data.get(2) == 'S';
+    }
+
+    public void clear() {
+        count = 0;
+        buffer.clear();
+    }
+
+    public int getChunkCount() {
+        return count;
+    }
+
+    /**
+     * The saver writes the chunk starting at the buffer position, the buffer grows as needed.
+     */
+    public void putChunk(int id, int version, Consumer<ByteBuffer> saver) {
+        if (count == MAX_CHUNKS) {
+            throw new IllegalStateException("Too many chunks: " + count);
+        }
+        int start = buffer.position();
+        while (true) {
+            try {
+                saver.accept(buffer);
+                break;
+            } catch (BufferOverflowException e) {
+                ByteBuffer b = ByteBuffer.allocate(buffer.capacity() << 1);
+                b.put(buffer.array(), 0, start);
+                buffer = b;
+                LOG.info("Chunk buffer resized to: {} bytes", buffer.capacity());
+            }
+        }
+        ids[count] = id;
+        versions[count] = version;
+        offsets[count] = start;
+        lengths[count] = buffer.position() - start;
+        count++;
+    }
+
+    private int indexOf(int id) {
+        for (int i = 0; i < count; i++) {
+            if (ids[i] == id) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    public boolean hasChunk(int id) {
+        return indexOf(id) >= 0;
+    }
+
+    public int getVersion(int id) {
+        int i = indexOf(id);
+        return i < 0 ? -1 : versions[i];
+    }
+
+    /**
+     * @return a view of the chunk, position 0 and limit the chunk length; null when missing
+     */
+    public ByteBuffer getChunk(int id) {
+        int i = indexOf(id);
+        if (i < 0) {
+            return null;
+        }
+        ByteBuffer b = buffer.duplicate();
+        b.limit(offsets[i] + lengths[i]).position(offsets[i]);
+        return b.slice();
+    }
+
+    /**
+     * @param compress deflates each chunk, a chunk is stored as is when deflating does not help
+     */
+    public byte[] toByteArray(boolean compress) {
+        int tocSize = HEADER_SIZE + count * ENTRY_SIZE;
+        int payload = buffer.position();
+        if (work.length < tocSize + payload) {
+            work = new byte[tocSize + payload];
+        }
+        ByteBuffer out = ByteBuffer.wrap(work);
+        out.put(MAGIC_WORD.getBytes(StandardCharsets.US_ASCII)).put((byte) FORMAT_VERSION).putInt(count);
+        int pos = tocSize;
+        for (int i = 0; i < count; i++) {
+            int stored = compress ? deflate(offsets[i], lengths[i], pos) : -1;
+            boolean deflated = stored > 0 && stored < lengths[i];
+            if (!deflated) {
+                stored = lengths[i];
+                System.arraycopy(buffer.array(), offsets[i], work, pos, stored);
+            }
+            out.putInt(ids[i]).putShort((short) versions[i]).putShort((short) (deflated ? FLAG_DEFLATE : 0));
+            out.putInt(pos).putInt(stored).putInt(lengths[i]);
+            pos += stored;
+        }
+        return Arrays.copyOf(work, pos);
+    }
+
+    //-1 when the output does not fit in the space taken by the raw chunk
+    private int deflate(int offset, int len, int dest) {
+        deflater.reset();
+        deflater.setInput(buffer.array(), offset, len);
+        deflater.finish();
+        int n = deflater.deflate(work, dest, len);
+        return deflater.finished() ? n : -1;
+    }
+
+    /**
+     * Replaces the current content with the chunks in data.
+     *
+     * @return false when the data is not valid, the content is cleared
+     */
+    public boolean load(ByteBuffer data) {
+        clear();
+        if (!isChunked(data)) {
+            return false;
+        }
+        int version = data.get(3);
+        int n = data.getInt(4);
+        if (version > FORMAT_VERSION || n < 0 || n > MAX_CHUNKS || HEADER_SIZE + n * ENTRY_SIZE > data.capacity()) {
+            LOG.error("Unsupported savestate, version: {}, chunks: {}", version, n);
+            return false;
+        }
+        try {
+            for (int i = 0; i < n; i++) {
+                int e = HEADER_SIZE + i * ENTRY_SIZE;
+                int id = data.getInt(e), chunkVersion = data.getShort(e + 4), flags = data.getShort(e + 6);
+                int offset = data.getInt(e + 8), stored = data.getInt(e + 12), len = data.getInt(e + 16);
+                if (buffer.capacity() - buffer.position() < len) {
+                    ByteBuffer b = ByteBuffer.allocate(Math.max(buffer.capacity() << 1, buffer.position() + len));
+                    b.put(buffer.array(), 0, buffer.position());
+                    buffer = b;
+                }
+                int start = buffer.position();
+                if ((flags & FLAG_DEFLATE) > 0) {
+                    inflater.reset();
+                    inflater.setInput(data.array(), data.arrayOffset() + offset, stored);
+                    if (inflater.inflate(buffer.array(), start, len) != len) {
+                        throw new DataFormatException("Chunk " + idToString(id) + " is truncated");
+                    }
+                } else {
+                    System.arraycopy(data.array(), data.arrayOffset() + offset, buffer.array(), start, len);
+                }
+                buffer.position(start + len);
+                ids[count] = id;
+                versions[count] = chunkVersion;
+                offsets[count] = start;
+                lengths[count] = len;
+                count++;
+            }
+        } catch (DataFormatException | RuntimeException e) {
+            LOG.error("Unable to read the savestate chunks: {}", e.getMessage());
+            clear();
+            return false;
+        }
+        return true;
+    }
+}
@@ -21,13 +21,14 @@ package omegadrive.savestate;
 
 import com.google.common.primitives.Bytes;
 import omegadrive.Device;
-import omegadrive.bus.md.SvpMapper;
 import omegadrive.bus.model.GenesisBusProvider;
+import omegadrive.bus.model.SvpBus;
 import omegadrive.cpu.ssp16.Ssp16;
 import omegadrive.cpu.ssp16.Ssp16Types;
 import omegadrive.cpu.z80.Z80Provider;
 import omegadrive.sound.fm.FmProvider;
 import omegadrive.sound.fm.ym2612.nukeykt.Ym2612Nuke;
+import omegadrive.sound.fm.ym2612.nukeykt.Ym2612NukeAsync;
 import omegadrive.util.Util;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -102,18 +103,22 @@ public class GshStateHandler extends GstStateHandler {
             Ym2612Nuke nukeFm = (Ym2612Nuke) fm;
             Optional<Serializable> res = StateUtil.loadSerializedData(FM_MAGIC_WORD_NUKE, fmNukeStart, ba);
             res.ifPresent(ser -> nukeFm.setState((Ym2612Nuke.Ym3438Context) ser));
+        } else if (fmNukeStart > -1 && fm instanceof Ym2612NukeAsync) {
+            Ym2612NukeAsync nukeFm = (Ym2612NukeAsync) fm;
+            Optional<Serializable> res = StateUtil.loadSerializedData(FM_MAGIC_WORD_NUKE, fmNukeStart, ba);
+            res.ifPresent(ser -> nukeFm.setState((Ym2612Nuke.Ym3438Context) ser));
         } else {
             //loading a gs0, ie. registers only
             super.loadFmState(fm); //load FM registers
         }
     }
 
-    public void loadSvpState(Ssp16 ssp16) {
+    public void loadSvpState(SvpBus svp) {
         byte[] ba = buffer.array();
         int svpStart = Bytes.indexOf(ba, SVP_MAGIC_WORD.getBytes());
-        if (svpStart > -1 && ssp16 != Ssp16.NO_SVP) {
+        if (svpStart > -1 && svp.getSsp16() != Ssp16.NO_SVP) {
             Optional<Serializable> res = StateUtil.loadSerializedData(SVP_MAGIC_WORD, svpStart, ba);
-            res.ifPresent(ser -> SvpMapper.setSvpContext((Ssp16Types.Svp_t) ser));
+            res.ifPresent(ser -> svp.setSvpContext((Ssp16Types.Svp_t) ser));
         }
     }
 
@@ -123,6 +128,9 @@ public class GshStateHandler extends GstStateHandler {
         if (fm instanceof Ym2612Nuke) {
             Ym2612Nuke.Ym3438Context chip = ((Ym2612Nuke) fm).getState();
             buffer = StateUtil.storeSerializedData(FM_MAGIC_WORD_NUKE, chip, buffer);
+        } else if (fm instanceof Ym2612NukeAsync) {
+            Ym2612Nuke.Ym3438Context chip = ((Ym2612NukeAsync) fm).getState();
+            buffer = StateUtil.storeSerializedData(FM_MAGIC_WORD_NUKE, chip, buffer);
         }
     }
 
@@ -136,7 +144,7 @@ public class GshStateHandler extends GstStateHandler {
     public void saveZ80(Z80Provider z80, GenesisBusProvider bus) {
         super.saveZ80(z80, bus);
         saveMapper(bus);
-        saveSvp(SvpMapper.ssp16);
+        saveSvp(bus.getSvpMapper().getSsp16());
     }
 
     private void saveMapper(GenesisBusProvider bus) {
@@ -150,7 +158,7 @@ public class GshStateHandler extends GstStateHandler {
     public void loadZ80(Z80Provider z80, GenesisBusProvider bus) {
         super.loadZ80(z80, bus);
         loadMapper(bus);
-        loadSvpState(SvpMapper.ssp16);
+        loadSvpState(bus.getSvpMapper());
     }
 
     private void loadMapper(GenesisBusProvider bus) {
@@ -141,23 +141,35 @@ public class GstStateHandler implements BaseStateHandler {
     }
 
     public void loadFmState(FmProvider fm) {
-        int reg;
-        int limit = FM_DATA_SIZE / 2;
         buffer.position(FM_REG_OFFSET);
-        for (reg = 0; reg < limit; reg++) {
+        loadFmRegisters(fm, buffer, FM_REG_OFFSET);
+    }
+
+    //FM_DATA_SIZE bytes: part I registers, then part II
+    static void loadFmRegisters(FmProvider fm, ByteBuffer buffer, int offset) {
+        int limit = FM_DATA_SIZE / 2;
+        for (int reg = 0; reg < limit; reg++) {
             fm.write(MdFmProvider.FM_ADDRESS_PORT0, reg & 0xFF);
-            fm.write(MdFmProvider.FM_DATA_PORT0, buffer.get(FM_REG_OFFSET + reg) & 0xFF);
+            fm.write(MdFmProvider.FM_DATA_PORT0, buffer.get(offset + reg) & 0xFF);
             do {
                 fm.tick();
             } while ((fm.read() & 0x40) > 0); //while busy
             fm.write(MdFmProvider.FM_ADDRESS_PORT1, reg & 0xFF);
-            fm.write(MdFmProvider.FM_DATA_PORT1, buffer.get(FM_REG_OFFSET + limit + reg) & 0xFF);
+            fm.write(MdFmProvider.FM_DATA_PORT1, buffer.get(offset + limit + reg) & 0xFF);
             do {
                 fm.tick();
             } while ((fm.read() & 0x40) > 0); //while busy
         }
     }
 
+    static void saveFmRegisters(FmProvider fm, ByteBuffer buffer, int offset) {
+        int limit = FM_DATA_SIZE / 2;
+        for (int i = 0; i < limit; i++) {
+            buffer.put(offset + i, (byte) fm.readRegister(0, i));
+            buffer.put(offset + i + limit, (byte) fm.readRegister(1, i));
+        }
+    }
+
     protected void loadVdpState(BaseVdpProvider vdp) {
         IntStream.range(0, GenesisVdpProvider.VDP_REGISTERS_SIZE).forEach(
                 i -> vdp.updateRegisterData(i, buffer.get(i + VDP_REG_OFFSET) & 0xFF));
@@ -236,11 +248,7 @@ public class GstStateHandler implements BaseStateHandler {
     }
 
     protected void saveFm(FmProvider fm) {
-        int limit = FM_DATA_SIZE / 2;
-        for (int i = 0; i < limit; i++) {
-            buffer.put(FM_REG_OFFSET + i, (byte) fm.readRegister(0, i));
-            buffer.put(FM_REG_OFFSET + i + limit, (byte) fm.readRegister(1, i));
-        }
+        saveFmRegisters(fm, buffer, FM_REG_OFFSET);
     }
 
     protected void saveVdp(BaseVdpProvider vdp) {
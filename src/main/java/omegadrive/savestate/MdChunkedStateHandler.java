@@ -0,0 +1,301 @@
+package omegadrive.savestate;
+
+import com.google.common.collect.ImmutableSet;
+import omegadrive.Device;
+import omegadrive.bus.model.GenesisBusProvider;
+import omegadrive.bus.model.SvpBus;
+import omegadrive.cpu.m68k.MC68000Wrapper;
+import omegadrive.cpu.ssp16.Ssp16;
+import omegadrive.cpu.ssp16.Ssp16Types;
+import omegadrive.cpu.z80.Z80Provider;
+import omegadrive.joypad.JoypadProvider;
+import omegadrive.memory.IMemoryProvider;
+import omegadrive.sound.SoundProvider;
+import omegadrive.sound.fm.FmProvider;
+import omegadrive.sound.fm.ym2612.Ym2612Fast;
+import omegadrive.sound.fm.ym2612.nukeykt.Ym2612Nuke;
+import omegadrive.sound.fm.ym2612.nukeykt.Ym2612NukeAsync;
+import omegadrive.sound.vgm.VgmLogger;
+import omegadrive.util.FileLoader;
+import omegadrive.util.Util;
+import omegadrive.vdp.model.GenesisVdpProvider;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import z80core.Z80State;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
+
+import static omegadrive.savestate.ChunkedState.id;
+
+/**
+ * MdChunkedStateHandler
+ * <p>
+ * Genesis savestates in the {@link ChunkedState} format, one chunk per device: each device writes its
+ * full context (see {@link Device#saveContext(ByteBuffer)}), no Java serialization.
+ * A missing or unknown chunk is skipped; the FM chunk only loads on the same FM core, the FM registers
+ * are used otherwise.
+ * The files have their own extension (.hgs), other tools can't read them: GST/GSH files (.gs*) are still
+ * loaded and saved by {@link GshStateHandler}, helios.md.savestate.gst=true saves GSH by default.
+ * <p>
+ * Federico Berti
+ * <p>
+ * Copyright 2021
+ */
+public class MdChunkedStateHandler implements BaseStateHandler {
+
+    private static final Logger LOG = LogManager.getLogger(MdChunkedStateHandler.class.getSimpleName());
+
+    public static final boolean SAVE_GST = Boolean.parseBoolean(System.getProperty("helios.md.savestate.gst", "false"));
+    public static final boolean COMPRESS = Boolean.parseBoolean(System.getProperty("helios.savestate.compress", "true"));
+    public static final String EXTENSION = ".hgs";
+
+    static final int M68K = id("M68K"), RAM = id("RAM "), Z80 = id("Z80 "), BUS = id("BUS "), VDP = id("VDP "),
+            FM = id("FM  "), FM_REGS = id("FMRG"), PSG = id("PSG "), JOYPAD = id("JOYP"), SVP = id("SVP "),
+            SRAM = id("SRAM");
+    //bump when the context of a device changes, older chunks are then skipped
+    static final int CHUNK_VERSION = 1;
+
+    private static final Set<Class<? extends Device>> deviceClassSet = ImmutableSet.of(MC68000Wrapper.class,
+            IMemoryProvider.class, Z80Provider.class, GenesisBusProvider.class, GenesisVdpProvider.class,
+            SoundProvider.class, JoypadProvider.class);
+
+    private static final ObjectStateCodec z80StateCodec = ObjectStateCodec.of(Z80State.class);
+    private static final ObjectStateCodec svpCodec = ObjectStateCodec.of(Ssp16Types.Svp_t.class,
+            "ssp1601.mem.bank", "ssp1601.ptr.bank", "ssp1601.gr");
+    //savestates are processed on the emulation thread, one at a time
+    private static final ChunkedState chunks = new ChunkedState();
+
+    private final Type type;
+    private final String fileName;
+    private ByteBuffer buffer;
+    private List<Device> deviceList;
+
+    private MdChunkedStateHandler(String fileName, Type type) {
+        this.fileName = fileName;
+        this.type = type;
+    }
+
+    /**
+     * A .gs* file is saved as GSH, loaded as GSH unless the content is chunked.
+     */
+    public static BaseStateHandler createInstance(String fileName, Type type, Set<Device> deviceSet) {
+        String name = handleFileExtension(fileName, type);
+        boolean gst = name.toLowerCase().contains(GstStateHandler.extension);
+        ByteBuffer data = null;
+        if (type == Type.LOAD) {
+            data = StateUtil.loadStateFile(name, EXTENSION, GstStateHandler.extension);
+            if (!ChunkedState.isChunked(data)) {
+                return GshStateHandler.createInstance(name, type, deviceSet);
+            }
+        } else if (gst) {
+            return GshStateHandler.createInstance(name, type, deviceSet);
+        }
+        MdChunkedStateHandler h = new MdChunkedStateHandler(name, type);
+        h.buffer = data;
+        h.deviceList = StateUtil.getDeviceOrderList(deviceClassSet, deviceSet);
+        return h;
+    }
+
+    //no extension: .hgs, or .gsh when saving GSH or when loading and only the .gsh file exists, ie. quick save
+    static String handleFileExtension(String fileName, Type type) {
+        String lc = fileName.toLowerCase();
+        if (lc.contains(EXTENSION) || lc.contains(GstStateHandler.extension)) {
+            return fileName;
+        }
+        String name = fileName + EXTENSION;
+        boolean gst = type == Type.LOAD ? !Files.exists(Paths.get(name)) : SAVE_GST;
+        return gst ? GshStateHandler.handleFileExtension(fileName) : name;
+    }
+
+    @Override
+    public Type getType() {
+        return type;
+    }
+
+    @Override
+    public String getFileName() {
+        return fileName;
+    }
+
+    @Override
+    public ByteBuffer getDataBuffer() {
+        return buffer;
+    }
+
+    @Override
+    public void processState() {
+        synchronized (chunks) {
+            long start = System.nanoTime();
+            boolean ok = type == Type.LOAD ? load() : save();
+            if (ok) {
+                LOG.info("Savestate {}: {}, chunks: {}, size: {} bytes, {} ms", type == Type.LOAD ? "loaded" :
+                                "saved", fileName, chunks.getChunkCount(), buffer.capacity(),
+                        String.format("%.2f", (System.nanoTime() - start) / 1e6));
+            }
+        }
+    }
+
+    @Override
+    public void storeData() {
+        long start = System.nanoTime();
+        FileLoader.writeFileSafe(Paths.get(fileName), getData());
+        LOG.info("Savestate written to: {}, {} ms", fileName, String.format("%.2f", (System.nanoTime() - start) / 1e6));
+    }
+
+    private boolean save() {
+        MC68000Wrapper cpu = StateUtil.getInstanceOrThrow(deviceList, MC68000Wrapper.class);
+        IMemoryProvider mem = StateUtil.getInstanceOrThrow(deviceList, IMemoryProvider.class);
+        Z80Provider z80 = StateUtil.getInstanceOrThrow(deviceList, Z80Provider.class);
+        GenesisBusProvider bus = StateUtil.getInstanceOrThrow(deviceList, GenesisBusProvider.class);
+        GenesisVdpProvider vdp = StateUtil.getInstanceOrThrow(deviceList, GenesisVdpProvider.class);
+        SoundProvider sound = StateUtil.getInstanceOrThrow(deviceList, SoundProvider.class);
+        FmProvider fm = sound.getFm();
+        chunks.clear();
+        put(M68K, cpu::saveContext);
+        put(RAM, mem::saveContext);
+        put(Z80, b -> {
+            z80StateCodec.save(b, z80.getZ80State());
+            z80.getZ80BusProvider().saveContext(b);
+        });
+        put(BUS, bus::saveContext);
+        put(VDP, vdp::saveContext);
+        put(FM, b -> {
+            byte[] core = getFmCore(fm).getBytes(StandardCharsets.US_ASCII);
+            b.put((byte) core.length).put(core);
+            fm.saveContext(b);
+        });
+        put(FM_REGS, b -> {
+            GstStateHandler.saveFmRegisters(fm, b, b.position());
+            b.position(b.position() + GstStateHandler.FM_DATA_SIZE);
+        });
+        put(PSG, sound.getPsg()::saveContext);
+        Util.getDeviceIfAny(deviceList, JoypadProvider.class).ifPresent(j -> put(JOYPAD, j::saveContext));
+        Ssp16 ssp16 = bus.getSvpMapper().getSsp16();
+        if (ssp16 != Ssp16.NO_SVP) {
+            put(SVP, b -> {
+                Ssp16Types.Svp_t ctx = ssp16.getSvpContext();
+                svpCodec.save(b, ctx);
+                for (int i = 0; i < Ssp16.IRAM_SIZE_WORDS; i++) {
+                    b.putShort((short) ctx.iram_rom[i]);
+                }
+            });
+        }
+        ByteBuffer sram = bus.getSram();
+        if (sram.capacity() > 0) {
+            put(SRAM, b -> b.putInt(sram.capacity()).put(sram));
+        }
+        buffer = ByteBuffer.wrap(chunks.toByteArray(COMPRESS));
+        return true;
+    }
+
+    private boolean load() {
+        if (!chunks.load(buffer)) {
+            LOG.error("Unable to load savestate: {}", fileName);
+            return false;
+        }
+        MC68000Wrapper cpu = StateUtil.getInstanceOrThrow(deviceList, MC68000Wrapper.class);
+        IMemoryProvider mem = StateUtil.getInstanceOrThrow(deviceList, IMemoryProvider.class);
+        Z80Provider z80 = StateUtil.getInstanceOrThrow(deviceList, Z80Provider.class);
+        GenesisBusProvider bus = StateUtil.getInstanceOrThrow(deviceList, GenesisBusProvider.class);
+        GenesisVdpProvider vdp = StateUtil.getInstanceOrThrow(deviceList, GenesisVdpProvider.class);
+        SoundProvider sound = StateUtil.getInstanceOrThrow(deviceList, SoundProvider.class);
+        FmProvider fm = sound.getFm();
+        get(M68K, cpu::loadContext);
+        get(RAM, mem::loadContext);
+        get(Z80, b -> {
+            Z80State state = new Z80State();
+            z80StateCodec.load(b, state);
+            z80.loadZ80State(state);
+            z80.getZ80BusProvider().loadContext(b);
+        });
+        get(BUS, bus::loadContext);
+        get(VDP, vdp::loadContext);
+        ByteBuffer fmChunk = getChunk(FM);
+        String core = fmChunk == null ? "" : readString(fmChunk);
+        if (core.equals(getFmCore(fm))) {
+            apply(FM, fmChunk, fm::loadContext);
+        } else {
+            LOG.info("FM core: {}, current: {}, loading the FM registers", core, getFmCore(fm));
+            get(FM_REGS, b -> {
+                GstStateHandler.loadFmRegisters(fm, b, 0);
+                b.position(GstStateHandler.FM_DATA_SIZE);
+            });
+        }
+        get(PSG, sound.getPsg()::loadContext);
+        Util.getDeviceIfAny(deviceList, JoypadProvider.class).ifPresent(j -> get(JOYPAD, j::loadContext));
+        SvpBus svp = bus.getSvpMapper();
+        if (svp.getSsp16() != Ssp16.NO_SVP) {
+            get(SVP, b -> {
+                Ssp16Types.Svp_t ctx = svp.getSsp16().getSvpContext();
+                svpCodec.load(b, ctx);
+                for (int i = 0; i < Ssp16.IRAM_SIZE_WORDS; i++) {
+                    ctx.iram_rom[i] = b.getShort() & 0xFFFF;
+                }
+                svp.setSvpContext(ctx);
+            });
+        }
+        get(SRAM, b -> {
+            ByteBuffer sram = bus.getSram();
+            int len = b.getInt();
+            if (len != sram.capacity()) {
+                LOG.warn("Sram size mismatch, expected {}, actual {}, ignoring", sram.capacity(), len);
+                b.position(b.limit());
+                return;
+            }
+            sram.put(b);
+        });
+        return true;
+    }
+
+    private static void put(int id, Consumer<ByteBuffer> saver) {
+        chunks.putChunk(id, CHUNK_VERSION, saver);
+    }
+
+    private static ByteBuffer getChunk(int id) {
+        if (!chunks.hasChunk(id)) {
+            LOG.warn("Missing chunk: {}", ChunkedState.idToString(id));
+            return null;
+        }
+        if (chunks.getVersion(id) != CHUNK_VERSION) {
+            LOG.warn("Skipping chunk: {}, version: {}", ChunkedState.idToString(id), chunks.getVersion(id));
+            return null;
+        }
+        return chunks.getChunk(id);
+    }
+
+    private static void get(int id, Consumer<ByteBuffer> loader) {
+        apply(id, getChunk(id), loader);
+    }
+
+    private static void apply(int id, ByteBuffer chunk, Consumer<ByteBuffer> loader) {
+        if (chunk == null) {
+            return;
+        }
+        loader.accept(chunk);
+        if (chunk.hasRemaining()) {
+            LOG.error("Chunk {} size mismatch, expected {}, actual {}", ChunkedState.idToString(id),
+                    chunk.limit(), chunk.position());
+        }
+    }
+
+    private static String readString(ByteBuffer b) {
+        byte[] s = new byte[b.get()];
+        b.get(s);
+        return new String(s, StandardCharsets.US_ASCII);
+    }
+
+    //the async wrapper shares the context of the chip, the vgm logger forwards to it
+    static String getFmCore(FmProvider fm) {
+        fm = VgmLogger.unwrap(fm);
+        if (fm instanceof Ym2612Nuke || fm instanceof Ym2612NukeAsync) {
+            return "nuke";
+        }
+        return fm instanceof Ym2612Fast ? "fast" : fm.getClass().getSimpleName();
+    }
+}
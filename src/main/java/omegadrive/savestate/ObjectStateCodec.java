@@ -0,0 +1,315 @@
+package omegadrive.savestate;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * ObjectStateCodec
+ * <p>
+ * Copies the primitive, enum and primitive array fields of an object (superclasses included)
+ * to and from a ByteBuffer, the layout is only stable within a run: in-memory snapshots only.
+ * Skipped: static and transient fields, final primitives, object references unless listed as nested.
+ * Nested fields are objects (or arrays of objects) that are copied field by field, a dotted name
+ * reaches into a nested object, ie. "dmaHandler.pendingReadEntry".
+ * Arrays are copied into the existing instance when the length matches, no allocation happens
+ * after the first save.
+ * <p>
+ * Federico Berti
+ * <p>
+ * Copyright 2021
+ */
+public class ObjectStateCodec {
+
+    private static final int INT = 0, LONG = 1, BOOLEAN = 2, DOUBLE = 3, BYTE = 4, SHORT = 5, ENUM = 6,
+            INT_ARRAY = 7, LONG_ARRAY = 8, BOOLEAN_ARRAY = 9, BYTE_ARRAY = 10, INT_2D_ARRAY = 11,
+            NESTED = 12, NESTED_ARRAY = 13, SHORT_ARRAY = 14;
+
+    private final Field[] fields;
+    private final int[] kinds;
+    private final Object[][] enumValues;
+    private final String[][] nestedSpecs;
+    //created on first use, the runtime class of a nested field is only known then
+    private final ObjectStateCodec[] nestedCodecs;
+
+    private ObjectStateCodec(List<Field> list, Map<String, List<String>> nested) {
+        fields = list.toArray(new Field[0]);
+        kinds = new int[fields.length];
+        enumValues = new Object[fields.length][];
+        nestedSpecs = new String[fields.length][];
+        nestedCodecs = new ObjectStateCodec[fields.length];
+        for (int i = 0; i < fields.length; i++) {
+            Class<?> t = fields[i].getType();
+            if (nested.containsKey(fields[i].getName())) {
+                kinds[i] = t.isArray() ? NESTED_ARRAY : NESTED;
+                nestedSpecs[i] = nested.get(fields[i].getName()).toArray(new String[0]);
+                continue;
+            }
+            kinds[i] = getKind(t);
+            if (kinds[i] == ENUM) {
+                enumValues[i] = t.getEnumConstants();
+            }
+        }
+    }
+
+    public static ObjectStateCodec of(Class<?> clazz, String... nestedFields) {
+        Map<String, List<String>> nested = new HashMap<>();
+        for (String name : nestedFields) {
+            int idx = name.indexOf('.');
+            String head = idx < 0 ? name : name.substring(0, idx);
+            List<String> sub = nested.computeIfAbsent(head, k -> new ArrayList<>());
+            if (idx > 0) {
+                sub.add(name.substring(idx + 1));
+            }
+        }
+        List<Field> list = new ArrayList<>();
+        for (Class<?> c = clazz; c != null && c != Object.class; c = c.getSuperclass()) {
+            for (Field f : c.getDeclaredFields()) {
+                int mod = f.getModifiers();
+                boolean skip = Modifier.isStatic(mod) || Modifier.isTransient(mod) || f.isSynthetic() ||
+                        (Modifier.isFinal(mod) && f.getType().isPrimitive()) ||
+                        (getKind(f.getType()) < 0 && !nested.containsKey(f.getName()));
+                if (!skip) {
+                    f.setAccessible(true);
+                    list.add(f);
+                }
+            }
+        }
+        return new ObjectStateCodec(list, nested);
+    }
+
+    private static int getKind(Class<?> t) {
+        if (t == int.class) return INT;
+        if (t == long.class) return LONG;
+        if (t == boolean.class) return BOOLEAN;
+        if (t == double.class) return DOUBLE;
+        if (t == byte.class) return BYTE;
+        if (t == short.class) return SHORT;
+        if (t.isEnum()) return ENUM;
+        if (t == int[].class) return INT_ARRAY;
+        if (t == long[].class) return LONG_ARRAY;
+        if (t == boolean[].class) return BOOLEAN_ARRAY;
+        if (t == byte[].class) return BYTE_ARRAY;
+        if (t == int[][].class) return INT_2D_ARRAY;
+        if (t == short[].class) return SHORT_ARRAY;
+        return -1;
+    }
+
+    public void save(ByteBuffer buffer, Object o) {
+        try {
+            for (int i = 0; i < fields.length; i++) {
+                Field f = fields[i];
+                switch (kinds[i]) {
+                    case INT:
+                        buffer.putInt(f.getInt(o));
+                        break;
+                    case LONG:
+                        buffer.putLong(f.getLong(o));
+                        break;
+                    case BOOLEAN:
+                        buffer.put((byte) (f.getBoolean(o) ? 1 : 0));
+                        break;
+                    case DOUBLE:
+                        buffer.putDouble(f.getDouble(o));
+                        break;
+                    case BYTE:
+                        buffer.put(f.getByte(o));
+                        break;
+                    case SHORT:
+                        buffer.putShort(f.getShort(o));
+                        break;
+                    case ENUM:
+                        Enum<?> e = (Enum<?>) f.get(o);
+                        buffer.putInt(e == null ? -1 : e.ordinal());
+                        break;
+                    case INT_ARRAY:
+                        saveArray(buffer, (int[]) f.get(o));
+                        break;
+                    case LONG_ARRAY:
+                        long[] la = (long[]) f.get(o);
+                        buffer.putInt(la == null ? -1 : la.length);
+                        for (int j = 0; la != null && j < la.length; j++) {
+                            buffer.putLong(la[j]);
+                        }
+                        break;
+                    case BOOLEAN_ARRAY:
+                        boolean[] ba = (boolean[]) f.get(o);
+                        buffer.putInt(ba == null ? -1 : ba.length);
+                        for (int j = 0; ba != null && j < ba.length; j++) {
+                            buffer.put((byte) (ba[j] ? 1 : 0));
+                        }
+                        break;
+                    case BYTE_ARRAY:
+                        byte[] bya = (byte[]) f.get(o);
+                        buffer.putInt(bya == null ? -1 : bya.length);
+                        if (bya != null) {
+                            buffer.put(bya);
+                        }
+                        break;
+                    case SHORT_ARRAY:
+                        short[] sa = (short[]) f.get(o);
+                        buffer.putInt(sa == null ? -1 : sa.length);
+                        for (int j = 0; sa != null && j < sa.length; j++) {
+                            buffer.putShort(sa[j]);
+                        }
+                        break;
+                    case INT_2D_ARRAY:
+                        int[][] a2 = (int[][]) f.get(o);
+                        buffer.putInt(a2 == null ? -1 : a2.length);
+                        for (int j = 0; a2 != null && j < a2.length; j++) {
+                            saveArray(buffer, a2[j]);
+                        }
+                        break;
+                    case NESTED:
+                        Object n = f.get(o);
+                        getNestedCodec(i, n).save(buffer, n);
+                        break;
+                    case NESTED_ARRAY:
+                        Object[] na = (Object[]) f.get(o);
+                        for (int j = 0; j < na.length; j++) {
+                            getNestedCodec(i, na[j]).save(buffer, na[j]);
+                        }
+                        break;
+                }
+            }
+        } catch (IllegalAccessException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    public void load(ByteBuffer buffer, Object o) {
+        try {
+            for (int i = 0; i < fields.length; i++) {
+                Field f = fields[i];
+                switch (kinds[i]) {
+                    case INT:
+                        f.setInt(o, buffer.getInt());
+                        break;
+                    case LONG:
+                        f.setLong(o, buffer.getLong());
+                        break;
+                    case BOOLEAN:
+                        f.setBoolean(o, buffer.get() > 0);
+                        break;
+                    case DOUBLE:
+                        f.setDouble(o, buffer.getDouble());
+                        break;
+                    case BYTE:
+                        f.setByte(o, buffer.get());
+                        break;
+                    case SHORT:
+                        f.setShort(o, buffer.getShort());
+                        break;
+                    case ENUM:
+                        int ordinal = buffer.getInt();
+                        f.set(o, ordinal < 0 ? null : enumValues[i][ordinal]);
+                        break;
+                    case INT_ARRAY:
+                        int[] ia = (int[]) f.get(o);
+                        int[] ia2 = loadArray(buffer, ia);
+                        if (ia2 != ia) {
+                            f.set(o, ia2);
+                        }
+                        break;
+                    case LONG_ARRAY:
+                        long[] la = (long[]) f.get(o);
+                        int len = buffer.getInt();
+                        if (la == null || la.length != len) {
+                            la = len < 0 ? null : new long[len];
+                            f.set(o, la);
+                        }
+                        for (int j = 0; j < len; j++) {
+                            la[j] = buffer.getLong();
+                        }
+                        break;
+                    case BOOLEAN_ARRAY:
+                        boolean[] ba = (boolean[]) f.get(o);
+                        len = buffer.getInt();
+                        if (ba == null || ba.length != len) {
+                            ba = len < 0 ? null : new boolean[len];
+                            f.set(o, ba);
+                        }
+                        for (int j = 0; j < len; j++) {
+                            ba[j] = buffer.get() > 0;
+                        }
+                        break;
+                    case BYTE_ARRAY:
+                        byte[] bya = (byte[]) f.get(o);
+                        len = buffer.getInt();
+                        if (bya == null || bya.length != len) {
+                            bya = len < 0 ? null : new byte[len];
+                            f.set(o, bya);
+                        }
+                        if (bya != null) {
+                            buffer.get(bya);
+                        }
+                        break;
+                    case SHORT_ARRAY:
+                        short[] sa = (short[]) f.get(o);
+                        len = buffer.getInt();
+                        if (sa == null || sa.length != len) {
+                            sa = len < 0 ? null : new short[len];
+                            f.set(o, sa);
+                        }
+                        for (int j = 0; j < len; j++) {
+                            sa[j] = buffer.getShort();
+                        }
+                        break;
+                    case INT_2D_ARRAY:
+                        int[][] a2 = (int[][]) f.get(o);
+                        len = buffer.getInt();
+                        if (a2 == null || a2.length != len) {
+                            a2 = len < 0 ? null : new int[len][];
+                            f.set(o, a2);
+                        }
+                        for (int j = 0; j < len; j++) {
+                            a2[j] = loadArray(buffer, a2[j]);
+                        }
+                        break;
+                    case NESTED:
+                        Object n = f.get(o);
+                        getNestedCodec(i, n).load(buffer, n);
+                        break;
+                    case NESTED_ARRAY:
+                        Object[] na = (Object[]) f.get(o);
+                        for (int j = 0; j < na.length; j++) {
+                            getNestedCodec(i, na[j]).load(buffer, na[j]);
+                        }
+                        break;
+                }
+            }
+        } catch (IllegalAccessException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    //nested objects are never replaced, all the elements of an array share the same class
+    private ObjectStateCodec getNestedCodec(int i, Object n) {
+        if (nestedCodecs[i] == null) {
+            nestedCodecs[i] = of(n.getClass(), nestedSpecs[i]);
+        }
+        return nestedCodecs[i];
+    }
+
+    private static void saveArray(ByteBuffer buffer, int[] a) {
+        buffer.putInt(a == null ? -1 : a.length);
+        for (int j = 0; a != null && j < a.length; j++) {
+            buffer.putInt(a[j]);
+        }
+    }
+
+    private static int[] loadArray(ByteBuffer buffer, int[] a) {
+        int len = buffer.getInt();
+        if (a == null || a.length != len) {
+            a = len < 0 ? null : new int[len];
+        }
+        for (int j = 0; j < len; j++) {
+            a[j] = buffer.getInt();
+        }
+        return a;
+    }
+}
@@ -0,0 +1,255 @@
+package omegadrive.savestate;
+
+import omegadrive.util.PriorityThreadFactory;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.concurrent.*;
+
+/**
+ * RewindBuffer
+ * <p>
+ * History of machine states, one every {@code intervalFrames} frames, bounded by a number of
+ * entries and by a memory budget; the oldest states are dropped first, one keyframe at a time.
+ * A keyframe holds a full state, the following entries only hold the difference with it:
+ * XOR against the keyframe then RLE of the zero runs.
+ * The emulation thread only copies the snapshot to a pooled array, the encoding happens
+ * on a separate thread; the entries are only ever touched by that thread.
+ * <p>
+ * Federico Berti
+ * <p>
+ * Copyright 2021
+ */
+public class RewindBuffer {
+
+    private static final Logger LOG = LogManager.getLogger(RewindBuffer.class.getSimpleName());
+
+    public static final int KEYFRAME_EVERY = 30;
+    //frames to wait before capturing again after a rewind
+    public static final int RESUME_AFTER_REWIND_FRAMES = 30;
+    private static final int POOL_SIZE = 4;
+    private static final int MIN_ZERO_RUN = 4;
+
+    static class Entry {
+        byte[] data;
+        Entry keyFrame; //null for a keyframe
+        int stateSize;
+    }
+
+    private final StateSnapshot snapshot;
+    private final int intervalFrames, maxEntries;
+    private final long maxBytes;
+    private final Deque<Entry> entries = new ArrayDeque<>();
+    private final BlockingQueue<byte[]> pool = new ArrayBlockingQueue<>(POOL_SIZE);
+    private final ExecutorService executorService;
+
+    //encoding thread
+    private Entry keyFrame;
+    private byte[] keyFrameData = new byte[0];
+    private byte[] encodeBuffer = new byte[0];
+    private int sinceKeyFrame;
+    private byte[] restoreData = new byte[0];
+
+    private volatile long memoryBytes;
+    private int frameCounter, droppedCaptures;
+
+    public RewindBuffer(StateSnapshot snapshot, int maxEntries, int intervalFrames, long maxBytes) {
+        this.snapshot = snapshot;
+        this.maxEntries = Math.max(1, maxEntries);
+        this.intervalFrames = Math.max(1, intervalFrames);
+        this.maxBytes = maxBytes;
+        for (int i = 0; i < POOL_SIZE; i++) {
+            pool.offer(new byte[0]);
+        }
+        executorService = Executors.newSingleThreadExecutor(
+                new PriorityThreadFactory(Thread.MIN_PRIORITY, RewindBuffer.class.getSimpleName()));
+    }
+
+    //emulation thread, once per frame
+    public void newFrame() {
+        if (++frameCounter >= intervalFrames) {
+            frameCounter = 0;
+            capture();
+        }
+    }
+
+    //emulation thread
+    public void capture() {
+        byte[] raw = pool.poll();
+        if (raw == null) {
+            //the encoder is behind, skip this one
+            droppedCaptures++;
+            return;
+        }
+        snapshot.save();
+        if (raw.length < snapshot.getSize()) {
+            raw = new byte[snapshot.getSize()];
+        }
+        final byte[] data = raw;
+        final int size = snapshot.getData(data);
+        executorService.submit(() -> addEntry(data, size));
+    }
+
+    /**
+     * Emulation thread, goes back to the latest entry and removes it.
+     *
+     * @return false when the history is empty
+     */
+    public boolean rewind() {
+        try {
+            Integer size = executorService.submit(this::popEntry).get();
+            if (size > 0) {
+                snapshot.load(restoreData, size);
+                frameCounter = -RESUME_AFTER_REWIND_FRAMES;
+                return true;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            LOG.error("Unable to rewind", e);
+        }
+        return false;
+    }
+
+    public long getMemoryBytes() {
+        return memoryBytes;
+    }
+
+    public int getDroppedCaptures() {
+        return droppedCaptures;
+    }
+
+    public void close() {
+        executorService.shutdownNow();
+    }
+
+    private void addEntry(byte[] raw, int size) {
+        try {
+            Entry e = new Entry();
+            e.stateSize = size;
+            if (keyFrame == null || sinceKeyFrame >= KEYFRAME_EVERY || keyFrame.stateSize != size) {
+                e.data = encode(raw, null, size);
+                keyFrame = e;
+                sinceKeyFrame = 0;
+                //the raw data becomes the new keyframe base, the old one goes back to the pool
+                byte[] tmp = keyFrameData;
+                keyFrameData = raw;
+                raw = tmp;
+            } else {
+                e.data = encode(raw, keyFrameData, size);
+                e.keyFrame = keyFrame;
+                sinceKeyFrame++;
+            }
+            entries.addLast(e);
+            memoryBytes += e.data.length;
+            evict();
+        } finally {
+            pool.offer(raw);
+        }
+    }
+
+    //drops the oldest keyframe and all its deltas, the current keyframe is kept
+    private void evict() {
+        while ((entries.size() > maxEntries || memoryBytes > maxBytes) && entries.peekFirst() != keyFrame) {
+            Entry oldest = entries.pollFirst();
+            memoryBytes -= oldest.data.length;
+            while (!entries.isEmpty() && entries.peekFirst().keyFrame == oldest) {
+                memoryBytes -= entries.pollFirst().data.length;
+            }
+        }
+    }
+
+    private int popEntry() {
+        Entry e = entries.pollLast();
+        if (e == null) {
+            return 0;
+        }
+        memoryBytes -= e.data.length;
+        if (restoreData.length < e.stateSize) {
+            restoreData = new byte[e.stateSize];
+        }
+        Arrays.fill(restoreData, 0, e.stateSize, (byte) 0);
+        if (e.keyFrame != null) {
+            decode(e.keyFrame.data, restoreData);
+        }
+        decode(e.data, restoreData);
+        //start again from a keyframe, the states after this one are gone
+        keyFrame = null;
+        return e.stateSize;
+    }
+
+    /**
+     * Encodes data XOR base (base == null: all zeros) as a sequence of:
+     * zero run length, literal length, literal bytes; lengths are varints.
+     */
+    byte[] encode(byte[] data, byte[] base, int size) {
+        if (encodeBuffer.length < size + (size >> 2) + 16) {
+            encodeBuffer = new byte[size + (size >> 2) + 16];
+        }
+        byte[] out = encodeBuffer;
+        int pos = 0;
+        int i = 0;
+        while (i < size) {
+            int zeroStart = i;
+            while (i < size && xor(data, base, i) == 0) {
+                i++;
+            }
+            int litStart = i;
+            int zeros = 0;
+            //a literal ends at the first run of MIN_ZERO_RUN zeros
+            while (i < size && zeros < MIN_ZERO_RUN) {
+                zeros = xor(data, base, i) == 0 ? zeros + 1 : 0;
+                i++;
+            }
+            if (zeros == MIN_ZERO_RUN) {
+                i -= MIN_ZERO_RUN;
+            }
+            pos = putVarInt(out, pos, litStart - zeroStart);
+            pos = putVarInt(out, pos, i - litStart);
+            for (int j = litStart; j < i; j++) {
+                out[pos++] = xor(data, base, j);
+            }
+        }
+        return Arrays.copyOf(out, pos);
+    }
+
+    //XORs the literals into dest
+    static void decode(byte[] encoded, byte[] dest) {
+        int pos = 0, index = 0;
+        while (pos < encoded.length) {
+            int zeros = 0, lit = 0, shift = 0;
+            byte b;
+            do {
+                b = encoded[pos++];
+                zeros |= (b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0);
+            shift = 0;
+            do {
+                b = encoded[pos++];
+                lit |= (b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0);
+            index += zeros;
+            for (int j = 0; j < lit; j++) {
+                dest[index++] ^= encoded[pos++];
+            }
+        }
+    }
+
+    private static byte xor(byte[] data, byte[] base, int i) {
+        return base == null ? data[i] : (byte) (data[i] ^ base[i]);
+    }
+
+    private static int putVarInt(byte[] out, int pos, int val) {
+        while ((val & ~0x7F) != 0) {
+            out[pos++] = (byte) ((val & 0x7F) | 0x80);
+            val >>>= 7;
+        }
+        out[pos++] = (byte) val;
+        return pos;
+    }
+}
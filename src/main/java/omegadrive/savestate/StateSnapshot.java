@@ -0,0 +1,138 @@
+package omegadrive.savestate;
+
+import omegadrive.Device;
+import omegadrive.cpu.z80.Z80Provider;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import z80core.Z80State;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * StateSnapshot
+ * <p>
+ * Machine state held in a reusable heap buffer, ie. for run-ahead.
+ * Not a savestate format: the layout can change between versions and is never written to disk.
+ * Parts are saved and loaded in the order they have been added.
+ * <p>
+ * Federico Berti
+ * <p>
+ * Copyright 2021
+ */
+public class StateSnapshot {
+
+    private static final Logger LOG = LogManager.getLogger(StateSnapshot.class.getSimpleName());
+
+    private static final int DEFAULT_SIZE = 0x40000;
+    private static final ObjectStateCodec z80StateCodec = ObjectStateCodec.of(Z80State.class);
+
+    private final List<Consumer<ByteBuffer>> savers = new ArrayList<>();
+    private final List<Consumer<ByteBuffer>> loaders = new ArrayList<>();
+    private final List<Runnable> afterLoad = new ArrayList<>();
+    private ByteBuffer buffer = ByteBuffer.allocate(DEFAULT_SIZE);
+    private int size = 0;
+
+    /**
+     * The device context needs to hold the full state, see {@link Device#saveContext(ByteBuffer)}.
+     */
+    public StateSnapshot addDevice(Device device) {
+        return add(device::saveContext, device::loadContext);
+    }
+
+    public StateSnapshot addObject(Object o, String... nestedFields) {
+        ObjectStateCodec codec = ObjectStateCodec.of(o.getClass(), nestedFields);
+        return add(b -> codec.save(b, o), b -> codec.load(b, o));
+    }
+
+    /**
+     * The Z80 device context is a file format and does not hold the full cpu state.
+     */
+    public StateSnapshot addZ80(Z80Provider z80) {
+        final Z80State state = new Z80State();
+        return add(b -> z80StateCodec.save(b, z80.getZ80State()),
+                b -> {
+                    z80StateCodec.load(b, state);
+                    z80.loadZ80State(state);
+                });
+    }
+
+    public StateSnapshot add(Consumer<ByteBuffer> saver, Consumer<ByteBuffer> loader) {
+        savers.add(saver);
+        loaders.add(loader);
+        return this;
+    }
+
+    public StateSnapshot addAfterLoad(Runnable r) {
+        afterLoad.add(r);
+        return this;
+    }
+
+    public void save() {
+        while (true) {
+            try {
+                buffer.clear();
+                for (int i = 0; i < savers.size(); i++) {
+                    savers.get(i).accept(buffer);
+                }
+                size = buffer.position();
+                return;
+            } catch (BufferOverflowException e) {
+                buffer = ByteBuffer.allocate(buffer.capacity() << 1);
+                LOG.info("Snapshot buffer resized to: {} bytes", buffer.capacity());
+            }
+        }
+    }
+
+    public void load() {
+        if (size == 0) {
+            LOG.warn("Nothing to load");
+            return;
+        }
+        loadInternal();
+    }
+
+    /**
+     * Loads a copy of a previous save, see {@link #getData(byte[])}.
+     */
+    public void load(byte[] data, int len) {
+        if (buffer.capacity() < len) {
+            buffer = ByteBuffer.allocate(len);
+        }
+        System.arraycopy(data, 0, buffer.array(), 0, len);
+        size = len;
+        loadInternal();
+    }
+
+    private void loadInternal() {
+        buffer.position(0);
+        for (int i = 0; i < loaders.size(); i++) {
+            loaders.get(i).accept(buffer);
+        }
+        if (buffer.position() != size) {
+            LOG.error("Snapshot size mismatch, expected {}, actual {}", size, buffer.position());
+        }
+        for (int i = 0; i < afterLoad.size(); i++) {
+            afterLoad.get(i).run();
+        }
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    //copy of the latest save
+    public byte[] getData() {
+        return Arrays.copyOf(buffer.array(), size);
+    }
+
+    //copies the latest save to dest, no allocation
+    public int getData(byte[] dest) {
+        System.arraycopy(buffer.array(), 0, dest, 0, size);
+        return size;
+    }
+}
@@ -34,9 +34,9 @@ public class StateUtil {
             SystemLoader.SystemType.COLECO, "cvs",
             SystemLoader.SystemType.MSX, "mss"
     );
-    private static byte[] arr4 = new byte[4], arr2 = new byte[2];
 
     public static final BiFunction<ByteBuffer, Integer, Integer> getInt2Fn = (b, pos) -> {
+        byte[] arr2 = new byte[2];
         b.position(pos);
         b.get(arr2);
         return Util.getUInt32LE(arr2);
@@ -44,12 +44,14 @@ public class StateUtil {
     private final static Logger LOG = LogManager.getLogger(StateUtil.class.getSimpleName());
 
     public static final BiFunction<ByteBuffer, Integer, Integer> getInt4Fn = (b, pos) -> {
+        byte[] arr4 = new byte[4];
         b.position(pos);
         b.get(arr4);
         return Util.getUInt32LE(arr4);
     };
 
     public static void setInt4LEFn(ByteBuffer b, int pos, int val) {
+        byte[] arr4 = new byte[4];
         Util.setUInt32LE(val, arr4, 0);
         b.position(pos);
         b.put(arr4);
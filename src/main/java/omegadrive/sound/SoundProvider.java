@@ -124,6 +124,11 @@ public interface SoundProvider extends Device, BaseVdpProvider.VdpEventListener
 
     boolean isMute();
 
+    //has the output been audible at least once, ie. not silent and not a constant offset
+    default boolean isAudible() {
+        return false;
+    }
+
     void setEnabled(boolean mute);
 
     void setEnabled(Device device, boolean enabled);
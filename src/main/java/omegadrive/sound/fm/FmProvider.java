@@ -22,6 +22,8 @@ package omegadrive.sound.fm;
 import omegadrive.Device;
 import omegadrive.vdp.model.BaseVdpProvider;
 
+import java.util.Optional;
+
 public interface FmProvider extends Device, BaseVdpProvider.VdpEventListener {
 
     FmProvider NO_SOUND = new FmProvider() {
@@ -98,4 +100,18 @@ public interface FmProvider extends Device, BaseVdpProvider.VdpEventListener {
     default void init() {
         throw new RuntimeException("Invalid");
     }
+
+    //false: the chip keeps running but no samples are produced, ie. run-ahead frames
+    default void setOutputEnabled(boolean enabled) {
+        //DO NOTHING
+    }
+
+    default Optional<AudioRateControl> getAudioRateControl() {
+        return Optional.empty();
+    }
+
+    //stops any background thread, the provider is not used afterwards
+    default void close() {
+        //DO NOTHING
+    }
 }
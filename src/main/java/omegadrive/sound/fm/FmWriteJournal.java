@@ -0,0 +1,64 @@
+package omegadrive.sound.fm;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * FmWriteJournal
+ * <p>
+ * Single producer, single consumer queue of encoded entries, no locks and no allocation.
+ * The consumer copies a batch with {@link #peek(long[])} and releases it once applied,
+ * an empty journal means every entry has been applied.
+ * <p>
+ * Federico Berti
+ * <p>
+ * Copyright 2021
+ */
+public class FmWriteJournal {
+
+    private final long[] entries;
+    private final int mask;
+    private final AtomicLong head = new AtomicLong();
+    private final AtomicLong tail = new AtomicLong();
+
+    public FmWriteJournal(int capacityPow2) {
+        if (Integer.bitCount(capacityPow2) != 1) {
+            throw new IllegalArgumentException("Capacity should be a power of 2: " + capacityPow2);
+        }
+        entries = new long[capacityPow2];
+        mask = capacityPow2 - 1;
+    }
+
+    //producer, false when full
+    public boolean offer(long entry) {
+        long t = tail.get();
+        if (t - head.get() == entries.length) {
+            return false;
+        }
+        entries[(int) (t & mask)] = entry;
+        tail.lazySet(t + 1);
+        return true;
+    }
+
+    //consumer, copies the oldest entries without removing them
+    public int peek(long[] dest) {
+        long h = head.get();
+        int n = (int) Math.min(dest.length, tail.get() - h);
+        for (int i = 0; i < n; i++) {
+            dest[i] = entries[(int) ((h + i) & mask)];
+        }
+        return n;
+    }
+
+    //consumer, removes the entries returned by peek
+    public void release(int n) {
+        head.lazySet(head.get() + n);
+    }
+
+    public boolean isEmpty() {
+        return head.get() == tail.get();
+    }
+
+    public int size() {
+        return (int) (tail.get() - head.get());
+    }
+}
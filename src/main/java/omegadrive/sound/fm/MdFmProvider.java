@@ -19,7 +19,9 @@
 
 package omegadrive.sound.fm;
 
+import omegadrive.sound.fm.ym2612.Ym2612Fast;
 import omegadrive.sound.fm.ym2612.nukeykt.Ym2612Nuke;
+import omegadrive.sound.fm.ym2612.nukeykt.Ym2612NukeAsync;
 import omegadrive.sound.javasound.AbstractSoundManager;
 import omegadrive.util.RegionDetector;
 
@@ -54,9 +56,21 @@ public interface MdFmProvider extends FmProvider {
     int FM_MODE_RESET_B_MASK = 0x20;
 
     static MdFmProvider createInstance(RegionDetector.Region region, AudioFormat audioFormat) {
-        double clock = getFmSoundClock(region);
-        MdFmProvider fmProvider = new Ym2612Nuke(AbstractSoundManager.audioFormat, clock);
-        LOG.info("FM instance, clock: {}, sampleRate: {}", clock, audioFormat.getSampleRate());
+        return createInstance(getFmSoundClock(region), audioFormat);
+    }
+
+    static MdFmProvider createInstance(double clock, AudioFormat audioFormat) {
+        String core = System.getProperty("helios.md.fm.core", "nuke");
+        MdFmProvider fmProvider;
+        if ("fast".equalsIgnoreCase(core)) {
+            fmProvider = new Ym2612Fast(AbstractSoundManager.audioFormat, clock);
+        } else {
+            fmProvider = new Ym2612Nuke(AbstractSoundManager.audioFormat, clock);
+            if (Boolean.parseBoolean(System.getProperty("helios.md.fm.async", "false"))) {
+                fmProvider = new Ym2612NukeAsync((Ym2612Nuke) fmProvider);
+            }
+        }
+        LOG.info("FM instance, core: {}, clock: {}, sampleRate: {}", core, clock, audioFormat.getSampleRate());
         return fmProvider;
     }
 }
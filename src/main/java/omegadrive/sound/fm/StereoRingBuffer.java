@@ -0,0 +1,87 @@
+package omegadrive.sound.fm;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * StereoRingBuffer
+ * <p>
+ * Single producer, single consumer ring buffer of stereo frames.
+ * Each frame is packed in a long, left sample in the high 32 bits, right sample in the low 32 bits,
+ * so L/R ordering is always preserved and no boxing happens.
+ * <p>
+ * Federico Berti
+ * <p>
+ * Copyright 2021
+ */
+public class StereoRingBuffer {
+
+    private final long[] buffer;
+    private final int mask;
+    //written by the producer only
+    private final AtomicLong producerIndex = new AtomicLong();
+    //written by the consumer only
+    private final AtomicLong consumerIndex = new AtomicLong();
+
+    /**
+     * @param minCapacity in stereo frames, rounded up to the next power of two
+     */
+    public StereoRingBuffer(int minCapacity) {
+        int capacity = Integer.highestOneBit(Math.max(2, minCapacity) - 1) << 1;
+        this.buffer = new long[capacity];
+        this.mask = capacity - 1;
+    }
+
+    /**
+     * Producer side.
+     *
+     * @return false when the buffer is full, the frame is dropped
+     */
+    public boolean offer(int left, int right) {
+        final long pIndex = producerIndex.get();
+        if (pIndex - consumerIndex.get() > mask) {
+            return false;
+        }
+        buffer[(int) pIndex & mask] = ((long) left << 32) | (right & 0xFFFF_FFFFL);
+        producerIndex.lazySet(pIndex + 1);
+        return true;
+    }
+
+    /**
+     * Consumer side, copies up to count frames to dest as interleaved L/R samples.
+     *
+     * @param offset in samples, ie. dest[offset] = L, dest[offset + 1] = R
+     * @return the number of frames copied
+     */
+    public int drainTo(int[] dest, int offset, int count) {
+        final long cIndex = consumerIndex.get();
+        final int available = (int) (producerIndex.get() - cIndex);
+        final int n = Math.min(available, count);
+        for (int i = 0; i < n; i++) {
+            long frame = buffer[(int) (cIndex + i) & mask];
+            dest[offset++] = (int) (frame >> 32);
+            dest[offset++] = (int) frame;
+        }
+        consumerIndex.lazySet(cIndex + n);
+        return n;
+    }
+
+    /**
+     * @return the number of stereo frames available, can be stale when called by the producer
+     */
+    public int size() {
+        //read the consumer first, the result is never negative
+        long cIndex = consumerIndex.get();
+        return (int) (producerIndex.get() - cIndex);
+    }
+
+    public int capacity() {
+        return buffer.length;
+    }
+
+    /**
+     * Discards all the available frames, consumer side.
+     */
+    public void clear() {
+        consumerIndex.lazySet(producerIndex.get());
+    }
+}
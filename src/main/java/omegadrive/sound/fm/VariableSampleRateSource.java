@@ -21,14 +21,11 @@ package omegadrive.sound.fm;
 
 import omegadrive.sound.SoundProvider;
 import omegadrive.util.SoundUtil;
-import omegadrive.util.Util;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
-import org.jctools.queues.atomic.SpscAtomicArrayQueue;
 
 import javax.sound.sampled.AudioFormat;
-import java.util.Queue;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.Optional;
 
 public abstract class VariableSampleRateSource implements FmProvider {
 
@@ -39,13 +36,13 @@ public abstract class VariableSampleRateSource implements FmProvider {
     protected double sourceSampleRate;
     protected volatile double fmCalcsPerMicros;
     private double outputSampleRate;
-    private Queue<Integer> sampleQueue =
-            new SpscAtomicArrayQueue<>(SoundProvider.SAMPLE_RATE_HZ);
-    protected AtomicInteger queueLen = new AtomicInteger();
+    //stereo frames, ~0.5s
+    private final StereoRingBuffer sampleBuffer = new StereoRingBuffer(SoundProvider.SAMPLE_RATE_HZ >> 1);
     private AudioRateControl audioRateControl;
     private int sampleRatePerFrame = 0;
     private final int audioScaleBits;
-    private final Integer[] stereoSamples = new Integer[2]; //[0] left, [1] right
+    private int droppedFrames = 0;
+    private boolean outputEnabled = true;
 
     protected VariableSampleRateSource(double sourceSampleRate, AudioFormat audioFormat, String sourceName) {
         this(sourceSampleRate, audioFormat, sourceName, DEFAULT_AUDIO_SCALE_BITS);
@@ -64,14 +61,22 @@ public abstract class VariableSampleRateSource implements FmProvider {
 
     protected abstract void spinOnce();
 
+    @Override
+    public Optional<AudioRateControl> getAudioRateControl() {
+        return Optional.of(audioRateControl);
+    }
+
     public void setMicrosPerInputSample(double microsPerInputSample) {
         this.microsPerInputSample = microsPerInputSample;
     }
 
     protected void addStereoSamples(int sampleL, int sampleR) {
-        sampleQueue.offer(Util.getFromIntegerCache(sampleL | 1)); //sampleL is always odd
-        sampleQueue.offer(Util.getFromIntegerCache(sampleR & ~1)); //sampleR is always even
-        queueLen.addAndGet(2);
+        if (!outputEnabled) {
+            return;
+        }
+        if (!sampleBuffer.offer(sampleL, sampleR)) {
+            droppedFrames++;
+        }
         sampleRatePerFrame += 2;
     }
 
@@ -81,53 +86,39 @@ public abstract class VariableSampleRateSource implements FmProvider {
 
     @Override
     public int update(int[] buf_lr, int offset, int count) {
-        offset <<= 1;
-        int end = (count << 1) + offset;
-        final int initialQueueSize = queueLen.get();
-        int queueIndicativeLen = initialQueueSize;
-        int i = offset;
-        for (; i < end && queueIndicativeLen > 0; i += 2) {
-            //when using mono we process two samples
-            if (!fillStereoSamples(stereoSamples)) {
-                LOG.warn("Null left sample QL{} P{}", queueIndicativeLen, i);
-                break;
-            }
-            queueIndicativeLen = queueLen.addAndGet(-2);
-            //Integer -> short -> int
-            buf_lr[i] = ((short) (stereoSamples[0] & 0xFFFF)) << audioScaleBits;
-            buf_lr[i + 1] = ((short) (stereoSamples[1] & 0xFFFF)) << audioScaleBits;
-        }
-        return i >> 1;
-    }
-
-    private boolean fillStereoSamples(Integer[] stereoSamples) {
-        stereoSamples[0] = sampleQueue.peek();
-        if (stereoSamples[0] == null) {
-            return false;
-        }
-        sampleQueue.poll();
-        stereoSamples[1] = sampleQueue.poll();
-        if (stereoSamples[1] == null) {
-            stereoSamples[1] = stereoSamples[0];
-            LOG.warn("Null right sample, left: {}", stereoSamples[0]);
+        int start = offset << 1;
+        int frames = sampleBuffer.drainTo(buf_lr, start, count);
+        int end = start + (frames << 1);
+        for (int i = start; i < end; i++) {
+            //int -> short -> int
+            buf_lr[i] = ((short) (buf_lr[i] & 0xFFFF)) << audioScaleBits;
         }
-        //sanity check
-//        if((stereoSamples[0] & 1) == 0 || (stereoSamples[1] & 1) == 1){
-//            LOG.warn("Unexpected sample ordering");
-//        }
-        return true;
+        return offset + frames;
     }
 
     @Override
     public void reset() {
-        sampleQueue.clear();
-        queueLen.set(0);
+        sampleBuffer.clear();
         sampleRatePerFrame = 0;
     }
 
+    @Override
+    public void setOutputEnabled(boolean enabled) {
+        outputEnabled = enabled;
+    }
+
+    //the rate control only sees the frames that produced output
     @Override
     public void onNewFrame() {
-        fmCalcsPerMicros = audioRateControl.adaptiveRateControl(queueLen.get(), fmCalcsPerMicros, sampleRatePerFrame);
+        if (!outputEnabled) {
+            return;
+        }
+        //queue length in mono samples
+        fmCalcsPerMicros = audioRateControl.adaptiveRateControl(sampleBuffer.size() << 1, fmCalcsPerMicros, sampleRatePerFrame);
         sampleRatePerFrame = 0;
+        if (droppedFrames > 0) {
+            LOG.debug("Audio buffer full, dropped frames: {}", droppedFrames);
+            droppedFrames = 0;
+        }
     }
 }
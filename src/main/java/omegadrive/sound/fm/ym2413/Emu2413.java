@@ -777,16 +777,29 @@ public final class Emu2413 {
     return o.slot[x << 1];
   }
 
-  public static void OPLL_init() {
-    makePmTable();
-    makeAmTable();
-    makeDB2LinTable();
-    makeAdjustTable();
-    makeTllTable();
-    makeRksTable();
-    makeSinTable();
-    makeDefaultPatch();
-    internal_refresh();
+  private static boolean tablesDone;
+  //clock and rate the dphase tables have been refreshed for
+  private static int refreshClockHz, refreshRateHz;
+
+  //the tables are shared: the clock independent ones are built once,
+  //the dphase tables are refreshed when the clock or the rate change
+  public static synchronized void OPLL_init() {
+    if (!tablesDone) {
+      makePmTable();
+      makeAmTable();
+      makeDB2LinTable();
+      makeAdjustTable();
+      makeTllTable();
+      makeRksTable();
+      makeSinTable();
+      makeDefaultPatch();
+      tablesDone = true;
+    }
+    if (refreshClockHz != fmClockHz || refreshRateHz != fmRateHz) {
+      internal_refresh();
+      refreshClockHz = fmClockHz;
+      refreshRateHz = fmRateHz;
+    }
   }
 
   public static final OPLL OPLL_new() {
@@ -1057,7 +1070,7 @@ public final class Emu2413 {
     OPLL_dump2patch(r, patch);
   }
 
-  public static void OPLL_init(int clock, int rate) {
+  public static synchronized void OPLL_init(int clock, int rate) {
     fmRateHz = rate;
     if (fmClockHz != clock) {
       fmClockHz = clock;
@@ -0,0 +1,900 @@
+package omegadrive.sound.fm.ym2612;
+
+import omegadrive.savestate.ObjectStateCodec;
+import omegadrive.sound.fm.MdFmProvider;
+import omegadrive.sound.fm.VariableSampleRateSource;
+
+import javax.sound.sampled.AudioFormat;
+import java.nio.ByteBuffer;
+
+/**
+ * Ym2612Fast
+ * <p>
+ * Sample level YM2612, in the style of the MAME/GPGX cores: every 24 ticks (one chip sample) the six channels
+ * are computed in one go, instead of clocking the chip 24 times like {@link omegadrive.sound.fm.ym2612.nukeykt.Ym2612Nuke}.
+ * The operator output uses log-sin/exp tables built from the chip ROM formulas, the operator routing and the
+ * 9 bit channel accumulator follow the Nuked-OPN2 pipeline, the envelope generator uses the MAME rate tables
+ * (GPGX SSG-EG handling), LFO phase modulation is a table lookup.
+ * Timers and status flags are updated once per sample.
+ * <p>
+ * The output is scaled and filtered like the Nuked core, the two are interchangeable (helios.md.fm.core);
+ * Ym2612AccuracyTest reports how close they are.
+ * <p>
+ * Federico Berti
+ * <p>
+ * Copyright 2021
+ */
+public class Ym2612Fast extends VariableSampleRateSource implements MdFmProvider {
+
+    //chip clock ticks per output sample, see Ym2612Nuke
+    private static final int TICKS_PER_SAMPLE = 24;
+    private static final int BUSY_TICKS = 32;
+    private final static int AUDIO_SCALE_BITS = 3;
+
+    private static final int EG_OFF = 0, EG_REL = 1, EG_SUS = 2, EG_DEC = 3, EG_ATT = 4;
+    private static final int MAX_ATT_INDEX = 0x3ff, MIN_ATT_INDEX = 0;
+    private static final int RATE_STEPS = 8;
+    //levels past 13 octaves of attenuation output 0
+    private static final int TL_TAB_LEN = 13 * 2 * 256;
+    private static final int ENV_QUIET = TL_TAB_LEN >> 3;
+
+    //phase -> 2*log-sin attenuation | sign
+    private static final int[] SIN_TAB = new int[1024];
+    //2*attenuation | sign -> 14 bit signed output
+    private static final int[] TL_TAB = new int[TL_TAB_LEN];
+    //[dt][kcode] signed detune, 17 bit phase increment units
+    private static final int[][] DT_TAB = new int[8][32];
+    //[pms][lfo pm][fnum >> 4] signed offset of the 12 bit fnum
+    private static final int[] PM_TAB = new int[8 * 32 * 128];
+
+    private static final int[] FN_NOTE = {0, 0, 0, 0, 0, 0, 0, 1, 2, 3, 3, 3, 3, 3, 3, 3};
+    private static final int[] PG_DETUNE = {16, 17, 19, 20, 22, 24, 27, 29};
+    private static final int[][] PG_LFO_SH1 = {
+            {7, 7, 7, 7, 7, 7, 7, 7}, {7, 7, 7, 7, 7, 7, 7, 7}, {7, 7, 7, 7, 7, 7, 1, 1}, {7, 7, 7, 7, 1, 1, 1, 1},
+            {7, 7, 7, 1, 1, 1, 1, 0}, {7, 7, 1, 1, 0, 0, 0, 0}, {7, 7, 1, 1, 0, 0, 0, 0}, {7, 7, 1, 1, 0, 0, 0, 0}
+    };
+    private static final int[][] PG_LFO_SH2 = {
+            {7, 7, 7, 7, 7, 7, 7, 7}, {7, 7, 7, 7, 2, 2, 2, 2}, {7, 7, 7, 2, 2, 2, 7, 7}, {7, 7, 2, 2, 7, 7, 2, 2},
+            {7, 7, 2, 7, 7, 7, 2, 7}, {7, 7, 7, 2, 7, 7, 2, 1}, {7, 7, 7, 2, 7, 7, 2, 1}, {7, 7, 7, 2, 7, 7, 2, 1}
+    };
+    //samples per LFO step
+    private static final int[] LFO_PERIOD = {108, 77, 71, 67, 62, 44, 8, 5};
+    private static final int[] AM_SHIFT = {8, 3, 1, 0};
+    private static final int[] SL_TAB = new int[16];
+
+    private static final int[] EG_INC = {
+            /*cycle:0 1  2 3  4 5  6 7*/
+            /* 0 */ 0, 1, 0, 1, 0, 1, 0, 1, /* rates 00..11 0 (increment by 0 or 1) */
+            /* 1 */ 0, 1, 0, 1, 1, 1, 0, 1, /* rates 00..11 1 */
+            /* 2 */ 0, 1, 1, 1, 0, 1, 1, 1, /* rates 00..11 2 */
+            /* 3 */ 0, 1, 1, 1, 1, 1, 1, 1, /* rates 00..11 3 */
+            /* 4 */ 1, 1, 1, 1, 1, 1, 1, 1, /* rate 12 0 (increment by 1) */
+            /* 5 */ 1, 1, 1, 2, 1, 1, 1, 2, /* rate 12 1 */
+            /* 6 */ 1, 2, 1, 2, 1, 2, 1, 2, /* rate 12 2 */
+            /* 7 */ 1, 2, 2, 2, 1, 2, 2, 2, /* rate 12 3 */
+            /* 8 */ 2, 2, 2, 2, 2, 2, 2, 2, /* rate 13 0 (increment by 2) */
+            /* 9 */ 2, 2, 2, 4, 2, 2, 2, 4, /* rate 13 1 */
+            /*10 */ 2, 4, 2, 4, 2, 4, 2, 4, /* rate 13 2 */
+            /*11 */ 2, 4, 4, 4, 2, 4, 4, 4, /* rate 13 3 */
+            /*12 */ 4, 4, 4, 4, 4, 4, 4, 4, /* rate 14 0 (increment by 4) */
+            /*13 */ 4, 4, 4, 8, 4, 4, 4, 8, /* rate 14 1 */
+            /*14 */ 4, 8, 4, 8, 4, 8, 4, 8, /* rate 14 2 */
+            /*15 */ 4, 8, 8, 8, 4, 8, 8, 8, /* rate 14 3 */
+            /*16 */ 8, 8, 8, 8, 8, 8, 8, 8, /* rates 15 0, 15 1, 15 2, 15 3 (increment by 8) */
+            /*17 */ 16, 16, 16, 16, 16, 16, 16, 16, /* rates 15 2, 15 3 for attack */
+            /*18 */ 0, 0, 0, 0, 0, 0, 0, 0, /* infinity rates for attack and decay(s) */
+    };
+    //32 infinite rates, 64 rates, 32 dummy rates (same as 15 3)
+    private static final int[] EG_RATE_SELECT = new int[32 + 64 + 32];
+    private static final int[] EG_RATE_SHIFT = new int[32 + 64 + 32];
+
+    private final static ObjectStateCodec stateCodec = ObjectStateCodec.of(FmState.class);
+    private final static ObjectStateCodec regCodec = ObjectStateCodec.of(Ym2612RegSupport.class);
+
+    static {
+        initTables();
+    }
+
+    private final Ym2612RegSupport regSupport = new Ym2612RegSupport();
+    private FmState st = new FmState();
+
+    public Ym2612Fast(AudioFormat audioFormat, double sourceSampleRate) {
+        //same input rate as the Nuked core, ie. tick() is called at FM_CLOCK/6
+        super(sourceSampleRate / 6, audioFormat, "fmFast", AUDIO_SCALE_BITS);
+        initRegisters();
+    }
+
+    /**
+     * Chip state, primitive fields only: saved and loaded by an {@link ObjectStateCodec}.
+     * Slot index: channel * 4 + register order, ie. 0x30 (OP1), 0x34 (OP3), 0x38 (OP2), 0x3C (OP4)
+     */
+    static class FmState {
+        //slots
+        final int[] dt = new int[24], mul = new int[24], ks = new int[24], ksr = new int[24];
+        final int[] ar = new int[24], d1r = new int[24], d2r = new int[24], rr = new int[24];
+        final int[] sl = new int[24], tl = new int[24], amMask = new int[24], ssg = new int[24], ssgn = new int[24];
+        final int[] key = new int[24], state = new int[24], volume = new int[24], volOut = new int[24];
+        final int[] phase = new int[24], incr = new int[24];
+        final int[] egShAr = new int[24], egSelAr = new int[24], egShD1r = new int[24], egSelD1r = new int[24];
+        final int[] egShD2r = new int[24], egSelD2r = new int[24], egShRr = new int[24], egSelRr = new int[24];
+        //channels
+        final int[] algo = new int[6], fb = new int[6], ams = new int[6], pms = new int[6];
+        final int[] panL = new int[6], panR = new int[6];
+        final int[] op1Out0 = new int[6], op1Out1 = new int[6], op2Prev = new int[6];
+        final int[] fnum = new int[6], block = new int[6], kcode = new int[6];
+        final int[] fnum3 = new int[3], block3 = new int[3], kcode3 = new int[3];
+        //global
+        int address, regA4, regAc;
+        int mode, ta, tb, tac, tbc, status, keyCsm;
+        int lfoPeriod, lfoTimer, lfoCnt, lfoAm, lfoPm;
+        int egTimer, egCnt;
+        int dacEn, dacData;
+        int tickCnt;
+        long ticks, busyEnd;
+        int prevL, prevR;
+        double cycleAccum;
+    }
+
+    private void initRegisters() {
+        FmState s = st;
+        for (int i = 0; i < 24; i++) {
+            s.mul[i] = 1;
+            s.ks[i] = 3;
+            s.state[i] = EG_OFF;
+            s.volume[i] = MAX_ATT_INDEX;
+            s.volOut[i] = MAX_ATT_INDEX;
+        }
+        s.lfoAm = 126;
+        s.egCnt = 1;
+        writeMode(0x27, 0x30);
+        for (int i = 0xB6; i >= 0xB4; i--) {
+            writeChannel(i, 0xC0);
+            writeChannel(i | 0x100, 0xC0);
+        }
+        for (int i = 0xB2; i >= 0x30; i--) {
+            writeChannel(i, 0);
+            writeChannel(i | 0x100, 0);
+        }
+    }
+
+    @Override
+    public void setMicrosPerTick(double microsPerTick) {
+        setMicrosPerInputSample(microsPerTick);
+    }
+
+    @Override
+    public void reset() {
+        super.reset();
+        st = new FmState();
+        initRegisters();
+    }
+
+    @Override
+    public int readRegister(int type, int regNumber) {
+        return regSupport.readRegister(type, regNumber);
+    }
+
+    @Override
+    public int read() {
+        return st.status | (st.ticks < st.busyEnd ? FM_STATUS_BUSY_BIT_MASK : 0);
+    }
+
+    @Override
+    public void tick() {
+        FmState s = st;
+        s.ticks++;
+        if (++s.tickCnt == TICKS_PER_SAMPLE) {
+            s.tickCnt = 0;
+            spinOnce();
+        }
+    }
+
+    @Override
+    public void write(int addr, int data) {
+        regSupport.write(addr, data);
+        FmState s = st;
+        data &= 0xFF;
+        switch (addr & 3) {
+            case FM_ADDRESS_PORT0:
+                s.address = data;
+                break;
+            case FM_ADDRESS_PORT1:
+                s.address = 0x100 | data;
+                break;
+            default:
+                s.busyEnd = s.ticks + BUSY_TICKS;
+                if (s.address >= 0x30) {
+                    writeChannel(s.address, data);
+                } else if (s.address < 0x100) {
+                    writeMode(s.address, data);
+                }
+                break;
+        }
+    }
+
+    private void writeMode(int reg, int v) {
+        FmState s = st;
+        switch (reg) {
+            case 0x22: //LFO
+                if ((v & 8) > 0) {
+                    s.lfoPeriod = LFO_PERIOD[v & 7];
+                } else {
+                    s.lfoPeriod = s.lfoTimer = s.lfoCnt = s.lfoPm = 0;
+                    s.lfoAm = 126;
+                }
+                break;
+            case 0x24:
+                s.ta = (s.ta & 0x03) | (v << 2);
+                break;
+            case 0x25:
+                s.ta = (s.ta & 0x3fc) | (v & 3);
+                break;
+            case 0x26:
+                s.tb = v;
+                break;
+            case 0x27:
+                setTimers(v);
+                break;
+            case 0x28: //key on/off
+                int c = v & 3;
+                if (c == 3) {
+                    break;
+                }
+                c += (v & 4) > 0 ? 3 : 0;
+                //OP1, OP2, OP3, OP4 -> register order
+                keyOnOff(c << 2, (v & 0x10) > 0);
+                keyOnOff((c << 2) + 2, (v & 0x20) > 0);
+                keyOnOff((c << 2) + 1, (v & 0x40) > 0);
+                keyOnOff((c << 2) + 3, (v & 0x80) > 0);
+                break;
+            case 0x2A:
+                s.dacData = (s.dacData & 1) | ((v ^ 0x80) << 1);
+                break;
+            case 0x2B:
+                s.dacEn = v >> 7;
+                break;
+            case 0x2C:
+                s.dacData = (s.dacData & 0x1fe) | ((v >> 3) & 1);
+                break;
+            default:
+                break;
+        }
+    }
+
+    private void setTimers(int v) {
+        FmState s = st;
+        if (((s.mode ^ v) & 0xC0) > 0) {
+            //ch3 special mode on/off
+            s.mode = (s.mode & 0x3F) | (v & 0xC0);
+            refreshChannel(2);
+            if ((v & 0xC0) != 0x80 && s.keyCsm > 0) {
+                csmKeyOff();
+            }
+        }
+        if ((v & 1) > 0 && (s.mode & 1) == 0) {
+            s.tac = s.ta;
+        }
+        if ((v & 2) > 0 && (s.mode & 2) == 0) {
+            s.tbc = s.tb << 4;
+        }
+        s.status &= ~v >> 4;
+        s.mode = v;
+    }
+
+    private void writeChannel(int reg, int v) {
+        FmState s = st;
+        int c = reg & 3;
+        if (c == 3) {
+            return;
+        }
+        if (reg >= 0x100) {
+            c += 3;
+        }
+        int r = reg & 0xFF;
+        int slot = (c << 2) + ((r >> 2) & 3);
+        switch (r & 0xF0) {
+            case 0x30:
+                s.dt[slot] = (v >> 4) & 7;
+                s.mul[slot] = (v & 0x0F) > 0 ? (v & 0x0F) << 1 : 1;
+                refreshSlot(slot);
+                break;
+            case 0x40:
+                s.tl[slot] = (v & 0x7F) << 3;
+                if (isSsgInverted(slot) && s.state[slot] > EG_REL) {
+                    s.volOut[slot] = ((0x200 - s.volume[slot]) & MAX_ATT_INDEX) + s.tl[slot];
+                } else {
+                    s.volOut[slot] = s.volume[slot] + s.tl[slot];
+                }
+                break;
+            case 0x50:
+                s.ks[slot] = 3 - (v >> 6);
+                s.ar[slot] = (v & 0x1F) > 0 ? 32 + ((v & 0x1F) << 1) : 0;
+                refreshRates(slot);
+                break;
+            case 0x60:
+                s.amMask[slot] = (v & 0x80) > 0 ? ~0 : 0;
+                s.d1r[slot] = (v & 0x1F) > 0 ? 32 + ((v & 0x1F) << 1) : 0;
+                refreshRates(slot);
+                break;
+            case 0x70:
+                s.d2r[slot] = (v & 0x1F) > 0 ? 32 + ((v & 0x1F) << 1) : 0;
+                refreshRates(slot);
+                break;
+            case 0x80:
+                s.sl[slot] = SL_TAB[v >> 4];
+                s.rr[slot] = 34 + ((v & 0x0F) << 2);
+                refreshRates(slot);
+                if (s.state[slot] == EG_DEC && s.volume[slot] >= s.sl[slot]) {
+                    s.state[slot] = EG_SUS;
+                }
+                break;
+            case 0x90:
+                s.ssg[slot] = v & 0x0F;
+                if (s.state[slot] > EG_REL) {
+                    updateVolOut(slot);
+                }
+                break;
+            case 0xA0:
+                switch (r & 0x0C) {
+                    case 0x00:
+                        s.fnum[c] = ((s.regA4 & 7) << 8) | v;
+                        s.block[c] = (s.regA4 >> 3) & 7;
+                        s.kcode[c] = (s.block[c] << 2) | FN_NOTE[s.fnum[c] >> 7];
+                        refreshChannel(c);
+                        break;
+                    case 0x04:
+                        s.regA4 = v & 0x3F;
+                        break;
+                    case 0x08:
+                        if (reg < 0x100) {
+                            int i = r & 3;
+                            s.fnum3[i] = ((s.regAc & 7) << 8) | v;
+                            s.block3[i] = (s.regAc >> 3) & 7;
+                            s.kcode3[i] = (s.block3[i] << 2) | FN_NOTE[s.fnum3[i] >> 7];
+                            refreshChannel(2);
+                        }
+                        break;
+                    case 0x0C:
+                        if (reg < 0x100) {
+                            s.regAc = v & 0x3F;
+                        }
+                        break;
+                }
+                break;
+            case 0xB0:
+                switch (r & 0x0C) {
+                    case 0x00:
+                        s.algo[c] = v & 7;
+                        s.fb[c] = (v >> 3) & 7;
+                        break;
+                    case 0x04:
+                        s.panL[c] = (v & 0x80) > 0 ? ~0 : 0;
+                        s.panR[c] = (v & 0x40) > 0 ? ~0 : 0;
+                        s.ams[c] = AM_SHIFT[(v >> 4) & 3];
+                        s.pms[c] = v & 7;
+                        break;
+                }
+                break;
+            default:
+                break;
+        }
+    }
+
+    //ch3 special mode: OP1 <- A9, OP3 <- A8, OP2 <- AA, OP4 <- A2
+    private int slotFnum(int slot) {
+        return isCh3Special(slot) ? st.fnum3[CH3_INDEX[slot & 3]] : st.fnum[slot >> 2];
+    }
+
+    private int slotBlock(int slot) {
+        return isCh3Special(slot) ? st.block3[CH3_INDEX[slot & 3]] : st.block[slot >> 2];
+    }
+
+    private int slotKcode(int slot) {
+        return isCh3Special(slot) ? st.kcode3[CH3_INDEX[slot & 3]] : st.kcode[slot >> 2];
+    }
+
+    private static final int[] CH3_INDEX = {1, 0, 2, -1};
+
+    private boolean isCh3Special(int slot) {
+        return (slot >> 2) == 2 && (slot & 3) != 3 && (st.mode & 0xC0) > 0;
+    }
+
+    private void refreshChannel(int c) {
+        for (int slot = c << 2; slot < (c << 2) + 4; slot++) {
+            refreshSlot(slot);
+        }
+    }
+
+    private void refreshSlot(int slot) {
+        FmState s = st;
+        s.incr[slot] = phaseIncrement(slot, slotFnum(slot) << 1, slotBlock(slot), slotKcode(slot));
+        refreshRates(slot);
+    }
+
+    private int phaseIncrement(int slot, int fnum2, int block, int kcode) {
+        int basefreq = ((fnum2 & 0xfff) << block) >> 2;
+        basefreq = (basefreq + DT_TAB[st.dt[slot]][kcode]) & 0x1ffff;
+        return ((basefreq * st.mul[slot]) >> 1) & 0xfffff;
+    }
+
+    private void refreshRates(int slot) {
+        FmState s = st;
+        int ksr = s.ksr[slot] = slotKcode(slot) >> s.ks[slot];
+        if (s.ar[slot] + ksr < 32 + 62) {
+            s.egShAr[slot] = EG_RATE_SHIFT[s.ar[slot] + ksr];
+            s.egSelAr[slot] = EG_RATE_SELECT[s.ar[slot] + ksr];
+        } else {
+            //instant attack, see keyOn
+            s.egShAr[slot] = 0;
+            s.egSelAr[slot] = 18 * RATE_STEPS;
+        }
+        s.egShD1r[slot] = EG_RATE_SHIFT[s.d1r[slot] + ksr];
+        s.egSelD1r[slot] = EG_RATE_SELECT[s.d1r[slot] + ksr];
+        s.egShD2r[slot] = EG_RATE_SHIFT[s.d2r[slot] + ksr];
+        s.egSelD2r[slot] = EG_RATE_SELECT[s.d2r[slot] + ksr];
+        s.egShRr[slot] = EG_RATE_SHIFT[s.rr[slot] + ksr];
+        s.egSelRr[slot] = EG_RATE_SELECT[s.rr[slot] + ksr];
+    }
+
+    private void keyOnOff(int slot, boolean on) {
+        FmState s = st;
+        if (on) {
+            if (s.key[slot] == 0 && (s.keyCsm == 0 || (slot >> 2) != 2)) {
+                startEnvelope(slot);
+            }
+            s.key[slot] = 1;
+        } else {
+            if (s.key[slot] > 0 && (s.keyCsm == 0 || (slot >> 2) != 2)) {
+                releaseEnvelope(slot);
+            }
+            s.key[slot] = 0;
+        }
+    }
+
+    //timer A overflow in CSM mode keys on all the ch3 operators, unless already keyed on by the previous overflow
+    private void csmKeyOn() {
+        FmState s = st;
+        for (int slot = 8; slot < 12; slot++) {
+            if (s.key[slot] == 0 && s.keyCsm == 0) {
+                startEnvelope(slot);
+            }
+        }
+        s.keyCsm = 1;
+    }
+
+    private void csmKeyOff() {
+        FmState s = st;
+        for (int slot = 8; slot < 12; slot++) {
+            if (s.key[slot] == 0) {
+                releaseEnvelope(slot);
+            }
+        }
+        s.keyCsm = 0;
+    }
+
+    private void startEnvelope(int slot) {
+        FmState s = st;
+        s.phase[slot] = 0;
+        s.ssgn[slot] = 0;
+        if (s.ar[slot] + s.ksr[slot] < 32 + 62) {
+            s.state[slot] = s.volume[slot] <= MIN_ATT_INDEX ?
+                    (s.sl[slot] == MIN_ATT_INDEX ? EG_SUS : EG_DEC) : EG_ATT;
+        } else {
+            //maximum attack rate, straight to decay or sustain
+            s.volume[slot] = MIN_ATT_INDEX;
+            s.state[slot] = s.sl[slot] == MIN_ATT_INDEX ? EG_SUS : EG_DEC;
+        }
+        updateVolOut(slot);
+    }
+
+    private void releaseEnvelope(int slot) {
+        FmState s = st;
+        if (s.state[slot] > EG_REL) {
+            s.state[slot] = EG_REL;
+            if ((s.ssg[slot] & 8) > 0) {
+                if ((s.ssgn[slot] ^ (s.ssg[slot] & 4)) > 0) {
+                    s.volume[slot] = 0x200 - s.volume[slot];
+                }
+                if (s.volume[slot] >= 0x200) {
+                    s.volume[slot] = MAX_ATT_INDEX;
+                    s.state[slot] = EG_OFF;
+                }
+                s.volOut[slot] = s.volume[slot] + s.tl[slot];
+            }
+        }
+    }
+
+    private boolean isSsgInverted(int slot) {
+        return (st.ssg[slot] & 8) > 0 && (st.ssgn[slot] ^ (st.ssg[slot] & 4)) > 0;
+    }
+
+    private void updateVolOut(int slot) {
+        FmState s = st;
+        if (isSsgInverted(slot)) {
+            s.volOut[slot] = ((0x200 - s.volume[slot]) & MAX_ATT_INDEX) + s.tl[slot];
+        } else {
+            s.volOut[slot] = s.volume[slot] + s.tl[slot];
+        }
+    }
+
+    //one chip sample
+    @Override
+    protected void spinOnce() {
+        FmState s = st;
+        updateSsgEg();
+        int l = 0, r = 0;
+        for (int c = 0; c < 6; c++) {
+            int out = calcChannel(c);
+            if (c == 5 && s.dacEn > 0) {
+                //9 bit signed
+                out = (s.dacData << 23) >> 23;
+            }
+            l += out & s.panL[c];
+            r += out & s.panR[c];
+        }
+        updatePhases();
+        advanceLfo();
+        if (++s.egTimer == 3) {
+            s.egTimer = 0;
+            if (++s.egCnt == 4096) {
+                s.egCnt = 1;
+            }
+            advanceEg();
+        }
+        updateTimers();
+        //each channel is output on 3 of its 4 cycles, see Ym3438::OPN2_ChOutput
+        filterAndSet(l * 3, r * 3);
+        s.cycleAccum += microsPerInputSample * TICKS_PER_SAMPLE;
+        while (s.cycleAccum > fmCalcsPerMicros) {
+            addStereoSamples(s.prevL, s.prevR);
+            s.cycleAccum -= fmCalcsPerMicros;
+        }
+    }
+
+    //same filter as Ym2612Nuke
+    private void filterAndSet(int sampleL, int sampleR) {
+        FmState s = st;
+        s.prevL = (sampleL + s.prevL) >> 1;
+        s.prevR = (sampleR + s.prevR) >> 1;
+    }
+
+    /**
+     * Operators in register order, the modulation inputs follow the Nuked-OPN2 pipeline:
+     * OP1 reaches OP2 and OP4 one sample late and OP3 two samples late, OP2 reaches OP3 one sample late,
+     * OP3 reaches OP4 in the same sample.
+     * Returns the 9 bit channel output.
+     */
+    private int calcChannel(int c) {
+        FmState s = st;
+        final int b = c << 2;
+        final int am = s.lfoAm >> s.ams[c];
+        final int prevOp1 = s.op1Out0[c];
+        final int prevOp2 = s.op2Prev[c];
+        final int prev2Op1 = s.op1Out1[c];
+        int fb = s.fb[c];
+        int o0 = opCalc(b, am, fb > 0 ? (s.op1Out0[c] + s.op1Out1[c]) >> (10 - fb) : 0);
+        s.op1Out1[c] = prevOp1;
+        s.op1Out0[c] = o0;
+        int o1, o2, o3, acc;
+        switch (s.algo[c]) {
+            case 0:
+                o1 = opCalc(b + 1, am, prevOp2 >> 1);
+                o2 = opCalc(b + 2, am, prevOp1 >> 1);
+                o3 = opCalc(b + 3, am, o1 >> 1);
+                acc = o3 >> 5;
+                break;
+            case 1:
+                o1 = opCalc(b + 1, am, (prevOp2 + prev2Op1) >> 1);
+                o2 = opCalc(b + 2, am, 0);
+                o3 = opCalc(b + 3, am, o1 >> 1);
+                acc = o3 >> 5;
+                break;
+            case 2:
+                o1 = opCalc(b + 1, am, prevOp2 >> 1);
+                o2 = opCalc(b + 2, am, 0);
+                o3 = opCalc(b + 3, am, (prevOp1 + o1) >> 1);
+                acc = o3 >> 5;
+                break;
+            case 3:
+                o1 = opCalc(b + 1, am, 0);
+                o2 = opCalc(b + 2, am, prevOp1 >> 1);
+                o3 = opCalc(b + 3, am, (prevOp2 + o1) >> 1);
+                acc = o3 >> 5;
+                break;
+            case 4:
+                o1 = opCalc(b + 1, am, 0);
+                o2 = opCalc(b + 2, am, prevOp1 >> 1);
+                o3 = opCalc(b + 3, am, o1 >> 1);
+                acc = clamp9((o2 >> 5) + (o3 >> 5));
+                break;
+            case 5:
+                o1 = opCalc(b + 1, am, prev2Op1 >> 1);
+                o2 = opCalc(b + 2, am, prevOp1 >> 1);
+                o3 = opCalc(b + 3, am, prevOp1 >> 1);
+                acc = clamp9(clamp9((o1 >> 5) + (o2 >> 5)) + (o3 >> 5));
+                break;
+            case 6:
+                o1 = opCalc(b + 1, am, 0);
+                o2 = opCalc(b + 2, am, prevOp1 >> 1);
+                o3 = opCalc(b + 3, am, 0);
+                acc = clamp9(clamp9((o1 >> 5) + (o2 >> 5)) + (o3 >> 5));
+                break;
+            default:
+                o1 = opCalc(b + 1, am, 0);
+                o2 = opCalc(b + 2, am, 0);
+                o3 = opCalc(b + 3, am, 0);
+                acc = clamp9(clamp9(clamp9((o0 >> 5) + (o1 >> 5)) + (o2 >> 5)) + (o3 >> 5));
+                break;
+        }
+        s.op2Prev[c] = o2;
+        return acc;
+    }
+
+    private int opCalc(int slot, int am, int mod) {
+        int env = st.volOut[slot] + (am & st.amMask[slot]);
+        if (env >= ENV_QUIET) {
+            return 0;
+        }
+        int p = SIN_TAB[((st.phase[slot] >> 10) + mod) & 0x3ff] + (env << 3);
+        return p < TL_TAB_LEN ? TL_TAB[p] : 0;
+    }
+
+    private static int clamp9(int v) {
+        return v > 255 ? 255 : (v < -256 ? -256 : v);
+    }
+
+    private void updatePhases() {
+        FmState s = st;
+        for (int c = 0; c < 6; c++) {
+            int b = c << 2;
+            if (s.pms[c] > 0 && s.lfoPm > 0) {
+                int pmBase = (s.pms[c] << 12) | (s.lfoPm << 7);
+                for (int slot = b; slot < b + 4; slot++) {
+                    int fnum = slotFnum(slot);
+                    int fnum2 = (fnum << 1) + PM_TAB[pmBase | (fnum >> 4)];
+                    s.phase[slot] = (s.phase[slot] +
+                            phaseIncrement(slot, fnum2, slotBlock(slot), slotKcode(slot))) & 0xfffff;
+                }
+            } else {
+                s.phase[b] = (s.phase[b] + s.incr[b]) & 0xfffff;
+                s.phase[b + 1] = (s.phase[b + 1] + s.incr[b + 1]) & 0xfffff;
+                s.phase[b + 2] = (s.phase[b + 2] + s.incr[b + 2]) & 0xfffff;
+                s.phase[b + 3] = (s.phase[b + 3] + s.incr[b + 3]) & 0xfffff;
+            }
+        }
+    }
+
+    private void advanceLfo() {
+        FmState s = st;
+        if (s.lfoPeriod > 0 && ++s.lfoTimer >= s.lfoPeriod) {
+            s.lfoTimer = 0;
+            s.lfoCnt = (s.lfoCnt + 1) & 0x7F;
+            s.lfoAm = ((s.lfoCnt & 0x40) > 0 ? s.lfoCnt & 0x3F : s.lfoCnt ^ 0x3F) << 1;
+            s.lfoPm = s.lfoCnt >> 2;
+        }
+    }
+
+    private void updateTimers() {
+        FmState s = st;
+        //a CSM key on is released unless timer A overflows again
+        s.keyCsm <<= 1;
+        if ((s.mode & 1) > 0 && ++s.tac == 1024) {
+            s.tac = s.ta;
+            if ((s.mode & 4) > 0) {
+                s.status |= FM_STATUS_TIMER_A_BIT_MASK;
+            }
+            if ((s.mode & 0xC0) == 0x80) {
+                csmKeyOn();
+            }
+        }
+        if ((s.keyCsm & 2) > 0) {
+            csmKeyOff();
+        }
+        if ((s.mode & 2) > 0 && ++s.tbc == 4096) {
+            s.tbc = s.tb << 4;
+            if ((s.mode & 8) > 0) {
+                s.status |= FM_STATUS_TIMER_B_BIT_MASK;
+            }
+        }
+    }
+
+    private void updateSsgEg() {
+        FmState s = st;
+        for (int slot = 0; slot < 24; slot++) {
+            int ssg = s.ssg[slot];
+            if ((ssg & 8) == 0 || s.volume[slot] < 0x200 || s.state[slot] <= EG_REL) {
+                continue;
+            }
+            if ((ssg & 1) > 0) {
+                //hold
+                if ((ssg & 2) > 0) {
+                    s.ssgn[slot] = 4;
+                }
+                if (s.state[slot] != EG_ATT && (s.ssgn[slot] ^ (ssg & 4)) == 0) {
+                    s.volume[slot] = MAX_ATT_INDEX;
+                }
+            } else {
+                //loop: alternate or restart the phase
+                if ((ssg & 2) > 0) {
+                    s.ssgn[slot] ^= 4;
+                } else {
+                    s.phase[slot] = 0;
+                }
+                if (s.state[slot] != EG_ATT) {
+                    if (s.ar[slot] + s.ksr[slot] < 32 + 62) {
+                        s.state[slot] = s.volume[slot] <= MIN_ATT_INDEX ?
+                                (s.sl[slot] == MIN_ATT_INDEX ? EG_SUS : EG_DEC) : EG_ATT;
+                    } else {
+                        s.volume[slot] = MIN_ATT_INDEX;
+                        s.state[slot] = s.sl[slot] == MIN_ATT_INDEX ? EG_SUS : EG_DEC;
+                    }
+                }
+            }
+            updateVolOut(slot);
+        }
+    }
+
+    private void advanceEg() {
+        FmState s = st;
+        final int egCnt = s.egCnt;
+        for (int slot = 0; slot < 24; slot++) {
+            int sh;
+            switch (s.state[slot]) {
+                case EG_ATT:
+                    sh = s.egShAr[slot];
+                    if ((egCnt & ((1 << sh) - 1)) == 0) {
+                        s.volume[slot] += (~s.volume[slot] * EG_INC[s.egSelAr[slot] + ((egCnt >> sh) & 7)]) >> 4;
+                        if (s.volume[slot] <= MIN_ATT_INDEX) {
+                            s.volume[slot] = MIN_ATT_INDEX;
+                            s.state[slot] = s.sl[slot] == MIN_ATT_INDEX ? EG_SUS : EG_DEC;
+                        }
+                        updateVolOut(slot);
+                    }
+                    break;
+                case EG_DEC:
+                    sh = s.egShD1r[slot];
+                    if ((egCnt & ((1 << sh) - 1)) == 0) {
+                        int inc = EG_INC[s.egSelD1r[slot] + ((egCnt >> sh) & 7)];
+                        if ((s.ssg[slot] & 8) > 0) {
+                            if (s.volume[slot] < 0x200) {
+                                s.volume[slot] += inc << 2;
+                                updateVolOut(slot);
+                            }
+                        } else {
+                            s.volume[slot] += inc;
+                            s.volOut[slot] = s.volume[slot] + s.tl[slot];
+                        }
+                        if (s.volume[slot] >= s.sl[slot]) {
+                            s.state[slot] = EG_SUS;
+                        }
+                    }
+                    break;
+                case EG_SUS:
+                    sh = s.egShD2r[slot];
+                    if ((egCnt & ((1 << sh) - 1)) == 0) {
+                        int inc = EG_INC[s.egSelD2r[slot] + ((egCnt >> sh) & 7)];
+                        if ((s.ssg[slot] & 8) > 0) {
+                            if (s.volume[slot] < 0x200) {
+                                s.volume[slot] += inc << 2;
+                                updateVolOut(slot);
+                            }
+                        } else {
+                            s.volume[slot] += inc;
+                            if (s.volume[slot] >= MAX_ATT_INDEX) {
+                                s.volume[slot] = MAX_ATT_INDEX;
+                            }
+                            s.volOut[slot] = s.volume[slot] + s.tl[slot];
+                        }
+                    }
+                    break;
+                case EG_REL:
+                    sh = s.egShRr[slot];
+                    if ((egCnt & ((1 << sh) - 1)) == 0) {
+                        int inc = EG_INC[s.egSelRr[slot] + ((egCnt >> sh) & 7)];
+                        if ((s.ssg[slot] & 8) > 0) {
+                            if (s.volume[slot] < 0x200) {
+                                s.volume[slot] += inc << 2;
+                            }
+                            if (s.volume[slot] >= 0x200) {
+                                s.volume[slot] = MAX_ATT_INDEX;
+                                s.state[slot] = EG_OFF;
+                            }
+                        } else {
+                            s.volume[slot] += inc;
+                            if (s.volume[slot] >= MAX_ATT_INDEX) {
+                                s.volume[slot] = MAX_ATT_INDEX;
+                                s.state[slot] = EG_OFF;
+                            }
+                        }
+                        s.volOut[slot] = s.volume[slot] + s.tl[slot];
+                    }
+                    break;
+                default:
+                    break;
+            }
+        }
+    }
+
+    @Override
+    public void saveContext(ByteBuffer buffer) {
+        stateCodec.save(buffer, st);
+        regCodec.save(buffer, regSupport);
+    }
+
+    @Override
+    public void loadContext(ByteBuffer buffer) {
+        stateCodec.load(buffer, st);
+        regCodec.load(buffer, regSupport);
+    }
+
+    private static void initTables() {
+        //log-sin and exp, same values as the chip ROMs (see Ym3438 logsinrom, exprom)
+        int[] logsin = new int[256];
+        int[] exp = new int[256];
+        for (int i = 0; i < 256; i++) {
+            logsin[i] = (int) Math.round(-Math.log(Math.sin((i + 0.5) * Math.PI / 512)) / Math.log(2) * 256);
+            exp[i] = (int) Math.round((Math.pow(2, i / 256.0) - 1) * 1024);
+        }
+        for (int i = 0; i < 1024; i++) {
+            int quarter = (i & 0x100) > 0 ? (i ^ 0xff) & 0xff : i & 0xff;
+            SIN_TAB[i] = (logsin[quarter] << 1) | ((i >> 9) & 1);
+        }
+        for (int level = 0; level < TL_TAB_LEN >> 1; level++) {
+            int v = ((exp[(level & 0xff) ^ 0xff] | 0x400) << 2) >> (level >> 8);
+            TL_TAB[level << 1] = v;
+            TL_TAB[(level << 1) + 1] = -v;
+        }
+        for (int dt = 0; dt < 8; dt++) {
+            int dtL = dt & 3;
+            for (int kcode = 0; kcode < 32; kcode++) {
+                int detune = 0;
+                if (dtL > 0) {
+                    int kc = Math.min(kcode, 0x1c);
+                    int sum = (kc >> 2) + 9 + ((dtL == 3 ? 1 : 0) | (dtL & 2));
+                    detune = PG_DETUNE[((sum & 1) << 2) | (kc & 3)] >> (9 - (sum >> 1));
+                }
+                DT_TAB[dt][kcode] = (dt & 4) > 0 ? -detune : detune;
+            }
+        }
+        for (int pms = 0; pms < 8; pms++) {
+            for (int lfo = 0; lfo < 32; lfo++) {
+                int lfoL = (lfo & 8) > 0 ? (lfo & 0xf) ^ 0xf : lfo & 0xf;
+                for (int fnumH = 0; fnumH < 128; fnumH++) {
+                    int fm = (fnumH >> PG_LFO_SH1[pms][lfoL]) + (fnumH >> PG_LFO_SH2[pms][lfoL]);
+                    if (pms > 5) {
+                        fm <<= pms - 5;
+                    }
+                    fm >>= 2;
+                    PM_TAB[(pms << 12) | (lfo << 7) | fnumH] = (lfo & 0x10) > 0 ? -fm : fm;
+                }
+            }
+        }
+        for (int i = 0; i < 16; i++) {
+            SL_TAB[i] = (i == 15 ? 31 : i) << 5;
+        }
+        //rates 0-3 and 4-7 measured on hardware (Nemesis)
+        int[][] lowRates = {{18, 18, 0, 0}, {0, 0, 2, 2}};
+        for (int i = 0; i < EG_RATE_SELECT.length; i++) {
+            int rate = i - 32;
+            int sel, shift;
+            if (rate < 0) {
+                sel = 18;
+                shift = 0;
+            } else if (rate < 8) {
+                sel = lowRates[rate >> 2][rate & 3];
+                shift = 11 - (rate >> 2);
+            } else if (rate < 48) {
+                sel = rate & 3;
+                shift = 11 - (rate >> 2);
+            } else if (rate < 60) {
+                sel = rate - 44;
+                shift = 0;
+            } else {
+                sel = 16;
+                shift = 0;
+            }
+            EG_RATE_SELECT[i] = sel * RATE_STEPS;
+            EG_RATE_SHIFT[i] = shift;
+        }
+    }
+}
@@ -34,9 +34,12 @@ package omegadrive.sound.fm.ym2612.nukeykt;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
-import java.io.Serializable;
+import java.io.*;
 import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 
 public interface IYm3438 {
 
@@ -48,6 +51,12 @@ public interface IYm3438 {
 
     void OPN2_Clock(IYm3438_Type chip, /* 16 bit signed */ int[] buffer);
 
+    /**
+     * Runs the given number of cycles, outLR gets the sum of the per cycle outputs:
+     * same chip state and output as calling OPN2_Clock that many times.
+     */
+    void OPN2_ClockN(IYm3438_Type chip, int cycles, /* 32 bit signed */ int[] outLR);
+
     void OPN2_Write(IYm3438_Type chip, /*32 bit unsigned */ int port, /* 8 bit unsigned */ int data);
 
     void OPN2_SetTestPin(IYm3438_Type chip, /*32 bit unsigned */ int value);
@@ -148,7 +157,7 @@ public interface IYm3438 {
         /*32 bit unsigned */ int[] eg_read = new int[2];
         /* 8 bit unsigned */ int eg_read_inc;
         /* FM */
-        /* 16 bit signed */ int[][] fm_op1 = new int[6][2];
+        /* 16 bit signed, [channel << 1 | n] */ int[] fm_op1 = new int[6 * 2];
         /* 16 bit signed */ int[] fm_op2 = new int[6];
         /* 16 bit signed */ int[] fm_out = new int[24];
         /* 16 bit unsigned */ int[] fm_mod = new int[24];
@@ -225,6 +234,9 @@ public interface IYm3438 {
             try {
                 Field[] fields = getClass().getDeclaredFields();
                 for (Field field : fields) {
+                    if (Modifier.isStatic(field.getModifiers())) {
+                        continue;
+                    }
                     field.setAccessible(true);
                     Object value = field.get(this);
                     if (value instanceof Integer) {
@@ -248,5 +260,74 @@ public interface IYm3438 {
             }
 
         }
+
+        //fm_op1 is serialized as int[6][2], as it used to be declared: gsh savestates stay compatible
+        private static final String FM_OP1 = "fm_op1";
+        private static final ObjectStreamField[] serialPersistentFields = serialFields();
+
+        private static ObjectStreamField[] serialFields() {
+            List<ObjectStreamField> l = new ArrayList<>();
+            for (Field f : IYm3438_Type.class.getDeclaredFields()) {
+                if (!Modifier.isStatic(f.getModifiers())) {
+                    l.add(new ObjectStreamField(f.getName(), FM_OP1.equals(f.getName()) ? int[][].class : f.getType()));
+                }
+            }
+            return l.toArray(new ObjectStreamField[0]);
+        }
+
+        private void writeObject(ObjectOutputStream out) throws IOException {
+            ObjectOutputStream.PutField pf = out.putFields();
+            try {
+                for (Field f : IYm3438_Type.class.getDeclaredFields()) {
+                    if (Modifier.isStatic(f.getModifiers())) {
+                        continue;
+                    }
+                    if (FM_OP1.equals(f.getName())) {
+                        int[][] op1 = new int[fm_op1.length >> 1][2];
+                        for (int i = 0; i < op1.length; i++) {
+                            op1[i][0] = fm_op1[i << 1];
+                            op1[i][1] = fm_op1[(i << 1) | 1];
+                        }
+                        pf.put(FM_OP1, op1);
+                    } else if (f.getType() == int.class) {
+                        pf.put(f.getName(), f.getInt(this));
+                    } else if (f.getType() == boolean.class) {
+                        pf.put(f.getName(), f.getBoolean(this));
+                    } else {
+                        pf.put(f.getName(), f.get(this));
+                    }
+                }
+            } catch (IllegalAccessException e) {
+                throw new IOException(e);
+            }
+            out.writeFields();
+        }
+
+        private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+            ObjectInputStream.GetField gf = in.readFields();
+            try {
+                for (Field f : IYm3438_Type.class.getDeclaredFields()) {
+                    if (Modifier.isStatic(f.getModifiers())) {
+                        continue;
+                    }
+                    if (FM_OP1.equals(f.getName())) {
+                        int[][] op1 = (int[][]) gf.get(FM_OP1, new int[6][2]);
+                        fm_op1 = new int[op1.length << 1];
+                        for (int i = 0; i < op1.length; i++) {
+                            fm_op1[i << 1] = op1[i][0];
+                            fm_op1[(i << 1) | 1] = op1[i][1];
+                        }
+                    } else if (f.getType() == int.class) {
+                        f.setInt(this, gf.get(f.getName(), 0));
+                    } else if (f.getType() == boolean.class) {
+                        f.setBoolean(this, gf.get(f.getName(), false));
+                    } else {
+                        f.set(this, gf.get(f.getName(), null));
+                    }
+                }
+            } catch (IllegalAccessException e) {
+                throw new IOException(e);
+            }
+        }
     }
 }
\ No newline at end of file
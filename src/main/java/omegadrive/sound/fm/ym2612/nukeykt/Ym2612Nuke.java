@@ -19,6 +19,7 @@
 
 package omegadrive.sound.fm.ym2612.nukeykt;
 
+import omegadrive.savestate.ObjectStateCodec;
 import omegadrive.sound.fm.MdFmProvider;
 import omegadrive.sound.fm.VariableSampleRateSource;
 import omegadrive.sound.fm.ym2612.Ym2612RegSupport;
@@ -27,7 +28,7 @@ import org.apache.logging.log4j.Logger;
 
 import javax.sound.sampled.AudioFormat;
 import java.io.Serializable;
-import java.util.Arrays;
+import java.nio.ByteBuffer;
 
 /**
  * NTSC_MCLOCK_MHZ = 53693175;
@@ -44,6 +45,9 @@ public class Ym2612Nuke extends VariableSampleRateSource implements MdFmProvider
     private static final Logger LOG = LogManager.getLogger(Ym2612Nuke.class.getSimpleName());
 
     private final static int AUDIO_SCALE_BITS = 3;
+    private final static ObjectStateCodec chipCodec = ObjectStateCodec.of(IYm3438.IYm3438_Type.class);
+    private final static ObjectStateCodec contextCodec = ObjectStateCodec.of(Ym3438Context.class);
+    private final static ObjectStateCodec regCodec = ObjectStateCodec.of(Ym2612RegSupport.class);
 
     private IYm3438 ym3438;
     private IYm3438.IYm3438_Type chip;
@@ -55,6 +59,7 @@ public class Ym2612Nuke extends VariableSampleRateSource implements MdFmProvider
     private final static int syncAudioCycles = Math.max(1, 24 * syncAudioMode);
     private int syncAudioCnt = 0;
     private int prevL, prevR;
+    private final int[] clockLR = new int[2];
 
     private double cycleAccum = 0;
 
@@ -121,28 +126,36 @@ public class Ym2612Nuke extends VariableSampleRateSource implements MdFmProvider
     }
 
     private final void spin() {
-        for (int i = 0; i < syncAudioCnt; i++) {
-            cycleAccum += microsPerInputSample;
-            spinOnce();
-            addSample();
-        }
+        int n = syncAudioCnt;
         syncAudioCnt = 0;
+        while (n > 0) {
+            n -= clock(Math.min(n, 24 - state.ym3438_cycles));
+        }
     }
 
     @Override
     protected void spinOnce() {
-        ym3438.OPN2_Clock(chip, state.ym3438_accm[state.ym3438_cycles]);
-        state.ym3438_cycles = (state.ym3438_cycles + 1) % 24;
-        if (state.ym3438_cycles == 0) {
-//            chipRate++;
-            int sampleL = 0;
-            int sampleR = 0;
-            for (int j = 0; j < 24; j++) {
-                sampleL += state.ym3438_accm[j][0];
-                sampleR += state.ym3438_accm[j][1];
-            }
-            filterAndSet(sampleL, sampleR);
+        clock(1);
+    }
+
+    //runs up to the end of the current chip sample, the resampling sees the same values as one cycle at a time
+    private int clock(int cycles) {
+        ym3438.OPN2_ClockN(chip, cycles, clockLR);
+        state.ym3438_accL += clockLR[0];
+        state.ym3438_accR += clockLR[1];
+        state.ym3438_cycles += cycles;
+        for (int i = 1; i < cycles; i++) {
+            cycleAccum += microsPerInputSample;
+            addSample();
+        }
+        if (state.ym3438_cycles == 24) {
+            state.ym3438_cycles = 0;
+            filterAndSet(state.ym3438_accL, state.ym3438_accR);
+            state.ym3438_accL = state.ym3438_accR = 0;
         }
+        cycleAccum += microsPerInputSample;
+        addSample();
+        return cycles;
     }
 
     //1st order lpf: p[n]=αp[n−1]+(1−α)pi[n] with α = 0.5
@@ -173,19 +186,49 @@ public class Ym2612Nuke extends VariableSampleRateSource implements MdFmProvider
         return state;
     }
 
+    IYm3438.IYm3438_Type getChip() {
+        return chip;
+    }
+
+    Ym2612RegSupport getRegSupport() {
+        return regSupport;
+    }
+
+    //in-memory snapshots only, much faster than serializing the Ym3438Context
+    @Override
+    public void saveContext(ByteBuffer buffer) {
+        spin();
+        chipCodec.save(buffer, chip);
+        contextCodec.save(buffer, state);
+        regCodec.save(buffer, regSupport);
+        buffer.putInt(prevL).putInt(prevR).putDouble(cycleAccum);
+    }
+
+    @Override
+    public void loadContext(ByteBuffer buffer) {
+        chipCodec.load(buffer, chip);
+        contextCodec.load(buffer, state);
+        regCodec.load(buffer, regSupport);
+        prevL = buffer.getInt();
+        prevR = buffer.getInt();
+        cycleAccum = buffer.getDouble();
+        syncAudioCnt = 0;
+    }
+
     public static class Ym3438Context implements Serializable {
 
         private static final long serialVersionUID = -2921159132727518547L;
 
         int ym3438_cycles = 0;
         int ym3438_diffLR_sampleL = 0;
-        int[][] ym3438_accm = new int[24][2];
+        //output summed over the cycles of the current chip sample
+        int ym3438_accL, ym3438_accR;
         IYm3438.IYm3438_Type chip;
 
         public void reset() {
             ym3438_cycles = 0;
             ym3438_diffLR_sampleL = 0;
-            Arrays.stream(ym3438_accm).forEach(row -> Arrays.fill(row, 0));
+            ym3438_accL = ym3438_accR = 0;
         }
     }
 }
@@ -0,0 +1,251 @@
+package omegadrive.sound.fm.ym2612.nukeykt;
+
+import omegadrive.savestate.ObjectStateCodec;
+import omegadrive.sound.fm.AudioRateControl;
+import omegadrive.sound.fm.FmWriteJournal;
+import omegadrive.sound.fm.MdFmProvider;
+import omegadrive.sound.fm.ym2612.Ym2612RegSupport;
+import omegadrive.util.PriorityThreadFactory;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.nio.ByteBuffer;
+import java.util.Optional;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Ym2612NukeAsync
+ * <p>
+ * Runs a {@link Ym2612Nuke} on a worker thread: the emulation thread only appends the register writes,
+ * timestamped with the chip tick, to a {@link FmWriteJournal}; the worker replays them at the same ticks,
+ * the samples are identical to the synchronous chip.
+ * <p>
+ * Status reads (busy, timer overflow) are answered by a shadow chip on the emulation thread that only runs
+ * the IO, register write and timer stages, a small fraction of a full chip clock.
+ * The emulation thread waits when the worker falls behind by more than MAX_LAG_TICKS, and for the worker
+ * to catch up before a reset or a state save/load.
+ * <p>
+ * Federico Berti
+ * <p>
+ * Copyright 2021
+ */
+public class Ym2612NukeAsync implements MdFmProvider {
+
+    private static final Logger LOG = LogManager.getLogger(Ym2612NukeAsync.class.getSimpleName());
+
+    //entry: tick (48 bits) | type (4 bits) | port (4 bits) | data (8 bits)
+    private static final int TYPE_WRITE = 0, TYPE_SYNC = 1, TYPE_FRAME = 2, TYPE_OUTPUT = 3;
+    private static final int TICK_SHIFT = 16;
+    private static final int JOURNAL_SIZE = 1 << 14;
+    private static final int SYNC_TICKS_MASK = (1 << 10) - 1;
+    //~25ms
+    private static final long MAX_LAG_TICKS = 1 << 15;
+    private static final long WAIT_NS = 50_000;
+
+    private final static ObjectStateCodec chipCodec = ObjectStateCodec.of(IYm3438.IYm3438_Type.class);
+    private final static ObjectStateCodec regCodec = ObjectStateCodec.of(Ym2612RegSupport.class);
+
+    private final Ym2612Nuke fm;
+    private final FmWriteJournal journal = new FmWriteJournal(JOURNAL_SIZE);
+    private final Ym2612RegSupport regSupport = new Ym2612RegSupport();
+    private final Ym3438 shadowImpl = new Ym3438();
+    private final IYm3438.IYm3438_Type shadow = new IYm3438.IYm3438_Type();
+    private final Thread worker;
+    private volatile boolean running = true;
+
+    //emulation thread
+    private long tick;
+    //worker thread
+    private volatile long workerTick;
+    private long waitCount;
+
+    public Ym2612NukeAsync(Ym2612Nuke fm) {
+        this.fm = fm;
+        shadowImpl.OPN2_Reset(shadow);
+        worker = new PriorityThreadFactory(Thread.MAX_PRIORITY, "fmWorker").newThread(this::runWorker);
+        worker.setDaemon(true);
+        worker.start();
+        LOG.info("FM synthesis on a worker thread");
+    }
+
+    @Override
+    public void tick() {
+        clockShadow();
+        if ((++tick & SYNC_TICKS_MASK) == 0) {
+            append(TYPE_SYNC, 0, 0);
+            if (tick - workerTick > MAX_LAG_TICKS) {
+                waitForWorker(tick - MAX_LAG_TICKS);
+            }
+        }
+    }
+
+    @Override
+    public void write(int addr, int data) {
+        shadowImpl.OPN2_Write(shadow, addr, data);
+        regSupport.write(addr, data);
+        append(TYPE_WRITE, addr, data);
+    }
+
+    @Override
+    public int read() {
+        return shadowImpl.OPN2_Read(shadow, 0x4000);
+    }
+
+    @Override
+    public int readRegister(int type, int regNumber) {
+        return regSupport.readRegister(type, regNumber);
+    }
+
+    //same stages and order as OPN2_Clock, minus the sound generation
+    private void clockShadow() {
+        IYm3438.IYm3438_Type chip = shadow;
+        shadowImpl.OPN2_DoIO(chip);
+        shadowImpl.OPN2_DoTimerA(chip);
+        shadowImpl.OPN2_DoTimerB(chip);
+        shadowImpl.OPN2_DoRegWrite(chip);
+        chip.cycles = (chip.cycles + 1) % 24;
+        chip.channel = chip.cycles % 6;
+        if (chip.status_time > 0) {
+            chip.status_time--;
+        }
+    }
+
+    private void append(int type, int port, int data) {
+        long entry = (tick << TICK_SHIFT) | (type << 12) | ((port & 0xF) << 8) | (data & 0xFF);
+        while (!journal.offer(entry)) {
+            waitCount++;
+            LockSupport.parkNanos(WAIT_NS);
+        }
+    }
+
+    private void waitForWorker(long targetTick) {
+        while (running && workerTick < targetTick) {
+            waitCount++;
+            LockSupport.parkNanos(WAIT_NS);
+        }
+    }
+
+    //the worker is idle when this returns, the chip can be accessed directly
+    private void sync() {
+        if (!running) {
+            return;
+        }
+        append(TYPE_SYNC, 0, 0);
+        while (running && !journal.isEmpty()) {
+            LockSupport.parkNanos(WAIT_NS);
+        }
+    }
+
+    private void runWorker() {
+        long[] batch = new long[256];
+        long localTick = 0;
+        while (running) {
+            int n = journal.peek(batch);
+            if (n == 0) {
+                LockSupport.parkNanos(WAIT_NS);
+                continue;
+            }
+            for (int i = 0; i < n; i++) {
+                long entry = batch[i];
+                long t = entry >>> TICK_SHIFT;
+                for (; localTick < t; localTick++) {
+                    fm.tick();
+                }
+                apply((int) (entry >> 12) & 0xF, (int) (entry >> 8) & 0xF, (int) entry & 0xFF);
+            }
+            workerTick = localTick;
+            journal.release(n);
+        }
+        LOG.info("Stopping FM worker, emulation waits: {}", waitCount);
+    }
+
+    private void apply(int type, int port, int data) {
+        switch (type) {
+            case TYPE_WRITE:
+                fm.write(port, data);
+                break;
+            case TYPE_FRAME:
+                fm.onNewFrame();
+                break;
+            case TYPE_OUTPUT:
+                fm.setOutputEnabled(data > 0);
+                break;
+            default:
+                break;
+        }
+    }
+
+    @Override
+    public void onNewFrame() {
+        append(TYPE_FRAME, 0, 0);
+    }
+
+    @Override
+    public void setOutputEnabled(boolean enabled) {
+        append(TYPE_OUTPUT, 0, enabled ? 1 : 0);
+    }
+
+    //audio thread
+    @Override
+    public int update(int[] buf_lr, int offset, int count) {
+        return fm.update(buf_lr, offset, count);
+    }
+
+    @Override
+    public Optional<AudioRateControl> getAudioRateControl() {
+        return fm.getAudioRateControl();
+    }
+
+    @Override
+    public void setMicrosPerTick(double microsPerTick) {
+        sync();
+        fm.setMicrosPerTick(microsPerTick);
+    }
+
+    @Override
+    public void reset() {
+        sync();
+        fm.reset();
+        shadowImpl.OPN2_Reset(shadow);
+    }
+
+    @Override
+    public void saveContext(ByteBuffer buffer) {
+        sync();
+        fm.saveContext(buffer);
+    }
+
+    @Override
+    public void loadContext(ByteBuffer buffer) {
+        sync();
+        fm.loadContext(buffer);
+        copyToShadow();
+    }
+
+    public Ym2612Nuke.Ym3438Context getState() {
+        sync();
+        return fm.getState();
+    }
+
+    public void setState(Ym2612Nuke.Ym3438Context state) {
+        sync();
+        fm.setState(state);
+        copyToShadow();
+    }
+
+    //the worker is idle
+    private void copyToShadow() {
+        ByteBuffer bb = ByteBuffer.allocate(1 << 16);
+        chipCodec.save(bb, fm.getChip());
+        regCodec.save(bb, fm.getRegSupport());
+        bb.flip();
+        chipCodec.load(bb, shadow);
+        regCodec.load(bb, regSupport);
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        LockSupport.unpark(worker);
+    }
+}
@@ -215,8 +215,36 @@ public class Ym3438 implements IYm3438 {
             }
     };
 
+    /* Flat copies of the tables above, one array dereference in the per cycle code */
+    /* [rate & 3][timer low] -> (rate & 3) << 2 | timer low */
+    static final int[] eg_stephi_flat = flatten(eg_stephi);
+    /* [pms][lfo] -> pms << 3 | lfo */
+    static final int[] pg_lfo_sh1_flat = flatten(pg_lfo_sh1);
+    static final int[] pg_lfo_sh2_flat = flatten(pg_lfo_sh2);
+    /* [op][row][connect] -> op << 3 | connect, one bit per row */
+    static final int[] fm_algorithm_mask = new int[4 * 8];
+
+    static {
+        for (int op = 0; op < 4; op++) {
+            for (int row = 0; row < 6; row++) {
+                for (int connect = 0; connect < 8; connect++) {
+                    fm_algorithm_mask[(op << 3) | connect] |= fm_algorithm[op][row][connect] << row;
+                }
+            }
+        }
+    }
+
     static /* 32 bit unsigned */ int chip_type = ym3438_mode_readmode;
 
+    private static int[] flatten(int[][] table) {
+        int cols = table[0].length;
+        int[] res = new int[table.length * cols];
+        for (int i = 0; i < table.length; i++) {
+            System.arraycopy(table[i], 0, res, i * cols, cols);
+        }
+        return res;
+    }
+
     // IYm3438.IYm3438_Type
     void OPN2_DoIO(IYm3438.IYm3438_Type chip) {
         /* Write signal check */
@@ -465,7 +493,7 @@ public class Ym3438 implements IYm3438 {
         if ((lfo_l & 0x08) > 0) {
             lfo_l ^= 0x0f;
         }
-        fm = (fnum_h >> pg_lfo_sh1[pms][lfo_l]) + (fnum_h >> pg_lfo_sh2[pms][lfo_l]);
+        fm = (fnum_h >> pg_lfo_sh1_flat[(pms << 3) | lfo_l]) + (fnum_h >> pg_lfo_sh2_flat[(pms << 3) | lfo_l]);
         if (pms > 5) {
             fm <<= pms - 5;
         }
@@ -706,7 +734,7 @@ public class Ym3438 implements IYm3438 {
                         break;
                 }
             } else {
-                inc = eg_stephi[rate & 0x03][chip.eg_timer_low_lock] + (rate >> 2) - 11;
+                inc = eg_stephi_flat[((rate & 0x03) << 2) | chip.eg_timer_low_lock] + (rate >> 2) - 11;
                 if (inc > 4) {
                     inc = 4;
                 }
@@ -803,23 +831,24 @@ public class Ym3438 implements IYm3438 {
         int connect = chip.connect[channel];
         /* 32 bit unsigned */
         int prevslot = (chip.cycles + 18) % 24;
+        int algo = fm_algorithm_mask[(op << 3) | connect];
 
         /* Calculate modulation */
         mod1 = mod2 = 0;
 
-        if (fm_algorithm[op][0][connect] > 0) {
-            mod2 |= chip.fm_op1[channel][0];
+        if ((algo & 0x01) > 0) {
+            mod2 |= chip.fm_op1[channel << 1];
         }
-        if (fm_algorithm[op][1][connect] > 0) {
-            mod1 |= chip.fm_op1[channel][1];
+        if ((algo & 0x02) > 0) {
+            mod1 |= chip.fm_op1[(channel << 1) | 1];
         }
-        if (fm_algorithm[op][2][connect] > 0) {
+        if ((algo & 0x04) > 0) {
             mod1 |= chip.fm_op2[channel];
         }
-        if (fm_algorithm[op][3][connect] > 0) {
+        if ((algo & 0x08) > 0) {
             mod2 |= chip.fm_out[prevslot];
         }
-        if (fm_algorithm[op][4][connect] > 0) {
+        if ((algo & 0x10) > 0) {
             mod1 |= chip.fm_out[prevslot];
         }
         mod = mod1 + mod2;
@@ -837,8 +866,8 @@ public class Ym3438 implements IYm3438 {
         slot = (chip.cycles + 18) % 24;
         /* OP1 */
         if (slot / 6 == 0) {
-            chip.fm_op1[channel][1] = chip.fm_op1[channel][0];
-            chip.fm_op1[channel][0] = chip.fm_out[slot];
+            chip.fm_op1[(channel << 1) | 1] = chip.fm_op1[channel << 1];
+            chip.fm_op1[channel << 1] = chip.fm_out[slot];
         }
         /* OP2 */
         if (slot / 6 == 2) {
@@ -864,7 +893,7 @@ public class Ym3438 implements IYm3438 {
         if (op == 0 && test_dac == 0) {
             acc = 0;
         }
-        if (fm_algorithm[op][5][chip.connect[channel]] > 0 && test_dac == 0) {
+        if ((fm_algorithm_mask[(op << 3) | chip.connect[channel]] & 0x20) > 0 && test_dac == 0) {
             add += chip.fm_out[slot] >> 5;
         }
         sum = acc + add;
@@ -1112,6 +1141,24 @@ public class Ym3438 implements IYm3438 {
 
     @Override
     public void OPN2_Clock(IYm3438.IYm3438_Type chip, /* 16 bit signed */ int[] buffer) {
+        OPN2_DoClock(chip);
+        buffer[0] = chip.mol;
+        buffer[1] = chip.mor;
+    }
+
+    @Override
+    public void OPN2_ClockN(IYm3438.IYm3438_Type chip, int cycles, /* 32 bit signed */ int[] outLR) {
+        int l = 0, r = 0;
+        for (int i = 0; i < cycles; i++) {
+            OPN2_DoClock(chip);
+            l += chip.mol;
+            r += chip.mor;
+        }
+        outLR[0] = l;
+        outLR[1] = r;
+    }
+
+    private void OPN2_DoClock(IYm3438.IYm3438_Type chip) {
         /* 32 bit unsigned */
         int slot = chip.cycles;
         chip.lfo_inc = chip.mode_test_21[1];
@@ -1230,9 +1277,6 @@ public class Ym3438 implements IYm3438 {
         chip.cycles = (chip.cycles + 1) % 24;
         chip.channel = chip.cycles % 6;
 
-        buffer[0] = chip.mol;
-        buffer[1] = chip.mor;
-
         if (chip.status_time > 0)
             chip.status_time--;
     }
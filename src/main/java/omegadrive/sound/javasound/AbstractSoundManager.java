@@ -26,10 +26,13 @@ import omegadrive.sound.fm.FmProvider;
 import omegadrive.sound.persist.FileSoundPersister;
 import omegadrive.sound.persist.SoundPersister;
 import omegadrive.sound.psg.PsgProvider;
+import omegadrive.sound.vgm.VgmLogger;
 import omegadrive.system.SysUtil;
+import omegadrive.system.perf.Telemetry;
 import omegadrive.util.PriorityThreadFactory;
 import omegadrive.util.RegionDetector;
 import omegadrive.util.SoundUtil;
+import omegadrive.util.StartupProfile;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
@@ -45,47 +48,76 @@ public abstract class AbstractSoundManager implements SoundProvider {
     protected static SoundPersister.SoundType DEFAULT_SOUND_TYPE = SoundPersister.SoundType.BOTH;
 
     protected ExecutorService executorService;
+    protected Telemetry telemetry;
 
     private static final int OUTPUT_SAMPLE_SIZE = 16;
     private static final int OUTPUT_CHANNELS = 2;
     public volatile boolean close;
     protected volatile PsgProvider psg;
     protected volatile FmProvider fm;
+    //fm and psg before the vgm logger wrapping
+    private volatile FmProvider fmChip = FmProvider.NO_SOUND;
+    private volatile PsgProvider psgChip = PsgProvider.NO_SOUND;
     protected SoundPersister soundPersister;
     int fmSize;
     int psgSize;
     public static AudioFormat audioFormat = new AudioFormat(SoundProvider.SAMPLE_RATE_HZ, OUTPUT_SAMPLE_SIZE, OUTPUT_CHANNELS, true, false);
-    protected SourceDataLine dataLine;
+    protected volatile SourceDataLine dataLine;
     private boolean mute = false;
     private SystemLoader.SystemType type;
     protected RegionDetector.Region region;
 
     protected volatile boolean hasFm;
     protected volatile boolean hasPsg;
+    protected volatile boolean audible;
+    protected VgmLogger vgmLogger;
 
     public static SoundProvider createSoundProvider(SystemLoader.SystemType systemType, RegionDetector.Region region) {
+        return createSoundProvider(systemType, region, new Telemetry(Runnable::run));
+    }
+
+    public static SoundProvider createSoundProvider(SystemLoader.SystemType systemType, RegionDetector.Region region,
+                                                    Telemetry telemetry) {
         if (!ENABLE_SOUND) {
             LOG.warn("Sound disabled");
             return NO_SOUND;
         }
+        long start = System.nanoTime();
         AbstractSoundManager jsm = JAL_SOUND_MGR ? new JalSoundManager() : new JavaSoundManager();
+        if (VgmLogger.ENABLED) {
+            jsm.vgmLogger = VgmLogger.createInstance(systemType, region).orElse(null);
+        }
         jsm.fm = jsm.getFmProvider(systemType, region);
         jsm.psg = jsm.getPsgProvider(systemType, region);
         jsm.type = systemType;
+        jsm.telemetry = telemetry;
+        jsm.fm.getAudioRateControl().ifPresent(telemetry::setAudioRateControl);
         jsm.init(region);
+        StartupProfile.add("sound", start);
         return jsm;
     }
 
     PsgProvider getPsgProvider(SystemLoader.SystemType systemType, RegionDetector.Region region) {
         PsgProvider psgProvider = SysUtil.getPsgProvider(systemType, region);
-        hasPsg = psg != PsgProvider.NO_SOUND;
-        return psgProvider;
+        hasPsg = psgProvider != PsgProvider.NO_SOUND;
+        return wrap(psgProvider);
     }
 
     FmProvider getFmProvider(SystemLoader.SystemType systemType, RegionDetector.Region region) {
         FmProvider fmProvider = SysUtil.getFmProvider(systemType, region);
-        hasFm = fm != FmProvider.NO_SOUND;
-        return fmProvider;
+        hasFm = fmProvider != FmProvider.NO_SOUND;
+        return wrap(fmProvider);
+    }
+
+    //the vgm logger wraps NO_SOUND too: the FM keeps ticking the log time base when the chip is disabled
+    private FmProvider wrap(FmProvider fmProvider) {
+        fmChip = fmProvider;
+        return vgmLogger != null ? vgmLogger.wrap(fmProvider) : fmProvider;
+    }
+
+    private PsgProvider wrap(PsgProvider psgProvider) {
+        psgChip = psgProvider;
+        return vgmLogger != null ? vgmLogger.wrap(psgProvider) : psgProvider;
     }
 
     protected void init(RegionDetector.Region region) {
@@ -99,9 +131,16 @@ public abstract class AbstractSoundManager implements SoundProvider {
         LOG.info("Output audioFormat: " + audioFormat + ", bufferSize: " + fmSize);
     }
 
+    //opening the line can take a while, it is done by the sound thread before it starts playing
     @Override
     public void init() {
-        dataLine = SoundUtil.createDataLine(audioFormat);
+        executorService.submit(() -> StartupProfile.time("soundLine", () -> {
+            SourceDataLine line = SoundUtil.createDataLine(audioFormat);
+            dataLine = line;
+            if (close) {
+                SoundUtil.close(line);
+            }
+        }));
     }
 
     public void setSystemType(SystemLoader.SystemType type) {
@@ -114,7 +153,7 @@ public abstract class AbstractSoundManager implements SoundProvider {
     }
 
     public void setPsg(PsgProvider psg) {
-        this.psg = psg;
+        this.psg = wrap(psg);
     }
 
     @Override
@@ -123,7 +162,7 @@ public abstract class AbstractSoundManager implements SoundProvider {
     }
 
     public void setFm(FmProvider fm) {
-        this.fm = fm;
+        this.fm = wrap(fm);
     }
 
     @Override
@@ -132,6 +171,10 @@ public abstract class AbstractSoundManager implements SoundProvider {
         close = true;
         List<Runnable> list = executorService.shutdownNow();
         SoundUtil.close(dataLine);
+        fm.close();
+        if (vgmLogger != null) {
+            vgmLogger.close();
+        }
         setRecording(false);
         LOG.info("Closing sound, stopping background tasks: #{}", list.size());
     }
@@ -160,6 +203,11 @@ public abstract class AbstractSoundManager implements SoundProvider {
         return mute;
     }
 
+    @Override
+    public boolean isAudible() {
+        return audible;
+    }
+
     @Override
     public void setEnabled(boolean mute) {
         this.mute = mute;
@@ -169,15 +217,15 @@ public abstract class AbstractSoundManager implements SoundProvider {
     @Override
     public void setEnabled(Device device, boolean enabled) {
         if (fm == device) {
-            boolean isEnabled = fm != FmProvider.NO_SOUND;
+            boolean isEnabled = fmChip != FmProvider.NO_SOUND;
             if (isEnabled != enabled) {
-                this.fm = enabled ? getFmProvider(type, region) : FmProvider.NO_SOUND;
+                this.fm = enabled ? getFmProvider(type, region) : wrap(FmProvider.NO_SOUND);
                 LOG.info("FM enabled: {}", enabled);
             }
         } else if (psg == device) {
-            boolean isEnabled = psg != PsgProvider.NO_SOUND;
+            boolean isEnabled = psgChip != PsgProvider.NO_SOUND;
             if (isEnabled != enabled) {
-                this.psg = enabled ? getPsgProvider(type, region) : PsgProvider.NO_SOUND;
+                this.psg = enabled ? getPsgProvider(type, region) : wrap(PsgProvider.NO_SOUND);
                 LOG.info("PSG enabled: {}", enabled);
             }
         }
@@ -19,8 +19,6 @@
 
 package omegadrive.sound.javasound;
 
-import omegadrive.sound.fm.FmProvider;
-import omegadrive.sound.psg.PsgProvider;
 import omegadrive.system.perf.Telemetry;
 import omegadrive.util.SoundUtil;
 import org.apache.logging.log4j.LogManager;
@@ -55,7 +53,6 @@ public class JalSoundManager extends AbstractSoundManager implements AudioClient
     private float[] buffer;
 
     //stats
-    private Telemetry telemetry;
     private volatile int samplesProducedCount, samplesConsumedCount, audioThreadLoops, audioThreadEmptyLoops;
 
     @Override
@@ -64,11 +61,8 @@ public class JalSoundManager extends AbstractSoundManager implements AudioClient
         mix_buf_bytes16Stereo = new byte[fm_buf_ints.length << 1];
         psg_buf_bytes = new byte[psgSize];
         fmSizeMono = (int) Math.round(fmSize / 2d);
-        hasFm = getFm() != FmProvider.NO_SOUND;
-        hasPsg = getPsg() != PsgProvider.NO_SOUND;
         fm_buf_ints = hasFm ? fm_buf_ints : EMPTY_FM;
         psg_buf_bytes = hasPsg ? psg_buf_bytes : EMPTY_PSG;
-        telemetry = Telemetry.getInstance();
         startAudio();
     }
 
@@ -142,6 +136,9 @@ public class JalSoundManager extends AbstractSoundManager implements AudioClient
         try {
             //FM: stereo 16 bit, PSG: mono 8 bit, OUT: stereo 16 bit
             SoundUtil.intStereo14ToByteStereo16MixFloat(fm_buf_ints, buffer, psg_buf_bytes, fmBufferLenStereo);
+            if (!audible) {
+                audible = SoundUtil.isAudible(buffer, Math.min(buffer.length, fmBufferLenStereo));
+            }
         } catch (Exception e) {
             LOG.error("Unexpected sound error", e);
         }
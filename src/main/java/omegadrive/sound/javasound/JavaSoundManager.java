@@ -19,8 +19,6 @@
 
 package omegadrive.sound.javasound;
 
-import omegadrive.sound.fm.FmProvider;
-import omegadrive.sound.psg.PsgProvider;
 import omegadrive.system.perf.Telemetry;
 import omegadrive.util.RegionDetector;
 import omegadrive.util.SoundUtil;
@@ -43,7 +41,6 @@ public class JavaSoundManager extends AbstractSoundManager {
     volatile int fmSizeMono;
 
     //stats
-    private Telemetry telemetry;
     private volatile int samplesProducedCount, samplesConsumedCount, audioThreadLoops, audioThreadEmptyLoops;
 
     @Override
@@ -53,11 +50,8 @@ public class JavaSoundManager extends AbstractSoundManager {
         mix_buf_bytes16Stereo = new byte[fm_buf_ints.length << 1];
         psg_buf_bytes = new byte[psgSize];
         fmSizeMono = (int) Math.round(fmSize / 2d);
-        hasFm = getFm() != FmProvider.NO_SOUND;
-        hasPsg = getPsg() != PsgProvider.NO_SOUND;
         fm_buf_ints = hasFm ? fm_buf_ints : EMPTY_FM;
         psg_buf_bytes = hasPsg ? psg_buf_bytes : EMPTY_PSG;
-        telemetry = Telemetry.getInstance();
         executorService.submit(getRunnable());
     }
 
@@ -75,11 +69,14 @@ public class JavaSoundManager extends AbstractSoundManager {
             Arrays.fill(mix_buf_bytes16Stereo, SoundUtil.ZERO_BYTE);
             //FM: stereo 16 bit, PSG: mono 8 bit, OUT: stereo 16 bit
             SoundUtil.mixFmPsgStereo(fm_buf_ints, mix_buf_bytes16Stereo, psg_buf_bytes, fmBufferLenStereo);
+            if (!audible) {
+                audible = SoundUtil.isAudible(mix_buf_bytes16Stereo, bufferBytesStereo);
+            }
             if (!isMute()) {
                 SoundUtil.writeBufferInternal(dataLine, mix_buf_bytes16Stereo, bufferBytesStereo);
             }
             if (isRecording()) {
-                soundPersister.persistSound(DEFAULT_SOUND_TYPE, mix_buf_bytes16Stereo);
+                soundPersister.persistSound(DEFAULT_SOUND_TYPE, mix_buf_bytes16Stereo, bufferBytesStereo);
             }
 
         } catch (Exception e) {
@@ -2,9 +2,9 @@ package omegadrive.sound.msumd;
 
 import com.google.common.io.Files;
 import omegadrive.util.LogHelper;
+import omegadrive.util.PriorityThreadFactory;
 import omegadrive.util.Size;
 import omegadrive.util.SoundUtil;
-import omegadrive.util.Util;
 import org.apache.logging.log4j.Level;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -19,6 +19,8 @@ import java.nio.file.Path;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.atomic.AtomicReference;
 
 /**
@@ -105,6 +107,10 @@ public class MsuMdHandlerImpl implements MsuMdHandler {
     }
 
 
+    //clip commands run in order, off the emulation thread
+    private final ExecutorService executorService =
+            Executors.newSingleThreadExecutor(new PriorityThreadFactory(MsuMdHandlerImpl.class.getSimpleName()));
+
     private MsuMdHandlerImpl(CueSheet cueSheet, RandomAccessFile binFile) {
         this.binFile = binFile;
         LOG.info("Enabling MSU-MD handling, using cue sheet: {}", cueSheet.getFile().toAbsolutePath());
@@ -310,7 +316,7 @@ public class MsuMdHandlerImpl implements MsuMdHandler {
                 LOG.warn("Unknown command: {}", commandArg.command);
         }
         if (r != null) {
-            Util.executorService.submit(r);
+            executorService.submit(r);
         }
     }
 
@@ -404,6 +410,7 @@ public class MsuMdHandlerImpl implements MsuMdHandler {
     @Override
     public void close() {
         stopTrackInternal(false);
+        executorService.shutdown();
         LOG.info("Closing");
     }
 
@@ -0,0 +1,75 @@
+package omegadrive.sound.persist;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * ByteRingBuffer
+ * <p>
+ * Single producer, single consumer ring of bytes, allocated once: a block is either copied whole
+ * or rejected, the producer never waits.
+ * <p>
+ * Federico Berti
+ * <p>
+ * Copyright 2021
+ */
+public class ByteRingBuffer {
+
+    private final byte[] buffer;
+    private final int mask;
+    //written by the producer only
+    private final AtomicLong producerIndex = new AtomicLong();
+    //written by the consumer only
+    private final AtomicLong consumerIndex = new AtomicLong();
+
+    /**
+     * @param minCapacity in bytes, rounded up to the next power of two
+     */
+    public ByteRingBuffer(int minCapacity) {
+        int capacity = Integer.highestOneBit(Math.max(2, minCapacity) - 1) << 1;
+        this.buffer = new byte[capacity];
+        this.mask = capacity - 1;
+    }
+
+    /**
+     * Producer side.
+     *
+     * @return false when there is no room for len bytes, nothing is copied
+     */
+    public boolean offer(byte[] src, int offset, int len) {
+        final long pIndex = producerIndex.get();
+        if (len > buffer.length - (pIndex - consumerIndex.get())) {
+            return false;
+        }
+        int pos = (int) pIndex & mask;
+        int first = Math.min(len, buffer.length - pos);
+        System.arraycopy(src, offset, buffer, pos, first);
+        System.arraycopy(src, offset + first, buffer, 0, len - first);
+        producerIndex.lazySet(pIndex + len);
+        return true;
+    }
+
+    /**
+     * Consumer side, copies as many bytes as dest can take.
+     *
+     * @return the number of bytes copied
+     */
+    public int drainTo(ByteBuffer dest) {
+        final long cIndex = consumerIndex.get();
+        final int n = (int) Math.min(producerIndex.get() - cIndex, dest.remaining());
+        int pos = (int) cIndex & mask;
+        int first = Math.min(n, buffer.length - pos);
+        dest.put(buffer, pos, first);
+        dest.put(buffer, 0, n - first);
+        consumerIndex.lazySet(cIndex + n);
+        return n;
+    }
+
+    public int size() {
+        return (int) (producerIndex.get() - consumerIndex.get());
+    }
+
+    public int capacity() {
+        return buffer.length;
+    }
+}
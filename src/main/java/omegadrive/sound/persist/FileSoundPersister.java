@@ -19,97 +19,176 @@
 
 package omegadrive.sound.persist;
 
-import com.google.common.io.Files;
 import omegadrive.sound.javasound.AbstractSoundManager;
-import omegadrive.util.SoundUtil;
+import omegadrive.util.PriorityThreadFactory;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
-import java.io.File;
+import javax.sound.sampled.AudioFormat;
 import java.io.IOException;
-import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
 
+/**
+ * Records the sound output to a WAV file.
+ * The audio thread only copies the buffers to a preallocated ring, a writer thread streams them to the file;
+ * when the ring is full the data is dropped (and counted), the audio thread never waits on the disk.
+ * The WAV header is patched with the final sizes on stop.
+ */
 public class FileSoundPersister implements SoundPersister {
 
     private static final Logger LOG = LogManager.getLogger(FileSoundPersister.class.getSimpleName());
 
-    /**
-     * For Recording Sound to Disk.
-     */
-    private OutputStream fileStream;
-    private File rawFile;
-    private boolean recording;
+    //~3 seconds of 44.1khz 16 bit stereo
+    static final int RING_SIZE = 1 << 19;
+    static final int WAV_HEADER_SIZE = 44;
+    static final long WRITER_SLEEP_NS = TimeUnit.MILLISECONDS.toNanos(5);
 
-    @Override
-    public void persistSound(SoundType type, byte[] output) {
-        if (!isRecording()) {
-            startRecording(type);
-        }
-        recordSound(output);
-    }
+    private final AudioFormat audioFormat;
+    private final Path folder;
+    private volatile Recording recording;
 
-    private void recordSound(byte[] buffer) {
-        if (isRecording()) {
-                try {
-                    //16 bit signed mono (little endian)
-                    fileStream.write(buffer);
-                } catch (IOException ioe) {
-                    LOG.error("An error occurred while writing the"
-                            + " sound file.");
-                }
-            }
+    public FileSoundPersister() {
+        this(AbstractSoundManager.audioFormat, Paths.get("."));
     }
 
+    FileSoundPersister(AudioFormat audioFormat, Path folder) {
+        this.audioFormat = audioFormat;
+        this.folder = folder;
+    }
 
-    /**
-     * Start sound recording to WAV file.
-     */
-    private void startRecordingInternal(SoundType type) {
-        String name = "output_" + type.name() + "_" + System.currentTimeMillis() + ".raw";
-        try {
-            rawFile = Paths.get(".", name).toFile();
-            fileStream = Files.asByteSink(rawFile).openBufferedStream();
-            LOG.info("Started recording file: {}", name);
-            recording = true;
-        } catch (IOException ioe) {
-            LOG.error("Could not open file for recording.");
-            System.out.println("Could not open file for recording");
+    @Override
+    public void persistSound(SoundType type, byte[] output, int length) {
+        Recording r = recording;
+        if (r != null) {
+            r.offer(output, length);
         }
     }
 
     @Override
     public boolean isRecording() {
-        return recording;
+        return recording != null;
     }
 
-    /**
-     * Stop sound recording to WAV file.
-     */
-    public void stopRecording() {
+    @Override
+    public synchronized void startRecording(SoundType type) {
         if (isRecording()) {
-            try {
-                fileStream.flush();
-                fileStream.close();
-                LOG.info("Stopped recording");
-                recording = false;
-                SoundUtil.convertToWav(AbstractSoundManager.audioFormat, rawFile.toString());
-            } catch (IOException ioe) {
-                LOG.error("Failed whilst closing output.raw");
-            }
+            return;
+        }
+        Path file = folder.resolve("output_" + type.name() + "_" + System.currentTimeMillis() + ".wav");
+        try {
+            recording = new Recording(file, audioFormat);
+            LOG.info("Started recording file: {}", file.toAbsolutePath());
+        } catch (IOException ioe) {
+            LOG.error("Could not open file for recording: {}, {}", file, ioe.getMessage());
         }
     }
 
     @Override
-    public void startRecording(SoundType type) {
-        if (!isRecording()) {
-            startRecordingInternal(type);
+    public synchronized void stopRecording() {
+        Recording r = recording;
+        recording = null;
+        if (r != null) {
+            r.close();
         }
     }
 
-    public static void main(String[] args) {
-//        AudioFormat audioFormat = new AudioFormat(SAMPLE_RATE_HZ, OUTPUT_SAMPLE_SIZE, OUTPUT_CHANNELS, true, false);
-//        SoundUtil.convertToWav(audioFormat, "output_1523804269641.raw");
+    static ByteBuffer wavHeader(AudioFormat format, long dataSize) {
+        int blockAlign = format.getChannels() * (format.getSampleSizeInBits() >> 3);
+        int rate = (int) format.getSampleRate();
+        ByteBuffer h = ByteBuffer.allocate(WAV_HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        h.put(new byte[]{'R', 'I', 'F', 'F'}).putInt((int) (dataSize + WAV_HEADER_SIZE - 8));
+        h.put(new byte[]{'W', 'A', 'V', 'E', 'f', 'm', 't', ' '}).putInt(16);
+        h.putShort((short) 1).putShort((short) format.getChannels()); //PCM
+        h.putInt(rate).putInt(rate * blockAlign);
+        h.putShort((short) blockAlign).putShort((short) format.getSampleSizeInBits());
+        h.put(new byte[]{'d', 'a', 't', 'a'}).putInt((int) dataSize);
+        h.flip();
+        return h;
     }
 
+    static class Recording {
+
+        private final Path file;
+        private final AudioFormat format;
+        private final FileChannel channel;
+        private final ByteRingBuffer ring = new ByteRingBuffer(RING_SIZE);
+        private final ByteBuffer out = ByteBuffer.allocateDirect(1 << 16);
+        private final Thread writer;
+        //the RIFF sizes are 32 bit unsigned, whole sample frames only
+        private final long maxDataSize;
+        private volatile boolean running = true;
+        //producer only
+        private volatile long droppedBytes;
+        //writer only
+        private long dataSize;
+
+        Recording(Path file, AudioFormat format) throws IOException {
+            this.file = file;
+            this.format = format;
+            int blockAlign = format.getChannels() * (format.getSampleSizeInBits() >> 3);
+            maxDataSize = (0xFFFF_FFFFL - WAV_HEADER_SIZE) / blockAlign * blockAlign;
+            channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING);
+            //placeholder, the sizes are patched on close
+            channel.write(wavHeader(format, 0));
+            writer = new PriorityThreadFactory(Thread.NORM_PRIORITY, "wavWriter").newThread(this::runWriter);
+            writer.setDaemon(true);
+            writer.start();
+        }
+
+        //audio thread
+        void offer(byte[] data, int length) {
+            if (!ring.offer(data, 0, length)) {
+                droppedBytes += length;
+            }
+        }
+
+        private void runWriter() {
+            try {
+                while (running) {
+                    if (writeOnce() == 0) {
+                        LockSupport.parkNanos(WRITER_SLEEP_NS);
+                    }
+                }
+                while (writeOnce() > 0) ;
+            } catch (IOException e) {
+                LOG.error("Error writing: {}, {}", file, e.getMessage());
+            }
+        }
+
+        private int writeOnce() throws IOException {
+            out.clear();
+            int n = ring.drainTo(out);
+            out.flip();
+            if (dataSize + n > maxDataSize) {
+                out.limit((int) (maxDataSize - dataSize));
+            }
+            while (out.hasRemaining()) {
+                dataSize += channel.write(out);
+            }
+            return n;
+        }
+
+        void close() {
+            running = false;
+            LockSupport.unpark(writer);
+            try {
+                writer.join();
+                channel.write(wavHeader(format, dataSize), 0);
+                channel.close();
+            } catch (InterruptedException | IOException e) {
+                LOG.error("Unable to complete: {}, {}", file, e.getMessage());
+            }
+            int blockAlign = format.getChannels() * (format.getSampleSizeInBits() >> 3);
+            LOG.info("Stopped recording: {}, {} seconds, dropped bytes: {}", file.toAbsolutePath(),
+                    dataSize / blockAlign / (int) format.getSampleRate(), droppedBytes);
+        }
+    }
 }
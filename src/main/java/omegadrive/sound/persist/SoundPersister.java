@@ -27,7 +27,14 @@ public interface SoundPersister {
         BOTH
     }
 
-    void persistSound(SoundType type, byte[] output);
+    /**
+     * Called by the audio thread, it should never block.
+     */
+    void persistSound(SoundType type, byte[] output, int length);
+
+    default void persistSound(SoundType type, byte[] output) {
+        persistSound(type, output, output.length);
+    }
 
     boolean isRecording();
 
@@ -19,11 +19,15 @@
 
 package omegadrive.sound.psg.white;
 
-
+import omegadrive.savestate.ObjectStateCodec;
 import omegadrive.sound.psg.PsgProvider;
 
+import java.nio.ByteBuffer;
+
 public class SN76489Psg implements PsgProvider {
 
+    private static final ObjectStateCodec psgCodec = ObjectStateCodec.of(SN76489.class);
+
     private SN76489 psg;
 
     public static SN76489Psg createInstance(int clockSpeed, int sampleRate) {
@@ -51,4 +55,14 @@ public class SN76489Psg implements PsgProvider {
     public void reset() {
         psg.reset();
     }
+
+    @Override
+    public void saveContext(ByteBuffer buffer) {
+        psgCodec.save(buffer, psg);
+    }
+
+    @Override
+    public void loadContext(ByteBuffer buffer) {
+        psgCodec.load(buffer, psg);
+    }
 }
@@ -0,0 +1,306 @@
+package omegadrive.sound.vgm;
+
+import omegadrive.SystemLoader;
+import omegadrive.sound.SoundProvider;
+import omegadrive.sound.fm.AudioRateControl;
+import omegadrive.sound.fm.FmProvider;
+import omegadrive.sound.fm.MdFmProvider;
+import omegadrive.sound.psg.PsgProvider;
+import omegadrive.util.RegionDetector;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Optional;
+
+/**
+ * VgmLogger
+ * <p>
+ * Logs the sound chip register writes to a .vgm file: the FM and PSG providers are wrapped, the wrappers
+ * forward every call and log the writes.
+ * The FM chip is ticked at a fixed rate (Genesis: FM clock / 6, SMS: 49716hz, even when the YM2413 is
+ * disabled) and provides the time base, the writes are timestamped to the nearest 44.1khz sample.
+ * Nothing is logged while the FM output is disabled, ie. run-ahead frames.
+ * <p>
+ * Federico Berti
+ * <p>
+ * Copyright 2021
+ */
+public class VgmLogger {
+
+    private static final Logger LOG = LogManager.getLogger(VgmLogger.class.getSimpleName());
+
+    public static final boolean ENABLED = Boolean.parseBoolean(System.getProperty("helios.vgm.log", "false"));
+
+    //SMS, see Sms::FM_DIVIDER
+    static final double YM2413_TICK_HZ = 49716.0;
+    static final int YM2413_CLOCK = 3579545;
+
+    private final VgmWriter writer;
+    private final SystemLoader.SystemType systemType;
+    private double samplesPerTick;
+    private double time;
+    private long emitted;
+    private boolean enabled = true, closed;
+
+    VgmLogger(VgmWriter writer, SystemLoader.SystemType systemType, double microsPerTick) {
+        this.writer = writer;
+        this.systemType = systemType;
+        setMicrosPerTick(microsPerTick);
+    }
+
+    /**
+     * Genesis and SMS only, empty otherwise or when the file can't be created.
+     */
+    public static Optional<VgmLogger> createInstance(SystemLoader.SystemType systemType, RegionDetector.Region region) {
+        boolean md = systemType == SystemLoader.SystemType.GENESIS;
+        if (!md && systemType != SystemLoader.SystemType.SMS) {
+            LOG.warn("VGM logging not supported for: {}", systemType);
+            return Optional.empty();
+        }
+        int snClock = (int) SoundProvider.getPsgSoundClock(region);
+        double fmClock = SoundProvider.getFmSoundClock(region);
+        int rate = region == RegionDetector.Region.EUROPE ? 50 : 60;
+        Path file = Paths.get(".", "vgm_" + systemType.name() + "_" + System.currentTimeMillis() + ".vgm");
+        try {
+            VgmWriter writer = new VgmWriter(file, snClock, md ? 0 : YM2413_CLOCK, md ? (int) fmClock : 0, rate);
+            LOG.info("Logging sound chip writes to: {}", file.toAbsolutePath());
+            return Optional.of(new VgmLogger(writer, systemType,
+                    1_000_000.0 / (md ? fmClock / 6 : YM2413_TICK_HZ)));
+        } catch (IOException e) {
+            LOG.error("Unable to create: {}, {}", file, e.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    public FmProvider wrap(FmProvider fm) {
+        return systemType == SystemLoader.SystemType.GENESIS ? new MdFmLogger(fm, this) : new FmLogger(fm, this);
+    }
+
+    public PsgProvider wrap(PsgProvider psg) {
+        return new PsgLogger(psg, this);
+    }
+
+    //the chip behind the logger, ie. to match the savestate FM core
+    public static FmProvider unwrap(FmProvider fm) {
+        return fm instanceof FmLogger ? ((FmLogger) fm).fm : fm;
+    }
+
+    void setMicrosPerTick(double microsPerTick) {
+        samplesPerTick = microsPerTick * VgmWriter.SAMPLE_RATE / 1_000_000.0;
+    }
+
+    synchronized void setEnabled(boolean enabled) {
+        this.enabled = enabled && !closed;
+    }
+
+    void tick() {
+        if (enabled) {
+            time += samplesPerTick;
+        }
+    }
+
+    synchronized void logFm(int port, int reg, int data) {
+        if (!enabled) {
+            return;
+        }
+        try {
+            syncTime();
+            if (systemType == SystemLoader.SystemType.GENESIS) {
+                writer.writeYm2612(port, reg, data);
+            } else {
+                writer.writeYm2413(reg, data);
+            }
+        } catch (IOException e) {
+            onError(e);
+        }
+    }
+
+    synchronized void logPsg(int data) {
+        if (!enabled) {
+            return;
+        }
+        try {
+            syncTime();
+            writer.writeSn76489(data);
+        } catch (IOException e) {
+            onError(e);
+        }
+    }
+
+    private void syncTime() {
+        long now = (long) time;
+        writer.waitSamples(now - emitted);
+        emitted = now;
+    }
+
+    private void onError(IOException e) {
+        LOG.error("VGM logging stopped: {}", e.getMessage());
+        enabled = false;
+    }
+
+    public synchronized void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        enabled = false;
+        try {
+            syncTime();
+            writer.close();
+            LOG.info("VGM logging done, samples: {}", writer.getTotalSamples());
+        } catch (IOException e) {
+            LOG.error("Unable to close the vgm file: {}", e.getMessage());
+        }
+    }
+
+    static class FmLogger implements FmProvider {
+
+        private final FmProvider fm;
+        private final VgmLogger logger;
+        private final int[] addressLatch = new int[2];
+
+        FmLogger(FmProvider fm, VgmLogger logger) {
+            this.fm = fm;
+            this.logger = logger;
+        }
+
+        //YM2612: address/data on ports 0,1 (part I) and 2,3 (part II); YM2413: address 0, data 1
+        @Override
+        public void write(int addr, int data) {
+            fm.write(addr, data);
+            int port = (addr >> 1) & 1;
+            if ((addr & 1) == 0) {
+                addressLatch[port] = data & 0xFF;
+            } else {
+                logger.logFm(port, addressLatch[port], data & 0xFF);
+            }
+        }
+
+        @Override
+        public void tick() {
+            logger.tick();
+            fm.tick();
+        }
+
+        @Override
+        public void setMicrosPerTick(double microsPerTick) {
+            logger.setMicrosPerTick(microsPerTick);
+            fm.setMicrosPerTick(microsPerTick);
+        }
+
+        @Override
+        public void setOutputEnabled(boolean enabled) {
+            logger.setEnabled(enabled);
+            fm.setOutputEnabled(enabled);
+        }
+
+        @Override
+        public int read() {
+            return fm.read();
+        }
+
+        @Override
+        public int readRegister(int type, int regNumber) {
+            return fm.readRegister(type, regNumber);
+        }
+
+        @Override
+        public int update(int[] buf_lr, int offset, int count) {
+            return fm.update(buf_lr, offset, count);
+        }
+
+        @Override
+        public void output(int[] buf_lr) {
+            fm.output(buf_lr);
+        }
+
+        @Override
+        public void init() {
+            fm.init();
+        }
+
+        @Override
+        public void reset() {
+            fm.reset();
+        }
+
+        @Override
+        public void onNewFrame() {
+            fm.onNewFrame();
+        }
+
+        @Override
+        public Optional<AudioRateControl> getAudioRateControl() {
+            return fm.getAudioRateControl();
+        }
+
+        @Override
+        public void saveContext(ByteBuffer buffer) {
+            fm.saveContext(buffer);
+        }
+
+        @Override
+        public void loadContext(ByteBuffer buffer) {
+            fm.loadContext(buffer);
+        }
+
+        @Override
+        public void close() {
+            fm.close();
+        }
+    }
+
+    //YM2612
+    static class MdFmLogger extends FmLogger implements MdFmProvider {
+
+        MdFmLogger(FmProvider fm, VgmLogger logger) {
+            super(fm, logger);
+        }
+    }
+
+    static class PsgLogger implements PsgProvider {
+
+        private final PsgProvider psg;
+        private final VgmLogger logger;
+
+        PsgLogger(PsgProvider psg, VgmLogger logger) {
+            this.psg = psg;
+            this.logger = logger;
+        }
+
+        @Override
+        public void write(int data) {
+            psg.write(data);
+            logger.logPsg(data & 0xFF);
+        }
+
+        @Override
+        public void output(byte[] output, int offset, int end) {
+            psg.output(output, offset, end);
+        }
+
+        @Override
+        public void init() {
+            psg.init();
+        }
+
+        @Override
+        public void reset() {
+            psg.reset();
+        }
+
+        @Override
+        public void saveContext(ByteBuffer buffer) {
+            psg.saveContext(buffer);
+        }
+
+        @Override
+        public void loadContext(ByteBuffer buffer) {
+            psg.loadContext(buffer);
+        }
+    }
+}
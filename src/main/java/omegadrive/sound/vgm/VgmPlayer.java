@@ -0,0 +1,303 @@
+package omegadrive.sound.vgm;
+
+import omegadrive.sound.fm.FmProvider;
+import omegadrive.sound.fm.MdFmProvider;
+import omegadrive.sound.fm.ym2413.Ym2413Provider;
+import omegadrive.sound.javasound.AbstractSoundManager;
+import omegadrive.sound.psg.PsgProvider;
+import omegadrive.sound.psg.white.SN76489Psg;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.zip.GZIPInputStream;
+
+import static omegadrive.sound.fm.MdFmProvider.*;
+import static omegadrive.sound.vgm.VgmWriter.*;
+
+/**
+ * VgmPlayer
+ * <p>
+ * Plays a .vgm/.vgz file on the emulator sound chips, headless and at full speed: a deterministic workload
+ * to measure the synthesis performance and to catch changes in the output, ie.
+ * <p>
+ * java -cp ... omegadrive.sound.vgm.VgmPlayer song.vgm [repeat]
+ * <p>
+ * Reports the 44.1khz samples played per second and a hash of the PCM produced by the chips (FM and PSG).
+ * Supported: SN76489, YM2413, YM2612 (including the PCM data blocks, 0x8n and 0xE0), other chips are skipped.
+ * The YM2612 core follows helios.md.fm.core.
+ * <p>
+ * Federico Berti
+ * <p>
+ * Copyright 2021
+ */
+public class VgmPlayer {
+
+    private static final Logger LOG = LogManager.getLogger(VgmPlayer.class.getSimpleName());
+
+    static final String USAGE = "Usage: VgmPlayer <file.vgm|file.vgz> [repeat]";
+
+    //chip ticks after an address/data write: the Nuked core applies a slot register write when the slot
+    //comes around, within one chip sample (24 ticks)
+    static final int YM2612_ADDR_TICKS = 2, YM2612_DATA_TICKS = 24;
+    //a frame worth of samples is produced and drained at a time
+    static final int MAX_CHUNK = 735;
+    static final long FNV_OFFSET = 0xcbf29ce484222325L, FNV_PRIME = 0x100000001b3L;
+
+    private final ByteBuffer data;
+    private final int snClock, ym2413Clock, ym2612Clock, rate, dataOffset;
+    private final long totalSamples;
+
+    public static class Result {
+        public long samples, nanos, fmHash = FNV_OFFSET, psgHash = FNV_OFFSET;
+
+        public double samplesPerSecond() {
+            return samples * 1e9 / Math.max(1, nanos);
+        }
+
+        public long pcmHash() {
+            return fmHash * FNV_PRIME ^ psgHash;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("samples: %d, time: %d ms, samples/sec: %.0f (%.1fx realtime), pcmHash: %016x",
+                    samples, nanos / 1_000_000, samplesPerSecond(), samplesPerSecond() / SAMPLE_RATE, pcmHash());
+        }
+    }
+
+    public VgmPlayer(byte[] vgm) {
+        data = ByteBuffer.wrap(vgm).order(ByteOrder.LITTLE_ENDIAN);
+        if (data.getInt(0) != 0x206d6756) { //"Vgm "
+            throw new IllegalArgumentException("Not a VGM file");
+        }
+        int version = data.getInt(0x08);
+        snClock = data.getInt(0x0C) & 0x3FFF_FFFF;
+        ym2413Clock = data.getInt(0x10) & 0x3FFF_FFFF;
+        totalSamples = data.getInt(0x18) & 0xFFFF_FFFFL;
+        rate = version >= 0x101 ? data.getInt(0x24) : 0;
+        ym2612Clock = version >= 0x110 ? data.getInt(0x2C) & 0x3FFF_FFFF : 0;
+        dataOffset = version >= 0x150 && data.getInt(0x34) > 0 ? 0x34 + data.getInt(0x34) : 0x40;
+    }
+
+    public static VgmPlayer load(Path file) throws IOException {
+        byte[] b = Files.readAllBytes(file);
+        if (b.length > 2 && (b[0] & 0xFF) == 0x1F && (b[1] & 0xFF) == 0x8B) {
+            try (InputStream in = new GZIPInputStream(Files.newInputStream(file))) {
+                ByteArrayOutputStream out = new ByteArrayOutputStream(b.length * 4);
+                byte[] buf = new byte[1 << 16];
+                for (int n; (n = in.read(buf)) > 0; ) {
+                    out.write(buf, 0, n);
+                }
+                b = out.toByteArray();
+            }
+        }
+        return new VgmPlayer(b);
+    }
+
+    public long getTotalSamples() {
+        return totalSamples;
+    }
+
+    /**
+     * Plays the whole file once, new chip instances every time.
+     */
+    public Result play() {
+        return new Playback().run();
+    }
+
+    private class Playback {
+        final Result res = new Result();
+        final FmProvider fm;
+        final PsgProvider psg;
+        final double ticksPerSample, psgPerSample;
+        final int samplesPerFrame = rate == 50 ? 882 : 735;
+        final int[] fmBuf = new int[4096];
+        final byte[] psgBuf = new byte[MAX_CHUNK * 2];
+        //data blocks are accumulated, the pcm array is only rebuilt when a block has been added since
+        final ByteArrayOutputStream pcmBlocks = new ByteArrayOutputStream();
+        byte[] pcm = new byte[0];
+        int pcmPos;
+        double tickAccum, psgAccum;
+        int frameAccum;
+
+        Playback() {
+            if (ym2612Clock > 0) {
+                fm = MdFmProvider.createInstance(ym2612Clock, AbstractSoundManager.audioFormat);
+                ticksPerSample = ym2612Clock / 6.0 / SAMPLE_RATE;
+                fm.setMicrosPerTick(1_000_000.0 / (ym2612Clock / 6.0));
+            } else if (ym2413Clock > 0) {
+                fm = Ym2413Provider.createInstance(AbstractSoundManager.audioFormat);
+                ticksPerSample = VgmLogger.YM2413_TICK_HZ / SAMPLE_RATE;
+            } else {
+                fm = FmProvider.NO_SOUND;
+                ticksPerSample = 0;
+            }
+            fm.reset();
+            fm.onNewFrame();
+            psg = snClock > 0 ? SN76489Psg.createInstance(snClock, (int) AbstractSoundManager.audioFormat.getSampleRate())
+                    : PsgProvider.NO_SOUND;
+            psgPerSample = AbstractSoundManager.audioFormat.getSampleRate() / SAMPLE_RATE;
+        }
+
+        Result run() {
+            long start = System.nanoTime();
+            try {
+                int pos = dataOffset;
+                int end = data.limit();
+                while (pos < end) {
+                    int cmd = data.get(pos) & 0xFF;
+                    pos = execute(cmd, pos);
+                    if (pos < 0) {
+                        break;
+                    }
+                }
+            } finally {
+                fm.close();
+            }
+            res.nanos = System.nanoTime() - start;
+            return res;
+        }
+
+        //returns the position of the next command, -1 at the end
+        private int execute(int cmd, int pos) {
+            switch (cmd) {
+                case CMD_SN76489:
+                    psg.write(u8(pos + 1));
+                    return pos + 2;
+                case CMD_YM2413:
+                    fm.write(0, u8(pos + 1));
+                    fm.write(1, u8(pos + 2));
+                    return pos + 3;
+                case CMD_YM2612_P0:
+                case CMD_YM2612_P1:
+                    writeYm2612(cmd - CMD_YM2612_P0, u8(pos + 1), u8(pos + 2));
+                    return pos + 3;
+                case CMD_WAIT:
+                    advance(data.getShort(pos + 1) & 0xFFFF);
+                    return pos + 3;
+                case CMD_WAIT_NTSC:
+                    advance(WAIT_NTSC);
+                    return pos + 1;
+                case CMD_WAIT_PAL:
+                    advance(WAIT_PAL);
+                    return pos + 1;
+                case CMD_END:
+                    return -1;
+                case 0x67: //data block: 0x67 0x66 type size data
+                    int type = u8(pos + 2);
+                    int size = data.getInt(pos + 3) & 0x7FFF_FFFF;
+                    if (type == 0) {
+                        pcmBlocks.write(data.array(), pos + 7, size);
+                    }
+                    return pos + 7 + size;
+                case 0xE0:
+                    pcmPos = data.getInt(pos + 1);
+                    return pos + 5;
+                default:
+                    break;
+            }
+            if ((cmd & 0xF0) == CMD_WAIT_SHORT) {
+                advance((cmd & 0xF) + 1);
+                return pos + 1;
+            }
+            if ((cmd & 0xF0) == 0x80) {
+                if (pcm.length != pcmBlocks.size()) {
+                    pcm = pcmBlocks.toByteArray();
+                }
+                if (pcmPos < pcm.length) {
+                    writeYm2612(0, 0x2A, pcm[pcmPos++] & 0xFF);
+                }
+                advance(cmd & 0xF);
+                return pos + 1;
+            }
+            return pos + commandLength(cmd);
+        }
+
+        private void writeYm2612(int port, int reg, int value) {
+            fm.write(port == 0 ? FM_ADDRESS_PORT0 : FM_ADDRESS_PORT1, reg);
+            tickFm(YM2612_ADDR_TICKS);
+            fm.write(port == 0 ? FM_DATA_PORT0 : FM_DATA_PORT1, value);
+            tickFm(YM2612_DATA_TICKS);
+        }
+
+        //the ticks are taken from the next wait, the timing does not drift
+        private void tickFm(int n) {
+            for (int i = 0; i < n; i++) {
+                fm.tick();
+            }
+            tickAccum -= n;
+        }
+
+        private void advance(int samples) {
+            while (samples > 0) {
+                int n = Math.min(samples, MAX_CHUNK);
+                samples -= n;
+                res.samples += n;
+                tickAccum += n * ticksPerSample;
+                for (; tickAccum >= 1; tickAccum--) {
+                    fm.tick();
+                }
+                psgAccum += n * psgPerSample;
+                int p = (int) psgAccum;
+                psgAccum -= p;
+                psg.output(psgBuf, 0, p);
+                for (int i = 0; i < p; i++) {
+                    res.psgHash = (res.psgHash ^ psgBuf[i]) * FNV_PRIME;
+                }
+                frameAccum += n;
+                if (frameAccum >= samplesPerFrame) {
+                    frameAccum -= samplesPerFrame;
+                    fm.onNewFrame();
+                }
+                for (int k; (k = fm.update(fmBuf, 0, fmBuf.length >> 1)) > 0; ) {
+                    for (int i = 0; i < k << 1; i++) {
+                        res.fmHash = (res.fmHash ^ fmBuf[i]) * FNV_PRIME;
+                    }
+                }
+            }
+        }
+
+        private int u8(int pos) {
+            return data.get(pos) & 0xFF;
+        }
+    }
+
+    //length of the commands that are skipped, including the command byte
+    static int commandLength(int cmd) {
+        if (cmd >= 0x30 && cmd <= 0x3F) return 2;
+        if (cmd >= 0x40 && cmd <= 0x4E) return 3;
+        if (cmd == 0x4F) return 2;
+        if (cmd >= 0x54 && cmd <= 0x5F) return 3;
+        if (cmd == 0x68) return 12; //PCM RAM write: 0x68 0x66 type offset(3) dest(3) size(3)
+        if (cmd == 0x90 || cmd == 0x91 || cmd == 0x95) return 5;
+        if (cmd == 0x92) return 6;
+        if (cmd == 0x93) return 11;
+        if (cmd == 0x94) return 2;
+        if (cmd >= 0xA0 && cmd <= 0xBF) return 3;
+        if (cmd >= 0xC0 && cmd <= 0xDF) return 4;
+        if (cmd >= 0xE1) return 5;
+        return 1;
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.out.println(USAGE);
+            return;
+        }
+        VgmPlayer player = load(Paths.get(args[0]));
+        int repeat = args.length > 1 ? Integer.parseInt(args[1]) : 1;
+        LOG.info("{}, samples: {}, sn76489: {}hz, ym2413: {}hz, ym2612: {}hz", args[0], player.totalSamples,
+                player.snClock, player.ym2413Clock, player.ym2612Clock);
+        for (int i = 0; i < repeat; i++) {
+            System.out.println(player.play());
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package omegadrive.sound.vgm;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * VgmWriter
+ * <p>
+ * Streams VGM 1.61 commands to a file through a fixed size buffer, the header (eof offset, total samples)
+ * is written last, on close.
+ * Waits are accumulated and only emitted before the next command, ie. consecutive writes in the same
+ * sample need no wait.
+ * <p>
+ * Federico Berti
+ * <p>
+ * Copyright 2021
+ */
+public class VgmWriter implements Closeable {
+
+    public static final int VERSION = 0x161;
+    public static final int HEADER_SIZE = 0x100;
+    public static final int SAMPLE_RATE = 44100;
+
+    static final int CMD_SN76489 = 0x50, CMD_YM2413 = 0x51, CMD_YM2612_P0 = 0x52, CMD_YM2612_P1 = 0x53,
+            CMD_WAIT = 0x61, CMD_WAIT_NTSC = 0x62, CMD_WAIT_PAL = 0x63, CMD_END = 0x66, CMD_WAIT_SHORT = 0x70;
+    static final int WAIT_NTSC = 735, WAIT_PAL = 882, MAX_WAIT = 0xFFFF;
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final FileChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+    private final int snClock, ym2413Clock, ym2612Clock, rate;
+    private long pendingWait, totalSamples;
+    private boolean closed;
+
+    /**
+     * @param snClock     SN76489 clock in Hz, 0 when not used
+     * @param ym2413Clock YM2413 clock in Hz, 0 when not used
+     * @param ym2612Clock YM2612 clock in Hz, 0 when not used
+     * @param rate        frame rate, 50 or 60
+     */
+    public VgmWriter(Path file, int snClock, int ym2413Clock, int ym2612Clock, int rate) throws IOException {
+        this.snClock = snClock;
+        this.ym2413Clock = ym2413Clock;
+        this.ym2612Clock = ym2612Clock;
+        this.rate = rate;
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        //placeholder, see writeHeader
+        channel.write(ByteBuffer.allocate(HEADER_SIZE));
+    }
+
+    //number of 44.1khz samples since the previous command
+    public void waitSamples(long samples) {
+        pendingWait += samples;
+        totalSamples += samples;
+    }
+
+    public void writeSn76489(int data) throws IOException {
+        flushWait();
+        put(CMD_SN76489, data);
+    }
+
+    public void writeYm2413(int reg, int data) throws IOException {
+        flushWait();
+        put(CMD_YM2413, reg, data);
+    }
+
+    public void writeYm2612(int port, int reg, int data) throws IOException {
+        flushWait();
+        put(port == 0 ? CMD_YM2612_P0 : CMD_YM2612_P1, reg, data);
+    }
+
+    public long getTotalSamples() {
+        return totalSamples;
+    }
+
+    private void flushWait() throws IOException {
+        while (pendingWait > 0) {
+            if (pendingWait <= 16) {
+                put(CMD_WAIT_SHORT + (int) pendingWait - 1);
+                pendingWait = 0;
+            } else if (pendingWait == WAIT_NTSC || pendingWait == WAIT_PAL) {
+                put(pendingWait == WAIT_NTSC ? CMD_WAIT_NTSC : CMD_WAIT_PAL);
+                pendingWait = 0;
+            } else {
+                int w = (int) Math.min(pendingWait, MAX_WAIT);
+                put(CMD_WAIT, w & 0xFF, w >> 8);
+                pendingWait -= w;
+            }
+        }
+    }
+
+    private void put(int... bytes) throws IOException {
+        if (buffer.remaining() < bytes.length) {
+            drain();
+        }
+        for (int b : bytes) {
+            buffer.put((byte) b);
+        }
+    }
+
+    private void drain() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    private void writeHeader() throws IOException {
+        ByteBuffer h = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        h.put(0, (byte) 'V').put(1, (byte) 'g').put(2, (byte) 'm').put(3, (byte) ' ');
+        h.putInt(0x04, (int) channel.size() - 4);
+        h.putInt(0x08, VERSION);
+        h.putInt(0x0C, snClock);
+        h.putInt(0x10, ym2413Clock);
+        h.putInt(0x18, (int) totalSamples);
+        h.putInt(0x24, rate);
+        //Sega VDP PSG: white noise feedback pattern, 16 bit shift register
+        h.putShort(0x28, (short) (snClock > 0 ? 0x0009 : 0));
+        h.put(0x2A, (byte) (snClock > 0 ? 16 : 0));
+        h.putInt(0x2C, ym2612Clock);
+        h.putInt(0x34, HEADER_SIZE - 0x34);
+        channel.write(h, 0);
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            flushWait();
+            put(CMD_END);
+            drain();
+            writeHeader();
+        } finally {
+            channel.close();
+        }
+    }
+}
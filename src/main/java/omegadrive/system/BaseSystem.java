@@ -27,15 +27,20 @@ import omegadrive.input.KeyboardInput;
 import omegadrive.joypad.JoypadProvider;
 import omegadrive.memory.IMemoryProvider;
 import omegadrive.savestate.BaseStateHandler;
+import omegadrive.savestate.RewindBuffer;
+import omegadrive.savestate.StateSnapshot;
 import omegadrive.sound.SoundProvider;
 import omegadrive.system.perf.Telemetry;
 import omegadrive.ui.DisplayWindow;
 import omegadrive.ui.PrefStore;
 import omegadrive.util.*;
 import omegadrive.vdp.model.BaseVdpProvider;
+import omegadrive.vdp.util.FrameCapture;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.nio.file.Path;
 import java.time.Duration;
 import java.util.Objects;
@@ -62,10 +67,12 @@ public abstract class BaseSystem<BUS extends BaseBusProvider> implements SystemP
     private Path romPath;
 
     protected Future<Void> runningRomFuture;
+    private volatile Thread romThread;
     protected Path romFile;
     protected DisplayWindow emuFrame;
 
-    private final ExecutorService executorService = Executors.newSingleThreadExecutor();
+    private final ThreadPoolExecutor executorService =
+            new ThreadPoolExecutor(1, 1, 1, TimeUnit.SECONDS, new LinkedBlockingQueue<>());
 
     protected volatile boolean saveStateFlag = false;
     protected volatile BaseStateHandler stateHandler;
@@ -76,7 +83,8 @@ public abstract class BaseSystem<BUS extends BaseBusProvider> implements SystemP
     protected volatile boolean softReset = false;
 
     //frame pacing stuff
-    protected Telemetry telemetry = Telemetry.getInstance();
+    protected final SystemContext context;
+    protected final Telemetry telemetry;
     private static final boolean fullThrottle;
     protected long elapsedWaitNs, frameProcessingDelayNs;
     protected long targetNs, startNs = 0;
@@ -86,8 +94,29 @@ public abstract class BaseSystem<BUS extends BaseBusProvider> implements SystemP
 
     private CyclicBarrier pauseBarrier = new CyclicBarrier(2);
 
+    //run-ahead: frames emulated past the current one, only the last one is shown
+    protected static final int RUN_AHEAD_FRAMES;
+    private StateSnapshot runAheadSnapshot;
+    private int runAheadFrame = 0;
+
+    //rewind: seconds of history, a state every REWIND_INTERVAL_FRAMES frames
+    protected static final int REWIND_SECONDS, REWIND_INTERVAL_FRAMES, REWIND_MAX_MB;
+    public static final String REWIND_MEMORY_COUNTER = "rewindMemKb";
+    private RewindBuffer rewindBuffer;
+    private volatile boolean rewindFlag = false;
+
+    //frames captured to disk, see FrameCapture
+    private FrameCapture frameCapture;
+    //the sound recording has been started by the frame capture
+    private boolean frameCaptureSound;
+    private volatile boolean frameCaptureFlag = false;
+
     static {
         fullThrottle = Boolean.parseBoolean(java.lang.System.getProperty("helios.fullSpeed", "false"));
+        RUN_AHEAD_FRAMES = Math.max(0, Integer.parseInt(java.lang.System.getProperty("helios.runAhead.frames", "0")));
+        REWIND_SECONDS = Math.max(0, Integer.parseInt(java.lang.System.getProperty("helios.rewind.seconds", "0")));
+        REWIND_INTERVAL_FRAMES = Math.max(1, Integer.parseInt(java.lang.System.getProperty("helios.rewind.interval.frames", "4")));
+        REWIND_MAX_MB = Math.max(1, Integer.parseInt(java.lang.System.getProperty("helios.rewind.max.mb", "16")));
     }
 
     protected abstract void loop();
@@ -102,6 +131,10 @@ public abstract class BaseSystem<BUS extends BaseBusProvider> implements SystemP
 
     protected BaseSystem(DisplayWindow emuFrame) {
         this.emuFrame = emuFrame;
+        this.context = new SystemContext(getClass().getSimpleName());
+        this.telemetry = context.getTelemetry();
+        //no idle rom thread left behind, many systems can be created in the same JVM
+        executorService.allowCoreThreadTimeOut(true);
     }
 
     @Override
@@ -144,6 +177,12 @@ public abstract class BaseSystem<BUS extends BaseBusProvider> implements SystemP
             case SOFT_RESET:
                 softReset = true;
                 break;
+            case REWIND:
+                rewindFlag = true;
+                break;
+            case TOGGLE_FRAME_CAPTURE:
+                frameCaptureFlag = true;
+                break;
             case PAD_SETUP_CHANGE:
                 String[] s1 = parameter.toString().split(":");
                 joypad.setPadSetupChange(InputProvider.PlayerNumber.valueOf(s1[0]), s1[1]);
@@ -167,10 +206,10 @@ public abstract class BaseSystem<BUS extends BaseBusProvider> implements SystemP
     }
 
     public void handleNewRom(Path file) {
-        init();
+        StartupProfile.time("devices", this::init);
         this.romFile = file;
         Runnable runnable = new RomRunnable(file);
-        PrefStore.addRecentFile(file.toAbsolutePath().toString());
+        StartupProfile.time("prefs", () -> PrefStore.addRecentFile(file.toAbsolutePath().toString()));
         runningRomFuture = executorService.submit(runnable, null);
     }
 
@@ -178,6 +217,7 @@ public abstract class BaseSystem<BUS extends BaseBusProvider> implements SystemP
         try {
             handleCloseRom();
             sound.close();
+            context.close();
             Util.executorService.shutdown();
             Util.executorService.awaitTermination(1, TimeUnit.SECONDS);
             PrefStore.close();
@@ -236,6 +276,10 @@ public abstract class BaseSystem<BUS extends BaseBusProvider> implements SystemP
         return romPath;
     }
 
+    public SoundProvider getSound() {
+        return sound;
+    }
+
     protected void pauseAndWait() {
         if (!pauseFlag) {
             return;
@@ -287,18 +331,33 @@ public abstract class BaseSystem<BUS extends BaseBusProvider> implements SystemP
         }
         if (isRomRunning()) {
             runningRomFuture.cancel(true);
-            while (isRomRunning()) {
-                Util.sleep(100);
-            }
+            awaitRomThreadExit();
             LOG.info("Rom thread cancel");
             emuFrame.resetScreen();
             sound.reset();
             bus.closeRom();
+            closeRewindBuffer();
+            closeFrameCapture();
             telemetry.reset();
             Optional.ofNullable(vdp).ifPresent(Device::reset);
         }
     }
 
+    //the loop only checks the future once per frame, wait for the rom thread to finish its work
+    private void awaitRomThreadExit() {
+        if (Thread.currentThread() == romThread) {
+            return;
+        }
+        try {
+            executorService.submit(() -> {
+            }).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            LOG.error("Unable to stop the rom thread", e);
+        }
+    }
+
     protected void createAndAddVdpEventListener() {
         vdp.addVdpEventListener(new BaseVdpProvider.VdpEventListener() {
             @Override
@@ -310,15 +369,25 @@ public abstract class BaseSystem<BUS extends BaseBusProvider> implements SystemP
 
     @Override
     public void newFrame() {
+        if (runAheadFrame > 0) {
+            newFrameRunAhead();
+            return;
+        }
         long startWaitNs = System.nanoTime();
         long prevStartNs = startNs;
         elapsedWaitNs = syncCycle(startNs) - startWaitNs;
         startNs = System.nanoTime();
         updateVideoMode(false);
-        renderScreenLinearInternal(vdp.getScreenDataLinear(), getStats(startNs, prevStartNs));
+        if (runAheadSnapshot == null) {
+            renderScreenLinearInternal(vdp.getScreenDataLinear(), getStats(startNs, prevStartNs));
+        } else {
+            getStats(startNs, prevStartNs);
+        }
         frameProcessingDelayNs = startNs - startWaitNs - elapsedWaitNs;
         handleVdpDumpScreenData();
         processSaveState();
+        processFrameCapture();
+        processRewind();
         pauseAndWait();
         resetCycleCounters(counter);
         counter = 0;
@@ -326,6 +395,98 @@ public abstract class BaseSystem<BUS extends BaseBusProvider> implements SystemP
         handleSoftReset();
         inputProvider.handleEvents();
 //        LOG.info("{}, {}", elapsedWaitNs, frameProcessingDelayNs);
+        if (runAheadSnapshot != null && !futureDoneFlag) {
+            runAheadSnapshot.save();
+            sound.getFm().setOutputEnabled(false);
+            runAheadFrame = 1;
+        }
+    }
+
+    /**
+     * The frame has completed ahead of time, using the latest input.
+     * Only the last one is shown, then the machine goes back to the snapshot taken
+     * at the end of the real frame; the FM output is muted while running ahead.
+     */
+    private void newFrameRunAhead() {
+        resetCycleCounters(counter);
+        counter = 0;
+        if (runAheadFrame < RUN_AHEAD_FRAMES) {
+            runAheadFrame++;
+            return;
+        }
+        renderScreenLinearInternal(vdp.getScreenDataLinear(), stats);
+        runAheadSnapshot.load();
+        sound.getFm().setOutputEnabled(true);
+        runAheadFrame = 0;
+    }
+
+    //one step back per event, a state is captured every REWIND_INTERVAL_FRAMES frames otherwise
+    protected void processRewind() {
+        if (rewindBuffer == null) {
+            return;
+        }
+        if (rewindFlag) {
+            rewindFlag = false;
+            if (!rewindBuffer.rewind()) {
+                LOG.info("Rewind history is empty");
+            }
+            return;
+        }
+        rewindBuffer.newFrame();
+    }
+
+    //the capture and the sound recording start and stop together, see FrameCapture#getMuxCommand
+    protected void processFrameCapture() {
+        if (!frameCaptureFlag) {
+            return;
+        }
+        frameCaptureFlag = false;
+        if (frameCapture != null) {
+            closeFrameCapture();
+            return;
+        }
+        try {
+            frameCapture = FrameCapture.createInstance(getSystemType().name(), videoMode.isPal() ? 50 : 60);
+            if (FrameCapture.WITH_SOUND) {
+                //a recording started by the user is left alone, it is not aligned to the first frame
+                frameCaptureSound = !sound.isRecording();
+                if (frameCaptureSound) {
+                    sound.setRecording(true);
+                } else {
+                    LOG.warn("Sound recording already running, not aligned with the frame capture");
+                }
+            }
+        } catch (IOException e) {
+            LOG.error("Unable to start the frame capture: {}", e.getMessage());
+        }
+    }
+
+    private void closeFrameCapture() {
+        if (frameCapture != null) {
+            if (frameCaptureSound) {
+                sound.setRecording(false);
+                frameCaptureSound = false;
+            }
+            frameCapture.close();
+            frameCapture = null;
+        }
+    }
+
+    private void closeRewindBuffer() {
+        if (rewindBuffer != null) {
+            LOG.info("Rewind memory usage: {} Kb, dropped captures: {}",
+                    telemetry.getCounter(REWIND_MEMORY_COUNTER), rewindBuffer.getDroppedCaptures());
+            telemetry.removeCounter(REWIND_MEMORY_COUNTER);
+            rewindBuffer.close();
+            rewindBuffer = null;
+        }
+    }
+
+    /**
+     * @return null when run-ahead and rewind are not supported
+     */
+    protected StateSnapshot createStateSnapshot() {
+        return null;
     }
 
     final Consumer<String> statsConsumer = st -> stats = Optional.of(st);
@@ -340,9 +501,10 @@ public abstract class BaseSystem<BUS extends BaseBusProvider> implements SystemP
 
         @Override
         public void run() {
+            romThread = Thread.currentThread();
             try {
-                int[] data = Util.toUnsignedIntArray(FileLoader.readBinaryFile(file, getSystemType()));
-                if (data.length == 0) {
+                ByteBuffer data = StartupProfile.time("romLoad", () -> FileLoader.readRomFile(file, getSystemType()));
+                if (data.capacity() == 0) {
                     LOG.error("Unable to open/access file: {}", file.toAbsolutePath().toString());
                     return;
                 }
@@ -354,7 +516,7 @@ public abstract class BaseSystem<BUS extends BaseBusProvider> implements SystemP
                 emuFrame.setTitle(romName);
                 region = getRegionInternal(memory, emuFrame.getRegionOverride());
                 LOG.info("Running rom: {}, region: {}", romName, region);
-                initAfterRomLoad();
+                StartupProfile.time("systemInit", BaseSystem.this::initAfterRomLoad);
                 loop();
             } catch (Exception | Error e) {
                 e.printStackTrace();
@@ -373,6 +535,10 @@ public abstract class BaseSystem<BUS extends BaseBusProvider> implements SystemP
 
     protected void renderScreenLinearInternal(int[] data, Optional<String> label) {
         emuFrame.renderScreenLinear(data, label, videoMode);
+        StartupProfile.onFrame();
+        if (frameCapture != null) {
+            frameCapture.capture(data, videoMode);
+        }
     }
 
     private void handlePause() {
@@ -397,5 +563,21 @@ public abstract class BaseSystem<BUS extends BaseBusProvider> implements SystemP
         vdp.init();
         bus.init();
         futureDoneFlag = false;
+        runAheadFrame = 0;
+        runAheadSnapshot = RUN_AHEAD_FRAMES > 0 ? createStateSnapshot() : null;
+        if (runAheadSnapshot != null) {
+            LOG.info("Run-ahead frames: {}", RUN_AHEAD_FRAMES);
+        }
+        closeRewindBuffer();
+        frameCaptureFlag = FrameCapture.START_ON_LOAD;
+        StateSnapshot rewindSnapshot = REWIND_SECONDS > 0 ? createStateSnapshot() : null;
+        if (rewindSnapshot != null) {
+            int entries = REWIND_SECONDS * 60 / REWIND_INTERVAL_FRAMES;
+            rewindBuffer = new RewindBuffer(rewindSnapshot, entries, REWIND_INTERVAL_FRAMES, REWIND_MAX_MB * 1024L * 1024);
+            final RewindBuffer rb = rewindBuffer;
+            telemetry.registerCounter(REWIND_MEMORY_COUNTER, () -> rb.getMemoryBytes() >> 10);
+            LOG.info("Rewind: {} seconds, one state every {} frames, max {} MB",
+                    REWIND_SECONDS, REWIND_INTERVAL_FRAMES, REWIND_MAX_MB);
+        }
     }
 }
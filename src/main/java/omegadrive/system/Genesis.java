@@ -21,8 +21,8 @@ package omegadrive.system;
 
 import omegadrive.SystemLoader;
 import omegadrive.bus.md.GenesisBus;
-import omegadrive.bus.md.SvpMapper;
 import omegadrive.bus.model.GenesisBusProvider;
+import omegadrive.bus.model.SvpBus;
 import omegadrive.cpu.m68k.M68kProvider;
 import omegadrive.cpu.m68k.MC68000Wrapper;
 import omegadrive.cpu.z80.Z80CoreWrapper;
@@ -32,6 +32,7 @@ import omegadrive.joypad.GenesisJoypad;
 import omegadrive.memory.IMemoryProvider;
 import omegadrive.memory.MemoryProvider;
 import omegadrive.savestate.BaseStateHandler;
+import omegadrive.savestate.StateSnapshot;
 import omegadrive.sound.SoundProvider;
 import omegadrive.sound.javasound.AbstractSoundManager;
 import omegadrive.system.perf.GenesisPerf;
@@ -43,6 +44,8 @@ import omegadrive.vdp.model.GenesisVdpProvider;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+import java.nio.ByteBuffer;
+
 /**
  * Genesis emulator main class
  * <p>
@@ -60,6 +63,8 @@ public class Genesis extends BaseSystem<GenesisBusProvider> {
     final static double[] vdpVals = {VDP_RATIO * BaseVdpProvider.MCLK_DIVIDER_FAST_VDP, VDP_RATIO * BaseVdpProvider.MCLK_DIVIDER_SLOW_VDP};
     protected final static int Z80_DIVIDER = 14 / MCLK_DIVIDER;
     protected final static int FM_DIVIDER = 42 / MCLK_DIVIDER;
+    //true: jump to the earliest pending device deadline, false: visit every MCLK/7 tick; read at every rom load
+    public final static String EVENT_SCHEDULER_PROPERTY = "helios.md.event.scheduler";
     private final static Logger LOG = LogManager.getLogger(Genesis.class.getSimpleName());
 
     protected Z80Provider z80;
@@ -105,28 +110,72 @@ public class Genesis extends BaseSystem<GenesisBusProvider> {
 
 
     protected void loop() {
-        LOG.info("Starting game loop");
+        boolean eventScheduler = Boolean.parseBoolean(System.getProperty(EVENT_SCHEDULER_PROPERTY, "false"));
+        LOG.info("Starting game loop, scheduler: {}", eventScheduler ? "event" : "polling");
         updateVideoMode(true);
-        int cnt;
 
         try {
-            do {
-                cnt = counter;
-                run68k(cnt);
-                runZ80(cnt);
-                runFM(cnt);
-                runVdp(cnt);
-                if (cnt % SVP_CYCLES == 0) {
-                    SvpMapper.ssp16.ssp1601_run(SVP_RUN_CYCLES);
-                }
-                counter++;
-            } while (!futureDoneFlag);
+            if (eventScheduler) {
+                loopEvent();
+            } else {
+                loopPolling();
+            }
         } catch (Exception e) {
             LOG.error("Error main cycle", e);
         }
         LOG.info("Exiting rom thread loop");
     }
 
+    private void loopPolling() {
+        int cnt;
+        do {
+            cnt = counter;
+            runDevices(cnt);
+            counter++;
+        } while (!futureDoneFlag);
+    }
+
+    /**
+     * Same device ordering as {@link #loopPolling()} but the counter skips the ticks
+     * where no device is due, the results are cycle-identical, see GenesisSchedulerTest.
+     * NOTE: a device can reset the counter (ie. vdp -> newFrame), the next deadline
+     * is computed after all the devices for the current tick have run.
+     */
+    private void loopEvent() {
+        do {
+            runDevices(counter);
+            counter = nextEventCycle(counter + 1);
+        } while (!futureDoneFlag);
+    }
+
+    private void runDevices(int cnt) {
+        run68k(cnt);
+        runZ80(cnt);
+        runFM(cnt);
+        runVdp(cnt);
+        if (cnt % SVP_CYCLES == 0) {
+            bus.getSvpMapper().getSsp16().ssp1601_run(SVP_RUN_CYCLES);
+        }
+    }
+
+    /**
+     * Earliest tick >= from where at least one device is due.
+     */
+    protected final int nextEventCycle(int from) {
+        int next = Math.min(next68kCycle, nextZ80Cycle);
+        next = Math.min(next, (int) Math.ceil(nextVdpCycle));
+        next = Math.min(next, nextMultiple(from, FM_DIVIDER));
+        if (bus.getSvpMapper() != SvpBus.NO_OP) {
+            next = Math.min(next, nextMultiple(from, SVP_CYCLES));
+        }
+        return Math.max(from, next);
+    }
+
+    private static int nextMultiple(int from, int divider) {
+        int rem = from % divider;
+        return rem == 0 ? from : from + divider - rem;
+    }
+
     protected final void runVdp(int counter) {
         if (counter >= nextVdpCycle) {
             int vdpMclk = vdp.runSlot();
@@ -208,7 +257,7 @@ public class Genesis extends BaseSystem<GenesisBusProvider> {
 
     @Override
     protected void initAfterRomLoad() {
-        sound = AbstractSoundManager.createSoundProvider(getSystemType(), region);
+        sound = AbstractSoundManager.createSoundProvider(getSystemType(), region, telemetry);
         bus.attachDevice(sound);
         vdp.addVdpEventListener(sound);
         resetAfterRomLoad();
@@ -229,6 +278,31 @@ public class Genesis extends BaseSystem<GenesisBusProvider> {
         super.handleSoftReset();
     }
 
+    @Override
+    protected StateSnapshot createStateSnapshot() {
+        if (bus.getSvpMapper() != SvpBus.NO_OP) {
+            LOG.warn("Run-ahead is not supported by SVP roms");
+            return null;
+        }
+        return new StateSnapshot().addDevice(this).addDevice(cpu).addZ80(z80).
+                addDevice(z80.getZ80BusProvider()).addDevice(memory).addDevice(bus).addDevice(joypad).
+                addDevice(vdp).addDevice(bus.getFm());
+    }
+
+    //cycle counters, in-memory snapshots only
+    @Override
+    public void saveContext(ByteBuffer buffer) {
+        buffer.putInt(counter).putInt(next68kCycle).putInt(nextZ80Cycle).putDouble(nextVdpCycle);
+    }
+
+    @Override
+    public void loadContext(ByteBuffer buffer) {
+        counter = buffer.getInt();
+        next68kCycle = buffer.getInt();
+        nextZ80Cycle = buffer.getInt();
+        nextVdpCycle = buffer.getDouble();
+    }
+
     @Override
     public SystemLoader.SystemType getSystemType() {
         return SystemLoader.SystemType.GENESIS;
@@ -29,6 +29,7 @@ import omegadrive.joypad.TwoButtonsJoypad;
 import omegadrive.memory.IMemoryProvider;
 import omegadrive.memory.MemoryProvider;
 import omegadrive.savestate.BaseStateHandler;
+import omegadrive.savestate.StateSnapshot;
 import omegadrive.sound.javasound.AbstractSoundManager;
 import omegadrive.system.perf.SmsPerf;
 import omegadrive.ui.DisplayWindow;
@@ -38,6 +39,8 @@ import omegadrive.vdp.SmsVdp;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+import java.nio.ByteBuffer;
+
 public class Sms extends BaseSystem<Z80BusProvider> {
 
     public static final boolean ENABLE_FM = Boolean.parseBoolean(System.getProperty("sms.enable.fm", "false"));
@@ -100,8 +103,9 @@ public class Sms extends BaseSystem<Z80BusProvider> {
         stateHandler = BaseStateHandler.EMPTY_STATE;
         joypad = new TwoButtonsJoypad();
         memory = MemoryProvider.createSmsInstance();
-        bus = new SmsBus();
-        SmsBus.HW_ENABLE_FM = ENABLE_FM;
+        SmsBus smsBus = new SmsBus();
+        smsBus.setHwEnableFm(ENABLE_FM);
+        bus = smsBus;
         initCommon();
     }
 
@@ -131,7 +135,7 @@ public class Sms extends BaseSystem<Z80BusProvider> {
 
     @Override
     protected void initAfterRomLoad() {
-        sound = AbstractSoundManager.createSoundProvider(systemType, region);
+        sound = AbstractSoundManager.createSoundProvider(systemType, region, telemetry);
         z80 = Z80CoreWrapper.createInstance(bus);
         bus.attachDevice(sound).attachDevice(z80);
         vdp.addVdpEventListener(sound);
@@ -181,6 +185,28 @@ public class Sms extends BaseSystem<Z80BusProvider> {
         bus.handleInterrupts(Z80Provider.Interrupt.NMI);
     }
 
+    /**
+     * The SMS device contexts are the Meka savestate format, the vdp internal state is captured as a whole.
+     */
+    @Override
+    protected StateSnapshot createStateSnapshot() {
+        return new StateSnapshot().addDevice(this).addZ80(z80).addDevice(bus).addObject(bus).
+                addDevice(memory).addObject(vdp, "interruptHandler");
+    }
+
+    //cycle counters, in-memory snapshots only
+    @Override
+    public void saveContext(ByteBuffer buffer) {
+        buffer.putInt(counter).putInt(nextZ80Cycle).putInt(nextVdpCycle);
+    }
+
+    @Override
+    public void loadContext(ByteBuffer buffer) {
+        counter = buffer.getInt();
+        nextZ80Cycle = buffer.getInt();
+        nextVdpCycle = buffer.getInt();
+    }
+
     @Override
     public SystemLoader.SystemType getSystemType() {
         return systemType;
@@ -0,0 +1,68 @@
+package omegadrive.system;
+
+import omegadrive.system.perf.Telemetry;
+import omegadrive.util.PriorityThreadFactory;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * SystemContext
+ * <p>
+ * State owned by a single system instance, several systems can run in the same JVM.
+ * <p>
+ * Federico Berti
+ * <p>
+ * Copyright 2021
+ */
+public class SystemContext {
+
+    private static final Logger LOG = LogManager.getLogger(SystemContext.class.getSimpleName());
+
+    private static final AtomicInteger instanceCounter = new AtomicInteger();
+
+    private final String name;
+    private final Telemetry telemetry;
+    private ExecutorService executorService;
+
+    public SystemContext(String name) {
+        this.name = name + "-" + instanceCounter.getAndIncrement();
+        this.telemetry = new Telemetry(this::execute);
+    }
+
+    //background tasks, ie. file writes; the thread is only created when needed
+    public synchronized void execute(Runnable r) {
+        if (executorService == null) {
+            executorService = Executors.newSingleThreadExecutor(
+                    new PriorityThreadFactory(Thread.MIN_PRIORITY, name));
+        }
+        executorService.execute(r);
+    }
+
+    //waits for the pending tasks
+    public synchronized void close() {
+        if (executorService == null) {
+            return;
+        }
+        executorService.shutdown();
+        try {
+            executorService.awaitTermination(1, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            LOG.warn("Interrupted while closing: {}", name);
+            Thread.currentThread().interrupt();
+        }
+        executorService = null;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public Telemetry getTelemetry() {
+        return telemetry;
+    }
+}
@@ -63,7 +63,9 @@ public interface SystemProvider extends Device {
         SHOW_FPS,
         TOGGLE_SOUND_RECORD,
         SOFT_RESET,
-        PAD_SETUP_CHANGE
+        PAD_SETUP_CHANGE,
+        REWIND,
+        TOGGLE_FRAME_CAPTURE
     }
 
     interface NewFrameListener {
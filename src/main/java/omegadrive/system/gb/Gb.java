@@ -100,7 +100,7 @@ public class Gb extends BaseSystem<BaseBusProvider> {
 
     @Override
     protected void initAfterRomLoad() {
-        sound = AbstractSoundManager.createSoundProvider(systemType, region);
+        sound = AbstractSoundManager.createSoundProvider(systemType, region, telemetry);
         resetAfterRomLoad();
     }
 
@@ -114,7 +114,7 @@ public class Nes extends BaseSystem<BaseBusProvider> {
 
     @Override
     protected void initAfterRomLoad() {
-        sound = AbstractSoundManager.createSoundProvider(systemType, region);
+        sound = AbstractSoundManager.createSoundProvider(systemType, region, telemetry);
         resetAfterRomLoad();
     }
 
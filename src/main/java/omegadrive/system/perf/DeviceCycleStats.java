@@ -0,0 +1,25 @@
+package omegadrive.system.perf;
+
+import java.util.Map;
+
+/**
+ * DeviceCycleStats
+ * <p>
+ * Cycle counters collected by the *Perf systems, see {@link GenesisPerf}, {@link SmsPerf}
+ * <p>
+ * Federico Berti
+ * <p>
+ * Copyright 2021
+ */
+public interface DeviceCycleStats {
+
+    /**
+     * @return cycles per device since the rom started, ie. "68k" -> cycles
+     */
+    Map<String, Long> getDeviceCycles();
+
+    /**
+     * @return number of frames covered by {@link #getDeviceCycles()}
+     */
+    long getFrameCount();
+}
@@ -28,6 +28,8 @@ import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Optional;
 import java.util.stream.IntStream;
 
@@ -36,7 +38,7 @@ import java.util.stream.IntStream;
  * <p>
  * MEMORY MAP:	https://en.wikibooks.org/wiki/Genesis_Programming
  */
-public class GenesisPerf extends Genesis {
+public class GenesisPerf extends Genesis implements DeviceCycleStats {
 
     static int mclkHz, m68kRef, vdpRef, z80Ref, fmRef;
     private static final Logger LOG = LogManager.getLogger(GenesisPerf.class.getSimpleName());
@@ -48,6 +50,7 @@ public class GenesisPerf extends Genesis {
     long frameWaitNs, lastSecTimeNs, frameProcessingNs;
     int totalCycles, frameCnt;
     long samplesAudioProd, samplesAudioCons;
+    long total68k, totalZ80, totalFm, totalVdp, totalFrames;
 
     public GenesisPerf(DisplayWindow emuFrame) {
         super(emuFrame);
@@ -58,6 +61,11 @@ public class GenesisPerf extends Genesis {
         cycleVdpFrame[frameCnt] = cycleVdpCnt;
         cycleZ80Frame[frameCnt] = cycleZ80cnt;
         cycleFmFrame[frameCnt] = cycleFmCnt;
+        total68k += cycle68kCnt;
+        totalZ80 += cycleZ80cnt;
+        totalFm += cycleFmCnt;
+        totalVdp += cycleVdpCnt;
+        totalFrames++;
 
         frameWaitNs += elapsedWaitNs;
         frameProcessingNs += frameProcessingDelayNs;
@@ -144,6 +152,21 @@ public class GenesisPerf extends Genesis {
         }
     }
 
+    @Override
+    public Map<String, Long> getDeviceCycles() {
+        Map<String, Long> m = new LinkedHashMap<>();
+        m.put("68k", total68k);
+        m.put("z80", totalZ80);
+        m.put("fm", totalFm);
+        m.put("vdp", totalVdp);
+        return m;
+    }
+
+    @Override
+    public long getFrameCount() {
+        return totalFrames;
+    }
+
     @Override
     protected Optional<String> getStats(long nowNs, long prevStartNs) {
         stats();
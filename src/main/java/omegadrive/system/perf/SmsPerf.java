@@ -27,11 +27,13 @@ import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Optional;
 import java.util.stream.IntStream;
 
 
-public class SmsPerf extends Sms {
+public class SmsPerf extends Sms implements DeviceCycleStats {
 
     static int mclkHz, vdpHz, vdpRef, z80Ref, fmRef;
     private static final Logger LOG = LogManager.getLogger(GenesisPerf.class.getSimpleName());
@@ -41,6 +43,7 @@ public class SmsPerf extends Sms {
     int cycleVdpCnt, cycleZ80cnt, cycleFmCnt;
     long frameWaitNs, lastSecTimeNs;
     int totalCycles, frameCnt;
+    long totalZ80, totalFm, totalVdp, totalFrames;
 
     public SmsPerf(SystemLoader.SystemType systemType, DisplayWindow emuFrame) {
         super(systemType, emuFrame);
@@ -60,6 +63,10 @@ public class SmsPerf extends Sms {
         cycleVdpFrame[frameCnt] = cycleVdpCnt;
         cycleZ80Frame[frameCnt] = cycleZ80cnt;
         cycleFmFrame[frameCnt] = cycleFmCnt;
+        totalZ80 += cycleZ80cnt;
+        totalFm += cycleFmCnt;
+        totalVdp += cycleVdpCnt;
+        totalFrames++;
 
         frameWaitNs += elapsedWaitNs;
         frameCnt++;
@@ -87,6 +94,20 @@ public class SmsPerf extends Sms {
         }
     }
 
+    @Override
+    public Map<String, Long> getDeviceCycles() {
+        Map<String, Long> m = new LinkedHashMap<>();
+        m.put("z80", totalZ80);
+        m.put("fm", totalFm);
+        m.put("vdp", totalVdp);
+        return m;
+    }
+
+    @Override
+    public long getFrameCount() {
+        return totalFrames;
+    }
+
     @Override
     protected Optional<String> getStats(long nowNs, long prevStartNs) {
         stats();
@@ -19,8 +19,11 @@ import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
 import java.util.function.BiFunction;
 import java.util.function.Function;
+import java.util.function.LongSupplier;
 import java.util.stream.Collectors;
 
 /**
@@ -45,8 +48,10 @@ public class Telemetry {
             (now, prev) -> (now.nanoTime - prev.nanoTime) / (double) Util.MILLI_IN_NS + "," +
                     Instant.ofEpochMilli(now.instantNow);
 
-    private static Telemetry telemetry = new Telemetry();
-    private static NumberFormat fpsFormatter = new DecimalFormat("#0.00");
+    //not thread safe, one per instance
+    private final NumberFormat fpsFormatter = new DecimalFormat("#0.00");
+    private final Executor executor;
+    private AudioRateControl audioRateControl;
     private Table<String, Long, Double> data = TreeBasedTable.create();
     private static final Timing NO_TIMING = new Timing();
     private Path telemetryFile;
@@ -54,6 +59,8 @@ public class Telemetry {
     private static int STATS_EVERY_FRAMES = 50;
     private double fpsAccum = 0;
     private Map<Long, Timing> frameTimeStamp = new HashMap<>();
+    //sampled every frame, ie. memory usage
+    private final Map<String, LongSupplier> counters = new ConcurrentHashMap<>();
 
     private void addFrameTimestamp() {
         Timing t = new Timing();
@@ -62,8 +69,17 @@ public class Telemetry {
         frameTimeStamp.put(frameCounter, t);
     }
 
-    public static Telemetry getInstance() {
-        return telemetry;
+    /**
+     * @param executor runs the telemetry file writes
+     */
+    public Telemetry(Executor executor) {
+        this.executor = executor;
+    }
+
+    //the fps label also shows the audio buffer stats
+    public void setAudioRateControl(AudioRateControl audioRateControl) {
+        this.audioRateControl = audioRateControl;
+        audioRateControl.setTelemetry(this);
     }
 
     private static void writeToFile(Path file, String res) {
@@ -79,6 +95,19 @@ public class Telemetry {
         addSample("fps", value);
     }
 
+    public void registerCounter(String name, LongSupplier counter) {
+        counters.put(name, counter);
+    }
+
+    public void removeCounter(String name) {
+        counters.remove(name);
+    }
+
+    public long getCounter(String name) {
+        LongSupplier c = counters.get(name);
+        return c == null ? 0 : c.getAsLong();
+    }
+
     public void addSample(String type, double value) {
         if (!enable) {
             return;
@@ -102,7 +131,7 @@ public class Telemetry {
     public Optional<String> getNewStats() {
         Optional<String> o = Optional.empty();
         if (hasNewStats()) {
-            Optional<String> arc = AudioRateControl.getLatestStats();
+            Optional<String> arc = audioRateControl == null ? Optional.empty() : audioRateControl.getLatestStats();
             o = Optional.of(getAvgFpsRounded() + "fps" + (arc.isPresent() ? ", " + arc.get() : ""));
         }
         return o;
@@ -119,6 +148,9 @@ public class Telemetry {
         addFrameTimestamp();
         addFpsSample(lastFps);
         addSample("driftNs", driftNs);
+        if (enable) {
+            counters.forEach((k, v) -> addSample(k, v.getAsLong()));
+        }
         Optional<String> os = getNewStats();
         newFrame();
         return os;
@@ -130,17 +162,18 @@ public class Telemetry {
             return;
         }
         if (frameCounter == 2) {
-            telemetryFile = Paths.get(".", "tel_" + System.currentTimeMillis() + ".log");
+            telemetryFile = Paths.get(".", "tel_" + System.currentTimeMillis() + "_" +
+                    Integer.toHexString(System.identityHashCode(this)) + ".log");
             String header = String.format("frame,%s,frameTimeMs,frameEndTime",
                     data.rowKeySet().stream().collect(Collectors.joining(",")));
             LOG.info("Logging telemetry file to: {}", telemetryFile.toAbsolutePath());
-            Util.executorService.submit(() -> writeToFile(telemetryFile, header));
+            executor.execute(() -> writeToFile(telemetryFile, header));
         }
         if (frameCounter % 600 == 0) {
             String res = "\n" + data.columnKeySet().stream().map(this::toLogString).
                     collect(Collectors.joining("\n"));
             data.clear();
-            Util.executorService.submit(() -> writeToFile(telemetryFile, res));
+            executor.execute(() -> writeToFile(telemetryFile, res));
         }
     }
 
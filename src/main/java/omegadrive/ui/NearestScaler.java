@@ -0,0 +1,150 @@
+package omegadrive.ui;
+
+import omegadrive.util.PriorityThreadFactory;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.awt.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * NearestScaler
+ * <p>
+ * Nearest neighbour scaling, the output is the same as {@link RenderingStrategy#renderNearestFixedPoint}.
+ * The source column and row of each output pixel are computed once per (src, dest) size;
+ * an output row mapping to the same source row as the previous one is a copy of it.
+ * Integer horizontal factors replicate each source pixel instead of using the column table.
+ * <p>
+ * With more than one thread the output is split in horizontal stripes, one per thread.
+ * <p>
+ * Federico Berti
+ * <p>
+ * Copyright 2021
+ */
+public class NearestScaler {
+
+    private static final Logger LOG = LogManager.getLogger(NearestScaler.class.getSimpleName());
+
+    private static final int FACTOR = 16;
+
+    static class ScaleTable {
+        final int srcWidth, srcHeight, destWidth, destHeight;
+        //integer horizontal scale factor, 0 otherwise
+        final int xFactor;
+        final int[] xTable, yTable;
+
+        ScaleTable(Dimension src, Dimension dest) {
+            srcWidth = src.width;
+            srcHeight = src.height;
+            destWidth = dest.width;
+            destHeight = dest.height;
+            xFactor = destWidth % srcWidth == 0 ? destWidth / srcWidth : 0;
+            int xRatio = ((srcWidth << FACTOR) / destWidth) + 1;
+            int yRatio = ((srcHeight << FACTOR) / destHeight) + 1;
+            xTable = new int[destWidth];
+            yTable = new int[destHeight];
+            for (int j = 0; j < destWidth; j++) {
+                xTable[j] = (j * xRatio) >> FACTOR;
+            }
+            for (int i = 0; i < destHeight; i++) {
+                yTable[i] = ((i * yRatio) >> FACTOR) * srcWidth;
+            }
+        }
+
+        boolean matches(Dimension src, Dimension dest) {
+            return srcWidth == src.width && srcHeight == src.height &&
+                    destWidth == dest.width && destHeight == dest.height;
+        }
+    }
+
+    private final int numThreads;
+    private ExecutorService executorService;
+    private volatile ScaleTable table = new ScaleTable(new Dimension(1, 1), new Dimension(1, 1));
+
+    public NearestScaler(int numThreads) {
+        this.numThreads = Math.max(1, numThreads);
+        if (this.numThreads > 1) {
+            ThreadFactory tf = new PriorityThreadFactory(NearestScaler.class.getSimpleName());
+            executorService = Executors.newFixedThreadPool(this.numThreads - 1, r -> {
+                Thread t = tf.newThread(r);
+                t.setDaemon(true);
+                return t;
+            });
+            LOG.info("Scaling threads: {}", this.numThreads);
+        }
+    }
+
+    public void render(int[] srcPixels, int[] outputPixels, Dimension src, Dimension dest) {
+        ScaleTable t = table;
+        if (!t.matches(src, dest)) {
+            t = new ScaleTable(src, dest);
+            table = t;
+        }
+        if (numThreads == 1) {
+            renderRows(srcPixels, outputPixels, t, 0, t.destHeight);
+            return;
+        }
+        renderStripes(srcPixels, outputPixels, t);
+    }
+
+    //the calling thread renders the last stripe
+    private void renderStripes(int[] srcPixels, int[] outputPixels, ScaleTable t) {
+        int stripeHeight = (t.destHeight + numThreads - 1) / numThreads;
+        Future<?>[] futures = new Future<?>[numThreads - 1];
+        for (int i = 0; i < futures.length; i++) {
+            int start = i * stripeHeight;
+            int end = Math.min(t.destHeight, start + stripeHeight);
+            futures[i] = executorService.submit(() -> renderRows(srcPixels, outputPixels, t, start, end));
+        }
+        renderRows(srcPixels, outputPixels, t, Math.min(t.destHeight, futures.length * stripeHeight), t.destHeight);
+        try {
+            for (Future<?> f : futures) {
+                f.get();
+            }
+        } catch (Exception e) {
+            LOG.error("Unable to scale frame", e);
+        }
+    }
+
+    static void renderRows(int[] srcPixels, int[] outputPixels, ScaleTable t, int startRow, int endRow) {
+        final int width = t.destWidth;
+        int prevSrcRow = -1;
+        for (int i = startRow; i < endRow; i++) {
+            int srcRow = t.yTable[i];
+            int destRow = i * width;
+            if (srcRow == prevSrcRow) {
+                System.arraycopy(outputPixels, destRow - width, outputPixels, destRow, width);
+                continue;
+            }
+            prevSrcRow = srcRow;
+            if (t.xFactor > 0) {
+                replicateRow(srcPixels, srcRow, t.srcWidth, outputPixels, destRow, t.xFactor);
+            } else {
+                final int[] xTable = t.xTable;
+                for (int j = 0; j < width; j++) {
+                    outputPixels[destRow + j] = srcPixels[srcRow + xTable[j]];
+                }
+            }
+        }
+    }
+
+    private static void replicateRow(int[] srcPixels, int srcRow, int srcWidth, int[] outputPixels, int destRow,
+                                     int xFactor) {
+        int k = destRow;
+        for (int x = srcRow; x < srcRow + srcWidth; x++) {
+            int p = srcPixels[x];
+            for (int r = 0; r < xFactor; r++) {
+                outputPixels[k++] = p;
+            }
+        }
+    }
+
+    public void close() {
+        if (executorService != null) {
+            executorService.shutdownNow();
+        }
+    }
+}
@@ -63,7 +63,7 @@ public class PrefStore {
         }
     }
 
-    public static void addRecentFile(String path) {
+    public static synchronized void addRecentFile(String path) {
         map.put(path.hashCode(), path);
         //discard the oldest (first) element
         if (map.size() > PrefStore.recentFileTotal) {
@@ -73,7 +73,7 @@ public class PrefStore {
     }
 
 
-    public static List<String> getRecentFilesList() {
+    public static synchronized List<String> getRecentFilesList() {
         List<String> l = new ArrayList<>(map.values());
         Collections.reverse(l);
         return l;
@@ -89,7 +89,7 @@ public class PrefStore {
         }
     }
 
-    public static void close() {
+    public static synchronized void close() {
         try (
                 FileWriter writer = new FileWriter(PREF_FILENAME)
         ) {
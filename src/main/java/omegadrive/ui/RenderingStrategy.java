@@ -23,7 +23,11 @@ import java.awt.*;
 
 public class RenderingStrategy {
 
-    private static final TransferFnHolder transferFnHolder = new TransferFnHolder();
+    //threads used to scale a frame, 1=no additional threads
+    private static final int SCALE_THREADS =
+            Integer.parseInt(System.getProperty("helios.ui.scale.threads", "1"));
+
+    private static final NearestScaler scaler = new NearestScaler(SCALE_THREADS);
 
     public static void subImageWithOffset(int[] src, int[] dest, Dimension srcDim, Dimension destDim,
                                           int xOffset, int yOffset) {
@@ -35,8 +39,12 @@ public class RenderingStrategy {
         }
     }
 
-    //still faster on my laptop
     protected static void renderNearest(int[] srcPixels, int[] outputPixels, Dimension src, Dimension dest) {
+        scaler.render(srcPixels, outputPixels, src, dest);
+    }
+
+    //reference implementation, one lookup per output pixel
+    protected static void renderNearestFixedPoint(int[] srcPixels, int[] outputPixels, Dimension src, Dimension dest) {
         int factor = 16;
         int xRatio = ((src.width << factor) / dest.width) + 1;
         int yRatio = ((src.height << factor) / dest.height) + 1;
@@ -51,42 +59,4 @@ public class RenderingStrategy {
             }
         }
     }
-
-    protected static final void renderNearestNew(final int[] srcPixels, final int[] outputPixels,
-                                                 Dimension src, Dimension dest) {
-        if (dest != transferFnHolder.dest || src != transferFnHolder.src) {
-            System.out.println("recalc");
-            //recalc
-            transferFnHolder.src = src;
-            transferFnHolder.dest = dest;
-            transferFnHolder.transferFn = new int[dest.height * dest.width];
-            transferFnHolder.computeTransferFn();
-        }
-        final int[] tFn = transferFnHolder.transferFn;
-        for (int i = 0; i < tFn.length; i++) {
-            outputPixels[i] = srcPixels[tFn[i]];
-        }
-    }
-
-    static class TransferFnHolder {
-        Dimension src = new Dimension(0, 0);
-        Dimension dest = new Dimension(0, 0);
-        int[] transferFn = new int[0];
-
-        protected void computeTransferFn() {
-            int factor = 16;
-            int xRatio = ((src.width << factor) / dest.width) + 1;
-            int yRatio = ((src.height << factor) / dest.height) + 1;
-            int px, py, shiftSrc, shiftDest;
-            for (int i = 0; i < dest.height; i++) {
-                py = (i * yRatio) >> factor;
-                shiftDest = i * dest.width;
-                shiftSrc = py * src.width;
-                for (int j = 0; j < dest.width; j++) {
-                    px = (j * xRatio) >> factor;
-                    transferFn[shiftDest + j] = shiftSrc + px;
-                }
-            }
-        }
-    }
 }
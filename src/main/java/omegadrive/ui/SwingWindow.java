@@ -46,6 +46,7 @@ import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.List;
 import java.util.*;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.stream.IntStream;
 
 import static omegadrive.system.SystemProvider.SystemEvent.*;
@@ -65,8 +66,11 @@ public class SwingWindow implements DisplayWindow {
     private Dimension outputScreenSize = DEFAULT_SCALED_SCREEN_SIZE;
 
     private BufferedImage dest;
-    private int[] pixelsSrc;
     private int[] pixelsDest;
+    //emulation thread -> EDT, at most one paint request pending
+    private final TripleFrameBuffer frameBuffer = new TripleFrameBuffer();
+    private final AtomicBoolean paintPending = new AtomicBoolean();
+    private final Runnable paintRunnable = this::paintLatestFrame;
     private double scale = DEFAULT_SCALE_FACTOR;
 
     private final JLabel screenLabel = new JLabel();
@@ -183,7 +187,7 @@ public class SwingWindow implements DisplayWindow {
             perfLabel.setText("");
             jFrame.setTitle(FRAME_TITLE_HEAD);
             cursorHandler.reset();
-            LOG.info("Blanking screen");
+            LOG.info("Blanking screen, frames dropped: {}", frameBuffer.getDroppedFrames());
         });
     }
 
@@ -201,17 +205,25 @@ public class SwingWindow implements DisplayWindow {
                 map(AbstractButton::getText).findFirst().orElse(null);
     }
 
-    //NOTE: this will copy the input array
+    //NOTE: this will copy the input array when scaling on the EDT
     @Override
     public void renderScreenLinear(int[] data, Optional<String> label, VideoMode videoMode) {
-        if (data.length != pixelsSrc.length) {
-            pixelsSrc = data.clone();
+        if (!UI_SCALE_ON_EDT) {
+            renderScreenLinearInternal(data, label, videoMode);
+            return;
         }
-        System.arraycopy(data, 0, pixelsSrc, 0, data.length);
-        if (UI_SCALE_ON_EDT) {
-            SwingUtilities.invokeLater(() -> renderScreenLinearInternal(pixelsSrc, label, videoMode));
-        } else {
-            renderScreenLinearInternal(pixelsSrc, label, videoMode);
+        frameBuffer.publish(data, label, videoMode);
+        if (paintPending.compareAndSet(false, true)) {
+            SwingUtilities.invokeLater(paintRunnable);
+        }
+    }
+
+    //EDT, frames published while the EDT was busy have been dropped
+    private void paintLatestFrame() {
+        paintPending.set(false);
+        TripleFrameBuffer.Frame frame = frameBuffer.consume();
+        if (frame != null) {
+            renderScreenLinearInternal(frame.data, frame.label, frame.videoMode);
         }
     }
 
@@ -223,7 +235,6 @@ public class SwingWindow implements DisplayWindow {
         LOG.info("Emulation viewport size: {}", ScreenSizeHelper.DEFAULT_SCALED_SCREEN_SIZE);
         LOG.info("Application size: {}", DEFAULT_FRAME_SIZE);
 
-        pixelsSrc = new int[0];
         dest = createImage(gd, outputNonScaledScreenSize);
         screenLabel.setIcon(new ImageIcon(dest));
 
@@ -254,6 +265,14 @@ public class SwingWindow implements DisplayWindow {
         addKeyAction(softResetItem, SOFT_RESET, e -> handleSystemEvent(SOFT_RESET, null, null));
         setting.add(softResetItem);
 
+        JMenuItem rewindItem = new JMenuItem("Rewind");
+        addKeyAction(rewindItem, REWIND, e -> handleSystemEvent(REWIND, null, null));
+        setting.add(rewindItem);
+
+        JMenuItem frameCaptureItem = new JMenuItem("Start/Stop Frame Capture");
+        addKeyAction(frameCaptureItem, TOGGLE_FRAME_CAPTURE, e -> handleSystemEvent(TOGGLE_FRAME_CAPTURE, null, null));
+        setting.add(frameCaptureItem);
+
         JMenu regionMenu = new JMenu("Region");
         setting.add(regionMenu);
 
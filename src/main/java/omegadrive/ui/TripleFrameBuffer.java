@@ -0,0 +1,63 @@
+package omegadrive.ui;
+
+import omegadrive.util.VideoMode;
+
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * TripleFrameBuffer
+ * <p>
+ * Hands frames from the emulation thread to the EDT without locking:
+ * the producer fills its back buffer and swaps it with the ready one, the consumer swaps the ready one
+ * with its front buffer; neither side ever touches a buffer owned by the other.
+ * A frame replaced before the consumer could take it is dropped and counted.
+ * <p>
+ * Federico Berti
+ * <p>
+ * Copyright 2021
+ */
+public class TripleFrameBuffer {
+
+    public static class Frame {
+        public int[] data = new int[0];
+        public VideoMode videoMode;
+        public Optional<String> label = Optional.empty();
+        private volatile boolean fresh;
+    }
+
+    private final AtomicReference<Frame> ready = new AtomicReference<>(new Frame());
+    private Frame back = new Frame(); //producer only
+    private Frame front = new Frame(); //consumer only
+    private volatile long droppedFrames;
+
+    //producer, copies the data
+    public void publish(int[] data, Optional<String> label, VideoMode videoMode) {
+        if (back.data.length != data.length) {
+            back.data = new int[data.length];
+        }
+        System.arraycopy(data, 0, back.data, 0, data.length);
+        back.label = label;
+        back.videoMode = videoMode;
+        back.fresh = true;
+        back = ready.getAndSet(back);
+        if (back.fresh) {
+            droppedFrames++;
+        }
+    }
+
+    //consumer, the latest complete frame or null when there is nothing new
+    public Frame consume() {
+        if (!ready.get().fresh) {
+            return null;
+        }
+        //only the producer can replace the ready frame, with a fresh one
+        front = ready.getAndSet(front);
+        front.fresh = false;
+        return front;
+    }
+
+    public long getDroppedFrames() {
+        return droppedFrames;
+    }
+}
@@ -19,6 +19,8 @@
 
 package omegadrive.util;
 
+import com.google.common.io.BaseEncoding;
+import com.google.common.io.ByteStreams;
 import omegadrive.SystemLoader;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -28,15 +30,22 @@ import javax.swing.filechooser.FileNameExtensionFilter;
 import java.io.*;
 import java.net.URL;
 import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
 import java.util.jar.Attributes;
 import java.util.jar.Manifest;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import static omegadrive.SystemLoader.smdFileAsInterleaved;
 
@@ -54,6 +63,13 @@ public class FileLoader {
     public static String QUICK_SAVE_FILENAME = "quick_save";
     public static String QUICK_SAVE_PATH = System.getProperty("quick.save.path", ".");
 
+    //zip/gzip and SMD roms are expanded once to this folder, see readRomFile
+    public static String romCacheFolder = System.getProperty("helios.rom.cache.folder",
+            System.getProperty("user.home") + File.separatorChar + ".helios" + File.separatorChar + "cache");
+    //expanded roms kept in the cache, the least recently used are deleted above the limit
+    public static long romCacheMaxBytes = Long.parseLong(System.getProperty("helios.rom.cache.max.mb", "512")) << 20;
+    static final String CACHED_ROM_EXT = ".rom";
+
     public static final int SMD_HEADER_SIZE = 512;
     public static final int SMD_CHUNK_SIZE = 16384;
 
@@ -73,7 +89,7 @@ public class FileLoader {
         @Override
         public boolean accept(File f) {
             String name = f.getName().toLowerCase();
-            return f.isDirectory() || name.contains(".gs") || name.contains(".s0") || name.contains(".n0");
+            return f.isDirectory() || name.contains(".gs") || name.contains(".hgs") || name.contains(".s0") || name.contains(".n0");
         }
     };
 
@@ -206,16 +222,143 @@ public class FileLoader {
 
     public static byte[] unscrambleSmd(byte[] input) {
         byte[] output = new byte[input.length - SMD_HEADER_SIZE];
-        for (int i = SMD_HEADER_SIZE, k = 0; i < input.length; i += SMD_CHUNK_SIZE) {
-            int remainHalf = Math.min(SMD_CHUNK_SIZE, input.length - i) >> 1;
-            for (int j = 0; j < remainHalf; j++, k += 2) {
-                output[k + 1] = input[i + j];
-                output[k] = input[i + j + remainHalf];
-            }
+        for (int i = SMD_HEADER_SIZE; i < input.length; i += SMD_CHUNK_SIZE) {
+            unscrambleSmdChunk(input, i, Math.min(SMD_CHUNK_SIZE, input.length - i), output, i - SMD_HEADER_SIZE);
         }
         return output;
     }
 
+    private static void unscrambleSmdChunk(byte[] input, int start, int len, byte[] output, int k) {
+        int remainHalf = len >> 1;
+        for (int j = 0; j < remainHalf; j++, k += 2) {
+            output[k + 1] = input[start + j];
+            output[k] = input[start + j + remainHalf];
+        }
+    }
+
+    /**
+     * Uncompressed roms are mapped read-only, nothing is read upfront and the rom is never copied to the heap
+     * by a provider that keeps the buffer, see {@link omegadrive.memory.ByteMemoryProvider}.
+     * Zip/gzip files and interleaved SMD files are expanded once to the rom cache, keyed by the sha1 of the file,
+     * and the expanded file is mapped; the cache is bounded by helios.rom.cache.max.mb, least recently used first.
+     * Falls back to reading the file in memory.
+     */
+    public static ByteBuffer readRomFile(Path file, SystemLoader.SystemType systemType) {
+        String fileName = file.toAbsolutePath().toString();
+        if (!ROM_FILTER.accept(file.toFile())) {
+            LOG.error("Unable to load: {}", fileName, new RuntimeException("Unexpected file: " + fileName));
+            return ByteBuffer.allocate(0);
+        }
+        String lowerName = fileName.toLowerCase();
+        boolean smd = smdFileAsInterleaved && lowerName.contains(SystemLoader.SMD_INTERLEAVED_EXT);
+        boolean compressed = ZipUtil.isZipFile.test(lowerName) || ZipUtil.isGZipFile.test(lowerName);
+        try {
+            long start = System.nanoTime();
+            Path romFile = compressed || smd ? getExpandedRomFile(file, smd) : file;
+            ByteBuffer data = mapFile(romFile);
+            LOG.info("Rom mapped: {}, size: {}, {} ms", romFile, data.capacity(),
+                    String.format("%.2f", (System.nanoTime() - start) / 1e6));
+            return data;
+        } catch (Exception e) {
+            LOG.warn("Unable to map: {}, {}", fileName, e.toString());
+        }
+        return ByteBuffer.wrap(readBinaryFile(file, systemType));
+    }
+
+    public static ByteBuffer mapFile(Path file) throws IOException {
+        try (FileChannel fc = FileChannel.open(file, StandardOpenOption.READ)) {
+            //the mapping stays valid after the channel is closed
+            return fc.map(FileChannel.MapMode.READ_ONLY, 0, fc.size());
+        }
+    }
+
+    private static Path getExpandedRomFile(Path file, boolean smd) throws IOException {
+        Path folder = Paths.get(romCacheFolder);
+        String key = sha1(file);
+        Path cached = folder.resolve(key + (smd ? "_smd" : "") + CACHED_ROM_EXT);
+        if (Files.isReadable(cached)) {
+            LOG.info("Using cached rom: {}, for: {}", cached, file.getFileName());
+            //the modification time tracks the last use
+            Files.setLastModifiedTime(cached, FileTime.fromMillis(System.currentTimeMillis()));
+            return cached;
+        }
+        Files.createDirectories(folder);
+        Path tmp = Files.createTempFile(folder, key, ".tmp");
+        try (InputStream is = ZipUtil.openInputStream(file);
+             OutputStream os = new BufferedOutputStream(Files.newOutputStream(tmp))) {
+            if (smd) {
+                LOG.info("SMD interleaved file detected: {}", file.getFileName());
+                copySmd(is, os);
+            } else {
+                ByteStreams.copy(is, os);
+            }
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(tmp);
+            throw e;
+        }
+        //concurrent loads of the same file write the same content
+        Files.move(tmp, cached, StandardCopyOption.REPLACE_EXISTING);
+        LOG.info("Rom expanded to: {}, for: {}", cached, file.getFileName());
+        trimRomCache(folder, cached);
+        return cached;
+    }
+
+    private static String sha1(Path file) throws IOException {
+        MessageDigest md = Util.newSha1();
+        byte[] buf = new byte[0x10000];
+        try (InputStream is = Files.newInputStream(file)) {
+            for (int len; (len = is.read(buf)) > 0; ) {
+                md.update(buf, 0, len);
+            }
+        }
+        return BaseEncoding.base16().lowerCase().encode(md.digest());
+    }
+
+    //deletes the least recently used roms above romCacheMaxBytes, keeps the latest one
+    static void trimRomCache(Path folder, Path keep) throws IOException {
+        List<Path> roms;
+        try (Stream<Path> s = Files.list(folder)) {
+            roms = s.filter(p -> p.getFileName().toString().endsWith(CACHED_ROM_EXT) && !p.equals(keep)).
+                    sorted(Comparator.comparing(FileLoader::lastModifiedMillis).reversed()).
+                    collect(Collectors.toList());
+        }
+        long total = Files.size(keep);
+        for (Path p : roms) {
+            long size = Files.size(p);
+            if (total + size <= romCacheMaxBytes) {
+                total += size;
+                continue;
+            }
+            try {
+                Files.delete(p);
+                LOG.info("Rom cache full, deleted: {}", p.getFileName());
+            } catch (IOException e) {
+                //ie. still mapped on windows
+                LOG.warn("Unable to delete: {}, {}", p, e.toString());
+                total += size;
+            }
+        }
+    }
+
+    private static long lastModifiedMillis(Path p) {
+        try {
+            return Files.getLastModifiedTime(p).toMillis();
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    private static void copySmd(InputStream is, OutputStream os) throws IOException {
+        ByteStreams.skipFully(is, SMD_HEADER_SIZE);
+        byte[] in = new byte[SMD_CHUNK_SIZE], out = new byte[SMD_CHUNK_SIZE];
+        int len;
+        while ((len = ByteStreams.read(is, in, 0, SMD_CHUNK_SIZE)) > 0) {
+            Arrays.fill(out, 0, len, (byte) 0);
+            unscrambleSmdChunk(in, 0, len, out, 0);
+            os.write(out, 0, len);
+        }
+    }
+
     public static String loadVersionFromManifest() {
         String version = SNAPSHOT_VERSION;
         String classPath = getCurrentClasspath();
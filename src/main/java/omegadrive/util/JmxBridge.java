@@ -23,40 +23,46 @@ import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 import java.lang.reflect.Method;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 
 public class JmxBridge {
 
     private static final Logger LOG = LogManager.getLogger(JmxBridge.class.getSimpleName());
 
-    private static boolean JMX_SUPPORT_FLAG;
-    private static JmxLauncherProxy proxy;
+    //the class probe and the launch run in the background, registrations are done once the probe completes
+    private static final CompletableFuture<Optional<JmxLauncherProxy>> proxy =
+            CompletableFuture.supplyAsync(() -> StartupProfile.time("jmx", JmxBridge::launch));
 
-    static {
+    @SuppressWarnings("unchecked")
+    private static Optional<JmxLauncherProxy> launch() {
         try {
             Class<JmxLauncherProxy> cl = (Class<JmxLauncherProxy>) Class.forName("com.jmxwebtools.JmxLauncher");
             Method factoryMethod = cl.getDeclaredMethod("getInstance"); //static method
-            proxy = (JmxLauncherProxy) factoryMethod.invoke(null, (Object[]) null);
-            proxy.launch("Helios");
-            JMX_SUPPORT_FLAG = true;
+            JmxLauncherProxy p = (JmxLauncherProxy) factoryMethod.invoke(null, (Object[]) null);
+            p.launch("Helios");
+            return Optional.of(p);
         } catch (Exception e) {
             LOG.info("JMX not supported");
-            JMX_SUPPORT_FLAG = false;
+            return Optional.empty();
         }
     }
 
     public static void registerJmx(Object object) {
-        if (JMX_SUPPORT_FLAG) {
-            try {
-                String name = object.getClass().getSimpleName();
-                String objName = proxy.exportToJMX(object, name);
-                if (objName != null) {
-                    LOG.info("JMX exporting: {}", objName);
-                } else {
-                    LOG.warn("JMX exporting failed: {}", name);
-                }
-            } catch (Exception e) {
-                LOG.warn("Unable to export: {}", object.getClass().getSimpleName());
+        proxy.thenAccept(p -> p.ifPresent(px -> export(px, object)));
+    }
+
+    private static void export(JmxLauncherProxy proxy, Object object) {
+        try {
+            String name = object.getClass().getSimpleName();
+            String objName = proxy.exportToJMX(object, name);
+            if (objName != null) {
+                LOG.info("JMX exporting: {}", objName);
+            } else {
+                LOG.warn("JMX exporting failed: {}", name);
             }
+        } catch (Exception e) {
+            LOG.warn("Unable to export: {}", object.getClass().getSimpleName());
         }
     }
 }
@@ -24,9 +24,6 @@ import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 import javax.sound.sampled.*;
-import java.io.File;
-import java.io.FileInputStream;
-import java.io.IOException;
 import java.lang.reflect.Field;
 
 public class SoundUtil {
@@ -35,6 +32,9 @@ public class SoundUtil {
 
     public static byte ZERO_BYTE = 0;
 
+    //peak to peak, 16 bit samples; a constant offset is not audible
+    public static final int AUDIBLE_THRESHOLD = 256;
+
     private static int DEFAULT_PSG_SHIFT_BITS = 6;
     public static double PSG_ATTENUATION = Double.parseDouble(System.getProperty("sound.psg.attenuation", "1.0"));
     private static int USER_PSG_ATT_BITS;
@@ -55,6 +55,9 @@ public class SoundUtil {
 
     public static int writeBufferInternal(SourceDataLine line, byte[] buffer, int start, int end) {
         int res = 0;
+        if (line == null) { //no audio device, ie. headless
+            return res;
+        }
         try {
             // Output Stream write(byte[] b, int off, int len)
             // Small buffer to avoid latency, but more intensive CPU usage
@@ -220,6 +223,29 @@ public class SoundUtil {
         }
     }
 
+    /**
+     * @param stereo16 16 bit signed little endian samples
+     */
+    public static boolean isAudible(byte[] stereo16, int lenBytes) {
+        int min = Short.MAX_VALUE, max = Short.MIN_VALUE;
+        for (int i = 0; i < lenBytes - 1; i += 2) {
+            int val = (stereo16[i] & 0xFF) | (stereo16[i + 1] << 8);
+            min = Math.min(min, val);
+            max = Math.max(max, val);
+        }
+        return max - min > AUDIBLE_THRESHOLD;
+    }
+
+    //samples in [-1, 1]
+    public static boolean isAudible(float[] stereo, int len) {
+        float min = 1, max = -1;
+        for (int i = 0; i < len; i++) {
+            min = Math.min(min, stereo[i]);
+            max = Math.max(max, stereo[i]);
+        }
+        return (max - min) * Short.MAX_VALUE > AUDIBLE_THRESHOLD;
+    }
+
     public static void close(DataLine line) {
         if (line != null) {
             line.stop();
@@ -231,23 +257,4 @@ public class SoundUtil {
             Util.sleep(100);
         }
     }
-
-    public static void convertToWav(AudioFormat audioFormat, String fileName) {
-        File input = new File(fileName);
-        File output = new File(fileName + ".wav");
-
-        try (
-                FileInputStream fileInputStream = new FileInputStream(input);
-                AudioInputStream audioInputStream = new AudioInputStream(fileInputStream, audioFormat
-                        , input.length())
-        ) {
-            AudioSystem.write(audioInputStream, AudioFileFormat.Type.WAVE, output);
-            audioInputStream.close();
-            LOG.info("{} saved", output.getAbsolutePath());
-        } catch (IOException ioe) {
-            LOG.error("Error writing WAV file: {}", output.getAbsolutePath());
-            ioe.printStackTrace();
-            System.out.println("Error writing WAV file");
-        }
-    }
-}
\ No newline at end of file
+}
@@ -0,0 +1,109 @@
+package omegadrive.util;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * StartupProfile
+ * <p>
+ * Time spent by each subsystem from startup until the first frame is rendered, the subsystems
+ * initialised in the background are reported with the thread name.
+ * The timings are always recorded, a handful of entries; helios.startup.profile=true logs them at the first frame.
+ * <p>
+ * Federico Berti
+ * <p>
+ * Copyright 2021
+ */
+public class StartupProfile {
+
+    private static final Logger LOG = LogManager.getLogger(StartupProfile.class.getSimpleName());
+
+    static class Timing {
+        final String name, thread;
+        final long startNs, durationNs;
+
+        Timing(String name, long startNs, long durationNs) {
+            this.name = name;
+            this.startNs = startNs;
+            this.durationNs = durationNs;
+            this.thread = Thread.currentThread().getName();
+        }
+    }
+
+    private static final Queue<Timing> timings = new ConcurrentLinkedQueue<>();
+    private static volatile long startNs = System.nanoTime();
+    private static volatile long firstFrameNs;
+
+    /**
+     * Restarts the profile, ie. on a new rom the first frame is measured again.
+     */
+    public static void start() {
+        timings.clear();
+        firstFrameNs = 0;
+        startNs = System.nanoTime();
+    }
+
+    public static void time(String name, Runnable r) {
+        long start = System.nanoTime();
+        r.run();
+        add(name, start);
+    }
+
+    public static <T> T time(String name, Supplier<T> s) {
+        long start = System.nanoTime();
+        T res = s.get();
+        add(name, start);
+        return res;
+    }
+
+    public static void add(String name, long startNs) {
+        if (firstFrameNs == 0) {
+            timings.add(new Timing(name, startNs, System.nanoTime() - startNs));
+        }
+    }
+
+    /**
+     * Called for every frame rendered, only the first one is recorded.
+     */
+    public static void onFrame() {
+        if (firstFrameNs == 0) {
+            onFirstFrame();
+        }
+    }
+
+    private static synchronized void onFirstFrame() {
+        if (firstFrameNs != 0) {
+            return;
+        }
+        firstFrameNs = System.nanoTime();
+        if (Boolean.parseBoolean(System.getProperty("helios.startup.profile", "false"))) {
+            LOG.info("Time to first frame: {} ms\n{}", String.format("%.1f", getTimeToFirstFrameMs()),
+                    timings.stream().map(t -> String.format("%-24s %8.1f ms, at %8.1f ms, %s", t.name,
+                            t.durationNs / 1e6, (t.startNs - startNs) / 1e6, t.thread)).
+                            collect(Collectors.joining("\n")));
+        }
+    }
+
+    /**
+     * @return 0 until the first frame has been rendered
+     */
+    public static double getTimeToFirstFrameMs() {
+        long f = firstFrameNs;
+        return f == 0 ? 0 : (f - startNs) / 1e6;
+    }
+
+    /**
+     * Duration in ms by subsystem, a subsystem recorded more than once is summed up.
+     */
+    public static Map<String, Double> getTimingsMs() {
+        return timings.stream().collect(Collectors.groupingBy(t -> t.name, LinkedHashMap::new,
+                Collectors.summingDouble(t -> t.durationNs / 1e6)));
+    }
+}
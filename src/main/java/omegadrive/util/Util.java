@@ -30,6 +30,9 @@ import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.time.Duration;
 import java.util.*;
 import java.util.concurrent.CyclicBarrier;
@@ -55,6 +58,8 @@ public class Util {
     public static final long MILLI_IN_NS = Duration.ofMillis(1).toNanos();
 
     public static final Random random;
+    //power-on memory contents, when set every system starts with the same contents; read at every memory init
+    public static final String RANDOM_SEED_PROPERTY = "helios.random.seed";
 
     static final int CACHE_LIMIT = Short.MIN_VALUE;
     static Integer[] negativeCache = new Integer[Short.MAX_VALUE + 2];
@@ -124,8 +129,10 @@ public class Util {
     }
 
     public static int[] initMemoryRandomBytes(int[] mem) {
+        String seed = System.getProperty(RANDOM_SEED_PROPERTY);
+        Random r = seed == null ? random : new Random(Long.parseLong(seed));
         for (int i = 0; i < mem.length; i++) {
-            mem[i] = Util.random.nextInt(0x100);
+            mem[i] = r.nextInt(0x100);
         }
         return mem;
     }
@@ -134,6 +141,15 @@ public class Util {
         JmxBridge.registerJmx(object);
     }
 
+    //runs the static initializer, if it hasn't run yet
+    public static void initClass(Class<?> clazz) {
+        try {
+            Class.forName(clazz.getName(), true, clazz.getClassLoader());
+        } catch (ClassNotFoundException e) {
+            LOG.warn("Unable to initialize: {}", clazz.getName());
+        }
+    }
+
     //bit 1 -> true
     public static boolean bitSetTest(long number, int position) {
         return ((number & (1 << position)) != 0);
@@ -156,6 +172,27 @@ public class Util {
         return data;
     }
 
+    public static long readData(byte[] src, Size size, int address) {
+        if (size == Size.BYTE) {
+            return src[address] & 0xFF;
+        } else if (size == Size.WORD) {
+            return ((src[address] & 0xFF) << 8) | (src[address + 1] & 0xFF);
+        }
+        //same as the int[] version, a long is sign extended
+        return ((src[address] & 0xFF) << 24) | ((src[address + 1] & 0xFF) << 16) |
+                ((src[address + 2] & 0xFF) << 8) | (src[address + 3] & 0xFF);
+    }
+
+    //big endian buffer
+    public static long readData(ByteBuffer src, Size size, int address) {
+        if (size == Size.BYTE) {
+            return src.get(address) & 0xFF;
+        } else if (size == Size.WORD) {
+            return src.getShort(address) & 0xFFFF;
+        }
+        return src.getInt(address);
+    }
+
     public static void writeData(int[] dest, Size size, int address, long data) {
         if (size == Size.BYTE) {
             dest[address] = (int) (data & 0xFF);
@@ -177,7 +214,7 @@ public class Util {
         int i = 0x200;
         int size = memoryProvider.getRomSize();
         for (; i < size - 1; i += 2) {
-            long val = Util.readData(memoryProvider.getRomData(), Size.WORD, i);
+            long val = memoryProvider.readRomData(i, Size.WORD);
             res = (res + val) & 0xFFFF;
         }
         //read final byte ??
@@ -187,21 +224,60 @@ public class Util {
 
     public static String computeSha1Sum(int[] data){
         Hasher h = Hashing.sha1().newHasher();
-        Arrays.stream(data).forEach(d -> h.putByte((byte) d));
+        byte[] chunk = new byte[HASH_CHUNK_SIZE];
+        for (int i = 0; i < data.length; i += chunk.length) {
+            int len = toBytes(data, i, chunk);
+            h.putBytes(chunk, 0, len);
+        }
         return BaseEncoding.base16().lowerCase().encode(h.hash().asBytes());
     }
 
+    private static final int HASH_CHUNK_SIZE = 0x2000;
+
+    //the bytes are fed to the hash functions in bulk
+    private static int toBytes(int[] data, int start, byte[] chunk) {
+        int len = Math.min(chunk.length, data.length - start);
+        for (int j = 0; j < len; j++) {
+            chunk[j] = (byte) data[start + j];
+        }
+        return len;
+    }
+
     public static String computeSha1Sum(IMemoryRom rom){
+        ByteBuffer bytes = rom.getRomBuffer();
+        if (bytes != null) {
+            MessageDigest md = newSha1();
+            md.update(bytes.duplicate());
+            return BaseEncoding.base16().lowerCase().encode(md.digest());
+        }
         return computeSha1Sum(rom.getRomData());
     }
 
+    //Hashing.sha1 is deprecated in guava
+    public static MessageDigest newSha1() {
+        try {
+            return MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
     public static String computeCrc32(int[] data) {
         CRC32 crc32 = new CRC32();
-        Arrays.stream(data).forEach(crc32::update);
+        byte[] chunk = new byte[HASH_CHUNK_SIZE];
+        for (int i = 0; i < data.length; i += chunk.length) {
+            crc32.update(chunk, 0, toBytes(data, i, chunk));
+        }
         return Long.toHexString(crc32.getValue());
     }
 
     public static String computeCrc32(IMemoryRom rom) {
+        ByteBuffer bytes = rom.getRomBuffer();
+        if (bytes != null) {
+            CRC32 crc32 = new CRC32();
+            crc32.update(bytes.duplicate());
+            return Long.toHexString(crc32.getValue());
+        }
         return computeCrc32(rom.getRomData());
     }
 
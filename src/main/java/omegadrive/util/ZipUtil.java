@@ -6,6 +6,7 @@ import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 import java.io.Closeable;
+import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.file.Files;
@@ -47,13 +48,19 @@ public class ZipUtil {
         String[] extArray = ext == null || ext.length == 0 ? SystemLoader.binaryTypes : ext;
         Optional<? extends ZipEntry> entry = Optional.empty();
         try (ZipFile zipFile = new ZipFile(zipFilePath.toFile())) {
-            entry = zipFile.stream().filter(e -> isSupportedBinaryType.test(e, extArray)).findFirst();
+            entry = findSupportedEntry(zipFile, extArray);
         } catch (Exception e) {
             LOG.error("Unable to parse contents {}", zipFilePath.toAbsolutePath().toString(), e);
         }
         return entry;
     }
 
+    //the first entry with a supported extension, the archive is already open
+    public static Optional<? extends ZipEntry> findSupportedEntry(ZipFile zipFile, String... ext) {
+        String[] extArray = ext == null || ext.length == 0 ? SystemLoader.binaryTypes : ext;
+        return zipFile.stream().filter(e -> isSupportedBinaryType.test(e, extArray)).findFirst();
+    }
+
     public static String getGZipFileName(Path path) {
         return path.getFileName().toString().replace(GZIP_EXT, ""); //just a convention
     }
@@ -86,6 +93,33 @@ public class ZipUtil {
         return res;
     }
 
+    /**
+     * Stream of the rom data: the supported zip entry, the gzip content or the file itself.
+     */
+    public static InputStream openInputStream(Path path, String... ext) throws IOException {
+        String name = path.getFileName().toString().toLowerCase();
+        if (isZipFile.test(name)) {
+            ZipFile zipFile = new ZipFile(path.toFile());
+            Optional<? extends ZipEntry> opt = findSupportedEntry(zipFile, ext);
+            if (!opt.isPresent()) {
+                zipFile.close();
+                throw new IOException("No supported entry in: " + path.getFileName());
+            }
+            ZipEntry entry = opt.get();
+            LOG.info("Using zipEntry: {}", entry.getName());
+            return new FilterInputStream(zipFile.getInputStream(entry)) {
+                @Override
+                public void close() throws IOException {
+                    super.close();
+                    zipFile.close();
+                }
+            };
+        } else if (isGZipFile.test(name)) {
+            return new GZIPInputStream(Files.newInputStream(path));
+        }
+        return Files.newInputStream(path);
+    }
+
     public static void closeQuietly(Closeable c) {
         try {
             if (c != null) {
@@ -74,7 +74,7 @@ public class SmsVdp implements BaseVdpProvider {
     /**
      * NTSC / PAL Emulation
      */
-    public static int palFlag = NTSC;
+    private int palFlag = NTSC;
 
     /** SMS Visible Screen Width */
     private final static int SMS_WIDTH = BaseVdpProvider.H32;
@@ -167,16 +167,16 @@ public class SmsVdp implements BaseVdpProvider {
     private int[] ggDisplay; //only for GG mode
 
     /** SMS Colours converted to Java */
-    private static int[] SMS_JAVA;
+    private static final int[] SMS_JAVA = new int[0x40];
 
     /** GG Colours converted to Java */
-    private static int[] GG_JAVA1, GG_JAVA2;
+    private static final int[] GG_JAVA1 = new int[0x100], GG_JAVA2 = new int[0x10];
 
     /** Horizontal Viewport Start */
-    public static int h_start;
+    private int h_start;
 
     /** Horizontal Viewport End */
-    public static int h_end;
+    private int h_end;
 
     // --------------------------------------------------------------------------------------------
     // Decoded SAT Table
@@ -270,8 +270,6 @@ public class SmsVdp implements BaseVdpProvider {
      */
     @Override
     public final void reset() {
-        generateConvertedPals();
-
         firstByte = true;
 
         location = 0;
@@ -872,35 +870,28 @@ public class SmsVdp implements BaseVdpProvider {
     //       0000BBBB   (2nd byte)
     // --------------------------------------------------------------------------------------------
 
-    private final void generateConvertedPals() {
-        if (isSms && SMS_JAVA == null) {
-            SMS_JAVA = new int[0x40];
+    static {
+        for (int i = 0; i < SMS_JAVA.length; i++) {
+            int r = i & 0x03;
+            int g = (i >> 2) & 0x03;
+            int b = (i >> 4) & 0x03;
 
-            for (int i = 0; i < SMS_JAVA.length; i++) {
-                int r = i & 0x03;
-                int g = (i >> 2) & 0x03;
-                int b = (i >> 4) & 0x03;
+            SMS_JAVA[i] = ((r * 85) << 16) | ((g * 85) << 8) | (b * 85);
+        }
 
-                SMS_JAVA[i] = ((r * 85) << 16) | ((g * 85) << 8) | (b * 85);
-            }
-        } else if (!isSms && GG_JAVA1 == null) {
-            GG_JAVA1 = new int[0x100];
-            GG_JAVA2 = new int[0x10];
-
-            // Green & Blue
-            for (int i = 0; i < GG_JAVA1.length; i++) {
-                int g = i & 0x0F;
-                int b = (i >> 4) & 0x0F;
-
-                // Shift and fill with the original bitpattern
-                // so %1111 becomes %11111111, %1010 becomes %10101010
-                GG_JAVA1[i] = (g << 20) | (g << 16) | (b << 12) | (b << 8);
-            }
+        // Green & Blue
+        for (int i = 0; i < GG_JAVA1.length; i++) {
+            int g = i & 0x0F;
+            int b = (i >> 4) & 0x0F;
 
-            // Red
-            for (int i = 0; i < GG_JAVA2.length; i++) {
-                GG_JAVA2[i] = (i << 4) | i;
-            }
+            // Shift and fill with the original bitpattern
+            // so %1111 becomes %11111111, %1010 becomes %10101010
+            GG_JAVA1[i] = (g << 20) | (g << 16) | (b << 12) | (b << 8);
+        }
+
+        // Red
+        for (int i = 0; i < GG_JAVA2.length; i++) {
+            GG_JAVA2[i] = (i << 4) | i;
         }
     }
 
@@ -20,6 +20,7 @@
 package omegadrive.vdp.md;
 
 import omegadrive.bus.model.GenesisBusProvider;
+import omegadrive.savestate.ObjectStateCodec;
 import omegadrive.util.*;
 import omegadrive.vdp.model.*;
 import omegadrive.vdp.util.UpdatableViewer;
@@ -30,8 +31,10 @@ import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.apache.logging.log4j.message.ParameterizedMessage;
 
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Optional;
 import java.util.stream.IntStream;
 
 import static omegadrive.vdp.model.BaseVdpAdapterEventSupport.VdpEvent.INTERLACE_FIELD_CHANGE;
@@ -51,6 +54,8 @@ public class GenesisVdp implements GenesisVdpProvider, BaseVdpAdapterEventSuppor
     public final static boolean verbose = false;
     public final static boolean regVerbose = false;
     private final static Logger LOG = LogManager.getLogger(GenesisVdp.class.getSimpleName());
+    private final static ObjectStateCodec stateCodec = ObjectStateCodec.of(GenesisVdp.class,
+            "pendingReadEntry", "interruptHandler", "dmaHandler.pendingReadEntry", "fifo.fifo", "memoryInterface");
 
     //TODO true breaks a good number of VdpFifoTests
     private static boolean ENABLE_READ_AHEAD = Boolean.parseBoolean(System.getProperty("vdp.enable.read.ahead", "false"));
@@ -852,6 +857,22 @@ public class GenesisVdp implements GenesisVdpProvider, BaseVdpAdapterEventSuppor
         this.list.clear();
     }
 
+    //registers, counters, fifo, dma and vdp memory, in-memory snapshots only
+    @Override
+    public void saveContext(ByteBuffer buffer) {
+        stateCodec.save(buffer, this);
+    }
+
+    @Override
+    public void loadContext(ByteBuffer buffer) {
+        VideoMode prev = videoMode;
+        stateCodec.load(buffer, this);
+        Optional.ofNullable(memoryInterface.getTileCache()).ifPresent(VdpTileCache::invalidateAll);
+        if (prev != videoMode) {
+            fireVdpEvent(VdpEvent.VIDEO_MODE, videoMode);
+        }
+    }
+
     private final void logVerbose(String str, int arg) {
         if (verbose) {
             LOG.info(getVdpStateString(String.format(str, arg)));
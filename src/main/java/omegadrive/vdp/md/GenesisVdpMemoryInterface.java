@@ -39,6 +39,7 @@ public class GenesisVdpMemoryInterface implements VdpMemoryInterface {
     private int[] cram;
     private int[] vsram;
     private int[] javaPalette;
+    private VdpTileCache tileCache;
     private final int[] satCache = new int[MAX_SPRITES_PER_FRAME_H40 * 8]; //8 bytes per sprite
     private int satBaseAddress = 0, satEndAddress = satBaseAddress + satCache.length;
 
@@ -58,6 +59,7 @@ public class GenesisVdpMemoryInterface implements VdpMemoryInterface {
         vram = Util.initMemoryRandomBytes(new int[GenesisVdpProvider.VDP_VRAM_SIZE]);
         cram = Util.initMemoryRandomBytes(new int[GenesisVdpProvider.VDP_CRAM_SIZE]);
         vsram = Util.initMemoryRandomBytes(new int[GenesisVdpProvider.VDP_VSRAM_SIZE]);
+        tileCache = new VdpTileCache(vram);
         initPalette();
     }
 
@@ -83,6 +85,7 @@ public class GenesisVdpMemoryInterface implements VdpMemoryInterface {
     public void writeVramByte(int address, int data) {
         address &= (GenesisVdpProvider.VDP_VRAM_SIZE - 1);
         vram[address] = data & 0xFF;
+        tileCache.markDirty(address);
         updateSatCache(address, data & 0xFF);
     }
 
@@ -139,6 +142,11 @@ public class GenesisVdpMemoryInterface implements VdpMemoryInterface {
         return vram;
     }
 
+    @Override
+    public VdpTileCache getTileCache() {
+        return tileCache;
+    }
+
     @Override
     public int[] getVsram() {
         return vsram;
@@ -51,8 +51,6 @@ public class VdpColorMapper {
     public final static double VDP_MAX_COLOR_LEVEL = 4.7; //voltage output
 
     private final static int[][][] colorsCache = new int[VDP_TONES_PER_CHANNEL][VDP_TONES_PER_CHANNEL][VDP_TONES_PER_CHANNEL];
-    private final static int[][][] colorsCacheShadow = new int[VDP_TONES_PER_CHANNEL][VDP_TONES_PER_CHANNEL][VDP_TONES_PER_CHANNEL];
-    private final static int[][][] colorsCacheHighLight = new int[VDP_TONES_PER_CHANNEL][VDP_TONES_PER_CHANNEL][VDP_TONES_PER_CHANNEL];
 
     private final static double[] NORMAL_LEVELS = {0, 0.9, 1.6, 2.2, 2.7, 3.2, 3.8, 4.7};
     private final static double[] SHADOW_LEVELS = {0, 0.5, 0.9, 1.3, 1.6, 1.9, 2.2, 2.4};
@@ -60,10 +58,19 @@ public class VdpColorMapper {
 
     private final static VdpColorMapper INSTANCE = new VdpColorMapper();
 
+    //only built when a rom enables shadow/highlight
+    private static class ShadowHighlight {
+        private final static int[][][] colorsCacheShadow = new int[VDP_TONES_PER_CHANNEL][VDP_TONES_PER_CHANNEL][VDP_TONES_PER_CHANNEL];
+        private final static int[][][] colorsCacheHighLight = new int[VDP_TONES_PER_CHANNEL][VDP_TONES_PER_CHANNEL][VDP_TONES_PER_CHANNEL];
+
+        static {
+            initColorsCache(colorsCacheShadow, SHADOW_LEVELS);
+            initColorsCache(colorsCacheHighLight, HIGHLIGHT_LEVELS);
+        }
+    }
+
     private VdpColorMapper() {
         initColorsCache(colorsCache, NORMAL_LEVELS);
-        initColorsCache(colorsCacheShadow, SHADOW_LEVELS);
-        initColorsCache(colorsCacheHighLight, HIGHLIGHT_LEVELS);
     }
 
     public static VdpColorMapper getInstance() {
@@ -76,9 +83,9 @@ public class VdpColorMapper {
             case NORMAL:
                 return colorsCache[red][green][blue];
             case HIGHLIGHT:
-                return colorsCacheHighLight[red][green][blue];
+                return ShadowHighlight.colorsCacheHighLight[red][green][blue];
             case SHADOW:
-                return colorsCacheShadow[red][green][blue];
+                return ShadowHighlight.colorsCacheShadow[red][green][blue];
         }
         return colorsCache[red][green][blue];
     }
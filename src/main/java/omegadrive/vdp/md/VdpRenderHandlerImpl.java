@@ -75,6 +75,7 @@ public class VdpRenderHandlerImpl implements VdpRenderHandler, VdpEventListener
     private final int[] vram;
     private final int[] cram;
     private final int[] javaPalette;
+    private final VdpTileCache tileCache;
     private int activeLines = 0;
     private SpriteDataHolder[] spriteDataHoldersNext = new SpriteDataHolder[MAX_SPRITES_PER_LINE_H40];
     private PixelData[] linePixelData = new PixelData[COLS];
@@ -121,6 +122,7 @@ public class VdpRenderHandlerImpl implements VdpRenderHandler, VdpEventListener
         this.vram = memoryInterface.getVram();
         this.cram = memoryInterface.getCram();
         this.javaPalette = memoryInterface.getJavaColorPalette();
+        this.tileCache = memoryInterface.getTileCache();
         this.scrollContextA = ScrollContext.createInstance(RenderType.PLANE_A, planeA);
         this.scrollContextB = ScrollContext.createInstance(RenderType.PLANE_B, planeB);
         this.windowPlaneContext = new WindowPlaneContext();
@@ -463,7 +465,51 @@ public class VdpRenderHandlerImpl implements VdpRenderHandler, VdpEventListener
         final int startTwoCells = wpc.startHCellPlane >> 1;
         final int endTwoCells = wpc.endHCellPlane >> 1;
 
-        renderPlaneInternal(line, nameTableLocation, startTwoCells, endTwoCells, sc);
+        if (tileCache != null) {
+            renderPlaneCached(line, nameTableLocation, startTwoCells, endTwoCells, sc);
+        } else {
+            renderPlaneInternal(line, nameTableLocation, startTwoCells, endTwoCells, sc);
+        }
+    }
+
+    //same as renderPlaneInternal, the name table is only looked up at tile boundaries
+    //and the pixels come from the pre-decoded tile rows
+    private void renderPlaneCached(final int line, final int nameTableLocation,
+                                   final int startTwoCells, final int endTwoCells, ScrollContext sc) {
+        final int vScrollSizeMask = (sc.planeHeight << 3) - 1;
+        final int hScrollPixelOffset = scrollHandler.getHorizontalScroll(line, sc);
+        final int[] plane = sc.plane;
+
+        TileDataHolder tileDataHolder = spriteDataHolder;
+        RenderPriority rp = null;
+        byte[] tileRows = null;
+        int rowIndex = 0;
+
+        for (int twoCell = startTwoCells; twoCell < endTwoCells; twoCell++) {
+            final int vScrollLineOffset = scrollHandler.getVerticalScroll(twoCell, sc);
+            final int planeLine = (vScrollLineOffset + line) & vScrollSizeMask;
+            final int planeCellVOffset = (planeLine >> 3) * sc.planeWidth;
+            final int rowCellBase = planeLine & 7; //cellHeight;
+            final int startPixel = twoCell << 4;
+            int planeX = startPixel + hScrollPixelOffset;
+            for (int pixel = startPixel; pixel < startPixel + 16; pixel++, planeX++) {
+                final int xPosCell = planeX & 7;
+                if (xPosCell == 0 || pixel == startPixel) {
+                    int planeCellHOffset = (planeX >> 3) % sc.planeWidth;
+                    int tileLocatorVram = nameTableLocation + ((planeCellHOffset + planeCellVOffset) << 1);
+                    //one word per 8x8 tile
+                    int tileNameTable = vram[tileLocatorVram] << 8 | vram[tileLocatorVram + 1];
+                    tileDataHolder = getTileData(tileNameTable, tileDataHolder);
+                    rp = tileDataHolder.priority ? sc.highPrio : sc.lowPrio;
+                    int rowCell = rowCellBase ^ (tileDataHolder.vertFlipAmount & 7); //[0,7]
+                    int rowCellShift = (rowCell << (2 + interlaceMode.interlaceAdjust())) + (odd << 2);
+                    rowIndex = tileCache.getRowIndex(tileDataHolder.tileIndex + rowCellShift, tileDataHolder.horFlip);
+                    tileRows = tileCache.getRows(tileDataHolder.horFlip);
+                }
+                plane[pixel] = tileDataHolder.paletteLineIndex + (tileRows[rowIndex + xPosCell] << 1);
+                updatePixelData(pixel, rp, plane[pixel]);
+            }
+        }
     }
 
     private void renderPlaneInternal(final int line, final int nameTableLocation,
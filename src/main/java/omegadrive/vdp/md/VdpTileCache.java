@@ -0,0 +1,90 @@
+package omegadrive.vdp.md;
+
+import java.util.Arrays;
+
+import static omegadrive.vdp.model.GenesisVdpProvider.VDP_VRAM_SIZE;
+
+/**
+ * VdpTileCache
+ * <p>
+ * Tile pattern data decoded to one palette index (0-15) per pixel, 8 rows of 8 pixels per tile.
+ * A tile is decoded when first used after a vram write, the horizontally flipped version
+ * is only decoded when a name table entry asks for it.
+ * An interlace mode 2 tile (8x16) simply spans two consecutive 8x8 tiles.
+ * <p>
+ * Federico Berti
+ * <p>
+ * Copyright 2021
+ */
+public class VdpTileCache {
+
+    public static final int BYTES_PER_TILE = 32;
+    public static final int PIXELS_PER_ROW = 8;
+    private static final int TILE_SHIFT = 5;
+    private static final int NUM_TILES = VDP_VRAM_SIZE >> TILE_SHIFT;
+    private static final int ROW_ADDRESS_MASK = (VDP_VRAM_SIZE - 1) & ~3;
+
+    private final int[] vram;
+    private final byte[] rows = new byte[VDP_VRAM_SIZE << 1];
+    private final byte[] rowsHorFlip = new byte[VDP_VRAM_SIZE << 1];
+    private final boolean[] dirty = new boolean[NUM_TILES];
+    private final boolean[] dirtyHorFlip = new boolean[NUM_TILES];
+
+    public VdpTileCache(int[] vram) {
+        this.vram = vram;
+        invalidateAll();
+    }
+
+    public void markDirty(int vramAddress) {
+        int tile = (vramAddress & (VDP_VRAM_SIZE - 1)) >> TILE_SHIFT;
+        dirty[tile] = true;
+        dirtyHorFlip[tile] = true;
+    }
+
+    public void invalidateAll() {
+        Arrays.fill(dirty, true);
+        Arrays.fill(dirtyHorFlip, true);
+    }
+
+    /**
+     * @param rowAddress vram address of the first byte of a tile row, 4 bytes per row
+     * @return the index of the first pixel of the row in {@link #getRows(boolean)}
+     */
+    public int getRowIndex(int rowAddress, boolean horFlip) {
+        rowAddress &= ROW_ADDRESS_MASK;
+        int tile = rowAddress >> TILE_SHIFT;
+        if (horFlip) {
+            if (dirtyHorFlip[tile]) {
+                decodeTile(tile, rowsHorFlip, true);
+                dirtyHorFlip[tile] = false;
+            }
+        } else if (dirty[tile]) {
+            decodeTile(tile, rows, false);
+            dirty[tile] = false;
+        }
+        return rowAddress << 1;
+    }
+
+    public byte[] getRows(boolean horFlip) {
+        return horFlip ? rowsHorFlip : rows;
+    }
+
+    //1 byte represents 2 pixels, the high nibble is the leftmost pixel
+    private void decodeTile(int tile, byte[] dest, boolean horFlip) {
+        final int start = tile << TILE_SHIFT;
+        for (int address = start; address < start + BYTES_PER_TILE; address += 4) {
+            final int rowIndex = address << 1;
+            for (int i = 0; i < 4; i++) {
+                int twoPixelsData = vram[address + i];
+                int px = i << 1;
+                if (horFlip) {
+                    dest[rowIndex + PIXELS_PER_ROW - 1 - px] = (byte) (twoPixelsData >> 4);
+                    dest[rowIndex + PIXELS_PER_ROW - 2 - px] = (byte) (twoPixelsData & 0xF);
+                } else {
+                    dest[rowIndex + px] = (byte) (twoPixelsData >> 4);
+                    dest[rowIndex + px + 1] = (byte) (twoPixelsData & 0xF);
+                }
+            }
+        }
+    }
+}
@@ -20,6 +20,7 @@
 package omegadrive.vdp.model;
 
 import omegadrive.util.Size;
+import omegadrive.vdp.md.VdpTileCache;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
@@ -57,6 +58,11 @@ public interface VdpMemoryInterface extends VdpMemory {
         //DO NOTHING
     }
 
+    //null: no decoded tile cache, tiles are read from vram
+    default VdpTileCache getTileCache() {
+        return null;
+    }
+
     default int readVideoRamWord(GenesisVdpProvider.VdpRamType vramType, int address) {
         switch (vramType) {
             case VRAM:
@@ -0,0 +1,312 @@
+package omegadrive.vdp.util;
+
+import omegadrive.util.ImageUtil;
+import omegadrive.util.PriorityThreadFactory;
+import omegadrive.util.VideoMode;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * FrameCapture
+ * <p>
+ * Captures every displayed frame to a folder, as a PNG sequence or as a single raw RGB24 stream.
+ * The emulation thread copies the frame to a pooled buffer and hands it to a small encoder pool,
+ * when no buffer is free the frame is dropped (and counted), the emulation never waits.
+ * Frames are numbered by emulated frame, raw frames are written at their final offset, the encoders can complete
+ * out of order. A dropped frame keeps its number and raw slot, on close it is filled with a copy of the previous
+ * frame: the sequence has one frame per emulated frame and stays in sync with the sound recording
+ * (started at the same time) at a fixed frame rate, see {@link #getMuxCommand()}.
+ * Every frame gets a line in index.csv: number, time since the start, size, file/offset and whether it has been
+ * dropped, ie. copied.
+ * Works headless.
+ * <p>
+ * Federico Berti
+ * <p>
+ * Copyright 2021
+ */
+public class FrameCapture {
+
+    private static final Logger LOG = LogManager.getLogger(FrameCapture.class.getSimpleName());
+
+    public enum Format {PNG, RAW}
+
+    public static final Format FORMAT;
+    public static final boolean START_ON_LOAD, WITH_SOUND;
+    public static final int THREADS;
+
+    static final int POOL_SIZE = 16;
+    static final String INDEX_FILE = "index.csv", RAW_FILE = "frames.rgb";
+
+    static {
+        String f = System.getProperty("helios.capture.format");
+        FORMAT = f == null ? Format.PNG : parseFormat(f);
+        START_ON_LOAD = f != null;
+        WITH_SOUND = Boolean.parseBoolean(System.getProperty("helios.capture.sound", "true"));
+        THREADS = Math.max(1, Integer.parseInt(System.getProperty("helios.capture.threads", "2")));
+    }
+
+    static Format parseFormat(String f) {
+        try {
+            return Format.valueOf(f.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            LOG.warn("Unknown helios.capture.format: {}, using {}", f, Format.PNG);
+            return Format.PNG;
+        }
+    }
+
+    static class Frame {
+        int number, width, height;
+        long timeNs, offset;
+        //dropped frame: the frame it is a copy of
+        Frame copyOf;
+        BufferedImage image;
+        int[] pixels = new int[0];
+        byte[] rgb = new byte[0];
+
+        Frame copySlot() {
+            Frame f = new Frame();
+            f.number = number;
+            f.offset = offset;
+            f.width = width;
+            f.height = height;
+            return f;
+        }
+
+        void resize(int w, int h) {
+            if (w != width || h != height) {
+                width = w;
+                height = h;
+                image = new BufferedImage(w, h, BufferedImage.TYPE_INT_RGB);
+                pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+            }
+        }
+    }
+
+    private final Path folder;
+    private final Format format;
+    private final ExecutorService encoders;
+    final ArrayBlockingQueue<Frame> pool = new ArrayBlockingQueue<>(POOL_SIZE);
+    //dropped frames, filled on close with a copy of the frame before
+    private final List<Frame> dropped = new ArrayList<>();
+    private final BufferedWriter index;
+    private final FileChannel raw;
+    private final int fps;
+    private final long startNs = System.nanoTime();
+    //emulation thread
+    private int frameCount, droppedCount, lastWidth, lastHeight;
+    private long rawOffset;
+    //number, offset and size of the last frame handed to the encoders
+    private final Frame lastKept = new Frame();
+    private volatile boolean closed;
+
+    public FrameCapture(Path folder, Format format, int threads, int fps) throws IOException {
+        this.folder = Files.createDirectories(folder);
+        this.format = format;
+        this.fps = fps;
+        for (int i = 0; i < POOL_SIZE; i++) {
+            pool.add(new Frame());
+        }
+        index = Files.newBufferedWriter(folder.resolve(INDEX_FILE));
+        index.write("frame,timeNs,width,height," + (format == Format.RAW ? "offset" : "file") + ",dropped");
+        index.newLine();
+        //read: the dropped frames are copied on close
+        raw = format == Format.RAW ? FileChannel.open(folder.resolve(RAW_FILE), StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING) : null;
+        encoders = Executors.newFixedThreadPool(threads,
+                new PriorityThreadFactory(Thread.MIN_PRIORITY, "frameEncoder"));
+        LOG.info("Capturing frames to: {}, format: {}, encoders: {}", folder.toAbsolutePath(), format, threads);
+    }
+
+    public static FrameCapture createInstance(String prefix, int fps) throws IOException {
+        Path folder = Paths.get(".", "capture", prefix + "_" + System.currentTimeMillis());
+        return new FrameCapture(folder, FORMAT, THREADS, fps);
+    }
+
+    /**
+     * Emulation thread, copies the frame and returns.
+     */
+    public void capture(int[] data, VideoMode videoMode) {
+        Dimension d = videoMode.getDimension();
+        if (closed) {
+            return;
+        }
+        if (d.width != lastWidth || d.height != lastHeight) {
+            lastWidth = d.width;
+            lastHeight = d.height;
+            LOG.info("Frame {}, size: {}x{}", frameCount, d.width, d.height);
+        }
+        Frame frame = pool.poll();
+        boolean drop = frame == null;
+        if (drop) {
+            droppedCount++;
+            //no pixels, only the slot
+            frame = new Frame();
+            frame.width = d.width;
+            frame.height = d.height;
+            //the first frame always gets a buffer
+            frame.copyOf = lastKept.copySlot();
+            dropped.add(frame);
+        }
+        frame.number = frameCount++;
+        frame.timeNs = System.nanoTime() - startNs;
+        frame.offset = rawOffset;
+        rawOffset += d.width * d.height * 3L;
+        if (drop) {
+            return;
+        }
+        frame.resize(d.width, d.height);
+        System.arraycopy(data, 0, frame.pixels, 0, Math.min(data.length, frame.pixels.length));
+        lastKept.number = frame.number;
+        lastKept.offset = frame.offset;
+        lastKept.width = d.width;
+        lastKept.height = d.height;
+        Frame f = frame;
+        encoders.execute(() -> encode(f));
+    }
+
+    private void encode(Frame frame) {
+        try {
+            String name;
+            if (format == Format.PNG) {
+                name = pngName(frame.number);
+                ImageUtil.saveImageToFile(frame.image, folder.resolve(name).toFile(), "png");
+            } else {
+                name = Long.toString(frame.offset);
+                writeRaw(frame);
+            }
+            writeIndex(frame, name, false);
+        } catch (IOException e) {
+            LOG.error("Unable to write frame: {}, {}", frame.number, e.getMessage());
+        } finally {
+            pool.offer(frame);
+        }
+    }
+
+    private void writeIndex(Frame frame, String name, boolean dropped) throws IOException {
+        synchronized (index) {
+            index.write(frame.number + "," + frame.timeNs + "," + frame.width + "," + frame.height + "," + name +
+                    "," + (dropped ? 1 : 0));
+            index.newLine();
+        }
+    }
+
+    //the encoders are done, a dropped frame is a copy of the last frame kept before it
+    private void fillDropped() throws IOException {
+        for (Frame frame : dropped) {
+            Frame src = frame.copyOf;
+            String name = format == Format.PNG ? pngName(frame.number) : Long.toString(frame.offset);
+            try {
+                if (format == Format.PNG) {
+                    Files.copy(folder.resolve(pngName(src.number)), folder.resolve(name),
+                            StandardCopyOption.REPLACE_EXISTING);
+                } else if (src.width == frame.width && src.height == frame.height) {
+                    //a size change leaves the slot black
+                    ByteBuffer bb = ByteBuffer.allocate(src.width * src.height * 3);
+                    while (bb.hasRemaining()) {
+                        if (raw.read(bb, src.offset + bb.position()) < 0) {
+                            throw new IOException("Unexpected end of file");
+                        }
+                    }
+                    bb.flip();
+                    for (long pos = frame.offset; bb.hasRemaining(); ) {
+                        pos += raw.write(bb, pos);
+                    }
+                }
+            } catch (IOException e) {
+                LOG.error("Unable to copy frame: {}, to: {}, {}", src.number, frame.number, e.getMessage());
+            }
+            writeIndex(frame, name, true);
+        }
+        dropped.clear();
+    }
+
+    private static String pngName(int number) {
+        return String.format("frame_%06d.png", number);
+    }
+
+    private void writeRaw(Frame frame) throws IOException {
+        int len = frame.pixels.length;
+        if (frame.rgb.length != len * 3) {
+            frame.rgb = new byte[len * 3];
+        }
+        byte[] rgb = frame.rgb;
+        for (int i = 0, j = 0; i < len; i++, j += 3) {
+            int p = frame.pixels[i];
+            rgb[j] = (byte) (p >> 16);
+            rgb[j + 1] = (byte) (p >> 8);
+            rgb[j + 2] = (byte) p;
+        }
+        ByteBuffer bb = ByteBuffer.wrap(rgb);
+        long pos = frame.offset;
+        while (bb.hasRemaining()) {
+            pos += raw.write(bb, pos);
+        }
+    }
+
+    //frames captured, dropped ones included
+    public int getFrameCount() {
+        return frameCount;
+    }
+
+    public int getDroppedCount() {
+        return droppedCount;
+    }
+
+    /**
+     * ffmpeg command line to encode the capture, audio from the sound recording; assumes no size changes.
+     */
+    public String getMuxCommand() {
+        String audio = WITH_SOUND ? " -i <output.wav> -shortest" : "";
+        String in = format == Format.PNG ? "-framerate " + fps + " -i " + folder.resolve("frame_%06d.png") :
+                "-f rawvideo -pix_fmt rgb24 -s " + lastWidth + "x" + lastHeight + " -framerate " + fps +
+                        " -i " + folder.resolve(RAW_FILE);
+        return "ffmpeg " + in + audio + " -pix_fmt yuv420p capture.mp4";
+    }
+
+    /**
+     * Waits for the pending frames to be written.
+     */
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        encoders.shutdown();
+        try {
+            if (!encoders.awaitTermination(30, TimeUnit.SECONDS)) {
+                LOG.warn("Timeout waiting for the frame encoders");
+            }
+            fillDropped();
+            index.close();
+            if (raw != null) {
+                raw.close();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            LOG.error("Unable to close the capture: {}", e.getMessage());
+        }
+        LOG.info("Capture done: {}, frames: {}, dropped: {}", folder.toAbsolutePath(), frameCount, droppedCount);
+        LOG.info("To encode: {}", getMuxCommand());
+    }
+}
@@ -0,0 +1,104 @@
+package omegadrive;
+
+import omegadrive.input.InputProvider.PlayerNumber;
+import omegadrive.joypad.JoypadProvider.JoypadAction;
+import omegadrive.joypad.JoypadProvider.JoypadButton;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * HeadlessRunnerTest
+ * <p>
+ * Federico Berti
+ * <p>
+ * Copyright 2021
+ */
+public class HeadlessRunnerTest {
+
+    @Test
+    public void testInputScript() {
+        List<String> lines = Arrays.asList(
+                "# comment",
+                "",
+                "125 P1 START RELEASED",
+                "120 p1 s pressed",
+                "200 P2 A PRESSED");
+        List<HeadlessRunner.ScriptEvent> l = HeadlessRunner.parseInputScript(lines);
+        Assert.assertEquals(3, l.size());
+        Assert.assertEquals(120, l.get(0).frame);
+        Assert.assertEquals(JoypadButton.S, l.get(0).button);
+        Assert.assertEquals(JoypadAction.PRESSED, l.get(0).action);
+        Assert.assertEquals(JoypadButton.S, l.get(1).button);
+        Assert.assertEquals(JoypadAction.RELEASED, l.get(1).action);
+        Assert.assertEquals(PlayerNumber.P2, l.get(2).player);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInputScriptInvalid() {
+        HeadlessRunner.parseInputScript(Arrays.asList("120 P1 START"));
+    }
+
+    @Test
+    public void testReportFormat() {
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put("rom", "test.md");
+        m.put("frames", 60);
+        m.put("fps", 120.5);
+        Assert.assertEquals("{\n  \"rom\": \"test.md\",\n  \"frames\": 60,\n  \"fps\": 120.5\n}",
+                HeadlessRunner.toJson(m));
+        Assert.assertEquals("rom,frames,fps", HeadlessRunner.toCsvRow(m.keySet()));
+        Assert.assertEquals("test.md,60,120.5", HeadlessRunner.toCsvRow(m.values()));
+    }
+
+    @Test
+    public void testReportEscaping() {
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put("rom", "Sonic (USA, \"Europe\")\\1.zip");
+        m.put("frames", 60);
+        Assert.assertEquals("\"Sonic (USA, \"\"Europe\"\")\\1.zip\",60", HeadlessRunner.toCsvRow(m.values()));
+        Assert.assertEquals("{\n  \"rom\": \"Sonic (USA, \\\"Europe\\\")\\\\1.zip\",\n  \"frames\": 60\n}",
+                HeadlessRunner.toJson(m));
+        Assert.assertEquals("\"a\\nb\\u0001\"", HeadlessRunner.toJsonString("a\nb\u0001"));
+    }
+
+    @Test
+    public void testCsvReport() throws Exception {
+        Path folder = Files.createTempDirectory("helios_report");
+        Path file = folder.resolve("nightly.csv");
+        try {
+            Map<String, Object> md = new LinkedHashMap<>();
+            md.put("system", "GENESIS");
+            md.put("cyclesPerFrame.68k", 127_000.0);
+            Map<String, Object> msx = new LinkedHashMap<>();
+            msx.put("system", "MSX");
+            msx.put("cyclesPerFrame.68k", null);
+            HeadlessRunner.writeReport(file, md);
+            HeadlessRunner.writeReport(file, msx);
+            Assert.assertEquals(Arrays.asList("system,cyclesPerFrame.68k", "GENESIS,127000.0", "MSX,"),
+                    Files.readAllLines(file));
+            Assert.assertTrue(HeadlessRunner.toJson(msx).contains("\"cyclesPerFrame.68k\": null"));
+
+            //different columns, the previous file is moved away
+            Map<String, Object> other = new LinkedHashMap<>();
+            other.put("system", "SMS");
+            HeadlessRunner.writeReport(file, other);
+            Assert.assertEquals(Arrays.asList("system", "SMS"), Files.readAllLines(file));
+            try (Stream<Path> s = Files.list(folder)) {
+                Assert.assertEquals(2, s.count());
+            }
+        } finally {
+            try (Stream<Path> s = Files.list(folder)) {
+                s.forEach(p -> p.toFile().delete());
+            }
+            Files.delete(folder);
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package omegadrive;
+
+import com.google.common.collect.ImmutableMap;
+import omegadrive.cart.loader.RomDbIndex;
+import omegadrive.util.FileLoader;
+import omegadrive.util.StartupProfile;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * StartupProfileTest
+ * <p>
+ * Federico Berti
+ * <p>
+ * Copyright 2021
+ */
+public class StartupProfileTest {
+
+    //start to the first frame, headless, VDPFIFOTesting, rom db index pre-built; recorded: 0.80-0.88s,
+    //devices 0.24-0.27s, systemInit 0.18-0.21s, romLoad 0.035s
+    static final double BUDGET_MS = 1_200;
+    static final Map<String, Double> SUBSYSTEM_BUDGET_MS = ImmutableMap.of(
+            "devices", 500.0, "systemInit", 400.0, "romLoad", 100.0);
+
+    @Test
+    public void testTimeToFirstFrame() throws Exception {
+        Path rom = Paths.get("src", "test", "resources", "VDPFIFOTesting.zip");
+        String cacheFolder = FileLoader.romCacheFolder;
+        Path tmp = Files.createTempDirectory("helios_cache");
+        FileLoader.romCacheFolder = tmp.toString();
+        try {
+            //the rom db index is built once per install, not part of the startup
+            RomDbIndex.getInstance();
+            testTimeToFirstFrame(rom);
+        } finally {
+            FileLoader.romCacheFolder = cacheFolder;
+            try (Stream<Path> s = Files.walk(tmp)) {
+                s.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+            }
+        }
+    }
+
+    private void testTimeToFirstFrame(Path rom) throws Exception {
+        StartupProfile.start();
+        HeadlessRunner runner = new HeadlessRunner(rom, 1, Collections.emptyList()).setTimeoutMs(30_000);
+        Assert.assertTrue(runner.run(false).isPresent());
+
+        double firstFrameMs = StartupProfile.getTimeToFirstFrameMs();
+        Map<String, Double> timings = StartupProfile.getTimingsMs();
+        Assert.assertTrue(firstFrameMs > 0);
+        Assert.assertTrue(timings.toString(), timings.containsKey("systemCreate"));
+        Assert.assertTrue(timings.toString(), timings.containsKey("devices"));
+        Assert.assertTrue(timings.toString(), timings.containsKey("romLoad"));
+        Assert.assertTrue(timings.toString(), timings.containsKey("systemInit"));
+        Assert.assertTrue(timings.get("systemInit") < firstFrameMs);
+        SUBSYSTEM_BUDGET_MS.forEach((k, v) -> Assert.assertTrue(k + ": " + timings.get(k) + " ms, " + timings,
+                timings.get(k) < v));
+        Assert.assertTrue("Time to first frame: " + firstFrameMs + " ms, " + timings, firstFrameMs < BUDGET_MS);
+        //nothing is recorded after the first frame
+        StartupProfile.add("late", System.nanoTime());
+        Assert.assertFalse(StartupProfile.getTimingsMs().containsKey("late"));
+    }
+}
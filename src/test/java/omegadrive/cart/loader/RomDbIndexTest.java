@@ -0,0 +1,86 @@
+package omegadrive.cart.loader;
+
+import omegadrive.SystemLoader.SystemType;
+import omegadrive.cart.mapper.MapperSelector;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * RomDbIndexTest
+ * <p>
+ * Federico Berti
+ * <p>
+ * Copyright 2021
+ */
+public class RomDbIndexTest {
+
+    private Path folder;
+
+    @Before
+    public void before() throws Exception {
+        folder = Files.createTempDirectory("helios_romdb");
+    }
+
+    @After
+    public void after() throws Exception {
+        try (Stream<Path> s = Files.walk(folder)) {
+            s.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        }
+    }
+
+    @Test
+    public void testIndex() {
+        RomDbIndex index = RomDbIndex.open(folder.resolve("romdb.idx"), RomDbIndex.getSources());
+
+        Map<String, MdRomDbModel.Entry> md = MdLoader.loadData();
+        Assert.assertFalse(md.isEmpty());
+        Assert.assertEquals(md.size(), index.size(RomDbIndex.MD));
+        md.forEach((k, v) -> Assert.assertEquals(k, v.getData(), index.getMdEntry(k).get().getData()));
+
+        for (SystemType type : new SystemType[]{SystemType.SMS, SystemType.GG}) {
+            assertMapperEntries(index, type, SmsLoader.loadData(type));
+        }
+        assertMapperEntries(index, SystemType.MSX, MsxXmlLoader.loadData());
+
+        Assert.assertFalse(index.getMdEntry("NOT A SERIAL").isPresent());
+        Assert.assertFalse(index.getMapperEntry(SystemType.SMS, "00000000").isPresent());
+        Assert.assertFalse(index.getMapperEntry(SystemType.GENESIS, "00000000").isPresent());
+    }
+
+    @Test
+    public void testRebuild() throws Exception {
+        Path src = Files.write(folder.resolve("src.db"), new byte[1]);
+        Path file = folder.resolve("romdb.idx");
+        RomDbIndex.open(file, src);
+        FileTime time = Files.getLastModifiedTime(file);
+        Files.setLastModifiedTime(file, FileTime.fromMillis(time.toMillis() - 10_000));
+        time = Files.getLastModifiedTime(file);
+        //up to date, mapped as is
+        RomDbIndex.open(file, src);
+        Assert.assertEquals(time, Files.getLastModifiedTime(file));
+        //source changed
+        Files.write(src, new byte[2]);
+        RomDbIndex.open(file, src);
+        Assert.assertNotEquals(time, Files.getLastModifiedTime(file));
+    }
+
+    private static void assertMapperEntries(RomDbIndex index, SystemType type, Map<String, MapperSelector.Entry> map) {
+        Assert.assertFalse(map.isEmpty());
+        Assert.assertEquals(map.size(), index.size(type.name()));
+        map.forEach((k, v) -> {
+            MapperSelector.Entry e = index.getMapperEntry(type, k).get();
+            Assert.assertEquals(k, v.title, e.title);
+            Assert.assertEquals(k, v.mapperName, e.mapperName);
+        });
+    }
+}
@@ -0,0 +1,151 @@
+package omegadrive.cart.loader;
+
+import omegadrive.cart.CartridgeInfoProvider;
+import omegadrive.cart.MdCartInfoProvider;
+import omegadrive.memory.ByteMemoryProvider;
+import omegadrive.memory.IMemoryProvider;
+import omegadrive.util.Util;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * RomLibraryIndexTest
+ * <p>
+ * Federico Berti
+ * <p>
+ * Copyright 2021
+ */
+public class RomLibraryIndexTest {
+
+    static final String SERIAL = "GM T-12345 -00";
+
+    private Path folder;
+
+    @Before
+    public void before() throws Exception {
+        folder = Files.createTempDirectory("helios_lib");
+    }
+
+    @After
+    public void after() throws Exception {
+        try (Stream<Path> s = Files.walk(folder)) {
+            s.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        }
+    }
+
+    @Test
+    public void testIndex() throws Exception {
+        byte[] md = mdRom();
+        Path roms = Files.createDirectories(folder.resolve("roms"));
+        Path mdFile = Files.write(roms.resolve("test.md"), md);
+        try (ZipOutputStream os = new ZipOutputStream(Files.newOutputStream(roms.resolve("test.zip")))) {
+            os.putNextEntry(new ZipEntry("readme.txt"));
+            os.putNextEntry(new ZipEntry("inside.bin"));
+            os.write(md);
+            os.closeEntry();
+        }
+        byte[] sms = new byte[0x8000];
+        new Random(1).nextBytes(sms);
+        Path smsFile = Files.write(roms.resolve("test (USA; Europe).sms"), sms);
+        Files.write(roms.resolve("notes.txt"), new byte[10]);
+
+        Path indexFile = folder.resolve("index.csv");
+        RomLibraryIndex index = RomLibraryIndex.load(indexFile);
+        Assert.assertEquals(3, index.update(roms, 2));
+        Assert.assertEquals(3, index.getEntries().size());
+
+        RomLibraryIndex.Entry e = index.getEntry(mdFile).get();
+        Assert.assertEquals("GENESIS", e.system);
+        Assert.assertEquals(SERIAL, e.serial);
+        Assert.assertEquals("JUE", e.region);
+        Assert.assertTrue(e.sram);
+        Assert.assertEquals(md.length, e.size);
+        Assert.assertEquals(Util.computeCrc32(Util.toUnsignedIntArray(md)), e.crc32);
+        Assert.assertEquals(Util.computeSha1Sum(Util.toUnsignedIntArray(md)), e.sha1);
+        RomLibraryIndex.Entry z = index.getEntry(roms.resolve("test.zip")).get();
+        Assert.assertEquals(e.sha1, z.sha1);
+        Assert.assertEquals(e.serial, z.serial);
+        RomLibraryIndex.Entry s = index.getEntry(smsFile).get();
+        Assert.assertEquals("SMS", s.system);
+        Assert.assertEquals(Util.computeCrc32(Util.toUnsignedIntArray(sms)), s.crc32);
+
+        index.store(indexFile);
+        RomLibraryIndex index2 = RomLibraryIndex.load(indexFile);
+        Assert.assertEquals(index.getEntries().size(), index2.getEntries().size());
+        Assert.assertEquals(e.toRow(), index2.getEntry(mdFile).get().toRow());
+        Assert.assertEquals(s.toRow(), index2.getEntry(smsFile).get().toRow());
+        //nothing changed
+        Assert.assertEquals(0, index2.update(roms, 2));
+
+        //modified and removed
+        Files.write(smsFile, new byte[0x4000]);
+        Files.delete(roms.resolve("test.zip"));
+        Assert.assertEquals(1, index2.update(roms, 2));
+        Assert.assertEquals(2, index2.getEntries().size());
+        Assert.assertEquals(Util.computeCrc32(new int[0x4000]), index2.getEntry(smsFile).get().crc32);
+
+        //a bad row is dropped, the others are kept
+        index2.store(indexFile);
+        Files.write(indexFile, "garbage\n".getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+        Assert.assertEquals(2, RomLibraryIndex.load(indexFile).getEntries().size());
+    }
+
+    @Test
+    public void testRomLoadLookup() throws Exception {
+        byte[] sms = new byte[0x8000];
+        new Random(2).nextBytes(sms);
+        Path smsFile = Files.write(folder.resolve("test.sms"), sms);
+        RomLibraryIndex index = RomLibraryIndex.load(folder.resolve("index.csv"));
+        index.update(folder, 1);
+        String sha1 = index.getEntry(smsFile).get().sha1;
+        //a hit is recognised by a sha1 that can't be computed
+        index.getEntry(smsFile).get().sha1 = "indexed";
+        IMemoryProvider memory = ByteMemoryProvider.createInstance(0);
+        memory.setRomData(ByteBuffer.wrap(sms));
+        try {
+            RomLibraryIndex.setShared(index);
+            Path other = folder.resolve("..").resolve(folder.getFileName()).resolve("test.sms");
+            Assert.assertEquals("indexed", CartridgeInfoProvider.createInstance(memory, other).getSha1());
+            Assert.assertEquals("indexed", MdCartInfoProvider.createInstance(memory, smsFile).getSha1());
+            //modified since indexed
+            Files.setLastModifiedTime(smsFile, FileTime.fromMillis(Files.getLastModifiedTime(smsFile).toMillis() + 2000));
+            Assert.assertEquals(sha1, CartridgeInfoProvider.createInstance(memory, smsFile).getSha1());
+        } finally {
+            RomLibraryIndex.setShared(null);
+        }
+    }
+
+    private static byte[] mdRom() {
+        byte[] rom = new byte[0x20000];
+        new Random(0).nextBytes(rom);
+        put(rom, 0x100, "SEGA GENESIS    ");
+        put(rom, 0x180, SERIAL);
+        put(rom, 0x1B0, "RA");
+        //backup sram, 0x200001 - 0x20FFFF
+        byte[] sram = {(byte) 0xF8, 0x20, 0, 0x20, 0, 1, 0, 0x20, (byte) 0xFF, (byte) 0xFF};
+        System.arraycopy(sram, 0, rom, 0x1B2, sram.length);
+        put(rom, 0x1C8, "  ");
+        put(rom, 0x1F0, "JUE");
+        return rom;
+    }
+
+    private static void put(byte[] rom, int pos, String s) {
+        byte[] b = s.getBytes(StandardCharsets.ISO_8859_1);
+        System.arraycopy(b, 0, rom, pos, b.length);
+    }
+}
@@ -26,8 +26,9 @@ public class M68Test {
         GenesisBusProvider bus = GenesisBusProvider.createBus();
         IMemoryProvider memoryProvider = MemoryProvider.createGenesisInstance();
         GenesisVdpProvider vdpProvider = GenesisVdpProvider.createVdp(bus);
-        memoryProvider.setRomData(new int[1024]);
-        memoryProvider.getRomData()[0x3c] = 1;
+        int[] rom = new int[1024];
+        rom[0x3c] = 1;
+        memoryProvider.setRomData(rom);
         provider = MC68000Wrapper.createInstance(bus);
         SystemProvider systemProvider = MdVdpTestUtil.createTestGenesisProvider();
         bus.attachDevice(memoryProvider).attachDevice(provider).attachDevice(systemProvider).attachDevice(vdpProvider);
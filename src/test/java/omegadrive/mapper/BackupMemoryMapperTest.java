@@ -0,0 +1,91 @@
+package omegadrive.mapper;
+
+import omegadrive.SystemLoader;
+import omegadrive.cart.mapper.BackupMemoryMapper;
+import omegadrive.util.Size;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+
+/**
+ * BackupMemoryMapperTest
+ * <p>
+ * Federico Berti
+ * <p>
+ * Copyright 2021
+ */
+public class BackupMemoryMapperTest {
+
+    static final int SIZE = 0x1000;
+
+    static class TestMapper extends BackupMemoryMapper {
+        TestMapper(String folder) {
+            super(SystemLoader.SystemType.GENESIS, "srm", "test", SIZE);
+            sramFolder = folder;
+            initBackupFileIfNecessary();
+        }
+
+        long read(int address, Size size) {
+            return readSram(address, size);
+        }
+
+        void write(int address, Size size, long data) {
+            writeSram(address, size, data);
+        }
+
+        void close() {
+            closeBackupFile();
+        }
+    }
+
+    private Path folder;
+
+    @Before
+    public void before() throws Exception {
+        folder = Files.createTempDirectory("helios_sram");
+    }
+
+    @After
+    public void after() throws Exception {
+        try (Stream<Path> s = Files.list(folder)) {
+            s.forEach(p -> p.toFile().delete());
+        }
+        Files.deleteIfExists(folder);
+    }
+
+    @Test
+    public void testPersist() throws Exception {
+        TestMapper m = new TestMapper(folder.toString());
+        Path file = folder.resolve("test.srm");
+        Assert.assertEquals(SIZE, Files.size(file));
+        //new file, all 0xFF
+        Assert.assertEquals(0xFFFF, m.read(0, Size.WORD));
+        m.write(0, Size.BYTE, 0x12);
+        m.write(2, Size.WORD, 0x3456);
+        m.write(4, Size.LONG, 0x89AB_CDEFL);
+        m.writeSramByte(SIZE - 1, 0x77);
+        Assert.assertEquals(0x12FF_3456, m.read(0, Size.LONG));
+        //sign extended, as Util.readData
+        Assert.assertEquals((long) 0x89AB_CDEF, m.read(4, Size.LONG));
+        m.close();
+
+        byte[] data = Files.readAllBytes(file);
+        Assert.assertEquals(SIZE, data.length);
+        Assert.assertEquals(0x12, data[0]);
+        Assert.assertEquals((byte) 0xFF, data[1]);
+        Assert.assertEquals(0x34, data[2]);
+        Assert.assertEquals((byte) 0xEF, data[7]);
+        Assert.assertEquals(0x77, data[SIZE - 1]);
+
+        TestMapper m2 = new TestMapper(folder.toString());
+        Assert.assertEquals(0x3456, m2.read(2, Size.WORD));
+        Assert.assertEquals(0x77, m2.readSramByte(SIZE - 1));
+        Assert.assertEquals(SIZE, m2.getSram().remaining());
+        m2.close();
+    }
+}
@@ -2,6 +2,7 @@ package omegadrive.mapper;
 
 import omegadrive.bus.model.GenesisBusProvider;
 import omegadrive.cart.MdCartInfoProvider;
+import omegadrive.cart.mapper.md.Ssf2Mapper;
 import omegadrive.memory.IMemoryProvider;
 import omegadrive.memory.MemoryProvider;
 import omegadrive.util.Size;
@@ -139,6 +140,26 @@ public class MdMapperTest {
         testBusRead(bus, address1, val1);
     }
 
+    //the first bank write enables the mapper, the bankable area must stop using the flat ROM
+    @Test
+    public void testSsf2MapperBankSwitch() {
+        prepareRomData(0x50_0000, "SEGA GENESIS"); //40 Mbit
+
+        int address = 0x08_0010;
+        int val = 0x11_22_33_44;
+        int val1 = 0x55_66_77_88;
+        buffer.putInt(address, val);
+        buffer.putInt(0x40_0010, val1);
+        GenesisBusProvider bus = loadRomData();
+        testBusRead(bus, address, val);
+
+        bus.write(Ssf2Mapper.BANK_SET_START_ADDRESS, 8, Size.BYTE); //0x80000 -> bank 8
+        testBusRead(bus, address, val1);
+
+        bus.write(Ssf2Mapper.BANK_SET_START_ADDRESS, 1, Size.BYTE); //0x80000 -> bank 1
+        testBusRead(bus, address, val);
+    }
+
     private void testSramInternal() {
         int address = 0x2F_0000;
         int address1 = 0x0F_0000;
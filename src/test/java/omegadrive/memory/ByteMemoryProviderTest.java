@@ -0,0 +1,109 @@
+/*
+ * Copyright (c) 2018-2019 Federico Berti
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package omegadrive.memory;
+
+import omegadrive.util.Size;
+import omegadrive.util.Util;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+/**
+ * ByteMemoryProviderTest
+ * <p>
+ * The byte backed rom should be indistinguishable from the int backed one.
+ *
+ * @author Federico Berti
+ */
+public class ByteMemoryProviderTest {
+
+    private static final int ROM_SIZE = 0x30_001;
+
+    private final IMemoryProvider intMemory = MemoryProvider.createInstance(new int[1], MemoryProvider.M68K_RAM_SIZE);
+    private final IMemoryProvider byteMemory = ByteMemoryProvider.createInstance(MemoryProvider.M68K_RAM_SIZE);
+
+    private void loadRom() {
+        byte[] rom = new byte[ROM_SIZE];
+        new Random(0).nextBytes(rom);
+        intMemory.setRomData(Util.toUnsignedIntArray(rom));
+        byteMemory.setRomData(rom);
+    }
+
+    @Test
+    public void testReadData() {
+        loadRom();
+        Assert.assertEquals(intMemory.getRomSize(), byteMemory.getRomSize());
+        for (Size size : Size.values()) {
+            for (int i = 0; i < ROM_SIZE - 4; i++) {
+                Assert.assertEquals(size + "," + i, intMemory.readRomData(i, size), byteMemory.readRomData(i, size));
+            }
+        }
+    }
+
+    @Test
+    public void testRomWrapping() {
+        loadRom();
+        for (int i = 0; i < ROM_SIZE * 3; i += 7) {
+            Assert.assertEquals(intMemory.readRomByte(i), byteMemory.readRomByte(i));
+        }
+    }
+
+    @Test
+    public void testReadOnlyRom() {
+        byte[] rom = new byte[ROM_SIZE];
+        new Random(0).nextBytes(rom);
+        intMemory.setRomData(Util.toUnsignedIntArray(rom));
+        //as a mapped rom file
+        byteMemory.setRomData(ByteBuffer.wrap(rom.clone()).asReadOnlyBuffer());
+        long checksum = Util.computeChecksum(intMemory) ^ 0xFFFF;
+        Assert.assertEquals(Util.computeSha1Sum(intMemory), Util.computeSha1Sum(byteMemory));
+        byteMemory.setChecksumRomValue(checksum);
+        intMemory.setChecksumRomValue(checksum);
+        assertSameRom();
+        Assert.assertEquals(intMemory.readRomData(0x100, Size.LONG), byteMemory.readRomData(0x100, Size.LONG));
+    }
+
+    @Test
+    public void testChecksum() {
+        loadRom();
+        long checksum = Util.computeChecksum(intMemory);
+        Assert.assertEquals(checksum, Util.computeChecksum(byteMemory));
+        Assert.assertEquals(Util.computeSha1Sum(intMemory), Util.computeSha1Sum(byteMemory));
+        Assert.assertEquals(Util.computeCrc32(intMemory), Util.computeCrc32(byteMemory));
+
+        byteMemory.setChecksumRomValue(checksum);
+        intMemory.setChecksumRomValue(checksum);
+        assertSameRom();
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testNoIntRom() {
+        loadRom();
+        Assert.assertTrue(MemoryProvider.createGenesisInstance() instanceof ByteMemoryProvider);
+        byteMemory.getRomData();
+    }
+
+    private void assertSameRom() {
+        Assert.assertEquals(intMemory.getRomSize(), byteMemory.getRomSize());
+        for (int i = 0; i < ROM_SIZE; i++) {
+            Assert.assertEquals(intMemory.readRomByte(i), byteMemory.readRomByte(i));
+        }
+    }
+}
@@ -29,7 +29,10 @@ import java.util.stream.IntStream;
  */
 public class GenesisMemoryProviderTest {
 
-    IMemoryProvider provider = MemoryProvider.createGenesisInstance();
+    //the value stored is the address, one byte per int
+    IMemoryProvider provider = MemoryProvider.createInstance(new int[1], MemoryProvider.M68K_RAM_SIZE);
+    //one byte per byte, the value stored is the low byte of the address
+    IMemoryProvider genesisProvider = MemoryProvider.createGenesisInstance();
 
     @Test
     public void testRomWrapping01() {
@@ -86,5 +89,8 @@ public class GenesisMemoryProviderTest {
 
         long res = provider.readRomByte(address);
         Assert.assertEquals(expected, res);
+
+        genesisProvider.setRomData(IntStream.of(data).map(i -> i & 0xFF).toArray());
+        Assert.assertEquals(expected & 0xFF, genesisProvider.readRomByte(address));
     }
 }
@@ -30,6 +30,7 @@ import omegadrive.memory.MemoryProvider;
 import omegadrive.savestate.BaseStateHandler;
 import omegadrive.savestate.BaseStateHandler.Type;
 import omegadrive.savestate.GstStateHandler;
+import omegadrive.savestate.MdChunkedStateHandler;
 import omegadrive.sound.SoundProvider;
 import omegadrive.sound.fm.FmProvider;
 import omegadrive.util.SystemTestUtil;
@@ -73,6 +74,31 @@ public class MdSavestateTest extends BaseSavestateTest {
         testLoadAndSave(saveStateFolder, ".gs");
     }
 
+    @Test
+    public void testChunkedRoundTrip() throws IOException {
+        for (Path saveFile : getSavestateList(saveStateFolder, ".gs")) {
+            GenesisBusProvider busProvider1 = loadSaveState(saveFile);
+            //no extension: chunked, .hgs
+            String name = saveFile.getFileName().toString().replace(".", "_") + "_TEST";
+            BaseStateHandler saveHandler = BaseStateHandler.createInstance(
+                    GENESIS, name, Type.SAVE, busProvider1.getAllDevices(Device.class));
+            Assert.assertTrue(saveHandler instanceof MdChunkedStateHandler);
+            Assert.assertEquals(name + MdChunkedStateHandler.EXTENSION, saveHandler.getFileName());
+            //.gs*: legacy layout
+            Assert.assertFalse(BaseStateHandler.createInstance(GENESIS, name + ".gs0", Type.SAVE,
+                    busProvider1.getAllDevices(Device.class)) instanceof MdChunkedStateHandler);
+            saveHandler.processState();
+            Path chunked = Files.createTempFile("helios", MdChunkedStateHandler.EXTENSION);
+            try {
+                Files.write(chunked, saveHandler.getData());
+                GenesisBusProvider busProvider2 = loadSaveState(chunked);
+                compareDevices(busProvider1, busProvider2);
+            } finally {
+                Files.deleteIfExists(chunked);
+            }
+        }
+    }
+
     private void compareFm(FmProvider fm1, FmProvider fm2) {
         int limit = GstStateHandler.FM_DATA_SIZE / 2;
         for (int i = 0; i < limit; i++) {
@@ -158,6 +184,6 @@ public class MdSavestateTest extends BaseSavestateTest {
         compare68k(getDevice(b1, MC68000Wrapper.class), getDevice(b2, MC68000Wrapper.class),
                 getDevice(b1, IMemoryProvider.class), getDevice(b2, IMemoryProvider.class));
         compareZ80(getDevice(b1, Z80Provider.class), getDevice(b2, Z80Provider.class), b1, b2);
-        compareFm(getDevice(b1, SoundProvider.class).getFm(), getDevice(b1, SoundProvider.class).getFm());
+        compareFm(getDevice(b1, SoundProvider.class).getFm(), getDevice(b2, SoundProvider.class).getFm());
     }
 }
\ No newline at end of file
@@ -0,0 +1,95 @@
+package omegadrive.save;
+
+import omegadrive.savestate.RewindBuffer;
+import omegadrive.savestate.StateSnapshot;
+import omegadrive.util.Util;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * RewindBufferTest
+ * <p>
+ * Federico Berti
+ * <p>
+ * Copyright 2021
+ */
+public class RewindBufferTest {
+
+    static final int NUM_STATES = 100;
+    static final int RAM_SIZE = 0x4000;
+
+    static class TestState {
+        int[] ram = new int[RAM_SIZE];
+        int counter;
+    }
+
+    @Test
+    public void testRewind() {
+        TestState state = new TestState();
+        RewindBuffer rb = new RewindBuffer(new StateSnapshot().addObject(state), NUM_STATES, 1, Long.MAX_VALUE);
+        List<int[]> expected = new ArrayList<>();
+        Random r = new Random(1);
+        for (int i = 0; i < NUM_STATES; i++) {
+            step(state, r);
+            expected.add(state.ram.clone());
+            capture(rb);
+        }
+        //100 * 64Kb raw
+        Assert.assertTrue(rb.getMemoryBytes() < NUM_STATES * RAM_SIZE);
+
+        for (int i = NUM_STATES - 1; i >= 0; i--) {
+            step(state, r);
+            Assert.assertTrue(rb.rewind());
+            Assert.assertEquals(i + 1, state.counter);
+            Assert.assertArrayEquals(expected.get(i), state.ram);
+        }
+        Assert.assertFalse(rb.rewind());
+        Assert.assertEquals(0, rb.getMemoryBytes());
+        rb.close();
+    }
+
+    @Test
+    public void testMemoryBudget() {
+        TestState state = new TestState();
+        long maxBytes = 200_000;
+        RewindBuffer rb = new RewindBuffer(new StateSnapshot().addObject(state), NUM_STATES, 1, maxBytes);
+        Random r = new Random(1);
+        long maxMem = 0;
+        for (int i = 0; i < NUM_STATES * 3; i++) {
+            step(state, r);
+            capture(rb);
+            maxMem = Math.max(maxMem, rb.getMemoryBytes());
+        }
+        //the current keyframe and its deltas are always kept
+        Assert.assertTrue(maxMem < maxBytes * 2);
+        int count = 0;
+        while (rb.rewind()) {
+            count++;
+        }
+        Assert.assertTrue(count > 0 && count <= RewindBuffer.KEYFRAME_EVERY * 2);
+        rb.close();
+    }
+
+    //a few random writes, some ram in use
+    private static void step(TestState state, Random r) {
+        state.counter++;
+        for (int j = 0; j < 64; j++) {
+            state.ram[r.nextInt(RAM_SIZE / 4)] = r.nextInt(0x100);
+        }
+    }
+
+    //the capture is skipped when the encoder is behind
+    private static void capture(RewindBuffer rb) {
+        int dropped = rb.getDroppedCaptures();
+        rb.capture();
+        while (rb.getDroppedCaptures() > dropped) {
+            Util.sleep(1);
+            dropped = rb.getDroppedCaptures();
+            rb.capture();
+        }
+    }
+}
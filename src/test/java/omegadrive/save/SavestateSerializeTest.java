@@ -68,9 +68,13 @@ public class SavestateSerializeTest {
         GshStateHandler stateHandler = (GshStateHandler) BaseStateHandler.createInstance(
                 GENESIS, p.toAbsolutePath().toString(), BaseStateHandler.Type.LOAD, Collections.emptySet());
         SvpMapper svpMapper = SvpMapper.createInstance(RomMapper.NO_OP_MAPPER, NO_MEMORY);
-        Ssp16 ssp16 = SvpMapper.ssp16;
+        //another instance, should not be affected
+        SvpMapper otherMapper = SvpMapper.createInstance(RomMapper.NO_OP_MAPPER, NO_MEMORY);
+        Ssp16Types.Svp_t otherCtx = otherMapper.getSsp16().getSvpContext();
+        Ssp16 ssp16 = svpMapper.getSsp16();
         int hc1 = Arrays.hashCode(ssp16.getSvpContext().iram_rom) + Arrays.hashCode(ssp16.getSvpContext().dram);
-        stateHandler.loadSvpState(ssp16);
+        stateHandler.loadSvpState(svpMapper);
+        Assert.assertSame(otherCtx, otherMapper.getSsp16().getSvpContext());
         Ssp16Types.Svp_t svpCtx = ssp16.getSvpContext();
         Assert.assertNotNull(svpCtx);
         int hc2 = Arrays.hashCode(svpCtx.iram_rom) + Arrays.hashCode(svpCtx.dram);
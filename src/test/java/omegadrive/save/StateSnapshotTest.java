@@ -0,0 +1,134 @@
+package omegadrive.save;
+
+import omegadrive.bus.model.GenesisBusProvider;
+import omegadrive.cpu.m68k.M68kProvider;
+import omegadrive.cpu.z80.Z80Provider;
+import omegadrive.input.GamepadTest;
+import omegadrive.joypad.JoypadProvider;
+import omegadrive.memory.IMemoryProvider;
+import omegadrive.savestate.ObjectStateCodec;
+import omegadrive.savestate.StateSnapshot;
+import omegadrive.vdp.model.GenesisVdpProvider;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.file.Paths;
+import java.util.Arrays;
+
+/**
+ * StateSnapshotTest
+ * <p>
+ * Federico Berti
+ * <p>
+ * Copyright 2021
+ */
+public class StateSnapshotTest {
+
+    static final int NUM_STEPS = 200_000;
+
+    enum TestEnum {A, B}
+
+    static class TestObject {
+        int i = 1;
+        long l = 2;
+        boolean b = true;
+        double d = 0.5;
+        TestEnum e = TestEnum.B;
+        TestEnum nullEnum;
+        int[] ia = {1, 2, 3};
+        int[][] ia2 = {{4, 5}, {6}};
+        final boolean[] ba = {true, false};
+        Inner inner = new Inner();
+        Object ref = new Object();
+    }
+
+    static class Inner {
+        int x = 7;
+    }
+
+    @Test
+    public void testCodecRoundTrip() {
+        ObjectStateCodec codec = ObjectStateCodec.of(TestObject.class, "inner");
+        ByteBuffer buffer = ByteBuffer.allocate(1024);
+        TestObject o = new TestObject();
+        codec.save(buffer, o);
+        int[] ia = o.ia;
+        Object ref = o.ref;
+        o.i = o.inner.x = 0;
+        o.l = 0;
+        o.b = o.ba[0] = false;
+        o.d = 0;
+        o.e = null;
+        o.nullEnum = TestEnum.A;
+        o.ia[1] = o.ia2[1][0] = 0;
+        buffer.flip();
+        codec.load(buffer, o);
+        Assert.assertEquals(buffer.limit(), buffer.position());
+        Assert.assertEquals(1, o.i);
+        Assert.assertEquals(2, o.l);
+        Assert.assertTrue(o.b);
+        Assert.assertEquals(0.5, o.d, 0);
+        Assert.assertEquals(TestEnum.B, o.e);
+        Assert.assertNull(o.nullEnum);
+        Assert.assertSame(ia, o.ia);
+        Assert.assertEquals(2, o.ia[1]);
+        Assert.assertEquals(6, o.ia2[1][0]);
+        Assert.assertTrue(o.ba[0]);
+        Assert.assertEquals(7, o.inner.x);
+        Assert.assertSame(ref, o.ref);
+    }
+
+    /**
+     * Run, go back to the snapshot and run again: the machine state needs to be the same.
+     * The savestate has no rom, the 68k is not running.
+     */
+    @Test
+    public void testMdRunTwice() {
+        GenesisBusProvider bus = MdSavestateTest.loadSaveState(
+                Paths.get(MdSavestateTest.saveStateFolder.toString(), "contra_01.gsh"));
+        JoypadProvider joypad = GamepadTest.createTestJoypadProvider();
+        bus.attachDevice(joypad);
+        bus.init();
+        M68kProvider cpu = bus.getBusDeviceIfAny(M68kProvider.class).get();
+        Z80Provider z80 = bus.getBusDeviceIfAny(Z80Provider.class).get();
+        IMemoryProvider memory = bus.getBusDeviceIfAny(IMemoryProvider.class).get();
+        GenesisVdpProvider vdp = bus.getVdp();
+
+        StateSnapshot start = createSnapshot(bus, cpu, z80, memory, vdp, joypad);
+        StateSnapshot end = createSnapshot(bus, cpu, z80, memory, vdp, joypad);
+        start.save();
+        byte[] startData = start.getData();
+
+        run(bus, z80, vdp);
+        end.save();
+        byte[] endData = end.getData();
+        Assert.assertFalse(Arrays.equals(startData, endData));
+
+        start.load();
+        end.save();
+        Assert.assertArrayEquals(startData, end.getData());
+
+        run(bus, z80, vdp);
+        end.save();
+        Assert.assertArrayEquals(endData, end.getData());
+    }
+
+    private static StateSnapshot createSnapshot(GenesisBusProvider bus, M68kProvider cpu, Z80Provider z80,
+                                                IMemoryProvider memory, GenesisVdpProvider vdp,
+                                                JoypadProvider joypad) {
+        return new StateSnapshot().addDevice(cpu).addZ80(z80).addDevice(z80.getZ80BusProvider()).
+                addDevice(memory).addDevice(bus).addDevice(joypad).addDevice(vdp).addDevice(bus.getFm());
+    }
+
+    private static void run(GenesisBusProvider bus, Z80Provider z80, GenesisVdpProvider vdp) {
+        for (int i = 0; i < NUM_STEPS; i++) {
+            if (bus.isZ80Running()) {
+                z80.executeInstruction();
+                bus.handleVdpInterruptsZ80();
+            }
+            vdp.runSlot();
+            bus.getFm().tick();
+        }
+    }
+}
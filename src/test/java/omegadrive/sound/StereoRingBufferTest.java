@@ -0,0 +1,135 @@
+package omegadrive.sound;
+
+import omegadrive.sound.fm.StereoRingBuffer;
+import omegadrive.util.Util;
+import org.jctools.queues.atomic.SpscAtomicArrayQueue;
+import org.junit.Assert;
+import org.junit.Ignore;
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.Queue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * StereoRingBufferTest
+ * <p>
+ * Federico Berti
+ * <p>
+ * Copyright 2021
+ */
+public class StereoRingBufferTest {
+
+    static final int CAPACITY = 1024;
+
+    @Test
+    public void testOrdering() {
+        StereoRingBuffer rb = new StereoRingBuffer(CAPACITY);
+        int[] out = new int[CAPACITY << 1];
+        int base = 0;
+        //wraps around a few times
+        for (int k = 0; k < 10; k++) {
+            for (int i = 0; i < 700; i++) {
+                Assert.assertTrue(rb.offer(base + i, -(base + i)));
+            }
+            Assert.assertEquals(700, rb.size());
+            int n = rb.drainTo(out, 2, 700);
+            Assert.assertEquals(700, n);
+            for (int i = 0; i < n; i++) {
+                Assert.assertEquals(base + i, out[2 + (i << 1)]);
+                Assert.assertEquals(-(base + i), out[3 + (i << 1)]);
+            }
+            base += 700;
+        }
+        Assert.assertEquals(0, rb.size());
+    }
+
+    @Test
+    public void testFullAndClear() {
+        StereoRingBuffer rb = new StereoRingBuffer(CAPACITY - 1);
+        Assert.assertEquals(CAPACITY, rb.capacity());
+        for (int i = 0; i < CAPACITY; i++) {
+            Assert.assertTrue(rb.offer(i, i));
+        }
+        Assert.assertFalse(rb.offer(0, 0));
+        int[] out = new int[4];
+        Assert.assertEquals(2, rb.drainTo(out, 0, 2));
+        Assert.assertTrue(rb.offer(0, 0));
+        rb.clear();
+        Assert.assertEquals(0, rb.size());
+        Assert.assertEquals(0, rb.drainTo(out, 0, 2));
+    }
+
+    /**
+     * Producer and consumer on different threads, as the emulation and audio threads do.
+     */
+    @Test
+    public void testConcurrent() throws Exception {
+        final int frames = 2_000_000;
+        StereoRingBuffer rb = new StereoRingBuffer(CAPACITY);
+        AtomicBoolean error = new AtomicBoolean();
+        Thread consumer = new Thread(() -> {
+            int[] out = new int[256];
+            int expected = 0;
+            while (expected < frames) {
+                int n = rb.drainTo(out, 0, out.length >> 1);
+                for (int i = 0; i < n; i++, expected++) {
+                    if (out[i << 1] != expected || out[(i << 1) + 1] != ~expected) {
+                        error.set(true);
+                        return;
+                    }
+                }
+            }
+        });
+        consumer.start();
+        for (int i = 0; i < frames; ) {
+            if (rb.offer(i, ~i)) {
+                i++;
+            }
+        }
+        consumer.join(Duration.ofSeconds(30).toMillis());
+        Assert.assertFalse(consumer.isAlive());
+        Assert.assertFalse(error.get());
+    }
+
+    /**
+     * Compares against the boxed queue used previously by VariableSampleRateSource.
+     */
+    @Ignore
+    @Test
+    public void testPerf() {
+        final int rounds = 2_000, framesPerRound = 735; //44100hz/60fps
+        int[] out = new int[framesPerRound << 1];
+        for (int k = 0; k < 5; k++) {
+            Queue<Integer> queue = new SpscAtomicArrayQueue<>(CAPACITY << 1);
+            long start = System.nanoTime();
+            long sum = 0;
+            for (int j = 0; j < rounds; j++) {
+                for (int i = 0; i < framesPerRound; i++) {
+                    queue.offer(Util.getFromIntegerCache(i | 1));
+                    queue.offer(Util.getFromIntegerCache(-i & ~1));
+                }
+                Integer v;
+                while ((v = queue.poll()) != null) {
+                    sum += v;
+                }
+            }
+            long queueNs = System.nanoTime() - start;
+
+            StereoRingBuffer rb = new StereoRingBuffer(CAPACITY);
+            start = System.nanoTime();
+            for (int j = 0; j < rounds; j++) {
+                for (int i = 0; i < framesPerRound; i++) {
+                    rb.offer(i | 1, -i & ~1);
+                }
+                int n = rb.drainTo(out, 0, framesPerRound);
+                for (int i = 0; i < n << 1; i++) {
+                    sum += out[i];
+                }
+            }
+            long rbNs = System.nanoTime() - start;
+            System.out.println(String.format("Queue<Integer>: %d ms, StereoRingBuffer: %d ms, (%d)",
+                    Duration.ofNanos(queueNs).toMillis(), Duration.ofNanos(rbNs).toMillis(), sum));
+        }
+    }
+}
@@ -0,0 +1,381 @@
+/*
+ * Copyright (c) 2018-2019 Federico Berti
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package omegadrive.sound;
+
+import omegadrive.sound.fm.MdFmProvider;
+import omegadrive.sound.fm.ym2612.Ym2612Fast;
+import omegadrive.sound.fm.ym2612.nukeykt.Ym2612Nuke;
+import omegadrive.sound.javasound.AbstractSoundManager;
+import omegadrive.util.RegionDetector;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static omegadrive.sound.fm.MdFmProvider.*;
+
+/**
+ * Feeds the same register writes to the Nuked core and to the sample level core,
+ * compares the output: RMS level, RMS of the difference, log-spectral distance and the spectral peak.
+ * Run main() for the full report.
+ */
+public class Ym2612AccuracyTest {
+
+    //NTSC, see Genesis::getMicrosPerTick
+    static final double MICROS_PER_TICK = 1_000_000.0 / (53_693_175 / 42.0);
+    static final int TICKS_PER_FRAME = 21_307;
+    static final int FRAMES = 60;
+    static final int FFT_SIZE = 4096;
+    static final double SAMPLE_RATE = AbstractSoundManager.audioFormat.getSampleRate();
+
+    //tolerances, the cores differ in the envelope and timer granularity
+    static final double MAX_LEVEL_DIFF_DB = 0.5;
+    static final double MAX_LSD_DB = 3;
+
+    static class Patch {
+        final String name;
+        final List<int[]> writes = new ArrayList<>();
+        //port, reg, data written at the given frame
+        final List<int[]> events = new ArrayList<>();
+
+        Patch(String name) {
+            this.name = name;
+        }
+
+        Patch w(int port, int reg, int data) {
+            writes.add(new int[]{port, reg, data});
+            return this;
+        }
+
+        Patch at(int frame, int port, int reg, int data) {
+            events.add(new int[]{frame, port, reg, data});
+            return this;
+        }
+
+        //ch 0-5, the same parameters on the four operators except TL
+        Patch voice(int ch, int algo, int fb, int[] mul, int[] tl, int ar, int d1r, int d2r, int slRr, int block,
+                    int fnum) {
+            int port = ch / 3, c = ch % 3;
+            for (int op = 0; op < 4; op++) {
+                int o = op << 2;
+                w(port, 0x30 + o + c, mul[op]);
+                w(port, 0x40 + o + c, tl[op]);
+                w(port, 0x50 + o + c, ar);
+                w(port, 0x60 + o + c, d1r);
+                w(port, 0x70 + o + c, d2r);
+                w(port, 0x80 + o + c, slRr);
+            }
+            w(port, 0xB0 + c, (fb << 3) | algo);
+            w(port, 0xB4 + c, 0xC0);
+            w(port, 0xA4 + c, (block << 3) | (fnum >> 8));
+            w(port, 0xA0 + c, fnum & 0xFF);
+            return this;
+        }
+
+        Patch keyOn(int ch) {
+            return w(0, 0x28, 0xF0 | (ch / 3 << 2) | (ch % 3));
+        }
+    }
+
+    static class Result {
+        String name;
+        double rmsNuke, rmsFast, levelDiffDb, diffDb, lsdDb, peakNuke, peakFast;
+
+        @Override
+        public String toString() {
+            return String.format("%-22s rmsNuke %8.1f rmsFast %8.1f level %+5.2fdB diff %6.1fdB lsd %5.2fdB " +
+                    "peak %7.1fHz %7.1fHz", name, rmsNuke, rmsFast, levelDiffDb, diffDb, lsdDb, peakNuke, peakFast);
+        }
+    }
+
+    static final int[] MUL1 = {1, 1, 1, 1};
+    static final int[] LOUD = {0x10, 0x10, 0x10, 0x08};
+
+    static List<Patch> patches() {
+        List<Patch> l = new ArrayList<>();
+        for (int algo = 0; algo < 8; algo++) {
+            l.add(new Patch("algo" + algo + " fb" + (algo % 8))
+                    .voice(0, algo, algo % 8, new int[]{2, 1, 3, 1}, LOUD, 0x1F, 0, 0, 0x0F, 4, 0x28D)
+                    .keyOn(0));
+        }
+        l.add(new Patch("decay release")
+                .voice(1, 2, 3, MUL1, new int[]{0x20, 0x18, 0x20, 0}, 0x14, 0x08, 0x04, 0x4A, 3, 0x2B4)
+                .keyOn(1).at(FRAMES / 2, 0, 0x28, 0x01));
+        l.add(new Patch("lfo am pm")
+                .w(0, 0x22, 0x0B)
+                .voice(2, 4, 2, new int[]{1, 1, 2, 0x81}, LOUD, 0x1F, 0x80, 0, 0x0F, 4, 0x4C3)
+                .w(0, 0xB6, 0xC0 | 0x30 | 0x07)
+                .w(0, 0x6A, 0x80).w(0, 0x6E, 0x80)
+                .keyOn(2));
+        l.add(new Patch("ch3 special")
+                .voice(2, 7, 0, MUL1, new int[]{0x18, 0x18, 0x18, 0x18}, 0x1F, 0, 0, 0x0F, 4, 0x28D)
+                .w(0, 0x27, 0x40)
+                .w(0, 0xAD, 0x22).w(0, 0xA9, 0x69)
+                .w(0, 0xAE, 0x23).w(0, 0xAA, 0x1A)
+                .w(0, 0xAC, 0x1C).w(0, 0xA8, 0xA0)
+                .keyOn(2));
+        l.add(new Patch("ssg-eg")
+                .voice(3, 7, 0, MUL1, new int[]{0x7F, 0x7F, 0x7F, 0x08}, 0x1F, 0x10, 0x10, 0x2F, 4, 0x28D)
+                .w(1, 0x9C, 0x0A)
+                .keyOn(3));
+        l.add(new Patch("six channels")
+                .voice(0, 4, 5, new int[]{1, 2, 1, 2}, LOUD, 0x1F, 0x05, 0x02, 0x2F, 3, 0x28D)
+                .voice(1, 4, 5, new int[]{1, 2, 1, 2}, LOUD, 0x1F, 0x05, 0x02, 0x2F, 3, 0x337)
+                .voice(2, 4, 5, new int[]{1, 2, 1, 2}, LOUD, 0x1F, 0x05, 0x02, 0x2F, 3, 0x3D4)
+                .voice(3, 0, 6, new int[]{1, 1, 1, 1}, LOUD, 0x1F, 0x00, 0x00, 0x0F, 2, 0x28D)
+                .voice(4, 7, 0, new int[]{1, 3, 5, 7}, new int[]{0x28, 0x28, 0x28, 0x28}, 0x1F, 0, 0, 0x0F, 4, 0x28D)
+                .voice(5, 1, 4, new int[]{1, 1, 2, 1}, LOUD, 0x1F, 0x03, 0x01, 0x1F, 4, 0x337)
+                .w(0, 0xB4, 0x80).w(1, 0xB4, 0x40)
+                .keyOn(0).keyOn(1).keyOn(2).keyOn(3).keyOn(4).keyOn(5));
+        return l;
+    }
+
+    @Test
+    public void testCoresMatch() {
+        for (Patch p : patches()) {
+            Result r = compare(p);
+            String msg = r.toString();
+            Assert.assertTrue(msg, r.rmsNuke > 0);
+            Assert.assertTrue(msg, Math.abs(r.levelDiffDb) < MAX_LEVEL_DIFF_DB);
+            Assert.assertTrue(msg, r.lsdDb < MAX_LSD_DB);
+            Assert.assertEquals(msg, r.peakNuke, r.peakFast, 2 * SAMPLE_RATE / FFT_SIZE);
+        }
+    }
+
+    @Test
+    public void testDac() {
+        MdFmProvider nuke = createNuke(), fast = createFast();
+        int[][] out = new int[2][];
+        MdFmProvider[] cores = {nuke, fast};
+        for (int k = 0; k < 2; k++) {
+            MdFmProvider fm = cores[k];
+            writeReg(fm, 0, 0x2B, 0x80);
+            List<Integer> samples = new ArrayList<>();
+            for (int i = 0; i < 8_000; i++) {
+                writeReg(fm, 0, 0x2A, 0x80 + (int) (100 * Math.sin(2 * Math.PI * i / 40)));
+                tick(fm, 110);
+                if (i % 500 == 0) {
+                    drain(fm, samples);
+                }
+            }
+            drain(fm, samples);
+            out[k] = samples.stream().mapToInt(Integer::intValue).toArray();
+        }
+        Result r = new Result();
+        r.name = "dac";
+        stats(r, out[0], out[1]);
+        Assert.assertEquals(r.toString(), r.rmsNuke, r.rmsFast, r.rmsNuke * 0.05);
+        Assert.assertEquals(r.toString(), r.peakNuke, r.peakFast, SAMPLE_RATE / FFT_SIZE);
+    }
+
+    public static void main(String[] args) {
+        for (Patch p : patches()) {
+            System.out.println(compare(p));
+        }
+        long t = System.nanoTime();
+        render(createNuke(), patches().get(patches().size() - 1));
+        long tn = System.nanoTime() - t;
+        t = System.nanoTime();
+        render(createFast(), patches().get(patches().size() - 1));
+        long tf = System.nanoTime() - t;
+        System.out.printf("%d frames, nuke %d ms, fast %d ms%n", FRAMES, tn / 1_000_000, tf / 1_000_000);
+    }
+
+    static Result compare(Patch p) {
+        Result r = new Result();
+        r.name = p.name;
+        stats(r, render(createNuke(), p), render(createFast(), p));
+        return r;
+    }
+
+    static void stats(Result r, int[] a, int[] b) {
+        int len = Math.min(a.length, b.length) >> 1;
+        double[] left0 = new double[len], left1 = new double[len];
+        for (int i = 0; i < len; i++) {
+            left0[i] = a[i << 1];
+            left1[i] = b[i << 1];
+        }
+        r.rmsNuke = rms(left0);
+        r.rmsFast = rms(left1);
+        r.levelDiffDb = 20 * Math.log10(r.rmsFast / r.rmsNuke);
+        //the cores have different latencies, pick the best alignment
+        double best = Double.MAX_VALUE;
+        for (int lag = -8; lag <= 8; lag++) {
+            best = Math.min(best, rmsDiff(left0, left1, lag));
+        }
+        r.diffDb = 20 * Math.log10(best / r.rmsNuke);
+        double[] p0 = psd(left0), p1 = psd(left1);
+        r.peakNuke = peak(p0) * SAMPLE_RATE / FFT_SIZE;
+        r.peakFast = peak(p1) * SAMPLE_RATE / FFT_SIZE;
+        r.lsdDb = logSpectralDistance(p0, p1);
+    }
+
+    static MdFmProvider createNuke() {
+        Ym2612Nuke fm = new Ym2612Nuke(AbstractSoundManager.audioFormat,
+                SoundProvider.getFmSoundClock(RegionDetector.Region.USA));
+        fm.setMicrosPerTick(MICROS_PER_TICK);
+        fm.reset();
+        return fm;
+    }
+
+    static MdFmProvider createFast() {
+        Ym2612Fast fm = new Ym2612Fast(AbstractSoundManager.audioFormat,
+                SoundProvider.getFmSoundClock(RegionDetector.Region.USA));
+        fm.setMicrosPerTick(MICROS_PER_TICK);
+        fm.reset();
+        return fm;
+    }
+
+    //interleaved stereo samples
+    static int[] render(MdFmProvider fm, Patch p) {
+        for (int[] w : p.writes) {
+            writeReg(fm, w[0], w[1], w[2]);
+        }
+        List<Integer> samples = new ArrayList<>();
+        for (int f = 0; f < FRAMES; f++) {
+            for (int[] e : p.events) {
+                if (e[0] == f) {
+                    writeReg(fm, e[1], e[2], e[3]);
+                }
+            }
+            tick(fm, TICKS_PER_FRAME);
+            fm.onNewFrame();
+            drain(fm, samples);
+        }
+        return samples.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    //the chip needs a few cycles to latch the address
+    static void writeReg(MdFmProvider fm, int port, int reg, int data) {
+        fm.write(port == 0 ? FM_ADDRESS_PORT0 : FM_ADDRESS_PORT1, reg);
+        tick(fm, 10);
+        fm.write(port == 0 ? FM_DATA_PORT0 : FM_DATA_PORT1, data);
+        tick(fm, 40);
+    }
+
+    static void tick(MdFmProvider fm, int n) {
+        for (int i = 0; i < n; i++) {
+            fm.tick();
+        }
+    }
+
+    static void drain(MdFmProvider fm, List<Integer> samples) {
+        int[] buf = new int[1 << 14];
+        int frames = fm.update(buf, 0, buf.length >> 1);
+        Arrays.stream(buf, 0, frames << 1).forEach(samples::add);
+    }
+
+    static double rms(double[] a) {
+        double sum = 0;
+        for (int i = 0; i < a.length; i++) {
+            sum += a[i] * a[i];
+        }
+        return Math.sqrt(sum / a.length);
+    }
+
+    static double rmsDiff(double[] a, double[] b, int lag) {
+        double sum = 0;
+        int n = 0;
+        for (int i = Math.max(0, -lag); i < a.length && i + lag < b.length; i++) {
+            double d = a[i] - b[i + lag];
+            sum += d * d;
+            n++;
+        }
+        return Math.sqrt(sum / n);
+    }
+
+    //Welch, Hann window, 50% overlap
+    static double[] psd(double[] x) {
+        double[] p = new double[FFT_SIZE / 2];
+        double[] re = new double[FFT_SIZE], im = new double[FFT_SIZE];
+        for (int start = 0; start + FFT_SIZE <= x.length; start += FFT_SIZE / 2) {
+            for (int i = 0; i < FFT_SIZE; i++) {
+                re[i] = x[start + i] * (0.5 - 0.5 * Math.cos(2 * Math.PI * i / (FFT_SIZE - 1)));
+                im[i] = 0;
+            }
+            fft(re, im);
+            for (int i = 0; i < p.length; i++) {
+                p[i] += re[i] * re[i] + im[i] * im[i];
+            }
+        }
+        return p;
+    }
+
+    //rms of the dB difference, bins within 60dB of the peak
+    static double logSpectralDistance(double[] p0, double[] p1) {
+        double max = Math.max(Arrays.stream(p0).max().orElse(0), Arrays.stream(p1).max().orElse(0));
+        double floor = max * 1e-6, sum = 0;
+        int n = 0;
+        for (int i = 1; i < p0.length; i++) {
+            if (p0[i] > floor || p1[i] > floor) {
+                double d = 10 * Math.log10(Math.max(p0[i], floor) / Math.max(p1[i], floor));
+                sum += d * d;
+                n++;
+            }
+        }
+        return n == 0 ? 0 : Math.sqrt(sum / n);
+    }
+
+    static int peak(double[] p) {
+        int idx = 1;
+        for (int i = 1; i < p.length; i++) {
+            idx = p[i] > p[idx] ? i : idx;
+        }
+        return idx;
+    }
+
+    //in place, radix 2
+    static void fft(double[] re, double[] im) {
+        int n = re.length;
+        for (int i = 1, j = 0; i < n; i++) {
+            int bit = n >> 1;
+            for (; (j & bit) != 0; bit >>= 1) {
+                j ^= bit;
+            }
+            j ^= bit;
+            if (i < j) {
+                double t = re[i];
+                re[i] = re[j];
+                re[j] = t;
+                t = im[i];
+                im[i] = im[j];
+                im[j] = t;
+            }
+        }
+        for (int len = 2; len <= n; len <<= 1) {
+            double ang = -2 * Math.PI / len;
+            double wr = Math.cos(ang), wi = Math.sin(ang);
+            for (int i = 0; i < n; i += len) {
+                double cr = 1, ci = 0;
+                for (int j = 0; j < len / 2; j++) {
+                    int a = i + j, b = i + j + len / 2;
+                    double xr = re[b] * cr - im[b] * ci, xi = re[b] * ci + im[b] * cr;
+                    re[b] = re[a] - xr;
+                    im[b] = im[a] - xi;
+                    re[a] += xr;
+                    im[a] += xi;
+                    double t = cr * wr - ci * wi;
+                    ci = cr * wi + ci * wr;
+                    cr = t;
+                }
+            }
+        }
+    }
+}
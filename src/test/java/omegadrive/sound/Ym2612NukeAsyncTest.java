@@ -0,0 +1,124 @@
+/*
+ * Copyright (c) 2018-2019 Federico Berti
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package omegadrive.sound;
+
+import omegadrive.sound.fm.MdFmProvider;
+import omegadrive.sound.fm.ym2612.nukeykt.Ym2612Nuke;
+import omegadrive.sound.fm.ym2612.nukeykt.Ym2612NukeAsync;
+import omegadrive.sound.javasound.AbstractSoundManager;
+import omegadrive.util.RegionDetector;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import static omegadrive.sound.fm.MdFmProvider.*;
+
+/**
+ * The async chip should produce the same samples and the same status reads as the synchronous one.
+ */
+public class Ym2612NukeAsyncTest {
+
+    //NTSC, see Genesis::getMicrosPerTick
+    static final double MICROS_PER_TICK = 1_000_000.0 / (53_693_175 / 42.0);
+    static final int TICKS_PER_FRAME = 21_307;
+
+    //channel 1, algorithm 7, all operators full volume; timer A running
+    static final int[][] SETUP = {
+            {0x22, 0}, {0x27, 0}, {0x28, 0}, {0xB0, 7}, {0xB4, 0xC0},
+            {0x30, 1}, {0x34, 1}, {0x38, 1}, {0x3C, 1},
+            {0x40, 0}, {0x44, 0}, {0x48, 0}, {0x4C, 0},
+            {0x50, 0x1F}, {0x54, 0x1F}, {0x58, 0x1F}, {0x5C, 0x1F},
+            {0xA4, 0x22}, {0xA0, 0x69},
+            {0x24, 0xF0}, {0x25, 0}, {0x27, 0x15}, {0x28, 0xF0}
+    };
+
+    @Test
+    public void testSameOutput() {
+        MdFmProvider sync = createNuke();
+        Ym2612NukeAsync async = new Ym2612NukeAsync(createNuke());
+        try {
+            int[] statusSync = run(sync, 10);
+            int[] statusAsync = run(async, 10);
+            Assert.assertArrayEquals(statusSync, statusAsync);
+            //waits for the worker, both chips catch up with the pending ticks
+            async.saveContext(ByteBuffer.allocate(1 << 16));
+            sync.saveContext(ByteBuffer.allocate(1 << 16));
+            int[] samplesSync = drain(sync);
+            int[] samplesAsync = drain(async);
+            Assert.assertTrue(samplesSync.length > 0);
+            Assert.assertTrue(Arrays.stream(samplesSync).anyMatch(s -> s != 0));
+            Assert.assertArrayEquals(samplesSync, samplesAsync);
+        } finally {
+            async.close();
+        }
+    }
+
+    private static Ym2612Nuke createNuke() {
+        Ym2612Nuke fm = new Ym2612Nuke(AbstractSoundManager.audioFormat,
+                SoundProvider.getFmSoundClock(RegionDetector.Region.USA));
+        fm.setMicrosPerTick(MICROS_PER_TICK);
+        fm.reset();
+        return fm;
+    }
+
+    //writes and polls the status like a sound driver would, returns the status reads
+    private static int[] run(MdFmProvider fm, int frames) {
+        for (int[] w : SETUP) {
+            writeReg(fm, w[0], w[1]);
+        }
+        int[] status = new int[frames * TICKS_PER_FRAME / 100];
+        int k = 0;
+        for (int f = 0; f < frames; f++) {
+            for (int i = 0; i < TICKS_PER_FRAME; i++) {
+                fm.tick();
+                if (i % 100 == 0 && k < status.length) {
+                    status[k] = fm.read();
+                    //timer A overflow: reset the flag, change the note
+                    if ((status[k++] & FM_STATUS_TIMER_A_BIT_MASK) > 0) {
+                        writeReg(fm, 0x27, 0x15);
+                        writeReg(fm, 0xA0, k & 0xFF);
+                    }
+                }
+            }
+            fm.onNewFrame();
+        }
+        return status;
+    }
+
+    //the chip needs a few cycles to latch the address
+    private static void writeReg(MdFmProvider fm, int reg, int data) {
+        fm.write(FM_ADDRESS_PORT0, reg);
+        tick(fm, 10);
+        fm.write(FM_DATA_PORT0, data);
+        tick(fm, 40);
+    }
+
+    private static void tick(MdFmProvider fm, int n) {
+        for (int i = 0; i < n; i++) {
+            fm.tick();
+        }
+    }
+
+    private static int[] drain(MdFmProvider fm) {
+        int[] buf = new int[1 << 16];
+        int frames = fm.update(buf, 0, buf.length >> 1);
+        return Arrays.copyOf(buf, frames << 1);
+    }
+}
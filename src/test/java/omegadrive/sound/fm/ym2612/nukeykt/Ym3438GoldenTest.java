@@ -0,0 +1,203 @@
+/*
+ * Copyright (c) 2018-2019 Federico Berti
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package omegadrive.sound.fm.ym2612.nukeykt;
+
+import omegadrive.sound.SoundProvider;
+import omegadrive.sound.javasound.AbstractSoundManager;
+import omegadrive.util.RegionDetector;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.zip.CRC32;
+
+/**
+ * Replays a register log on the Nuked chip, the output should not change:
+ * golden checksums taken with the per-cycle OPN2_Clock, before OPN2_ClockN was introduced.
+ */
+public class Ym3438GoldenTest {
+
+    static final int CYCLES = 24 * 40_000;
+    static final long SEED = 0x2612;
+    static final double MICROS_PER_TICK = 1_000_000.0 / (53_693_175 / 42.0);
+
+    static final long GOLDEN_CHIP_CRC = 3167545561L;
+    static final long GOLDEN_PROVIDER_CRC = 2974557963L;
+
+    //{cycle, port, data}, address and data writes
+    static int[][] registerLog() {
+        Random r = new Random(SEED);
+        int[][] log = new int[4096][];
+        int k = 0, cycle = 24;
+        //all channels on both speakers, DAC off
+        for (int port = 0; port < 2; port++) {
+            for (int ch = 0; ch < 3; ch++) {
+                log[k++] = new int[]{cycle, port << 1, 0xB4 + ch};
+                log[k++] = new int[]{cycle += 12, (port << 1) + 1, 0xC0};
+                cycle += 36;
+            }
+        }
+        while (k < log.length - 1) {
+            cycle += 36 + r.nextInt(600);
+            int port = r.nextInt(2);
+            int reg, data = r.nextInt(256);
+            int sel = r.nextInt(10);
+            if (sel == 0) {
+                reg = 0x28;
+                data = (data & 0xF7);
+                port = 0;
+            } else if (sel == 1) {
+                //LFO, timers, ch3 mode, DAC
+                reg = new int[]{0x22, 0x24, 0x25, 0x26, 0x27, 0x2A, 0x2B}[r.nextInt(7)];
+                port = 0;
+            } else if (sel < 7) {
+                reg = 0x30 + r.nextInt(0x70);
+            } else {
+                reg = 0xA0 + r.nextInt(0x17);
+            }
+            if ((reg & 3) == 3 && reg >= 0x30) {
+                continue;
+            }
+            log[k++] = new int[]{cycle, port << 1, reg};
+            log[k++] = new int[]{cycle + 12, (port << 1) + 1, data};
+        }
+        return Arrays.copyOf(log, k);
+    }
+
+    //per cycle clocking, like Ym2612Nuke used to do
+    static int[] runReference(int[][] log) {
+        Ym3438 ym = new Ym3438();
+        ym.OPN2_SetChipType(IYm3438.ym3438_mode_readmode);
+        IYm3438.IYm3438_Type chip = new IYm3438.IYm3438_Type();
+        ym.OPN2_Reset(chip);
+        int[][] accm = new int[24][2];
+        int[] out = new int[CYCLES / 24 * 2];
+        int k = 0;
+        for (int c = 0; c < CYCLES; c++) {
+            while (k < log.length && log[k][0] == c) {
+                ym.OPN2_Write(chip, log[k][1], log[k][2]);
+                k++;
+            }
+            ym.OPN2_Clock(chip, accm[c % 24]);
+            if (c % 24 == 23) {
+                int l = 0, r = 0;
+                for (int j = 0; j < 24; j++) {
+                    l += accm[j][0];
+                    r += accm[j][1];
+                }
+                out[(c / 24) << 1] = l;
+                out[((c / 24) << 1) + 1] = r;
+            }
+        }
+        return out;
+    }
+
+    //each chip sample clocked in two batches of random length, writes on the batch boundaries
+    static int[] runBatch(int[][] log) {
+        Ym3438 ym = new Ym3438();
+        ym.OPN2_SetChipType(IYm3438.ym3438_mode_readmode);
+        IYm3438.IYm3438_Type chip = new IYm3438.IYm3438_Type();
+        ym.OPN2_Reset(chip);
+        Random r = new Random(SEED);
+        int[] lr = new int[2];
+        int[] out = new int[CYCLES / 24 * 2];
+        int k = 0;
+        for (int c = 0; c < CYCLES; c += 24) {
+            int split = r.nextInt(25);
+            int l = 0, rr = 0;
+            for (int start = c, end = c + split; start < c + 24; start = end, end = c + 24) {
+                for (int i = start; i < end; i++) {
+                    //a batch stops at the next write
+                    if (k < log.length && log[k][0] == i) {
+                        ym.OPN2_ClockN(chip, i - start, lr);
+                        l += lr[0];
+                        rr += lr[1];
+                        while (k < log.length && log[k][0] == i) {
+                            ym.OPN2_Write(chip, log[k][1], log[k][2]);
+                            k++;
+                        }
+                        start = i;
+                    }
+                }
+                ym.OPN2_ClockN(chip, end - start, lr);
+                l += lr[0];
+                rr += lr[1];
+            }
+            out[(c / 24) << 1] = l;
+            out[((c / 24) << 1) + 1] = rr;
+        }
+        return out;
+    }
+
+    static int[] runProvider(int[][] log) {
+        Ym2612Nuke fm = new Ym2612Nuke(AbstractSoundManager.audioFormat,
+                SoundProvider.getFmSoundClock(RegionDetector.Region.USA));
+        fm.setMicrosPerTick(MICROS_PER_TICK);
+        fm.reset();
+        int[] out = new int[CYCLES];
+        int[] buf = new int[2048];
+        int len = 0, k = 0;
+        for (int c = 0; c < CYCLES; c++) {
+            while (k < log.length && log[k][0] == c) {
+                fm.write(log[k][1], log[k][2]);
+                k++;
+            }
+            fm.tick();
+            if ((c & 0x3FF) == 0x3FF || k == log.length) {
+                int n = fm.update(buf, 0, buf.length >> 1) << 1;
+                System.arraycopy(buf, 0, out, len, n);
+                len += n;
+            }
+        }
+        return Arrays.copyOf(out, len);
+    }
+
+    static long crc(int[] data) {
+        CRC32 crc = new CRC32();
+        for (int v : data) {
+            crc.update(v);
+            crc.update(v >> 8);
+            crc.update(v >> 16);
+            crc.update(v >> 24);
+        }
+        return crc.getValue();
+    }
+
+    @Test
+    public void testChipGolden() {
+        int[] ref = runReference(registerLog());
+        Assert.assertTrue(Arrays.stream(ref).anyMatch(v -> v != 0));
+        Assert.assertEquals(GOLDEN_CHIP_CRC, crc(ref));
+    }
+
+    @Test
+    public void testClockNGolden() {
+        int[][] log = registerLog();
+        int[] out = runBatch(log);
+        Assert.assertArrayEquals(runReference(log), out);
+        Assert.assertEquals(GOLDEN_CHIP_CRC, crc(out));
+    }
+
+    @Test
+    public void testProviderGolden() {
+        int[] out = runProvider(registerLog());
+        Assert.assertTrue(out.length > 0);
+        Assert.assertEquals(GOLDEN_PROVIDER_CRC, crc(out));
+    }
+}
@@ -0,0 +1,96 @@
+package omegadrive.sound.persist;
+
+import omegadrive.sound.javasound.AbstractSoundManager;
+import org.junit.Assert;
+import org.junit.Test;
+
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.AudioSystem;
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+
+/**
+ * FileSoundPersisterTest
+ * <p>
+ * Federico Berti
+ * <p>
+ * Copyright 2021
+ */
+public class FileSoundPersisterTest {
+
+    static final int BLOCK = 1470 << 2;
+    static final int BLOCKS = 200;
+
+    @Test
+    public void testRecordWav() throws Exception {
+        Path folder = Files.createTempDirectory("helios");
+        AudioFormat format = AbstractSoundManager.audioFormat;
+        FileSoundPersister persister = new FileSoundPersister(format, folder);
+        byte[] buf = new byte[BLOCK + 100];
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        try {
+            //not recording
+            persister.persistSound(SoundPersister.SoundType.BOTH, buf, BLOCK);
+            persister.startRecording(SoundPersister.SoundType.BOTH);
+            Assert.assertTrue(persister.isRecording());
+            for (int i = 0; i < BLOCKS; i++) {
+                for (int j = 0; j < buf.length; j++) {
+                    buf[j] = (byte) (i * 31 + j);
+                }
+                persister.persistSound(SoundPersister.SoundType.BOTH, buf, BLOCK);
+                expected.write(buf, 0, BLOCK);
+                //the writer should keep up, nothing dropped
+                Thread.sleep(1);
+            }
+            persister.stopRecording();
+            Assert.assertFalse(persister.isRecording());
+            persister.persistSound(SoundPersister.SoundType.BOTH, buf, BLOCK);
+
+            Path file;
+            try (Stream<Path> s = Files.list(folder)) {
+                file = s.filter(p -> p.toString().endsWith(".wav")).findFirst().get();
+            }
+            Assert.assertEquals(FileSoundPersister.WAV_HEADER_SIZE + (long) BLOCK * BLOCKS, Files.size(file));
+            try (AudioInputStream ais = AudioSystem.getAudioInputStream(file.toFile())) {
+                Assert.assertTrue(ais.getFormat().matches(format));
+                Assert.assertEquals((long) BLOCK * BLOCKS / format.getFrameSize(), ais.getFrameLength());
+                byte[] actual = new byte[BLOCK * BLOCKS];
+                int n = 0;
+                for (int k; n < actual.length && (k = ais.read(actual, n, actual.length - n)) > 0; ) {
+                    n += k;
+                }
+                Assert.assertArrayEquals(expected.toByteArray(), actual);
+            }
+        } finally {
+            try (Stream<Path> s = Files.list(folder)) {
+                s.forEach(p -> p.toFile().delete());
+            }
+            Files.deleteIfExists(folder);
+        }
+    }
+
+    @Test
+    public void testRingFullDrops() {
+        ByteRingBuffer ring = new ByteRingBuffer(1000);
+        Assert.assertEquals(1024, ring.capacity());
+        byte[] b = new byte[300];
+        ByteBuffer out = ByteBuffer.allocate(2048);
+        for (int k = 0; k < 20; k++) {
+            b[0] = (byte) k;
+            Assert.assertTrue(ring.offer(b, 0, b.length));
+            Assert.assertTrue(ring.offer(b, 0, b.length));
+            Assert.assertTrue(ring.offer(b, 0, b.length));
+            //all or nothing
+            Assert.assertFalse(ring.offer(b, 0, b.length));
+            Assert.assertEquals(900, ring.size());
+            out.clear();
+            Assert.assertEquals(900, ring.drainTo(out));
+            Assert.assertEquals(k, out.get(300));
+            Assert.assertEquals(0, ring.size());
+        }
+    }
+}
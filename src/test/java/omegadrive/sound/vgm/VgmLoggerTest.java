@@ -0,0 +1,193 @@
+/*
+ * Copyright (c) 2018-2019 Federico Berti
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package omegadrive.sound.vgm;
+
+import omegadrive.SystemLoader;
+import omegadrive.sound.SoundProvider;
+import omegadrive.sound.fm.FmProvider;
+import omegadrive.sound.fm.MdFmProvider;
+import omegadrive.sound.fm.ym2413.Ym2413Provider;
+import omegadrive.sound.javasound.AbstractSoundManager;
+import omegadrive.sound.javasound.JavaSoundManager;
+import omegadrive.sound.psg.PsgProvider;
+import omegadrive.util.RegionDetector;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static omegadrive.sound.fm.MdFmProvider.FM_ADDRESS_PORT0;
+import static omegadrive.sound.fm.MdFmProvider.FM_DATA_PORT0;
+
+/**
+ * Logs the writes of a short Genesis tune, the file should play back the same every time.
+ */
+public class VgmLoggerTest {
+
+    static final RegionDetector.Region REGION = RegionDetector.Region.USA;
+    static final int TICKS_PER_FRAME = 21_307;
+    static final int FRAMES = 30;
+
+    //channel 1, algorithm 7, all operators full volume
+    static final int[][] SETUP = {
+            {0x22, 0}, {0x27, 0}, {0x28, 0}, {0xB0, 7}, {0xB4, 0xC0},
+            {0x30, 1}, {0x34, 1}, {0x38, 1}, {0x3C, 1},
+            {0x40, 0}, {0x44, 0}, {0x48, 0}, {0x4C, 0},
+            {0x50, 0x1F}, {0x54, 0x1F}, {0x58, 0x1F}, {0x5C, 0x1F},
+            {0xA4, 0x22}, {0xA0, 0x69}
+    };
+
+    private long ticks;
+
+    @Test
+    public void testLogAndPlay() throws Exception {
+        Path file = Files.createTempFile("helios", ".vgm");
+        try {
+            double fmClock = SoundProvider.getFmSoundClock(REGION);
+            int psgClock = (int) SoundProvider.getPsgSoundClock(REGION);
+            VgmWriter writer = new VgmWriter(file, psgClock, 0, (int) fmClock, 60);
+            VgmLogger logger = new VgmLogger(writer, SystemLoader.SystemType.GENESIS, 1_000_000.0 / (fmClock / 6));
+            FmProvider fm = logger.wrap(MdFmProvider.createInstance(fmClock, AbstractSoundManager.audioFormat));
+            PsgProvider psg = logger.wrap(PsgProvider.createSnInstance(REGION, SoundProvider.SAMPLE_RATE_HZ));
+            fm.setMicrosPerTick(1_000_000.0 / (fmClock / 6));
+            fm.reset();
+            for (int[] w : SETUP) {
+                writeReg(fm, w[0], w[1]);
+            }
+            for (int f = 0; f < FRAMES; f++) {
+                //key on/off every 5 frames, psg tone on channel 0
+                writeReg(fm, 0x28, (f / 5) % 2 == 0 ? 0xF0 : 0);
+                psg.write(0x80 | (f & 0xF));
+                psg.write(0x10);
+                psg.write(0x90);
+                tick(fm, TICKS_PER_FRAME);
+            }
+            long loggedTicks = ticks;
+            //not logged, ie. run-ahead
+            fm.setOutputEnabled(false);
+            writeReg(fm, 0x28, 0xF1);
+            tick(fm, TICKS_PER_FRAME);
+            fm.setOutputEnabled(true);
+            logger.close();
+            fm.close();
+
+            byte[] vgm = Files.readAllBytes(file);
+            ByteBuffer bb = ByteBuffer.wrap(vgm).order(ByteOrder.LITTLE_ENDIAN);
+            Assert.assertEquals(vgm.length - 4, bb.getInt(0x04));
+            Assert.assertEquals(psgClock, bb.getInt(0x0C));
+            Assert.assertEquals((int) fmClock, bb.getInt(0x2C));
+            Assert.assertEquals(VgmWriter.CMD_END, vgm[vgm.length - 1]);
+            long samples = bb.getInt(0x18);
+            Assert.assertEquals((long) (loggedTicks / (fmClock / 6) * VgmWriter.SAMPLE_RATE), samples);
+            Assert.assertEquals(FRAMES / 2, countKeyOn(vgm, 0xF0));
+            Assert.assertEquals(0, countKeyOn(vgm, 0xF1));
+
+            VgmPlayer player = VgmPlayer.load(file);
+            VgmPlayer.Result r1 = player.play();
+            VgmPlayer.Result r2 = player.play();
+            Assert.assertEquals(samples, r1.samples);
+            Assert.assertEquals(r1.pcmHash(), r2.pcmHash());
+            Assert.assertNotEquals(VgmPlayer.FNV_OFFSET, r1.fmHash);
+            Assert.assertNotEquals(VgmPlayer.FNV_OFFSET, r1.psgHash);
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    /**
+     * The SMS turns the YM2413 off mid-log, the FM keeps ticking the time base and the psg writes keep advancing.
+     */
+    @Test
+    public void testWrappers() {
+        VgmLogger md = new VgmLogger(null, SystemLoader.SystemType.GENESIS, 1);
+        VgmLogger sms = new VgmLogger(null, SystemLoader.SystemType.SMS, 1);
+        Assert.assertTrue(md.wrap(FmProvider.NO_SOUND) instanceof MdFmProvider);
+        Assert.assertFalse(sms.wrap(FmProvider.NO_SOUND) instanceof MdFmProvider);
+        Assert.assertSame(FmProvider.NO_SOUND, VgmLogger.unwrap(md.wrap(FmProvider.NO_SOUND)));
+        Assert.assertSame(FmProvider.NO_SOUND, VgmLogger.unwrap(FmProvider.NO_SOUND));
+        Assert.assertEquals(12, VgmPlayer.commandLength(0x68));
+    }
+
+    @Test
+    public void testSmsFmDisabled() throws Exception {
+        Path file = Files.createTempFile("helios", ".vgm");
+        try {
+            int psgClock = (int) SoundProvider.getPsgSoundClock(REGION);
+            VgmWriter writer = new VgmWriter(file, psgClock, VgmLogger.YM2413_CLOCK, 0, 60);
+            VgmLogger logger = new VgmLogger(writer, SystemLoader.SystemType.SMS, 1_000_000.0 / VgmLogger.YM2413_TICK_HZ);
+            AbstractSoundManager sound = new JavaSoundManager() {
+                {
+                    vgmLogger = logger;
+                }
+            };
+            sound.setSystemType(SystemLoader.SystemType.SMS);
+            sound.setFm(Ym2413Provider.createInstance(AbstractSoundManager.audioFormat));
+            sound.setPsg(PsgProvider.createSnInstance(REGION, SoundProvider.SAMPLE_RATE_HZ));
+            int ticksPerFrame = (int) (VgmLogger.YM2413_TICK_HZ / 60);
+            for (int f = 0; f < FRAMES; f++) {
+                if (f == FRAMES / 2) {
+                    sound.setEnabled(sound.getFm(), false);
+                    Assert.assertNotEquals(FmProvider.NO_SOUND, sound.getFm());
+                }
+                sound.getPsg().write(0x80 | (f & 0xF));
+                for (int i = 0; i < ticksPerFrame; i++) {
+                    sound.getFm().tick();
+                }
+                ticks += ticksPerFrame;
+            }
+            //still disabled, nothing changes
+            sound.setEnabled(sound.getFm(), false);
+            logger.close();
+
+            byte[] vgm = Files.readAllBytes(file);
+            ByteBuffer bb = ByteBuffer.wrap(vgm).order(ByteOrder.LITTLE_ENDIAN);
+            long samples = bb.getInt(0x18);
+            Assert.assertEquals((long) (ticks / VgmLogger.YM2413_TICK_HZ * VgmWriter.SAMPLE_RATE), samples);
+            Assert.assertEquals(samples, VgmPlayer.load(file).play().samples);
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    private static int countKeyOn(byte[] vgm, int value) {
+        int n = 0;
+        for (int i = VgmWriter.HEADER_SIZE; i < vgm.length - 2; i++) {
+            if (vgm[i] == VgmWriter.CMD_YM2612_P0 && vgm[i + 1] == 0x28 && (vgm[i + 2] & 0xFF) == value) {
+                n++;
+            }
+        }
+        return n;
+    }
+
+    private void writeReg(FmProvider fm, int reg, int data) {
+        fm.write(FM_ADDRESS_PORT0, reg);
+        tick(fm, 10);
+        fm.write(FM_DATA_PORT0, data);
+        tick(fm, 40);
+    }
+
+    private void tick(FmProvider fm, int n) {
+        for (int i = 0; i < n; i++) {
+            fm.tick();
+        }
+        ticks += n;
+    }
+}
@@ -0,0 +1,71 @@
+package omegadrive.system;
+
+import omegadrive.HeadlessRunner;
+import omegadrive.savestate.StateSnapshot;
+import omegadrive.util.Util;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * GenesisSchedulerTest
+ * <p>
+ * The event scheduler must be cycle-identical to the polling one: same frame and same machine state,
+ * cycle counters included, at every frame.
+ * <p>
+ * Federico Berti
+ * <p>
+ * Copyright 2021
+ */
+public class GenesisSchedulerTest {
+
+    static final int FRAMES = 120;
+    static final Path ROM = Paths.get("src", "test", "resources", "VDPFIFOTesting.zip");
+
+    @After
+    public void after() {
+        System.clearProperty(Genesis.EVENT_SCHEDULER_PROPERTY);
+        System.clearProperty(Util.RANDOM_SEED_PROPERTY);
+    }
+
+    @Test
+    public void testSchedulers() throws Exception {
+        List<String> polling = run(false);
+        List<String> event = run(true);
+        Assert.assertEquals(FRAMES, polling.size());
+        Assert.assertEquals(FRAMES, event.size());
+        for (int i = 0; i < FRAMES; i++) {
+            Assert.assertEquals("Frame " + (i + 1), polling.get(i), event.get(i));
+        }
+    }
+
+    //frame and machine state hashes, by frame
+    private static List<String> run(boolean eventScheduler) throws Exception {
+        System.setProperty(Genesis.EVENT_SCHEDULER_PROPERTY, Boolean.toString(eventScheduler));
+        //same power-on memory contents
+        System.setProperty(Util.RANDOM_SEED_PROPERTY, "0");
+        List<String> res = Collections.synchronizedList(new ArrayList<>());
+        HeadlessRunner runner = new HeadlessRunner(ROM, FRAMES, Collections.emptyList()).setTimeoutMs(60_000);
+        StateSnapshot[] snapshot = new StateSnapshot[1];
+        runner.setFrameListener((frame, data, videoMode) -> {
+            if (frame > FRAMES) {
+                return;
+            }
+            if (snapshot[0] == null) {
+                snapshot[0] = ((Genesis) runner.getSystemProvider()).createStateSnapshot();
+            }
+            snapshot[0].save();
+            res.add(String.format("%s, frame: %08x, state: %08x", videoMode, Arrays.hashCode(data),
+                    Arrays.hashCode(snapshot[0].getData())));
+        });
+        Assert.assertTrue(runner.run(false).isPresent());
+        return res;
+    }
+}
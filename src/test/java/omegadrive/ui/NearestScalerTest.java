@@ -0,0 +1,63 @@
+/*
+ * Copyright (c) 2018-2019 Federico Berti
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package omegadrive.ui;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.awt.*;
+import java.util.Random;
+
+public class NearestScalerTest {
+
+    private static final Dimension[] SRC = {new Dimension(320, 224), new Dimension(256, 192),
+            new Dimension(320, 240)};
+    //integer, fractional, mixed
+    private static final Dimension[] DEST = {new Dimension(640, 448), new Dimension(1280, 896),
+            new Dimension(1440, 1080), new Dimension(960, 720), new Dimension(1024, 768),
+            new Dimension(2880, 2016), new Dimension(2880, 2160)};
+
+    @Test
+    public void testSameAsFixedPoint() {
+        testSameAsFixedPoint(1);
+    }
+
+    @Test
+    public void testSameAsFixedPointStripes() {
+        testSameAsFixedPoint(3);
+    }
+
+    private void testSameAsFixedPoint(int threads) {
+        NearestScaler scaler = new NearestScaler(threads);
+        Random r = new Random(0);
+        try {
+            for (Dimension src : SRC) {
+                int[] srcPixels = r.ints(src.width * src.height).toArray();
+                for (Dimension dest : DEST) {
+                    int[] expected = new int[dest.width * dest.height];
+                    int[] actual = new int[dest.width * dest.height];
+                    RenderingStrategy.renderNearestFixedPoint(srcPixels, expected, src, dest);
+                    scaler.render(srcPixels, actual, src, dest);
+                    Assert.assertArrayEquals(src + " -> " + dest, expected, actual);
+                }
+            }
+        } finally {
+            scaler.close();
+        }
+    }
+}
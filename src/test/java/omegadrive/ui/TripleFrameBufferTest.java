@@ -0,0 +1,82 @@
+/*
+ * Copyright (c) 2018-2019 Federico Berti
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package omegadrive.ui;
+
+import omegadrive.util.VideoMode;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Optional;
+
+public class TripleFrameBufferTest {
+
+    private static final int FRAME_LEN = 320 * 224;
+
+    @Test
+    public void testLatestFrameWins() {
+        TripleFrameBuffer fb = new TripleFrameBuffer();
+        Assert.assertNull(fb.consume());
+        for (int i = 1; i <= 3; i++) {
+            fb.publish(frame(i), Optional.of("f" + i), VideoMode.NTSCU_H40_V28);
+        }
+        TripleFrameBuffer.Frame f = fb.consume();
+        Assert.assertEquals(3, f.data[0]);
+        Assert.assertEquals("f3", f.label.get());
+        Assert.assertEquals(2, fb.getDroppedFrames());
+        Assert.assertNull(fb.consume());
+
+        fb.publish(frame(4), Optional.empty(), VideoMode.NTSCU_H40_V28);
+        Assert.assertEquals(4, fb.consume().data[0]);
+        Assert.assertEquals(2, fb.getDroppedFrames());
+    }
+
+    //every frame is filled with its number, a torn frame would contain two numbers
+    @Test
+    public void testNoTearing() throws Exception {
+        TripleFrameBuffer fb = new TripleFrameBuffer();
+        int numFrames = 2000;
+        Thread producer = new Thread(() -> {
+            for (int i = 1; i <= numFrames; i++) {
+                fb.publish(frame(i), Optional.empty(), VideoMode.NTSCU_H40_V28);
+            }
+        });
+        producer.start();
+        int consumed = 0, last = 0;
+        while (producer.isAlive() || last < numFrames) {
+            TripleFrameBuffer.Frame f = fb.consume();
+            if (f == null) {
+                Thread.yield();
+                continue;
+            }
+            int n = f.data[0];
+            Assert.assertTrue(n > last);
+            Assert.assertTrue(Arrays.stream(f.data).allMatch(v -> v == n));
+            last = n;
+            consumed++;
+        }
+        producer.join();
+        Assert.assertEquals(numFrames, consumed + fb.getDroppedFrames());
+    }
+
+    private static int[] frame(int n) {
+        int[] data = new int[FRAME_LEN];
+        Arrays.fill(data, n);
+        return data;
+    }
+}
@@ -0,0 +1,137 @@
+package omegadrive.util;
+
+import omegadrive.SystemLoader;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * FileLoaderTest
+ * <p>
+ * Federico Berti
+ * <p>
+ * Copyright 2021
+ */
+public class FileLoaderTest {
+
+    static final int ROM_SIZE = 0x30_001;
+
+    private Path folder;
+    private String cacheFolder;
+    private long cacheMaxBytes;
+    private byte[] rom;
+
+    @Before
+    public void before() throws Exception {
+        folder = Files.createTempDirectory("helios_rom");
+        cacheFolder = FileLoader.romCacheFolder;
+        cacheMaxBytes = FileLoader.romCacheMaxBytes;
+        FileLoader.romCacheFolder = folder.resolve("cache").toString();
+        rom = new byte[ROM_SIZE];
+        new Random(0).nextBytes(rom);
+    }
+
+    @After
+    public void after() throws Exception {
+        FileLoader.romCacheFolder = cacheFolder;
+        FileLoader.romCacheMaxBytes = cacheMaxBytes;
+        SystemLoader.smdFileAsInterleaved = false;
+        try (Stream<Path> s = Files.walk(folder)) {
+            s.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        }
+    }
+
+    @Test
+    public void testMappedRom() throws Exception {
+        Path file = Files.write(folder.resolve("test.bin"), rom);
+        ByteBuffer data = FileLoader.readRomFile(file, SystemLoader.SystemType.GENESIS);
+        Assert.assertTrue(data instanceof MappedByteBuffer);
+        Assert.assertTrue(data.isReadOnly());
+        assertRom(rom, data);
+        //nothing cached
+        Assert.assertFalse(Files.exists(folder.resolve("cache")));
+    }
+
+    @Test
+    public void testCompressedRom() throws Exception {
+        Path gz = folder.resolve("test.bin.gz");
+        try (OutputStream os = new GZIPOutputStream(Files.newOutputStream(gz))) {
+            os.write(rom);
+        }
+        Path zip = folder.resolve("test.zip");
+        try (ZipOutputStream os = new ZipOutputStream(Files.newOutputStream(zip))) {
+            os.putNextEntry(new ZipEntry("test.bin"));
+            os.write(rom);
+            os.closeEntry();
+        }
+        for (Path file : new Path[]{gz, zip}) {
+            assertRom(rom, FileLoader.readRomFile(file, SystemLoader.SystemType.GENESIS));
+            //the second load uses the cache
+            assertRom(rom, FileLoader.readRomFile(file, SystemLoader.SystemType.GENESIS));
+        }
+        try (Stream<Path> s = Files.list(folder.resolve("cache"))) {
+            Assert.assertEquals(2, s.count());
+        }
+    }
+
+    @Test
+    public void testRomCacheLimit() throws Exception {
+        FileLoader.romCacheMaxBytes = ROM_SIZE * 2;
+        Path cache = folder.resolve("cache");
+        List<Set<Path>> cached = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            rom[0] = (byte) i;
+            Path file = folder.resolve("test" + i + ".bin.gz");
+            try (OutputStream os = new GZIPOutputStream(Files.newOutputStream(file))) {
+                os.write(rom);
+            }
+            Assert.assertEquals(i, FileLoader.readRomFile(file, SystemLoader.SystemType.GENESIS).get(0));
+            //older than the next one
+            for (Path p : listFiles(cache)) {
+                Assert.assertTrue(p.toFile().setLastModified(p.toFile().lastModified() - 60_000));
+            }
+            cached.add(listFiles(cache));
+        }
+        //two roms fit, the first one has been deleted
+        Assert.assertEquals(1, cached.get(0).size());
+        Assert.assertEquals(2, cached.get(2).size());
+        Assert.assertFalse(cached.get(2).containsAll(cached.get(0)));
+    }
+
+    private static Set<Path> listFiles(Path folder) throws IOException {
+        try (Stream<Path> s = Files.list(folder)) {
+            return s.collect(Collectors.toSet());
+        }
+    }
+
+    @Test
+    public void testSmdRom() throws Exception {
+        SystemLoader.smdFileAsInterleaved = true;
+        byte[] smd = new byte[FileLoader.SMD_HEADER_SIZE + ROM_SIZE];
+        new Random(1).nextBytes(smd);
+        Path file = Files.write(folder.resolve("test.smd"), smd);
+        assertRom(FileLoader.unscrambleSmd(smd), FileLoader.readRomFile(file, SystemLoader.SystemType.GENESIS));
+    }
+
+    private static void assertRom(byte[] expected, ByteBuffer actual) {
+        Assert.assertEquals(expected.length, actual.capacity());
+        for (int i = 0; i < expected.length; i++) {
+            Assert.assertEquals("" + i, expected[i], actual.get(i));
+        }
+    }
+}
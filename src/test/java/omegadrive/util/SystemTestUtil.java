@@ -108,7 +108,7 @@ public class SystemTestUtil {
 
         @Override
         public PsgProvider getPsg() {
-            return null;
+            return PsgProvider.NO_SOUND;
         }
 
         @Override
@@ -0,0 +1,54 @@
+package omegadrive.vdp.md;
+
+import omegadrive.vdp.model.GenesisVdpProvider;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * VdpTileCacheTest
+ * <p>
+ * Federico Berti
+ * <p>
+ * Copyright 2021
+ */
+public class VdpTileCacheTest {
+
+    @Test
+    public void testDecodeAndFlip() {
+        GenesisVdpMemoryInterface mem = GenesisVdpMemoryInterface.createInstance();
+        VdpTileCache cache = mem.getTileCache();
+        int rowAddress = 0x1234 & ~3;
+        int[] row = {0x12, 0x34, 0x56, 0x78};
+        for (int i = 0; i < row.length; i++) {
+            mem.writeVramByte(rowAddress + i, row[i]);
+        }
+        int idx = cache.getRowIndex(rowAddress, false);
+        byte[] rows = cache.getRows(false);
+        for (int i = 0; i < VdpTileCache.PIXELS_PER_ROW; i++) {
+            Assert.assertEquals(i + 1, rows[idx + i]);
+        }
+        idx = cache.getRowIndex(rowAddress, true);
+        rows = cache.getRows(true);
+        for (int i = 0; i < VdpTileCache.PIXELS_PER_ROW; i++) {
+            Assert.assertEquals(VdpTileCache.PIXELS_PER_ROW - i, rows[idx + i]);
+        }
+    }
+
+    @Test
+    public void testVramWriteInvalidates() {
+        GenesisVdpMemoryInterface mem = GenesisVdpMemoryInterface.createInstance();
+        VdpTileCache cache = mem.getTileCache();
+        int rowAddress = GenesisVdpProvider.VDP_VRAM_SIZE - 4;
+        mem.writeVramByte(rowAddress, 0x11);
+        int idx = cache.getRowIndex(rowAddress, false);
+        Assert.assertEquals(1, cache.getRows(false)[idx]);
+        Assert.assertEquals(1, cache.getRows(true)[cache.getRowIndex(rowAddress, true) + 7]);
+
+        //word write, ie. dma or fifo
+        mem.writeVideoRamWord(GenesisVdpProvider.VdpRamType.VRAM, 0xAB00, rowAddress);
+        idx = cache.getRowIndex(rowAddress, false);
+        Assert.assertEquals(0xA, cache.getRows(false)[idx]);
+        Assert.assertEquals(0xB, cache.getRows(false)[idx + 1]);
+        Assert.assertEquals(0xA, cache.getRows(true)[cache.getRowIndex(rowAddress, true) + 7]);
+    }
+}
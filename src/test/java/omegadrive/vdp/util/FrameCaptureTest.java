@@ -0,0 +1,186 @@
+package omegadrive.vdp.util;
+
+import omegadrive.util.VideoMode;
+import org.junit.Assert;
+import org.junit.Test;
+
+import javax.imageio.ImageIO;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * FrameCaptureTest
+ * <p>
+ * Federico Berti
+ * <p>
+ * Copyright 2021
+ */
+public class FrameCaptureTest {
+
+    static final int FRAMES = 10;
+    static final VideoMode VIDEO_MODE = VideoMode.NTSCU_H40_V28;
+
+    @Test
+    public void testRaw() throws Exception {
+        Path folder = Files.createTempDirectory("helios");
+        try {
+            Dimension d = VIDEO_MODE.getDimension();
+            FrameCapture fc = new FrameCapture(folder, FrameCapture.Format.RAW, 2, 60);
+            capture(fc, d);
+            byte[] raw = Files.readAllBytes(folder.resolve(FrameCapture.RAW_FILE));
+            int frameBytes = d.width * d.height * 3;
+            Assert.assertEquals(FRAMES * frameBytes, raw.length);
+            for (int f = 0; f < FRAMES; f++) {
+                for (int i = 0; i < d.width * d.height; i += 997) {
+                    int p = pixel(f, i);
+                    int j = f * frameBytes + i * 3;
+                    Assert.assertEquals(p >> 16 & 0xFF, raw[j] & 0xFF);
+                    Assert.assertEquals(p >> 8 & 0xFF, raw[j + 1] & 0xFF);
+                    Assert.assertEquals(p & 0xFF, raw[j + 2] & 0xFF);
+                }
+            }
+            Assert.assertEquals(FRAMES + 1, Files.readAllLines(folder.resolve(FrameCapture.INDEX_FILE)).size());
+        } finally {
+            delete(folder);
+        }
+    }
+
+    @Test
+    public void testPng() throws Exception {
+        Path folder = Files.createTempDirectory("helios");
+        try {
+            Dimension d = VIDEO_MODE.getDimension();
+            FrameCapture fc = new FrameCapture(folder, FrameCapture.Format.PNG, 2, 60);
+            capture(fc, d);
+            List<String> index = Files.readAllLines(folder.resolve(FrameCapture.INDEX_FILE));
+            Assert.assertEquals(FRAMES + 1, index.size());
+            int f = FRAMES - 1;
+            String file = index.stream().filter(l -> l.startsWith(FRAMES - 1 + ",")).
+                    map(l -> l.split(",")[4]).findFirst().get();
+            BufferedImage img = ImageIO.read(folder.resolve(file).toFile());
+            Assert.assertEquals(d.width, img.getWidth());
+            Assert.assertEquals(d.height, img.getHeight());
+            for (int i = 0; i < d.width * d.height; i += 997) {
+                Assert.assertEquals(pixel(f, i), img.getRGB(i % d.width, i / d.width) & 0xFF_FFFF);
+            }
+        } finally {
+            delete(folder);
+        }
+    }
+
+    @Test
+    public void testDroppedRaw() throws Exception {
+        testDropped(FrameCapture.Format.RAW);
+    }
+
+    @Test
+    public void testDroppedPng() throws Exception {
+        testDropped(FrameCapture.Format.PNG);
+    }
+
+    //frames 3 to 5 are dropped: they keep their number and slot and become copies of frame 2
+    private void testDropped(FrameCapture.Format format) throws Exception {
+        Path folder = Files.createTempDirectory("helios");
+        try {
+            Dimension d = VIDEO_MODE.getDimension();
+            FrameCapture fc = new FrameCapture(folder, format, 1, 60);
+            int[] data = new int[d.width * d.height];
+            List<FrameCapture.Frame> drained = new ArrayList<>();
+            for (int f = 0; f < FRAMES; f++) {
+                if (f == 3) {
+                    //wait for the encoders to return the buffers
+                    while (drained.size() < FrameCapture.POOL_SIZE) {
+                        fc.pool.drainTo(drained);
+                        Thread.sleep(5);
+                    }
+                } else if (f == 6) {
+                    fc.pool.addAll(drained);
+                }
+                for (int i = 0; i < data.length; i++) {
+                    data[i] = pixel(f, i);
+                }
+                fc.capture(data, VIDEO_MODE);
+                Thread.sleep(20);
+            }
+            fc.close();
+            Assert.assertEquals(FRAMES, fc.getFrameCount());
+            Assert.assertEquals(3, fc.getDroppedCount());
+
+            List<String[]> index = Files.readAllLines(folder.resolve(FrameCapture.INDEX_FILE)).stream().skip(1).
+                    map(l -> l.split(",")).sorted(Comparator.comparingInt(r -> Integer.parseInt(r[0]))).
+                    collect(Collectors.toList());
+            Assert.assertEquals(FRAMES, index.size());
+            int frameBytes = d.width * d.height * 3;
+            byte[] raw = format == FrameCapture.Format.RAW ? Files.readAllBytes(folder.resolve(FrameCapture.RAW_FILE)) : null;
+            if (raw != null) {
+                Assert.assertEquals(FRAMES * frameBytes, raw.length);
+            }
+            for (int f = 0; f < FRAMES; f++) {
+                String[] row = index.get(f);
+                boolean dropped = f >= 3 && f < 6;
+                int src = dropped ? 2 : f;
+                Assert.assertEquals(f, Integer.parseInt(row[0]));
+                Assert.assertEquals(dropped ? "1" : "0", row[5]);
+                BufferedImage img = null;
+                if (raw != null) {
+                    Assert.assertEquals((long) f * frameBytes, Long.parseLong(row[4]));
+                } else {
+                    Assert.assertEquals(String.format("frame_%06d.png", f), row[4]);
+                    img = ImageIO.read(folder.resolve(row[4]).toFile());
+                }
+                for (int i = 0; i < d.width * d.height; i += 997) {
+                    int p = pixel(src, i);
+                    if (raw != null) {
+                        int j = f * frameBytes + i * 3;
+                        Assert.assertEquals(p, (raw[j] & 0xFF) << 16 | (raw[j + 1] & 0xFF) << 8 | raw[j + 2] & 0xFF);
+                    } else {
+                        Assert.assertEquals(p, img.getRGB(i % d.width, i / d.width) & 0xFF_FFFF);
+                    }
+                }
+            }
+        } finally {
+            delete(folder);
+        }
+    }
+
+    private static void capture(FrameCapture fc, Dimension d) throws InterruptedException {
+        int[] data = new int[d.width * d.height];
+        for (int f = 0; f < FRAMES; f++) {
+            for (int i = 0; i < data.length; i++) {
+                data[i] = pixel(f, i);
+            }
+            fc.capture(data, VIDEO_MODE);
+            //the encoders should keep up, nothing dropped
+            Thread.sleep(20);
+        }
+        fc.close();
+        Assert.assertEquals(FRAMES, fc.getFrameCount());
+        Assert.assertEquals(0, fc.getDroppedCount());
+    }
+
+    @Test
+    public void testParseFormat() {
+        Assert.assertEquals(FrameCapture.Format.RAW, FrameCapture.parseFormat("raw"));
+        Assert.assertEquals(FrameCapture.Format.PNG, FrameCapture.parseFormat(" png"));
+        Assert.assertEquals(FrameCapture.Format.PNG, FrameCapture.parseFormat("rwa"));
+    }
+
+    private static int pixel(int frame, int i) {
+        return (int) ((i * 2654435761L + frame * 40503L) & 0xFF_FFFF);
+    }
+
+    private static void delete(Path folder) throws Exception {
+        try (Stream<Path> s = Files.list(folder)) {
+            s.collect(Collectors.toList()).forEach(p -> p.toFile().delete());
+        }
+        new File(folder.toString()).delete();
+    }
+}